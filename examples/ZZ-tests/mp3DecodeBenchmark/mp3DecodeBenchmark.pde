@@ -0,0 +1,100 @@
+/* Compares how fast an mp3 can be decoded to floats by the stream
+ * returned from loadDecodingStream, which runs the JLayer decoder itself,
+ * against the old way of going through the JavaSound format conversion
+ * to 16 bit PCM and converting those bytes to floats.
+ * The time of every pass and the median of the passes after the JIT
+ * has warmed up are printed to the console. loadDecodingStream doesn't
+ * open an output line, so this runs on machines without a sound card.
+ */
+import ddf.minim.*;
+import ddf.minim.spi.*;
+import ddf.minim.javasound.FloatSampleBuffer;
+import javax.sound.sampled.*;
+
+Minim minim;
+String fileName = "groove.mp3";
+int bufferSize = 1024;
+
+void setup()
+{
+  size(200, 200);
+  
+  minim = new Minim(this);
+  
+  // run everything a few times so the JIT has a chance to compile the decoder,
+  // and only count the passes after that, since single passes are noisy.
+  int warmup = 10;
+  int passes = 25;
+  long[] floatTimes = new long[passes - warmup];
+  long[] pcmTimes   = new long[passes - warmup];
+  for( int pass = 0; pass < passes; ++pass )
+  {
+    long floatPath = decodeWithStream();
+    long pcmPath   = decodeWithConversion();
+    println( "pass " + pass + ": loadDecodingStream " + (floatPath / 1000000) + " ms"
+           + ", 16 bit conversion " + (pcmPath / 1000000) + " ms" );
+    if ( pass >= warmup )
+    {
+      floatTimes[pass - warmup] = floatPath;
+      pcmTimes[pass - warmup]   = pcmPath;
+    }
+  }
+  println( "median: loadDecodingStream " + (median( floatTimes ) / 1000000) + " ms"
+         + ", 16 bit conversion " + (median( pcmTimes ) / 1000000) + " ms" );
+  
+  exit();
+}
+
+long median( long[] times )
+{
+  long[] sorted = times.clone();
+  java.util.Arrays.sort( sorted );
+  return sorted[sorted.length / 2];
+}
+
+long decodeWithStream()
+{
+  long start = System.nanoTime();
+  AudioRecordingStream stream = minim.loadDecodingStream( fileName, bufferSize );
+  MultiChannelBuffer buffer = new MultiChannelBuffer( bufferSize, stream.getFormat().getChannels() );
+  stream.play();
+  while( stream.isPlaying() )
+  {
+    stream.read( buffer );
+  }
+  stream.close();
+  return System.nanoTime() - start;
+}
+
+long decodeWithConversion()
+{
+  long start = System.nanoTime();
+  try
+  {
+    AudioInputStream mp3 = AudioSystem.getAudioInputStream( createInput( fileName ) );
+    AudioFormat base = mp3.getFormat();
+    AudioFormat pcm = new AudioFormat( AudioFormat.Encoding.PCM_SIGNED, base.getSampleRate(), 16,
+                                       base.getChannels(), base.getChannels() * 2, base.getSampleRate(), false );
+    AudioInputStream decoded = AudioSystem.getAudioInputStream( pcm, mp3 );
+    FloatSampleBuffer floats = new FloatSampleBuffer( pcm.getChannels(), bufferSize, pcm.getSampleRate() );
+    byte[] bytes = new byte[bufferSize * pcm.getFrameSize()];
+    int read = 0;
+    do
+    {
+      read = 0;
+      int got = 0;
+      while( read < bytes.length && (got = decoded.read( bytes, read, bytes.length - read )) > 0 )
+      {
+        read += got;
+      }
+      floats.setSamplesFromBytes( bytes, 0, pcm, 0, read / pcm.getFrameSize() );
+    }
+    while( read == bytes.length );
+    decoded.close();
+  }
+  catch( Exception e )
+  {
+    println( "Couldn't decode " + fileName + ": " + e.getMessage() );
+  }
+  return System.nanoTime() - start;
+}
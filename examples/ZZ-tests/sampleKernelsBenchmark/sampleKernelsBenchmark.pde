@@ -0,0 +1,79 @@
+/* Times the buffer kernels in SampleKernels against the plain loops
+ * they replaced, at the buffer sizes we typically run with.
+ * Results are printed to the console, nanoseconds per buffer.
+ */
+import ddf.minim.*;
+
+int[] sizes = { 64, 128, 256, 512, 1024, 2048, 4096 };
+
+void setup()
+{
+  size(200, 200);
+
+  // run everything a few times so the JIT has a chance to compile the loops
+  for( int pass = 0; pass < 3; ++pass )
+  {
+    println( "pass " + pass );
+    for( int s = 0; s < sizes.length; ++s )
+    {
+      benchmark( sizes[s] );
+    }
+  }
+
+  exit();
+}
+
+void benchmark( int n )
+{
+  float[] left   = new float[n];
+  float[] right  = new float[n];
+  float[] mix    = new float[n];
+  byte[]  pcm    = new byte[n*4];
+
+  for( int i = 0; i < n; ++i )
+  {
+    left[i]  = random( -1, 1 );
+    right[i] = random( -1, 1 );
+  }
+
+  int iterations = 20000000 / n;
+  float level = 0;
+
+  long start = System.nanoTime();
+  for( int it = 0; it < iterations; ++it )
+  {
+    for( int i = 0; i < n; ++i )
+    {
+      mix[i] = (left[i] + right[i]) / 2;
+    }
+    float sum = 0;
+    for( int i = 0; i < n; ++i )
+    {
+      sum += mix[i] * mix[i];
+    }
+    level += sqrt( sum / n );
+  }
+  long scalar = System.nanoTime() - start;
+
+  start = System.nanoTime();
+  for( int it = 0; it < iterations; ++it )
+  {
+    SampleKernels.mix( left, right, mix, n );
+    level += SampleKernels.rms( mix, 0, n );
+  }
+  long kernel = System.nanoTime() - start;
+
+  start = System.nanoTime();
+  for( int it = 0; it < iterations; ++it )
+  {
+    SampleKernels.floatToPcm16( left, 0, pcm, 0, 4, false, n );
+    SampleKernels.floatToPcm16( right, 0, pcm, 2, 4, false, n );
+  }
+  long convert = System.nanoTime() - start;
+
+  println( "size " + n
+         + ": mix+level scalar " + (scalar / iterations) + " ns"
+         + ", kernel " + (kernel / iterations) + " ns"
+         + ", stereo pcm16 " + (convert / iterations) + " ns"
+         + "  (" + level + ")" );
+}
@@ -73,6 +73,7 @@ public class AudioInput extends AudioSource
   {
     super( out );
     out.setAudioStream(stream);
+    getMetrics().setOverrunSource(stream);
     stream.open();
     
     disableMonitoring();
@@ -0,0 +1,402 @@
+package ddf.minim;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import ddf.minim.spi.AudioRecordingStream;
+import ddf.minim.spi.AudioStream;
+
+/**
+ * <code>AudioMetrics</code> keeps track of how close the audio thread of an
+ * <code>AudioSource</code> is running to its deadline. Every time a buffer is
+ * rendered, the time it took is added to a histogram, from which the max, mean
+ * and percentiles can be read at any time. It also counts underruns (times
+ * the sound card ran out of audio), how many of those happened right after a
+ * garbage collection, and how much audio was still queued when the last
+ * buffer was finished.
+ * <p>
+ * Recording a buffer is a handful of arithmetic and one array write, so
+ * metrics are always on. You get the metrics for a source by calling its
+ * <code>getMetrics()</code> method, and you can make them visible to JMX
+ * based monitoring by calling <code>registerMBean</code>.
+ * <p>
+ * The histogram has four buckets per power of two microseconds, so
+ * percentiles are accurate to within about 20%.
+ *
+ * @related AudioSource
+ *
+ * @invisible
+ */
+public class AudioMetrics implements AudioMetricsMBean
+{
+	// four buckets per octave, up to about 17 minutes
+	private static final int	BUCKET_COUNT		= 120;
+	// an underrun this soon after a gc is considered to be caused by it
+	private static final long	GC_WINDOW_MILLIS	= 100;
+
+	private static volatile long	lastGCMillis	= Long.MIN_VALUE / 2;
+	private static boolean			listeningForGC;
+
+	private final long				bufferBudgetMicros;
+	// everything reset clears. reset swaps in a new one rather than clearing
+	// this one, so that an update the audio thread is in the middle of
+	// can't put part of the old numbers back.
+	private volatile Counts			counts;
+
+	private AudioRecordingStream	readAheadSource;
+	private AudioStream				overrunSource;
+	private ObjectName				mbeanName;
+
+	/**
+	 * Constructs metrics for a source that renders buffers of
+	 * <code>bufferSize</code> sample frames at <code>sampleRate</code>.
+	 *
+	 * @param bufferSize
+	 *            int: the size of the buffers being rendered, in sample frames
+	 * @param sampleRate
+	 *            float: the sample rate of the audio being rendered
+	 */
+	public AudioMetrics(int bufferSize, float sampleRate)
+	{
+		bufferBudgetMicros = (long)( bufferSize * 1000000.0 / sampleRate );
+		counts = new Counts();
+		listenForGC();
+	}
+
+	/**
+	 * Called by the audio thread every time it finishes rendering a buffer.
+	 *
+	 * @param renderNanos
+	 *            long: how long rendering the buffer took, in nanoseconds
+	 * @param headroomNanos
+	 *            long: how much audio was still queued for playback when
+	 *            the buffer was finished, in nanoseconds
+	 *
+	 * @invisible
+	 */
+	public void bufferRendered(long renderNanos, long headroomNanos)
+	{
+		final Counts c = counts;
+		long micros = renderNanos / 1000;
+		int b = bucketFor( micros );
+		// we are the only writer, so a lazy set of the incremented value is enough
+		c.buckets.lazySet( b, c.buckets.get( b ) + 1 );
+		c.lastRenderMicros = micros;
+		c.totalRenderMicros += micros;
+		if ( micros > c.maxRenderMicros )
+		{
+			c.maxRenderMicros = micros;
+		}
+		c.headroomMicros = headroomNanos / 1000;
+		++c.bufferCount;
+	}
+
+	/**
+	 * Called by the audio thread when it detects that the sound card ran
+	 * out of audio.
+	 *
+	 * @invisible
+	 */
+	public void underrun()
+	{
+		final Counts c = counts;
+		++c.underrunCount;
+		if ( System.currentTimeMillis() - lastGCMillis <= GC_WINDOW_MILLIS )
+		{
+			++c.underrunsNearGC;
+		}
+	}
+
+	/**
+	 * Sets the stream that should be asked for its read-ahead depth.
+	 * AudioPlayer does this with the recording it plays.
+	 *
+	 * @invisible
+	 */
+	public void setReadAheadSource(AudioRecordingStream stream)
+	{
+		readAheadSource = stream;
+	}
+
+	/**
+	 * Sets the stream that should be asked how many times it lost input.
+	 * AudioInput does this with the stream it reads from.
+	 *
+	 * @invisible
+	 */
+	public void setOverrunSource(AudioStream stream)
+	{
+		overrunSource = stream;
+	}
+
+	/**
+	 * Returns the number of buffers rendered since these metrics were
+	 * created or last reset.
+	 */
+	public long getBufferCount()
+	{
+		return counts.bufferCount;
+	}
+
+	/**
+	 * Returns how long one buffer lasts when played, in microseconds.
+	 * Render times that approach this are a sign of trouble.
+	 */
+	public long getBufferBudgetMicros()
+	{
+		return bufferBudgetMicros;
+	}
+
+	/**
+	 * Returns how long the most recent buffer took to render, in microseconds.
+	 */
+	public long getLastRenderMicros()
+	{
+		return counts.lastRenderMicros;
+	}
+
+	/**
+	 * Returns the longest any buffer took to render, in microseconds.
+	 */
+	public long getMaxRenderMicros()
+	{
+		return counts.maxRenderMicros;
+	}
+
+	/**
+	 * Returns the average time it took to render a buffer, in microseconds.
+	 */
+	public long getMeanRenderMicros()
+	{
+		final Counts c = counts;
+		long count = c.bufferCount;
+		return count == 0 ? 0 : c.totalRenderMicros / count;
+	}
+
+	/**
+	 * Returns the median render time, in microseconds.
+	 */
+	public long getP50RenderMicros()
+	{
+		return getRenderMicrosPercentile( 50 );
+	}
+
+	/**
+	 * Returns the render time that 99% of buffers finished within,
+	 * in microseconds.
+	 */
+	public long getP99RenderMicros()
+	{
+		return getRenderMicrosPercentile( 99 );
+	}
+
+	/**
+	 * Returns the render time that <code>percent</code> percent of buffers
+	 * finished within, in microseconds. The value returned is the upper
+	 * edge of the histogram bucket the percentile falls in.
+	 *
+	 * @param percent
+	 *            float: a value between 0 and 100
+	 */
+	public long getRenderMicrosPercentile(float percent)
+	{
+		final Counts c = counts;
+		final AtomicLongArray buckets = c.buckets;
+		long total = 0;
+		for ( int i = 0; i < BUCKET_COUNT; ++i )
+		{
+			total += buckets.get( i );
+		}
+		if ( total == 0 )
+		{
+			return 0;
+		}
+		long target = (long)Math.ceil( total * percent / 100.0 );
+		long seen = 0;
+		for ( int i = 0; i < BUCKET_COUNT; ++i )
+		{
+			seen += buckets.get( i );
+			if ( seen >= target && seen > 0 )
+			{
+				return Math.min( bucketLowerBound( i + 1 ) - 1, c.maxRenderMicros );
+			}
+		}
+		return c.maxRenderMicros;
+	}
+
+	/**
+	 * Returns how many times the sound card ran out of audio.
+	 */
+	public long getUnderrunCount()
+	{
+		return counts.underrunCount;
+	}
+
+	/**
+	 * Returns how many underruns happened within 100 milliseconds of the end
+	 * of a garbage collection. If this is close to the underrun count,
+	 * garbage collection pauses are the likely culprit.
+	 */
+	public long getUnderrunsNearGC()
+	{
+		return counts.underrunsNearGC;
+	}
+
+	/**
+	 * Returns how much audio was still queued for playback when the most
+	 * recent buffer finished rendering, in microseconds.
+	 */
+	public long getHeadroomMicros()
+	{
+		return counts.headroomMicros;
+	}
+
+	/**
+	 * Returns how many sample frames the decoder of an AudioPlayer can deliver
+	 * without blocking. Always 0 for sources that don't play a file.
+	 */
+	public int getReadAheadFrames()
+	{
+		AudioRecordingStream stream = readAheadSource;
+		return stream == null ? 0 : stream.getReadAheadFrames();
+	}
+
+	/**
+	 * Returns how many times the input line of an AudioInput filled up
+	 * before it was read, losing audio. Always 0 for other sources.
+	 */
+	public long getInputOverrunCount()
+	{
+		AudioStream stream = overrunSource;
+		return stream == null ? 0 : stream.getOverrunCount();
+	}
+
+	/**
+	 * Clears all of the counters and the histogram. This is safe to call
+	 * while the source is playing: a buffer being recorded at the same
+	 * moment is counted either before the reset or not at all.
+	 */
+	public void reset()
+	{
+		counts = new Counts();
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server under the name
+	 * <code>ddf.minim:type=AudioMetrics,name=</code><em>name</em>, so that
+	 * they can be read by JMX clients. They are unregistered when the source
+	 * they belong to is closed.
+	 *
+	 * @param name
+	 *            String: the name to register under
+	 */
+	public synchronized void registerMBean(String name)
+	{
+		unregisterMBean();
+		try
+		{
+			ObjectName objectName = new ObjectName( "ddf.minim:type=AudioMetrics,name=" + ObjectName.quote( name ) );
+			ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName );
+			mbeanName = objectName;
+		}
+		catch ( Exception e )
+		{
+			Minim.error( "AudioMetrics.registerMBean: couldn't register " + name + " - " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Removes these metrics from the platform MBean server, if they were registered.
+	 */
+	public synchronized void unregisterMBean()
+	{
+		if ( mbeanName != null )
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean( mbeanName );
+			}
+			catch ( Exception e )
+			{
+				Minim.debug( "AudioMetrics.unregisterMBean: " + e.getMessage() );
+			}
+			mbeanName = null;
+		}
+	}
+
+	// the numbers gathered since the metrics were created or last reset.
+	// only ever written by the audio thread.
+	private static final class Counts
+	{
+		final AtomicLongArray	buckets	= new AtomicLongArray( BUCKET_COUNT );
+		volatile long			bufferCount;
+		volatile long			totalRenderMicros;
+		volatile long			lastRenderMicros;
+		volatile long			maxRenderMicros;
+		volatile long			underrunCount;
+		volatile long			underrunsNearGC;
+		volatile long			headroomMicros;
+	}
+
+	static int bucketFor(long micros)
+	{
+		if ( micros < 4 )
+		{
+			return micros < 0 ? 0 : (int)micros;
+		}
+		int octave = 63 - Long.numberOfLeadingZeros( micros );
+		int sub = (int)( ( micros >>> ( octave - 2 ) ) & 3 );
+		return Math.min( octave * 4 + sub - 4, BUCKET_COUNT - 1 );
+	}
+
+	static long bucketLowerBound(int bucket)
+	{
+		if ( bucket < 4 )
+		{
+			return bucket;
+		}
+		int octave = ( bucket + 4 ) / 4;
+		int sub = ( bucket + 4 ) % 4;
+		return (long)( 4 + sub ) << ( octave - 2 );
+	}
+
+	// the garbage collector beans send a notification at the end of every
+	// collection, we just remember when the last one arrived.
+	private static synchronized void listenForGC()
+	{
+		if ( listeningForGC )
+		{
+			return;
+		}
+		listeningForGC = true;
+		try
+		{
+			NotificationListener listener = new NotificationListener()
+			{
+				public void handleNotification(Notification notification, Object handback)
+				{
+					lastGCMillis = System.currentTimeMillis();
+				}
+			};
+			for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+			{
+				if ( gc instanceof NotificationEmitter )
+				{
+					( (NotificationEmitter)gc ).addNotificationListener( listener, null, null );
+				}
+			}
+		}
+		catch ( Throwable t )
+		{
+			// not every platform has the management classes,
+			// in which case we simply don't correlate with gc.
+			Minim.debug( "AudioMetrics: not listening for garbage collection - " + t.getMessage() );
+		}
+	}
+}
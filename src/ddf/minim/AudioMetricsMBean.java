@@ -0,0 +1,37 @@
+package ddf.minim;
+
+/**
+ * The management interface of <code>AudioMetrics</code>, which is what
+ * JMX clients see when an <code>AudioMetrics</code> has been registered
+ * with <code>registerMBean</code>. All times are in microseconds.
+ *
+ * @invisible
+ */
+public interface AudioMetricsMBean
+{
+	long getBufferCount();
+
+	long getBufferBudgetMicros();
+
+	long getLastRenderMicros();
+
+	long getMaxRenderMicros();
+
+	long getMeanRenderMicros();
+
+	long getP50RenderMicros();
+
+	long getP99RenderMicros();
+
+	long getUnderrunCount();
+
+	long getUnderrunsNearGC();
+
+	long getHeadroomMicros();
+
+	int getReadAheadFrames();
+
+	long getInputOverrunCount();
+
+	void reset();
+}
@@ -62,6 +62,7 @@ public class AudioPlayer extends AudioSource implements Playable
 		output = out;
 		// output.setAudioSignal( new StreamSignal(recording, output.bufferSize()) );
 		output.setAudioStream(recording);
+		getMetrics().setReadAheadSource(recording);
 	}
 
    /**
@@ -345,7 +346,9 @@ public class AudioPlayer extends AudioSource implements Playable
 	 */
 	public void close()
 	{
-		recording.close();
+		// stop the output first, so that nothing is still reading 
+		// the recording when it goes away.
 		super.close();
+		recording.close();
 	}
 }
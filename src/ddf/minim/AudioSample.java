@@ -33,6 +33,10 @@ import ddf.minim.spi.AudioOut;
  * AudioSample also provides most of the same methods as AudioPlayer for
  * controlling volume, panning, and so forth.
  * <p>
+ * There is no limit to how many triggers can be sounding at once, unless you
+ * set one with <code>setMaxVoices</code>. Each trigger can have its own gain
+ * and pan, which are fixed when it is triggered.
+ * <p>
  * We now recommend using <code>Sampler</code> class from the ugens package because it is more
  * full-featured than <code>AudioSample</code>.
  * 
@@ -119,6 +123,85 @@ public abstract class AudioSample extends AudioSource
 	 */
 	public abstract void trigger();
 
+	/**
+	 * Triggers the sound to play once with its own gain and pan. Changing the 
+	 * volume or pan of the AudioSample afterwards affects every trigger, but 
+	 * the values passed here stay with this trigger until it finishes.
+	 * 
+	 * @param gain
+	 *            float: the amplitude of this trigger, where 1 is the sample as it is
+	 * @param pan
+	 *            float: where to put a stereo sample, from -1 (left) to 1 (right). 
+	 *            This is ignored for mono samples.
+	 * 
+	 * @related trigger ( )
+	 * @related AudioSample
+	 */
+	public void trigger(float gain, float pan)
+	{
+		// subclasses that don't know about per trigger gain and pan 
+		// still play the trigger, as they did before this existed.
+		trigger();
+	}
+
+	/**
+	 * Sets how many triggers can sound at once. When a trigger would go over 
+	 * the limit, either the oldest sounding trigger is stopped to make room for 
+	 * it, or it is ignored, depending on <code>setVoiceStealing</code>. 
+	 * Zero, the default, means there is no limit.
+	 * 
+	 * @param voices
+	 *            int: the most triggers that can sound at once, or 0 for no limit
+	 * 
+	 * @related setVoiceStealing ( )
+	 * @related AudioSample
+	 */
+	public void setMaxVoices(int voices)
+	{
+		// subclasses that don't limit their voices ignore this.
+	}
+
+	/**
+	 * Returns how many triggers can sound at once, zero meaning there is no limit.
+	 * 
+	 * @return int: the voice limit
+	 * 
+	 * @related setMaxVoices ( )
+	 * @related AudioSample
+	 */
+	public int getMaxVoices()
+	{
+		return 0;
+	}
+
+	/**
+	 * Sets whether a trigger that goes over the voice limit stops the oldest 
+	 * sounding trigger, which is the default, or is ignored.
+	 * 
+	 * @param steal
+	 *            boolean: true to stop the oldest trigger, false to ignore the new one
+	 * 
+	 * @related setMaxVoices ( )
+	 * @related AudioSample
+	 */
+	public void setVoiceStealing(boolean steal)
+	{
+		// subclasses that don't limit their voices ignore this.
+	}
+
+	/**
+	 * Returns how many triggers were sounding at the end of the last buffer,
+	 * or zero if this AudioSample doesn't keep count.
+	 * 
+	 * @return int: the number of sounding triggers
+	 * 
+	 * @related AudioSample
+	 */
+	public int getActiveVoiceCount()
+	{
+		return 0;
+	}
+
 	/**
 	 * Stops all sound being produced by this AudioSample.
 	 * 
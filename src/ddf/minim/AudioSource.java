@@ -33,6 +33,8 @@ public class AudioSource extends Controller implements Effectable, Recordable
 	private StereoBuffer		buffer;
 	// the effects chain used for effecting
 	private EffectsChain		effects;
+	// render time and underrun tracking for the output
+	private AudioMetrics		metrics;
 
 	/**
 	 * The AudioBuffer containing the left channel samples. If this is a mono
@@ -80,7 +82,7 @@ public class AudioSource extends Controller implements Effectable, Recordable
 	 */
 	public AudioSource(AudioOut istream)
 	{
-		super( istream.getControls() );
+		super( istream.getControls(), new OutputGain( istream.getFormat().getSampleRate() ) );
 		stream = istream;
 
 		// we gots a buffer for users to poll
@@ -103,6 +105,13 @@ public class AudioSource extends Controller implements Effectable, Recordable
 		effects = new EffectsChain();
 		// we set it as the effect on the stream
 		stream.setAudioEffect( effects );
+		
+		// and metrics so we can see how the audio thread is doing
+		metrics = new AudioMetrics( stream.bufferSize(), stream.getFormat().getSampleRate() );
+		stream.setAudioMetrics( metrics );
+		
+		// volume, gain, balance, pan, and mute are applied last
+		stream.setOutputGain( getOutputGain() );
 
 		stream.open();
 	}
@@ -117,6 +126,7 @@ public class AudioSource extends Controller implements Effectable, Recordable
 		Minim.debug( "Closing " + this.toString() );
 		
 		stream.close();
+		metrics.unregisterMBean();
 		
 		// if we have a parent, tell them to stop tracking us
 		// so that we can get garbage collected
@@ -306,4 +316,18 @@ public class AudioSource extends Controller implements Effectable, Recordable
 	{
 		return stream.getFormat().getSampleRate();
 	}
+
+	/**
+	 * Returns the AudioMetrics for this sound object, which track how long 
+	 * each buffer takes to render, how often the sound card ran out of audio, 
+	 * and so forth. Metrics are always being recorded, this simply gives you
+	 * access to them. To make them visible to JMX clients, call 
+	 * <code>registerMBean</code> on the returned object.
+	 * 
+	 * @return the AudioMetrics of this sound object
+	 */
+	public AudioMetrics getMetrics()
+	{
+		return metrics;
+	}
 }
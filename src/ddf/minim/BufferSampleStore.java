@@ -0,0 +1,182 @@
+package ddf.minim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// a SampleStore that keeps each channel in a ByteBuffer, either packed
+// into 16 or 24 bit integers, or as floats. when the buffers are direct
+// the samples live outside of the heap and the garbage collector never
+// has to look at them.
+class BufferSampleStore extends SampleStore
+{
+	private static final float	TWO_POWER_15		= 32768.0f;
+	private static final float	TWO_POWER_23		= 8388608.0f;
+	private static final float	INV_TWO_POWER_15	= 1 / TWO_POWER_15;
+	private static final float	INV_TWO_POWER_23	= 1 / TWO_POWER_23;
+
+	private final ByteBuffer[]	channels;
+	private final int			encoding;
+	private final boolean		offHeap;
+
+	BufferSampleStore(int channelCount, int sampleCount, float sampleRate, int encoding, boolean offHeap)
+	{
+		super( channelCount, sampleCount, sampleRate, encoding );
+		this.encoding = encoding;
+		this.offHeap = offHeap;
+
+		int bytesPerSample = encoding == INT16 ? 2 : ( encoding == INT24 ? 3 : 4 );
+		if ( (long)sampleCount * bytesPerSample > Integer.MAX_VALUE )
+		{
+			throw new IllegalArgumentException( "SampleStore: " + sampleCount + " samples is too long for one channel." );
+		}
+		channels = new ByteBuffer[channelCount];
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			ByteBuffer channel = offHeap ? ByteBuffer.allocateDirect( sampleCount * bytesPerSample )
+										 : ByteBuffer.allocate( sampleCount * bytesPerSample );
+			channels[c] = channel.order( ByteOrder.nativeOrder() );
+		}
+	}
+
+	public boolean isOffHeap()
+	{
+		return offHeap;
+	}
+
+	public float getSample(int channel, int sampleIndex)
+	{
+		ByteBuffer buffer = channels[channel];
+		switch ( encoding )
+		{
+		case INT16:
+			return buffer.getShort( sampleIndex << 1 ) * INV_TWO_POWER_15;
+		case INT24:
+			return get24( buffer, sampleIndex * 3 ) * INV_TWO_POWER_23;
+		default:
+			return buffer.getFloat( sampleIndex << 2 );
+		}
+	}
+
+	public void setSample(int channel, int sampleIndex, float value)
+	{
+		ByteBuffer buffer = channels[channel];
+		switch ( encoding )
+		{
+		case INT16:
+			buffer.putShort( sampleIndex << 1, (short)SampleKernels.quantize( value * TWO_POWER_15, 32767 ) );
+			break;
+		case INT24:
+			put24( buffer, sampleIndex * 3, SampleKernels.quantize( value * TWO_POWER_23, 8388607 ) );
+			break;
+		default:
+			buffer.putFloat( sampleIndex << 2, value );
+			break;
+		}
+	}
+
+	public void read(int channel, int sampleIndex, float[] dst, int dstOffset, int length)
+	{
+		ByteBuffer buffer = channels[channel];
+		final int end = dstOffset + length;
+		switch ( encoding )
+		{
+		case INT16:
+			for ( int i = dstOffset, b = sampleIndex << 1; i < end; ++i, b += 2 )
+			{
+				dst[i] = buffer.getShort( b ) * INV_TWO_POWER_15;
+			}
+			break;
+		case INT24:
+			for ( int i = dstOffset, b = sampleIndex * 3; i < end; ++i, b += 3 )
+			{
+				dst[i] = get24( buffer, b ) * INV_TWO_POWER_23;
+			}
+			break;
+		default:
+			for ( int i = dstOffset, b = sampleIndex << 2; i < end; ++i, b += 4 )
+			{
+				dst[i] = buffer.getFloat( b );
+			}
+			break;
+		}
+	}
+
+	public void add(int channel, int sampleIndex, float[] dst, int dstOffset, int length)
+	{
+		ByteBuffer buffer = channels[channel];
+		final int end = dstOffset + length;
+		switch ( encoding )
+		{
+		case INT16:
+			for ( int i = dstOffset, b = sampleIndex << 1; i < end; ++i, b += 2 )
+			{
+				dst[i] += buffer.getShort( b ) * INV_TWO_POWER_15;
+			}
+			break;
+		case INT24:
+			for ( int i = dstOffset, b = sampleIndex * 3; i < end; ++i, b += 3 )
+			{
+				dst[i] += get24( buffer, b ) * INV_TWO_POWER_23;
+			}
+			break;
+		default:
+			for ( int i = dstOffset, b = sampleIndex << 2; i < end; ++i, b += 4 )
+			{
+				dst[i] += buffer.getFloat( b );
+			}
+			break;
+		}
+	}
+
+	public void add(int channel, int sampleIndex, float[] dst, int dstOffset, int length, float gain)
+	{
+		ByteBuffer buffer = channels[channel];
+		final int end = dstOffset + length;
+		switch ( encoding )
+		{
+		case INT16:
+			final float scale16 = gain * INV_TWO_POWER_15;
+			for ( int i = dstOffset, b = sampleIndex << 1; i < end; ++i, b += 2 )
+			{
+				dst[i] += buffer.getShort( b ) * scale16;
+			}
+			break;
+		case INT24:
+			final float scale24 = gain * INV_TWO_POWER_23;
+			for ( int i = dstOffset, b = sampleIndex * 3; i < end; ++i, b += 3 )
+			{
+				dst[i] += get24( buffer, b ) * scale24;
+			}
+			break;
+		default:
+			for ( int i = dstOffset, b = sampleIndex << 2; i < end; ++i, b += 4 )
+			{
+				dst[i] += buffer.getFloat( b ) * gain;
+			}
+			break;
+		}
+	}
+
+	public void write(int channel, int sampleIndex, float[] src, int srcOffset, int length)
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			setSample( channel, sampleIndex + i, src[srcOffset + i] );
+		}
+	}
+
+	// 24 bit samples are always stored little endian, regardless of the buffer's order.
+	private static int get24(ByteBuffer buffer, int index)
+	{
+		return ( buffer.get( index + 2 ) << 16 )
+			 | ( ( buffer.get( index + 1 ) & 0xFF ) << 8 )
+			 | ( buffer.get( index ) & 0xFF );
+	}
+
+	private static void put24(ByteBuffer buffer, int index, int value)
+	{
+		buffer.put( index, (byte)value );
+		buffer.put( index + 1, (byte)( value >> 8 ) );
+		buffer.put( index + 2, (byte)( value >> 16 ) );
+	}
+}
@@ -32,6 +32,14 @@ import javax.sound.sampled.FloatControl;
  * <code>AudioOutput</code>), these changes will not be present in the
  * samples made available to your program.
  * <p>
+ * <code>AudioSource</code>s, which includes every player, sample, input, and
+ * output you get from Minim, do volume, gain, balance, pan, and mute in
+ * software rather than with the controls of the line, so those are always
+ * available on them and shifts are smooth and timed to the sample. The
+ * <code>FloatControl</code>s returned by the methods below are the software
+ * controls on those objects, in place of any the line has, so setting them
+ * is the same as calling the set methods.
+ * <p>
  * The {@link #volume()}, {@link #gain()}, {@link #pan()}, and
  * {@link #balance()} methods return objects of type <code>FloatControl</code>,
  * which is a class defined by the JavaSound API. A <code>FloatControl</code>
@@ -92,6 +100,8 @@ public class Controller
   public static BooleanControl.Type MUTE = BooleanControl.Type.MUTE;
   
   private Control[] controls;
+  // when set, volume, gain, balance, pan, and mute are done in software
+  private OutputGain outputGain;
   // the starting value for shifting
   private ValueShifter vshifter, gshifter, bshifter, pshifter;
   private boolean vshift, gshift, bshift, pshift;
@@ -110,6 +120,47 @@ public class Controller
     vshift = gshift = bshift = pshift = false;
   }
   
+  // for sources that apply volume, gain, balance, pan, and mute themselves.
+  // those don't need the line to have the controls, and shifts are timed
+  // by the output's sample clock instead of by update().
+  Controller(Control[] cntrls, OutputGain gain)
+  {
+    this(softwareControls(cntrls, gain));
+    outputGain = gain;
+  }
+  
+  // the controls of the gain stage, plus the controls of the line it
+  // doesn't replace, so that the Control-returning methods hand out the
+  // same controls the set and get methods use.
+  private static Control[] softwareControls(Control[] lineControls, OutputGain gain)
+  {
+    Control[] software = gain.getControls();
+    int count = software.length;
+    for (int i = 0; i < lineControls.length; i++)
+    {
+      if ( !gain.handles(lineControls[i].getType()) )
+      {
+        count++;
+      }
+    }
+    Control[] all = new Control[count];
+    System.arraycopy(software, 0, all, 0, software.length);
+    int next = software.length;
+    for (int i = 0; i < lineControls.length; i++)
+    {
+      if ( !gain.handles(lineControls[i].getType()) )
+      {
+        all[next++] = lineControls[i];
+      }
+    }
+    return all;
+  }
+  
+  OutputGain getOutputGain()
+  {
+    return outputGain;
+  }
+  
   // for line reading/writing classes to alert the controller 
   // that a new buffer has been read/written
   void update()
@@ -355,7 +406,11 @@ public class Controller
   private boolean getValue(BooleanControl.Type type)
   {
     boolean v = false;
-    if (hasControl(type))
+    if ( outputGain != null && outputGain.handles(type) )
+    {
+      v = outputGain.get(type) >= 0.5f;
+    }
+    else if (hasControl(type))
     {
       BooleanControl c = (BooleanControl) getControl(type);
       v = c.getValue();
@@ -369,7 +424,11 @@ public class Controller
 
   private void setValue(BooleanControl.Type type, boolean v)
   {
-    if (hasControl(type))
+    if ( outputGain != null && outputGain.handles(type) )
+    {
+      outputGain.set(type, v ? 1 : 0);
+    }
+    else if (hasControl(type))
     {
       BooleanControl c = (BooleanControl) getControl(type);
       c.setValue(v);
@@ -383,7 +442,11 @@ public class Controller
   private float getValue(FloatControl.Type type)
   {
     float v = 0;
-    if (hasControl(type))
+    if ( outputGain != null && outputGain.handles(type) )
+    {
+      v = outputGain.get(type);
+    }
+    else if (hasControl(type))
     {
       FloatControl c = (FloatControl) getControl(type);
       v = c.getValue();
@@ -397,7 +460,11 @@ public class Controller
 
   private void setValue(FloatControl.Type type, float v)
   {
-    if (hasControl(type))
+    if ( outputGain != null && outputGain.handles(type) )
+    {
+      outputGain.set(type, v);
+    }
+    else if (hasControl(type))
     {
       FloatControl c = (FloatControl) getControl(type);
       if (v > c.getMaximum())
@@ -460,7 +527,11 @@ public class Controller
    */
   public void shiftVolume(float from, float to, int millis)
   {
-    if ( hasControl(VOLUME) )
+    if ( outputGain != null )
+    {
+      outputGain.shift(VOLUME, from, to, millis);
+    }
+    else if ( hasControl(VOLUME) )
     {
       setVolume(from);
       vshifter = new ValueShifter(from, to, millis);
@@ -524,7 +595,11 @@ public class Controller
    */
   public void shiftGain(float from, float to, int millis)
   {
-    if ( hasControl(GAIN) )
+    if ( outputGain != null )
+    {
+      outputGain.shift(GAIN, from, to, millis);
+    }
+    else if ( hasControl(GAIN) )
     {
       setGain(from);
       gshifter = new ValueShifter(from, to, millis);
@@ -584,7 +659,11 @@ public class Controller
    */
   public void shiftBalance(float from, float to, int millis)
   {
-    if ( hasControl(BALANCE) )
+    if ( outputGain != null )
+    {
+      outputGain.shift(BALANCE, from, to, millis);
+    }
+    else if ( hasControl(BALANCE) )
     {
       setBalance(from);
       bshifter = new ValueShifter(from, to, millis);
@@ -644,7 +723,11 @@ public class Controller
    */
   public void shiftPan(float from, float to, int millis)
   {
-    if ( hasControl(PAN) )
+    if ( outputGain != null )
+    {
+      outputGain.shift(PAN, from, to, millis);
+    }
+    else if ( hasControl(PAN) )
     {
       setPan(from);
       pshifter = new ValueShifter(from, to, millis);
@@ -0,0 +1,61 @@
+package ddf.minim;
+
+// a SampleStore that keeps samples in float arrays on the heap,
+// which is how in-memory audio has always been kept.
+class FloatSampleStore extends SampleStore
+{
+	private final float[][]	channels;
+
+	FloatSampleStore(float[][] channels, float sampleRate)
+	{
+		super( channels.length, channels.length > 0 ? channels[0].length : 0, sampleRate, FLOAT );
+		for ( int c = 1; c < channels.length; ++c )
+		{
+			if ( channels[c].length != channels[0].length )
+			{
+				throw new IllegalArgumentException( "SampleStore: all channels must be the same length." );
+			}
+		}
+		this.channels = channels;
+	}
+
+	public boolean isOffHeap()
+	{
+		return false;
+	}
+
+	public float getSample(int channel, int sampleIndex)
+	{
+		return channels[channel][sampleIndex];
+	}
+
+	public void setSample(int channel, int sampleIndex, float value)
+	{
+		channels[channel][sampleIndex] = value;
+	}
+
+	public void read(int channel, int sampleIndex, float[] dst, int dstOffset, int length)
+	{
+		System.arraycopy( channels[channel], sampleIndex, dst, dstOffset, length );
+	}
+
+	public void add(int channel, int sampleIndex, float[] dst, int dstOffset, int length)
+	{
+		SampleKernels.accumulate( channels[channel], sampleIndex, dst, dstOffset, length );
+	}
+
+	public void add(int channel, int sampleIndex, float[] dst, int dstOffset, int length, float gain)
+	{
+		SampleKernels.accumulate( channels[channel], sampleIndex, dst, dstOffset, length, gain );
+	}
+
+	public void write(int channel, int sampleIndex, float[] src, int srcOffset, int length)
+	{
+		System.arraycopy( src, srcOffset, channels[channel], sampleIndex, length );
+	}
+
+	public float[] getChannel(int channel)
+	{
+		return channels[channel];
+	}
+}
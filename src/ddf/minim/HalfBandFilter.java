@@ -0,0 +1,178 @@
+package ddf.minim;
+
+/**
+ * <code>HalfBandFilter</code> is one channel of a Kaiser windowed half-band
+ * lowpass filter, which is what halving or doubling a sample rate needs.
+ * Every other coefficient of a half-band filter is zero and the center one
+ * is one half, so the filter only keeps, and only multiplies by, the odd
+ * ones. <code>Oversample</code> uses these to go up and down by octaves and
+ * <code>ConstantQ</code> uses them to decimate its lower octaves.
+ * <p>
+ * The coefficients are designed once with <code>design</code> and can be
+ * shared by any number of filters, each of which keeps its own history.
+ * The histories are kept twice, one copy right after the other, so the
+ * newest samples can always be read as a contiguous window without wrapping.
+ *
+ * @invisible
+ */
+public final class HalfBandFilter
+{
+	// the Kaiser window shape, which puts the stopband about 80 dB down
+	private static final double	BETA	= 8;
+
+	private final float[]		odd;
+	private final int			taps;
+
+	// the last 2 * taps samples at the lower rate, for upsampling
+	private final float[]		upHistory;
+	private int					upIndex;
+
+	// the last 4 * taps - 1 samples at the higher rate, for downsampling
+	private final float[]		downHistory;
+	private final int			downLength;
+	private int					downIndex;
+	private boolean				downOdd;
+
+	/**
+	 * Constructs a filter that uses the coefficients returned by
+	 * <code>design</code>, which are not copied.
+	 *
+	 * @param oddTaps
+	 *            float[]: one side of the odd coefficients of the filter
+	 */
+	public HalfBandFilter( float[] oddTaps )
+	{
+		odd = oddTaps;
+		taps = oddTaps.length;
+		upHistory = new float[4 * taps];
+		downLength = 4 * taps - 1;
+		downHistory = new float[2 * downLength];
+	}
+
+	/**
+	 * Designs a half-band lowpass with <code>4 * taps - 1</code> coefficients
+	 * using a Kaiser windowed sinc, and returns one side of the odd ones,
+	 * which are all that aren't zero or the center. More taps make for a
+	 * narrower transition around a quarter of the higher sample rate.
+	 *
+	 * @param taps
+	 *            int: how many odd coefficients on each side
+	 * @return float[]: the odd coefficients, nearest the center first
+	 */
+	public static float[] design( int taps )
+	{
+		final int half = 2 * taps - 1;
+		float[] odd = new float[taps];
+		double sum = 0;
+		for ( int j = 0; j < taps; ++j )
+		{
+			int k = 2 * j + 1;
+			double sinc = Math.sin( Math.PI * k / 2 ) / ( Math.PI * k );
+			odd[j] = (float)( sinc * kaiser( (double)k / ( half + 1 ), BETA ) );
+			sum += odd[j];
+		}
+		// the taps should sum to one, so a constant passes through unchanged
+		for ( int j = 0; j < taps; ++j )
+		{
+			odd[j] *= (float)( 0.25 / sum );
+		}
+		return odd;
+	}
+
+	/**
+	 * Returns the value of a Kaiser window with shape <code>beta</code> at
+	 * <code>x</code>, where the window runs from -1 to 1 and is zero outside.
+	 */
+	static double kaiser( double x, double beta )
+	{
+		if ( x * x >= 1 )
+		{
+			return 0;
+		}
+		return besselI0( beta * Math.sqrt( 1 - x * x ) ) / besselI0( beta );
+	}
+
+	/**
+	 * The zeroth order modified Bessel function of the first kind,
+	 * which is what the Kaiser window is made of.
+	 */
+	static double besselI0( double x )
+	{
+		double sum = 1;
+		double term = 1;
+		for ( int k = 1; k < 50; ++k )
+		{
+			term *= ( x / ( 2 * k ) ) * ( x / ( 2 * k ) );
+			sum += term;
+			if ( term < sum * 1e-12 )
+			{
+				break;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Doubles the sample rate: writes the two samples that
+	 * <code>sample</code> turns into at <code>out[offset]</code>.
+	 */
+	public void up( float sample, float[] out, int offset )
+	{
+		final int length = 2 * taps;
+		upHistory[upIndex] = sample;
+		upHistory[upIndex + length] = sample;
+		upIndex = ( upIndex + 1 ) % length;
+		// the window from oldest to newest starts at upIndex
+		final int w = upIndex;
+		// the even output is a delayed input, because the center tap is the only
+		// even one, the odd output is the filter's odd taps, which are symmetric.
+		// the gain of two makes up for the zeros that upsampling stuffs in.
+		out[offset] = upHistory[w + taps - 1];
+		float acc = 0;
+		for ( int j = 0; j < taps; ++j )
+		{
+			acc += odd[j] * ( upHistory[w + taps - 1 - j] + upHistory[w + taps + j] );
+		}
+		out[offset + 1] = 2 * acc;
+	}
+
+	/**
+	 * Halves the sample rate: takes two samples at the higher rate
+	 * and returns one at the lower rate.
+	 */
+	public float down( float even, float oddSample )
+	{
+		write( even );
+		write( oddSample );
+		return read();
+	}
+
+	/**
+	 * Halves the sample rate one sample at a time: takes a sample at the
+	 * higher rate and returns true every second time, when <code>read</code>
+	 * has a new sample at the lower rate.
+	 */
+	public boolean write( float sample )
+	{
+		downHistory[downIndex] = sample;
+		downHistory[downIndex + downLength] = sample;
+		downIndex = downIndex + 1 == downLength ? 0 : downIndex + 1;
+		downOdd = !downOdd;
+		return !downOdd;
+	}
+
+	/**
+	 * Returns the newest sample at the lower rate.
+	 */
+	public float read()
+	{
+		final int center = downIndex + 2 * taps - 1;
+		float acc = 0.5f * downHistory[center];
+		for ( int j = 0; j < taps; ++j )
+		{
+			int k = 2 * j + 1;
+			acc += odd[j] * ( downHistory[center - k] + downHistory[center + k] );
+		}
+		return acc;
+	}
+}
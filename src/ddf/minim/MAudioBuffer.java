@@ -98,10 +98,7 @@ final class MAudioBuffer implements AudioBuffer
     }
     else
     {
-      for (int i = 0; i < samples.length; i++)
-      {
-        samples[i] = (b1[i] + b2[i]) / 2;
-      }
+      SampleKernels.mix(b1, b2, samples, samples.length);
     }
   }
 
@@ -115,14 +112,7 @@ final class MAudioBuffer implements AudioBuffer
   
   public synchronized float level()
   {
-    float level = 0;
-    for (int i = 0; i < samples.length; i++)
-    {
-      level += (samples[i] * samples[i]);
-    }
-    level /= samples.length;
-    level = (float) Math.sqrt(level);
-    return level;
+    return SampleKernels.rms(samples, 0, samples.length);
   }
 
   public synchronized float[] toArray()
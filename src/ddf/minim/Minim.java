@@ -286,9 +286,13 @@ public class Minim
 		}
 		sources.clear();
 		
-		for( AudioStream s : streams )
+		synchronized( streams )
 		{
-			s.close();
+			for( AudioStream s : streams )
+			{
+				s.close();
+			}
+			streams.clear();
 		}
 		
 		// stop the implementation
@@ -341,6 +345,63 @@ public class Minim
 		}
 	}
 
+	/**
+	 * When using the JavaSound implementation of Minim, this sets how many 
+	 * milliseconds of audio outputs created after this call should keep queued 
+	 * ahead of the sound card. Outputs wait until only this much audio is left 
+	 * before rendering their next buffer, which makes small buffer sizes 
+	 * usable without filling the whole line. The default of 0 means outputs
+	 * render as soon as their line has room.
+	 * 
+	 * @param millis
+	 *            float: the safety margin in milliseconds
+	 */
+	public void setOutputSafetyMargin(float millis)
+	{
+		if ( mimp instanceof JSMinim )
+		{
+			( (JSMinim)mimp ).setOutputSafetyMargin( millis );
+		}
+	}
+	
+	/**
+	 * When using the JavaSound implementation of Minim, this sets whether 
+	 * outputs created after this call run their audio thread at maximum priority.
+	 * 
+	 * @param highPriority
+	 *            boolean: true to run output threads at maximum priority
+	 */
+	public void setOutputHighPriority(boolean highPriority)
+	{
+		if ( mimp instanceof JSMinim )
+		{
+			( (JSMinim)mimp ).setOutputHighPriority( highPriority );
+		}
+	}
+
+	/**
+	 * When using the JavaSound implementation of Minim, this sets whether 
+	 * outputs created after this call are mixed in software. When they are, 
+	 * every AudioPlayer, AudioSample, AudioSnippet and AudioOutput with the 
+	 * same sample rate, buffer size and bit depth is rendered by one audio 
+	 * thread into one shared line, rather than each opening a line and thread 
+	 * of its own. This makes it possible to load many more sounds than the 
+	 * sound card has lines for. Each source still has its own effects, volume, 
+	 * gain, pan and balance, and sounds the same as it would on its own line, 
+	 * except that a mono source is heard on both sides of the shared stereo 
+	 * line and can be panned across it.
+	 * 
+	 * @param softwareMixing
+	 *            boolean: true to mix outputs created after this call in software
+	 */
+	public void setSoftwareMixing(boolean softwareMixing)
+	{
+		if ( mimp instanceof JSMinim )
+		{
+			( (JSMinim)mimp ).setSoftwareMixing( softwareMixing );
+		}
+	}
+
 	/**
 	 * Creates an AudioSample using the provided sample data and AudioFormat. 
 	 * When a buffer size is not provided, it defaults to 1024. The buffer size 
@@ -429,6 +490,44 @@ public class Minim
 		return sample;
 	}
 
+	/**
+	 * Creates an AudioSample that plays the samples in a SampleStore,
+	 * with an output buffer size of 1024. The samples are not copied,
+	 * so this is how you play a sample that has been loaded with 
+	 * <code>loadFileIntoStore</code> in a compact or off-heap store.
+	 * 
+	 * @param samples
+	 *            SampleStore: the samples to play
+	 *            
+	 * @return an AudioSample that can be triggered to make sound
+	 * 
+	 * @related SampleStore
+	 * @related AudioSample
+	 */
+	public AudioSample createSample( SampleStore samples )
+	{
+		return createSample( samples, 1024 );
+	}
+
+	/**
+	 * Creates an AudioSample that plays the samples in a SampleStore.
+	 * 
+	 * @param samples
+	 *            SampleStore: the samples to play
+	 * @param bufferSize
+	 *            int: the output buffer size to use,
+	 *            which controls the size of the left, right, and mix AudioBuffer
+	 *            fields of the returned AudioSample.
+	 *            
+	 * @return an AudioSample that can be triggered to make sound
+	 */
+	public AudioSample createSample( SampleStore samples, int bufferSize )
+	{
+		AudioSample sample = mimp.getAudioSample( samples, bufferSize );
+		addSource( sample );
+		return sample;
+	}
+
 	/**
 	 * Loads the requested file into an AudioSample.
 	 * By default, the buffer size used is 1024.
@@ -541,6 +640,18 @@ public class Minim
 													   format.getSampleRate(),
 													   format.getSampleSizeInBits() );
 			
+			// not every output can run at every sample rate, 
+			// so fall back to playing the file resampled to 44100.
+			if ( out == null && format.getSampleRate() != 44100 )
+			{
+				out = mimp.getAudioOutput( format.getChannels(), bufferSize, 44100, format.getSampleSizeInBits() );
+				if ( out != null )
+				{
+					debug( "Playing " + filename + " resampled from " + format.getSampleRate() + " to 44100." );
+					rec = new ResamplingStream( rec, 44100, bufferSize );
+				}
+			}
+			
 			if ( out != null )
 			{
 				player = new AudioPlayer( rec, out );
@@ -589,10 +700,105 @@ public class Minim
 	public AudioRecordingStream loadFileStream(String filename, int bufferSize, boolean inMemory)
 	{
 		AudioRecordingStream stream = mimp.getAudioRecordingStream( filename, bufferSize, inMemory );
-		streams.add( stream );
+		addStream( stream );
 		return stream;
 	}
 	
+	/**
+	 * Closes a stream returned by <code>loadFileStream</code> or 
+	 * <code>getInputStream</code> and lets go of it. Minim otherwise holds 
+	 * on to every stream it has given out until <code>stop</code> is called, 
+	 * so use this when you open a lot of streams, like when analyzing every 
+	 * file in a folder.
+	 * 
+	 * @param stream
+	 * 			the stream to close
+	 */
+	public void closeStream( AudioStream stream )
+	{
+		stream.close();
+		synchronized( streams )
+		{
+			streams.remove( stream );
+		}
+	}
+	
+	/**
+	 * Loads the requested file into an AudioRecordingStream that is meant
+	 * to be read as fast as it can be decoded, rather than played. Unlike
+	 * <code>loadFileStream</code>, this doesn't take an output line from the
+	 * sound card, so you can have as many open as you like, even on a machine
+	 * with no audio output. Minim doesn't hold on to these streams, so close
+	 * them yourself when you are done reading.
+	 * 
+	 * @shortdesc Loads the requested file into a stream for decoding.
+	 * 
+	 * @param filename
+	 * 			the file to load
+	 * @param bufferSize
+	 * 			int: how many sample frames to decode at a time
+	 * 
+	 * @return an AudioRecordingStream to read from, or null if the load failed.
+	 * 
+	 * @related AudioRecordingStream
+	 */
+	public AudioRecordingStream loadDecodingStream( String filename, int bufferSize )
+	{
+		return mimp.getDecodingStream( filename, bufferSize );
+	}
+	
+	/**
+	 * Reads the next buffer of a playing stream that is being decoded to the 
+	 * end, such as one returned by <code>loadDecodingStream</code>, and returns 
+	 * how many of its sample frames are audio. That's all of them until the
+	 * read that reaches the end of the file, which stops the stream. The length 
+	 * of an mp3 is only an estimate, so keep reading while 
+	 * <code>stream.isPlaying()</code> rather than up to the length.
+	 * 
+	 * @param stream
+	 * 			the stream to read from
+	 * @param buffer
+	 * 			where to read to
+	 * @param framesRead
+	 * 			how many sample frames of audio the previous reads returned
+	 * 
+	 * @return how many sample frames at the start of buffer are audio
+	 * 
+	 * @invisible
+	 */
+	public static int readDecodingStream( AudioRecordingStream stream, MultiChannelBuffer buffer, long framesRead )
+	{
+		stream.read( buffer );
+		int frames = buffer.getBufferSize();
+		if ( !stream.isPlaying() )
+		{
+			// the file ended during this read, and where it ended is the only 
+			// way to tell how much of the buffer is audio. that's to the 
+			// millisecond, so a length that agrees with it is the exact end.
+			final float sampleRate = stream.getFormat().getSampleRate();
+			long end = (long)( (double)stream.getMillisecondPosition() * sampleRate / 1000 );
+			long length = stream.getSampleFrameLength();
+			if ( length >= 0 && Math.abs( length - end ) <= sampleRate / 1000 + 1 )
+			{
+				end = length;
+			}
+			frames = (int)Math.max( 0, Math.min( frames, end - framesRead ) );
+		}
+		return frames;
+	}
+	
+	// streams may be loaded from more than one thread at a time
+	private void addStream( AudioStream stream )
+	{
+		if ( stream != null )
+		{
+			synchronized( streams )
+			{
+				streams.add( stream );
+			}
+		}
+	}
+	
 	/**
 	 * Loads the requested file into a MultiChannelBuffer. The buffer's channel count
 	 * and buffer size will be adjusted to match the file.
@@ -614,7 +820,7 @@ public class Minim
 	{
 		final int readBufferSize 		= 4096;
 		float     sampleRate 			= 0;
-		AudioRecordingStream  stream 	= mimp.getAudioRecordingStream( filename, readBufferSize, false );
+		AudioRecordingStream  stream 	= loadDecodingStream( filename, readBufferSize );
 		if ( stream != null )
 		{
 			//stream.open();
@@ -664,6 +870,167 @@ public class Minim
 		return sampleRate;
 	}
 	
+	/**
+	 * Loads the requested file into a SampleStore. Packing the samples into
+	 * 16 or 24 bit integers or keeping them off-heap lets you keep a lot 
+	 * more audio in memory than loading it into float arrays does.
+	 * 
+	 * @shortdesc Loads the requested file into a SampleStore.
+	 * 
+	 * @param filename
+	 * 			the file to load
+	 * @param encoding
+	 * 			int: how to store samples, one of SampleStore.FLOAT, SampleStore.INT16, or SampleStore.INT24
+	 * @param offHeap
+	 * 			boolean: whether the samples should be kept outside of the Java heap
+	 * 
+	 * @return a SampleStore holding the file, or null if the load failed.
+	 * 
+	 * @related SampleStore
+	 */
+	public SampleStore loadFileIntoStore( String filename, int encoding, boolean offHeap )
+	{
+		final int readBufferSize 		= 4096;
+		SampleStore store 				= null;
+		AudioRecordingStream  stream 	= loadDecodingStream( filename, readBufferSize );
+		if ( stream != null )
+		{
+			stream.play();
+			final int channelCount = stream.getFormat().getChannels();
+			final float sampleRate = stream.getFormat().getSampleRate();
+			// the length of an mp3 is only an estimate, and some streams don't
+			// know theirs at all, in which case we start with ten seconds.
+			final long expectedSampleCount = stream.getSampleFrameLength();
+			int capacity = expectedSampleCount > 0 ? (int)Math.min( expectedSampleCount, Integer.MAX_VALUE - 8 )
+			                                       : (int)( sampleRate * 10 );
+			store = SampleStore.allocate( channelCount, capacity, sampleRate, encoding, offHeap );
+			// we convert one chunk at a time, so the whole file never exists as floats.
+			MultiChannelBuffer readBuffer = new MultiChannelBuffer( readBufferSize, channelCount );
+			
+			int totalSamplesRead = 0;
+			while( stream.isPlaying() )
+			{
+				int samplesRead = readDecodingStream( stream, readBuffer, totalSamplesRead );
+				if ( totalSamplesRead + samplesRead > capacity )
+				{
+					// estimates are usually close, so we don't grow by much
+					capacity = (int)Math.min( Math.max( totalSamplesRead + samplesRead, capacity + (long)capacity / 8 ), Integer.MAX_VALUE - 8 );
+					store = resizeStore( store, totalSamplesRead, capacity );
+				}
+				
+				for(int i = 0; i < channelCount; ++i)
+				{
+					store.write( i, totalSamplesRead, readBuffer.getChannel( i ), 0, samplesRead );
+				}
+				
+				totalSamplesRead += samplesRead;
+			}
+			debug( "Expected " + expectedSampleCount + " sample frames, actually read " + totalSamplesRead );
+			if ( totalSamplesRead != capacity )
+			{
+				store = resizeStore( store, totalSamplesRead, totalSamplesRead );
+			}
+			
+			stream.close();
+		}
+		else
+		{
+			debug("Unable to load an AudioRecordingStream for " + filename);
+		}
+		
+		return store;
+	}
+	
+	// copies the first length sample frames of a store into a new one that is
+	// newLength long, a chunk at a time, so they never all exist as floats.
+	private static SampleStore resizeStore( SampleStore store, int length, int newLength )
+	{
+		SampleStore resized = SampleStore.allocate( store.getChannelCount(), newLength, store.getSampleRate(), store.getEncoding(), store.isOffHeap() );
+		float[] chunk = new float[4096];
+		for( int c = 0; c < store.getChannelCount(); ++c )
+		{
+			for( int s = 0; s < length; s += chunk.length )
+			{
+				int count = Math.min( chunk.length, length - s );
+				store.read( c, s, chunk, 0, count );
+				resized.write( c, s, chunk, 0, count );
+			}
+		}
+		return resized;
+	}
+	
+	/**
+	 * Decodes the requested file into a WaveformOverview, which holds what
+	 * you need to draw the waveform of the whole file at any zoom without
+	 * ever decoding it again. Save the overview next to the file with
+	 * <code>save</code> and load it with <code>WaveformOverview.load</code>
+	 * the next time to skip decoding altogether.
+	 * 
+	 * @shortdesc Decodes the requested file into a WaveformOverview.
+	 * 
+	 * @param filename
+	 * 			the file to load
+	 * @param blockSize
+	 * 			int: how many samples the smallest blocks of the overview have
+	 * 
+	 * @return a finished WaveformOverview of the file, or null if the load failed.
+	 * 
+	 * @related WaveformOverview
+	 */
+	public WaveformOverview loadWaveformOverview( String filename, int blockSize )
+	{
+		final int readBufferSize 		= 4096;
+		WaveformOverview overview 		= null;
+		AudioRecordingStream  stream 	= loadDecodingStream( filename, readBufferSize );
+		if ( stream != null )
+		{
+			stream.play();
+			final int channelCount = stream.getFormat().getChannels();
+			final float sampleRate = stream.getFormat().getSampleRate();
+			overview = new WaveformOverview( channelCount, sampleRate, blockSize );
+			MultiChannelBuffer readBuffer = new MultiChannelBuffer( readBufferSize, channelCount );
+			float[][] channels = new float[channelCount][];
+			
+			// the length of an mp3 is only an estimate, so we read until 
+			// the stream stops itself at the end of the file.
+			long totalSamplesRead = 0;
+			while( stream.isPlaying() )
+			{
+				int samplesRead = readDecodingStream( stream, readBuffer, totalSamplesRead );
+				for( int i = 0; i < channelCount; ++i )
+				{
+					channels[i] = readBuffer.getChannel( i );
+				}
+				overview.add( channels, 0, samplesRead );
+				
+				totalSamplesRead += samplesRead;
+			}
+			overview.finish();
+			
+			stream.close();
+		}
+		else
+		{
+			debug("Unable to load an AudioRecordingStream for " + filename);
+		}
+		
+		return overview;
+	}
+	
+	/**
+	 * Decodes the requested file into a WaveformOverview with blocks of
+	 * <code>WaveformOverview.DEFAULT_BLOCK_SIZE</code> samples.
+	 * 
+	 * @param filename
+	 * 			the file to load
+	 * 
+	 * @return a finished WaveformOverview of the file, or null if the load failed.
+	 */
+	public WaveformOverview loadWaveformOverview( String filename )
+	{
+		return loadWaveformOverview( filename, WaveformOverview.DEFAULT_BLOCK_SIZE );
+	}
+	
 	/**
 	 * Creates an AudioRecorder that will use the provided Recordable object as its
 	 * record source and that will save to the file name specified. Recordable 
@@ -864,7 +1231,7 @@ public class Minim
 	public AudioStream getInputStream(int type, int bufferSize, float sampleRate, int bitDepth)
 	{
 		AudioStream stream = mimp.getAudioInput( type, bufferSize, sampleRate, bitDepth );
-		streams.add( stream );
+		addStream( stream );
 		return stream;
 	}
 
@@ -956,7 +1323,9 @@ public class Minim
 	 * @param sampleRate
 	 *            float: the desired sample rate in Hertz (typically 44100)
 	 * @param bitDepth
-	 *            int: the desired bit depth (typically 16)
+	 *            int: the desired bit depth (typically 16). 24 and 32 are 
+	 *            also accepted, 32 meaning floating point samples, but 
+	 *            if the output mixer doesn't offer them you will get 16.
 	 * @return an <code>AudioOutput</code> with the requested attributes
 	 */
 	public AudioOutput getLineOut(int type, int bufferSize, float sampleRate, int bitDepth)
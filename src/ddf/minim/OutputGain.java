@@ -0,0 +1,374 @@
+package ddf.minim;
+
+import javax.sound.sampled.BooleanControl;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.FloatControl;
+
+/**
+ * <code>OutputGain</code> is the software volume, gain, balance, pan, and mute
+ * stage of an <code>AudioSource</code>. It is applied to every buffer after
+ * effects and listeners have seen it, right before the buffer is written to
+ * the output, so, just like the JavaSound controls it replaces, changes are
+ * heard but are not present in the samples made available to your program.
+ * Because it doesn't rely on the mixer providing any controls, it works the
+ * same on every platform.
+ * <p>
+ * Changes are ramped sample by sample, timed by counting samples rather than
+ * by the system clock. Setting a value ramps to it over a few milliseconds so
+ * that there is no zipper noise, shifting a value ramps over exactly as many
+ * samples as the requested time amounts to at the output's sample rate.
+ * While nothing is changing, applying the stage costs one multiply per sample,
+ * and nothing at all when every channel's gain is one.
+ * <p>
+ * Balance and pan both attenuate one side of a stereo output, the same way
+ * the JavaSound balance control does, and have no effect on a mono output.
+ *
+ * @related Controller
+ * @related AudioSource
+ *
+ * @invisible
+ */
+public final class OutputGain
+{
+	// how long setting a value takes to arrive at it
+	private static final float	SMOOTHING_MILLIS	= 5;
+	private static final float	MIN_GAIN			= -80;
+	private static final float	MAX_GAIN			= 24;
+
+	private final float			sampleRate;
+
+	private final Ramp			volume				= new Ramp( 1 );
+	private final Ramp			gain				= new Ramp( 0 );
+	private final Ramp			balance				= new Ramp( 0 );
+	private final Ramp			pan					= new Ramp( 0 );
+	// one when muted, ramped like the others so muting doesn't click
+	private final Ramp			mute				= new Ramp( 0 );
+	private final Ramp[]		ramps				= { volume, gain, balance, pan, mute };
+
+	// per channel gain at the start and end of the segment being applied
+	private float[]				segmentStart		= new float[2];
+	private float[]				segmentEnd			= new float[2];
+
+	/**
+	 * Constructs an <code>OutputGain</code> for an output running at
+	 * <code>sampleRate</code>.
+	 *
+	 * @param sampleRate
+	 *            float: the sample rate used to turn milliseconds into samples
+	 */
+	public OutputGain(float sampleRate)
+	{
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Applies the current volume, gain, balance, pan, and mute to the first
+	 * <code>buffer.getBufferSize()</code> samples of every channel of
+	 * <code>buffer</code>, advancing any ramps in progress. This must only be
+	 * called by the thread rendering the output.
+	 *
+	 * @param buffer
+	 *            MultiChannelBuffer: the samples about to be written to the output
+	 */
+	public void process(MultiChannelBuffer buffer)
+	{
+		final int channels = buffer.getChannelCount();
+		final int length = buffer.getBufferSize();
+		if ( segmentStart.length < channels )
+		{
+			segmentStart = new float[channels];
+			segmentEnd = new float[channels];
+		}
+
+		for ( int r = 0; r < ramps.length; ++r )
+		{
+			ramps[r].begin();
+		}
+
+		// a buffer is split wherever a ramp finishes, so that each piece is
+		// either a constant gain or a single linear ramp per channel.
+		int position = 0;
+		while ( position < length )
+		{
+			int segment = length - position;
+			for ( int r = 0; r < ramps.length; ++r )
+			{
+				int remaining = ramps[r].remaining;
+				if ( remaining > 0 && remaining < segment )
+				{
+					segment = remaining;
+				}
+			}
+
+			channelGains( channels, segmentStart );
+			boolean ramping = false;
+			for ( int r = 0; r < ramps.length; ++r )
+			{
+				ramping |= ramps[r].advance( segment );
+			}
+
+			if ( ramping )
+			{
+				channelGains( channels, segmentEnd );
+				for ( int c = 0; c < channels; ++c )
+				{
+					float start = segmentStart[c];
+					float step = ( segmentEnd[c] - start ) / segment;
+					SampleKernels.ramp( buffer.getChannel( c ), position, segment, start, step );
+				}
+			}
+			else
+			{
+				for ( int c = 0; c < channels; ++c )
+				{
+					if ( segmentStart[c] != 1 )
+					{
+						SampleKernels.scale( buffer.getChannel( c ), position, segment, segmentStart[c] );
+					}
+				}
+			}
+			position += segment;
+		}
+
+		for ( int r = 0; r < ramps.length; ++r )
+		{
+			ramps[r].end();
+		}
+	}
+
+	// works out the gain of every channel from the current ramp values.
+	private void channelGains(int channels, float[] gains)
+	{
+		float base = volume.value * dbToAmplitude( gain.value ) * ( 1 - mute.value );
+		for ( int c = 0; c < channels; ++c )
+		{
+			gains[c] = base;
+		}
+		if ( channels == 2 )
+		{
+			// positive values turn down the left side, negative values the right
+			gains[0] *= Math.min( 1 - balance.value, 1 ) * Math.min( 1 - pan.value, 1 );
+			gains[1] *= Math.min( 1 + balance.value, 1 ) * Math.min( 1 + pan.value, 1 );
+		}
+	}
+
+	/**
+	 * Returns JavaSound controls for the volume, gain, balance, pan, and mute
+	 * of this stage. These can be handed out by outputs that have no line of
+	 * their own, so that code written against line controls keeps working.
+	 * Setting them is smoothed the same way the set methods of
+	 * <code>Controller</code> are.
+	 *
+	 * @return Control[]: a volume, gain, balance, pan, and mute control
+	 */
+	public Control[] getControls()
+	{
+		return new Control[] {
+				new RampControl( FloatControl.Type.VOLUME, 0, 1, "" ),
+				new RampControl( FloatControl.Type.MASTER_GAIN, MIN_GAIN, MAX_GAIN, "dB" ),
+				new RampControl( FloatControl.Type.BALANCE, -1, 1, "" ),
+				new RampControl( FloatControl.Type.PAN, -1, 1, "" ),
+				new BooleanControl( BooleanControl.Type.MUTE, false )
+				{
+					public void setValue(boolean value)
+					{
+						set( BooleanControl.Type.MUTE, value ? 1 : 0 );
+					}
+
+					public boolean getValue()
+					{
+						return get( BooleanControl.Type.MUTE ) >= 0.5f;
+					}
+				} };
+	}
+
+	private final class RampControl extends FloatControl
+	{
+		RampControl(FloatControl.Type type, float minimum, float maximum, String units)
+		{
+			super( type, minimum, maximum, 0, -1, OutputGain.this.get( type ), units );
+		}
+
+		public void setValue(float value)
+		{
+			set( getType(), value );
+		}
+
+		public float getValue()
+		{
+			return get( getType() );
+		}
+	}
+
+	private static float dbToAmplitude(float db)
+	{
+		return db == 0 ? 1 : (float)Math.pow( 10.0, db / 20.0 );
+	}
+
+	// whether the control type is one we implement
+	boolean handles(Control.Type type)
+	{
+		return ramp( type ) != null;
+	}
+
+	float get(Control.Type type)
+	{
+		return ramp( type ).get();
+	}
+
+	void set(Control.Type type, float value)
+	{
+		ramp( type ).shift( Float.NaN, clamp( type, value ), millisToSamples( SMOOTHING_MILLIS ), false );
+	}
+
+	void shift(Control.Type type, float from, float to, int millis)
+	{
+		ramp( type ).shift( clamp( type, from ), clamp( type, to ), millisToSamples( millis ), true );
+	}
+
+	private Ramp ramp(Control.Type type)
+	{
+		if ( type == FloatControl.Type.VOLUME )
+		{
+			return volume;
+		}
+		if ( type == FloatControl.Type.MASTER_GAIN )
+		{
+			return gain;
+		}
+		if ( type == FloatControl.Type.BALANCE )
+		{
+			return balance;
+		}
+		if ( type == FloatControl.Type.PAN )
+		{
+			return pan;
+		}
+		if ( type == BooleanControl.Type.MUTE )
+		{
+			return mute;
+		}
+		return null;
+	}
+
+	private static float clamp(Control.Type type, float value)
+	{
+		if ( type == FloatControl.Type.MASTER_GAIN )
+		{
+			return Math.max( MIN_GAIN, Math.min( value, MAX_GAIN ) );
+		}
+		if ( type == FloatControl.Type.VOLUME )
+		{
+			// the same range as the volume control handed out by getControls
+			return Math.max( 0, Math.min( value, 1 ) );
+		}
+		return Math.max( -1, Math.min( value, 1 ) );
+	}
+
+	private int millisToSamples(float millis)
+	{
+		return (int)Math.max( 0, (long)( millis * sampleRate / 1000 ) );
+	}
+
+	// a value that moves linearly towards a target over a number of samples.
+	// the setters are called from the main thread and only record what to do,
+	// the audio thread picks that up at the start of the next buffer.
+	private static final class Ramp
+	{
+		// written by the controlling thread
+		private float	target;
+		private float	pendingStart;
+		private int		pendingSamples;
+		private boolean	pending;
+		// whether a shift was asked for, in which case get reports
+		// where the ramp is rather than where it is going.
+		private boolean	shifting;
+		private float	reported;
+
+		// owned by the audio thread
+		float			value;
+		int				remaining;
+		private float	step;
+		private float	end;
+
+		Ramp(float initial)
+		{
+			target = initial;
+			reported = initial;
+			value = initial;
+			end = initial;
+		}
+
+		synchronized float get()
+		{
+			return shifting ? reported : target;
+		}
+
+		// pass NaN for from to start at wherever the ramp currently is
+		synchronized void shift(float from, float to, int samples, boolean isShift)
+		{
+			pendingStart = from;
+			target = to;
+			pendingSamples = samples;
+			pending = true;
+			shifting = isShift;
+			if ( isShift )
+			{
+				reported = from;
+			}
+		}
+
+		synchronized void begin()
+		{
+			if ( !pending )
+			{
+				return;
+			}
+			pending = false;
+			if ( !Float.isNaN( pendingStart ) )
+			{
+				value = pendingStart;
+			}
+			end = target;
+			remaining = pendingSamples;
+			if ( remaining == 0 )
+			{
+				value = end;
+				step = 0;
+			}
+			else
+			{
+				step = ( end - value ) / remaining;
+			}
+		}
+
+		// moves the ramp along by samples, returning whether it was moving
+		boolean advance(int samples)
+		{
+			if ( remaining == 0 )
+			{
+				return false;
+			}
+			if ( samples >= remaining )
+			{
+				value = end;
+				remaining = 0;
+			}
+			else
+			{
+				value += step * samples;
+				remaining -= samples;
+			}
+			return true;
+		}
+
+		synchronized void end()
+		{
+			reported = value;
+			if ( remaining == 0 && !pending )
+			{
+				shifting = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,500 @@
+package ddf.minim;
+
+/**
+ * A <code>Resampler</code> converts a stream of multi-channel audio from one
+ * sample rate to another, for instance to play a 48 kHz file through a
+ * 44.1 kHz output at the right speed and pitch. It is a band-limited
+ * polyphase resampler: every output sample is computed with a Kaiser windowed
+ * sinc filter, picked from a table of filter phases according to where the
+ * output sample falls between two input samples. When the output rate is lower
+ * than the input rate, the filter's cutoff is lowered to the new Nyquist
+ * frequency so that high frequencies are removed instead of aliasing.
+ * <p>
+ * The ratio is the number of input sample frames consumed per output sample
+ * frame, which is the input sample rate divided by the output sample rate.
+ * It can be changed at any time, which is how playback speed is varied. The
+ * cutoff is rounded down to one of a fixed set, a quarter of an octave apart,
+ * so there are only a few filter tables per quality setting, and they are
+ * shared between all resamplers. A table is designed the first time it is
+ * needed, which takes a few milliseconds, so code that changes the ratio on
+ * the audio thread should call <code>prepare</code> beforehand.
+ * <p>
+ * Audio can be resampled a frame at a time, by writing input frames while
+ * <code>needsInput</code> returns true and then reading one output frame,
+ * or a block at a time with <code>process</code>.
+ * <p>
+ * The quality setting trades cost for accuracy:
+ * <ul>
+ * <li>LOW: 16 taps, about 60 dB of stopband attenuation.</li>
+ * <li>MEDIUM: 32 taps, about 80 dB of stopband attenuation.</li>
+ * <li>HIGH: 64 taps, about 100 dB of stopband attenuation.</li>
+ * </ul>
+ * When downsampling, the number of taps grows with the ratio, up to eight
+ * times as many. Ratios higher than eight alias.
+ *
+ * @related FilePlayer
+ * @related Sampler
+ * @related LiveInput
+ */
+public class Resampler
+{
+	/** The fastest quality setting. */
+	public static final int						LOW				= 0;
+	/** The default quality setting. */
+	public static final int						MEDIUM			= 1;
+	/** The most accurate quality setting. */
+	public static final int						HIGH			= 2;
+
+	// per quality setting: zero crossings on each side of the filter, how many
+	// phases are in the table, the Kaiser window shape, and the cutoff
+	// relative to the Nyquist frequency, which leaves room for the transition.
+	private static final int[]					ZERO_CROSSINGS	= { 8, 16, 32 };
+	private static final int[]					PHASES			= { 64, 128, 256 };
+	private static final double[]				BETA			= { 6, 8, 10 };
+	private static final double[]				ROLLOFF			= { 0.88, 0.93, 0.96 };
+	// the most the filter will be stretched to lower its cutoff, and how
+	// many steps per octave the cutoff is lowered in.
+	private static final double					MAX_STRETCH		= 8;
+	private static final int					STEPS_PER_OCTAVE	= 4;
+	private static final int					CUTOFFS			= 3 * STEPS_PER_OCTAVE + 1;
+
+	// every table there can be, by quality and cutoff step, designed when
+	// first needed. there are only a few, so they are never thrown away.
+	private static final Kernel[][]				kernels			= new Kernel[HIGH + 1][CUTOFFS];
+
+	private final int							channelCount;
+	private final int							quality;
+	private double								ratio;
+	private Kernel								kernel;
+
+	// the most recent 2 * reach input samples for each channel, written
+	// twice so that they can always be read as one contiguous window.
+	// reach only grows until the next reset, so that changing to a shorter
+	// kernel never loses track of the samples already written.
+	private float[][]							history;
+	private int									historyIndex;
+	private int									reach;
+	// where the next output sample falls between two input samples
+	private double								phase;
+	// how many input frames must be written before the next output frame
+	private int									inputNeeded;
+	private int									inputUsed;
+
+	/**
+	 * Constructs a Resampler with MEDIUM quality and a ratio of one.
+	 *
+	 * @param channelCount
+	 *            int: how many channels are in each sample frame
+	 */
+	public Resampler( int channelCount )
+	{
+		this( channelCount, MEDIUM );
+	}
+
+	/**
+	 * Constructs a Resampler with a ratio of one.
+	 *
+	 * @param channelCount
+	 *            int: how many channels are in each sample frame
+	 * @param quality
+	 *            int: LOW, MEDIUM, or HIGH
+	 */
+	public Resampler( int channelCount, int quality )
+	{
+		if ( channelCount < 1 )
+		{
+			throw new IllegalArgumentException( "Resampler: the channel count must be at least one." );
+		}
+		if ( quality < LOW || quality > HIGH )
+		{
+			throw new IllegalArgumentException( "Resampler: unknown quality " + quality );
+		}
+		this.channelCount = channelCount;
+		this.quality = quality;
+		setRatio( 1 );
+		reset();
+	}
+
+	/**
+	 * Constructs a Resampler that converts from one sample rate to another.
+	 *
+	 * @param channelCount
+	 *            int: how many channels are in each sample frame
+	 * @param quality
+	 *            int: LOW, MEDIUM, or HIGH
+	 * @param inputSampleRate
+	 *            float: the sample rate of the audio written to the Resampler
+	 * @param outputSampleRate
+	 *            float: the sample rate of the audio read from the Resampler
+	 */
+	public Resampler( int channelCount, int quality, float inputSampleRate, float outputSampleRate )
+	{
+		this( channelCount, quality );
+		setRatio( (double)inputSampleRate / outputSampleRate );
+	}
+
+	/**
+	 * Returns how many channels are in each sample frame.
+	 */
+	public int getChannelCount()
+	{
+		return channelCount;
+	}
+
+	/**
+	 * Returns the quality setting this was constructed with.
+	 */
+	public int getQuality()
+	{
+		return quality;
+	}
+
+	/**
+	 * Returns the number of input frames consumed per output frame.
+	 */
+	public double getRatio()
+	{
+		return ratio;
+	}
+
+	/**
+	 * Sets the number of input frames consumed per output frame, which is
+	 * the input sample rate divided by the output sample rate. This takes
+	 * effect with the next output frame.
+	 *
+	 * @param ratio
+	 *            double: greater than zero
+	 */
+	public void setRatio( double ratio )
+	{
+		if ( !( ratio > 0 ) || Double.isInfinite( ratio ) )
+		{
+			throw new IllegalArgumentException( "Resampler: the ratio must be greater than zero, not " + ratio );
+		}
+		this.ratio = ratio;
+
+		Kernel newKernel = kernel( quality, cutoffStep( ratio ) );
+		if ( newKernel != kernel )
+		{
+			setKernel( newKernel );
+		}
+	}
+
+	/**
+	 * Designs the filter tables for every ratio at the given quality, so that
+	 * no <code>Resampler</code> with that quality ever has to design one when
+	 * its ratio changes. Designing them all takes tens of milliseconds at
+	 * MEDIUM quality and more at HIGH, so this should be called when setting
+	 * up, not from the audio thread. <code>Sampler</code> calls this when
+	 * it is constructed and when its quality is set.
+	 *
+	 * @param quality
+	 *            int: LOW, MEDIUM, or HIGH
+	 */
+	public static void prepare( int quality )
+	{
+		if ( quality < LOW || quality > HIGH )
+		{
+			throw new IllegalArgumentException( "Resampler: unknown quality " + quality );
+		}
+		for ( int step = 0; step < CUTOFFS; ++step )
+		{
+			kernel( quality, step );
+		}
+	}
+
+	// how many steps below the highest cutoff the filter for ratio is, 
+	// rounding down the cutoff so that it never aliases.
+	private static int cutoffStep( double ratio )
+	{
+		double stretch = Math.min( Math.max( ratio, 1 ), MAX_STRETCH );
+		int step = (int)Math.ceil( STEPS_PER_OCTAVE * Math.log( stretch ) / Math.log( 2 ) - 1e-9 );
+		return Math.max( 0, Math.min( step, CUTOFFS - 1 ) );
+	}
+
+	private void setKernel( Kernel newKernel )
+	{
+		kernel = newKernel;
+		if ( history == null )
+		{
+			reach = newKernel.half;
+			history = new float[channelCount][4 * reach];
+			return;
+		}
+		if ( newKernel.half > reach )
+		{
+			// the newest samples move to the end of the longer window, and the
+			// output position stays where it was once the extra input is written.
+			final int oldLength = 2 * reach;
+			final int length = 2 * newKernel.half;
+			for ( int c = 0; c < channelCount; ++c )
+			{
+				// the arrays are kept when reset shrinks the window, so they may 
+				// already be long enough, arraycopy copes with the overlap.
+				float[] grown = history[c].length >= 2 * length ? history[c] : new float[2 * length];
+				System.arraycopy( history[c], historyIndex, grown, length - oldLength, oldLength );
+				SampleKernels.clear( grown, 0, length - oldLength );
+				System.arraycopy( grown, 0, grown, length, length );
+				history[c] = grown;
+			}
+			historyIndex = 0;
+			inputNeeded += newKernel.half - reach;
+			reach = newKernel.half;
+		}
+	}
+
+	/**
+	 * Forgets all of the audio written so far, so that the next output frame
+	 * is the next input frame written.
+	 */
+	public void reset()
+	{
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			SampleKernels.clear( history[c], 0, history[c].length );
+		}
+		historyIndex = 0;
+		phase = 0;
+		// nothing is written yet, so the window can shrink to fit the kernel.
+		// it is centered between the reach-th and reach+1-th newest samples.
+		reach = kernel.half;
+		inputNeeded = reach + 1;
+	}
+
+	/**
+	 * Returns how many input frames the Resampler reads ahead of the output,
+	 * which is how far the filter looks into the future.
+	 */
+	public int getLatency()
+	{
+		return reach;
+	}
+
+	/**
+	 * Returns whether an input frame must be written before the next output
+	 * frame can be read.
+	 */
+	public boolean needsInput()
+	{
+		return inputNeeded > 0;
+	}
+
+	/**
+	 * Writes one input frame. If the frame has fewer channels than the
+	 * Resampler, its last channel is used for the missing ones.
+	 *
+	 * @param frame
+	 *            float[]: a sample frame
+	 */
+	public void write( float[] frame )
+	{
+		final int length = 2 * reach;
+		final int last = frame.length - 1;
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			float sample = frame[c < last ? c : last];
+			history[c][historyIndex] = sample;
+			history[c][historyIndex + length] = sample;
+		}
+		advanceHistory();
+	}
+
+	/**
+	 * Reads one output frame into <code>frame</code>. This should only be
+	 * called when <code>needsInput</code> returns false.
+	 *
+	 * @param frame
+	 *            float[]: where to put the output, only as many channels as
+	 *            the Resampler and the frame both have are written
+	 */
+	public void read( float[] frame )
+	{
+		final int count = Math.min( frame.length, channelCount );
+		for ( int c = 0; c < count; ++c )
+		{
+			frame[c] = filter( history[c] );
+		}
+		advancePhase();
+	}
+
+	/**
+	 * Resamples a block of audio, consuming input frames until they run out or
+	 * <code>outputLength</code> frames have been produced. Input frames that
+	 * are not consumed should be passed in again in the next call, starting
+	 * with the frame at <code>inputOffset + getInputUsed()</code>.
+	 *
+	 * @param input
+	 *            float[][]: the input channels
+	 * @param inputOffset
+	 *            int: the first input frame
+	 * @param inputLength
+	 *            int: how many input frames are available
+	 * @param output
+	 *            float[][]: where to write the output channels
+	 * @param outputOffset
+	 *            int: where to write the first output frame
+	 * @param outputLength
+	 *            int: the most output frames to write
+	 * @return int: how many output frames were written
+	 */
+	public int process( float[][] input, int inputOffset, int inputLength, float[][] output, int outputOffset, int outputLength )
+	{
+		final int lastIn = input.length - 1;
+		final int outCount = Math.min( output.length, channelCount );
+		int used = 0;
+		int made = 0;
+		while ( made < outputLength )
+		{
+			while ( inputNeeded > 0 && used < inputLength )
+			{
+				final int length = 2 * reach;
+				for ( int c = 0; c < channelCount; ++c )
+				{
+					float sample = input[c < lastIn ? c : lastIn][inputOffset + used];
+					history[c][historyIndex] = sample;
+					history[c][historyIndex + length] = sample;
+				}
+				advanceHistory();
+				++used;
+			}
+			if ( inputNeeded > 0 )
+			{
+				break;
+			}
+			for ( int c = 0; c < outCount; ++c )
+			{
+				output[c][outputOffset + made] = filter( history[c] );
+			}
+			advancePhase();
+			++made;
+		}
+		inputUsed = used;
+		return made;
+	}
+
+	/**
+	 * Returns how many input frames the most recent call to
+	 * <code>process</code> consumed.
+	 */
+	public int getInputUsed()
+	{
+		return inputUsed;
+	}
+
+	private void advanceHistory()
+	{
+		if ( ++historyIndex == 2 * reach )
+		{
+			historyIndex = 0;
+		}
+		--inputNeeded;
+	}
+
+	private void advancePhase()
+	{
+		phase += ratio;
+		int whole = (int)phase;
+		phase -= whole;
+		inputNeeded += whole;
+	}
+
+	// the output sample for one channel, interpolated between the two
+	// table phases on either side of where it falls. a kernel shorter than
+	// the window only covers the middle of it.
+	private float filter( float[] channel )
+	{
+		final int taps = kernel.taps;
+		final float[] table = kernel.table;
+		final int start = historyIndex + reach - kernel.half;
+		final double position = phase * kernel.phases;
+		final int p = (int)position;
+		final float frac = (float)( position - p );
+		final float a = SampleKernels.dot( channel, start, table, p * taps, taps );
+		if ( frac == 0 )
+		{
+			return a;
+		}
+		final float b = SampleKernels.dot( channel, start, table, ( p + 1 ) * taps, taps );
+		return a + frac * ( b - a );
+	}
+
+	private static Kernel kernel( int quality, int step )
+	{
+		Kernel k;
+		synchronized ( kernels )
+		{
+			k = kernels[quality][step];
+		}
+		if ( k == null )
+		{
+			// designed without holding the lock, so that designing one 
+			// table never holds up a resampler that only needs another.
+			double cutoff = ROLLOFF[quality] * Math.pow( 2, -(double)step / STEPS_PER_OCTAVE );
+			// a lower cutoff needs proportionally more taps for the same quality
+			int half = (int)Math.ceil( ZERO_CROSSINGS[quality] * ROLLOFF[quality] / cutoff - 1e-9 );
+			half = ( half + 1 ) & ~1;
+			Kernel designed = new Kernel( half, PHASES[quality], BETA[quality], cutoff );
+			synchronized ( kernels )
+			{
+				k = kernels[quality][step];
+				if ( k == null )
+				{
+					k = designed;
+					kernels[quality][step] = k;
+				}
+			}
+		}
+		return k;
+	}
+
+	// a table of windowed sinc filters, one for every phase plus one more,
+	// so that any position can be interpolated between two of them.
+	private static final class Kernel
+	{
+		final int		half;
+		final int		taps;
+		final int		phases;
+		final double	cutoff;
+		final float[]	table;
+
+		Kernel( int half, int phases, double beta, double cutoff )
+		{
+			this.half = half;
+			this.taps = 2 * half;
+			this.phases = phases;
+			this.cutoff = cutoff;
+			table = new float[( phases + 1 ) * taps];
+			for ( int p = 0; p <= phases; ++p )
+			{
+				final double frac = (double)p / phases;
+				final int row = p * taps;
+				double sum = 0;
+				for ( int k = 0; k < taps; ++k )
+				{
+					// how far the output position is from this tap's input sample,
+					// the oldest sample is first and the newest is last.
+					double distance = half - 1 - k + frac;
+					double x = distance / half;
+					double window = HalfBandFilter.kaiser( x, beta );
+					double value = cutoff * sinc( cutoff * distance ) * window;
+					table[row + k] = (float)value;
+					sum += value;
+				}
+				// every phase passes a constant through unchanged
+				for ( int k = 0; k < taps; ++k )
+				{
+					table[row + k] /= sum;
+				}
+			}
+		}
+
+		private static double sinc( double x )
+		{
+			if ( x == 0 )
+			{
+				return 1;
+			}
+			return Math.sin( Math.PI * x ) / ( Math.PI * x );
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package ddf.minim;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.Control;
+
+import ddf.minim.spi.AudioRecordingStream;
+
+/**
+ * Wraps an <code>AudioRecordingStream</code> so that it can be read at a
+ * different sample rate than the recording has. Minim uses this when it can't
+ * get an output at the sample rate of a file, so that the file can be played
+ * at a rate the output does support. Everything except reading is passed
+ * straight through to the wrapped stream, so positions and lengths are still
+ * in the time of the recording.
+ */
+class ResamplingStream implements AudioRecordingStream
+{
+	private final AudioRecordingStream	source;
+	private final AudioFormat			format;
+	private final Resampler				resampler;
+
+	// what we last read from the source, and how much of it has been used
+	private final MultiChannelBuffer	input;
+	private int							inputPosition;
+	private int							inputLength;
+	private final float[]				frame;
+	private final float[][]				inputChannels;
+	private final float[][]				outputChannels;
+	// set when the source's position jumps. the reader clears the input it
+	// has buffered and the resampler's history, so no audio from before
+	// the jump is heard after it.
+	private volatile boolean			discardInput;
+
+	ResamplingStream( AudioRecordingStream source, float sampleRate, int bufferSize )
+	{
+		this.source = source;
+		AudioFormat sourceFormat = source.getFormat();
+		format = new AudioFormat( sourceFormat.getEncoding(), sampleRate, sourceFormat.getSampleSizeInBits(),
+				sourceFormat.getChannels(), sourceFormat.getFrameSize(), sampleRate, sourceFormat.isBigEndian() );
+		resampler = new Resampler( sourceFormat.getChannels(), Resampler.MEDIUM, sourceFormat.getSampleRate(), sampleRate );
+		input = new MultiChannelBuffer( bufferSize, sourceFormat.getChannels() );
+		frame = new float[sourceFormat.getChannels()];
+		inputChannels = new float[sourceFormat.getChannels()][];
+		outputChannels = new float[sourceFormat.getChannels()][];
+	}
+
+	public float[] read()
+	{
+		discardIfJumped();
+		while ( resampler.needsInput() )
+		{
+			resampler.write( source.read() );
+		}
+		resampler.read( frame );
+		return frame;
+	}
+
+	public void read( MultiChannelBuffer buffer )
+	{
+		final int channelCount = format.getChannels();
+		if ( buffer.getChannelCount() != channelCount )
+		{
+			buffer.setChannelCount( channelCount );
+		}
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			outputChannels[c] = buffer.getChannel( c );
+		}
+
+		discardIfJumped();
+		final int length = buffer.getBufferSize();
+		int made = 0;
+		while ( made < length )
+		{
+			if ( inputPosition == inputLength )
+			{
+				source.read( input );
+				inputPosition = 0;
+				inputLength = input.getBufferSize();
+			}
+			for ( int c = 0; c < channelCount; ++c )
+			{
+				inputChannels[c] = input.getChannel( c < input.getChannelCount() ? c : input.getChannelCount() - 1 );
+			}
+			made += resampler.process( inputChannels, inputPosition, inputLength - inputPosition, outputChannels, made, length - made );
+			inputPosition += resampler.getInputUsed();
+		}
+	}
+
+	private void discardIfJumped()
+	{
+		if ( discardInput )
+		{
+			discardInput = false;
+			inputPosition = inputLength = 0;
+			resampler.reset();
+		}
+	}
+
+	public long getOverrunCount()
+	{
+		return source.getOverrunCount();
+	}
+
+	public void open()
+	{
+		source.open();
+	}
+
+	public void close()
+	{
+		source.close();
+	}
+
+	public Control[] getControls()
+	{
+		return source.getControls();
+	}
+
+	public AudioFormat getFormat()
+	{
+		return format;
+	}
+
+	public void play()
+	{
+		source.play();
+	}
+
+	public void pause()
+	{
+		source.pause();
+	}
+
+	public boolean isPlaying()
+	{
+		return source.isPlaying();
+	}
+
+	public void loop( int count )
+	{
+		source.loop( count );
+		discardInput = true;
+	}
+
+	public void setLoopPoints( int start, int stop )
+	{
+		source.setLoopPoints( start, stop );
+		discardInput = true;
+	}
+
+	public int getLoopCount()
+	{
+		return source.getLoopCount();
+	}
+
+	public int getMillisecondPosition()
+	{
+		return source.getMillisecondPosition();
+	}
+
+	public void setMillisecondPosition( int pos )
+	{
+		source.setMillisecondPosition( pos );
+		discardInput = true;
+	}
+
+	public int getMillisecondLength()
+	{
+		return source.getMillisecondLength();
+	}
+
+	public long getSampleFrameLength()
+	{
+		long length = source.getSampleFrameLength();
+		if ( length < 0 )
+		{
+			return length;
+		}
+		return (long)( length / resampler.getRatio() );
+	}
+
+	public AudioMetaData getMetaData()
+	{
+		return source.getMetaData();
+	}
+
+	public int getReadAheadFrames()
+	{
+		return (int)( source.getReadAheadFrames() / resampler.getRatio() );
+	}
+}
@@ -0,0 +1,381 @@
+package ddf.minim;
+
+/**
+ * <code>SampleKernels</code> is a collection of the inner loops that Minim
+ * runs over whole buffers of samples: mixing, scaling, accumulating,
+ * filtering, measuring RMS, interleaving, windowing and converting to and
+ * from 16 and 24 bit PCM. Classes like <code>MAudioBuffer</code>,
+ * <code>Summer</code>, <code>Gain</code>, <code>WindowFunction</code> and
+ * <code>FloatSampleTools</code> delegate to these methods rather than
+ * each keeping their own copy of the loop.
+ * <p>
+ * Every kernel is written as a simple counted loop over arrays with no
+ * dependency between iterations (or, for reductions, with independent
+ * partial sums) so that the JIT is able to compile it to SIMD instructions
+ * on platforms that have them. None of these methods allocate.
+ * <p>
+ * Offsets and lengths are not checked beyond what the JVM does for us,
+ * so passing bad values will result in an ArrayIndexOutOfBoundsException.
+ *
+ * @invisible
+ */
+public final class SampleKernels
+{
+	private static final float	TWO_POWER_15		= 32768.0f;
+	private static final float	TWO_POWER_23		= 8388608.0f;
+	private static final float	INV_TWO_POWER_15	= 1 / TWO_POWER_15;
+	private static final float	INV_TWO_POWER_23	= 1 / TWO_POWER_23;
+
+	private SampleKernels()
+	{
+	}
+
+	/**
+	 * Sets <code>length</code> samples of <code>buffer</code>, starting at
+	 * <code>offset</code>, to zero.
+	 */
+	public static void clear(float[] buffer, int offset, int length)
+	{
+		final int end = offset + length;
+		for ( int i = offset; i < end; ++i )
+		{
+			buffer[i] = 0;
+		}
+	}
+
+	/**
+	 * Multiplies <code>length</code> samples of <code>buffer</code>,
+	 * starting at <code>offset</code>, by <code>gain</code>.
+	 */
+	public static void scale(float[] buffer, int offset, int length, float gain)
+	{
+		final int end = offset + length;
+		for ( int i = offset; i < end; ++i )
+		{
+			buffer[i] *= gain;
+		}
+	}
+
+	/**
+	 * Multiplies <code>length</code> samples of <code>buffer</code>, starting
+	 * at <code>offset</code>, by a gain that starts at <code>start</code> and
+	 * changes by <code>step</code> every sample:
+	 * <p>
+	 * <code>buffer[offset + i] *= start + step * i</code>
+	 */
+	public static void ramp(float[] buffer, int offset, int length, float start, float step)
+	{
+		// computing the gain from i, rather than accumulating it,
+		// keeps the iterations independent of each other.
+		for ( int i = 0; i < length; ++i )
+		{
+			buffer[offset + i] *= start + step * i;
+		}
+	}
+
+	/**
+	 * Writes <code>src[srcOffset + i] * gain</code> to
+	 * <code>dst[dstOffset + i]</code> for <code>length</code> samples.
+	 */
+	public static void scale(float[] src, int srcOffset, float[] dst, int dstOffset, int length, float gain)
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			dst[dstOffset + i] = src[srcOffset + i] * gain;
+		}
+	}
+
+	/**
+	 * Adds <code>length</code> samples of <code>src</code> to
+	 * <code>dst</code>, in place.
+	 */
+	public static void accumulate(float[] src, int srcOffset, float[] dst, int dstOffset, int length)
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			dst[dstOffset + i] += src[srcOffset + i];
+		}
+	}
+
+	/**
+	 * Adds <code>length</code> samples of <code>src</code>, scaled by
+	 * <code>gain</code>, to <code>dst</code>, in place.
+	 */
+	public static void accumulate(float[] src, int srcOffset, float[] dst, int dstOffset, int length, float gain)
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			dst[dstOffset + i] += src[srcOffset + i] * gain;
+		}
+	}
+
+	/**
+	 * Writes the average of <code>a</code> and <code>b</code> to
+	 * <code>dst</code>, which is how Minim builds the mix of a stereo signal:
+	 * <p>
+	 * <code>dst[i] = (a[i] + b[i]) / 2</code>
+	 */
+	public static void mix(float[] a, float[] b, float[] dst, int length)
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			// multiplying by one half is exact, so this is identical to dividing by two
+			dst[i] = ( a[i] + b[i] ) * 0.5f;
+		}
+	}
+
+	/**
+	 * Multiplies <code>length</code> samples of <code>buffer</code>, starting
+	 * at <code>offset</code>, by the matching values in <code>coefficients</code>,
+	 * starting at <code>coeffOffset</code>. This is how a window is applied.
+	 */
+	public static void multiply(float[] buffer, int offset, float[] coefficients, int coeffOffset, int length)
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			buffer[offset + i] *= coefficients[coeffOffset + i];
+		}
+	}
+
+	/**
+	 * Returns the sum of the squares of <code>length</code> samples of
+	 * <code>buffer</code>, starting at <code>offset</code>.
+	 */
+	public static float sumOfSquares(float[] buffer, int offset, int length)
+	{
+		// four independent partial sums let the CPU keep several multiply-adds
+		// in flight, a single running sum serializes every iteration.
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		final int end = offset + length;
+		final int blockEnd = offset + ( length & ~3 );
+		int i = offset;
+		for ( ; i < blockEnd; i += 4 )
+		{
+			final float a = buffer[i];
+			final float b = buffer[i + 1];
+			final float c = buffer[i + 2];
+			final float d = buffer[i + 3];
+			s0 += a * a;
+			s1 += b * b;
+			s2 += c * c;
+			s3 += d * d;
+		}
+		for ( ; i < end; ++i )
+		{
+			s0 += buffer[i] * buffer[i];
+		}
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the sum of the products of <code>length</code> samples of
+	 * <code>a</code>, starting at <code>aOffset</code>, with the matching
+	 * samples of <code>b</code>, starting at <code>bOffset</code>.
+	 * This is how an FIR filter is applied at one output sample.
+	 */
+	public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length)
+	{
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		final int blocks = length & ~3;
+		int i = 0;
+		for ( ; i < blocks; i += 4 )
+		{
+			s0 += a[aOffset + i] * b[bOffset + i];
+			s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+			s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+			s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+		}
+		for ( ; i < length; ++i )
+		{
+			s0 += a[aOffset + i] * b[bOffset + i];
+		}
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the root-mean-square of <code>length</code> samples of
+	 * <code>buffer</code>, starting at <code>offset</code>.
+	 */
+	public static float rms(float[] buffer, int offset, int length)
+	{
+		if ( length <= 0 )
+		{
+			return 0;
+		}
+		return (float)Math.sqrt( sumOfSquares( buffer, offset, length ) / length );
+	}
+
+	/**
+	 * Interleaves <code>frameCount</code> sample frames from the separate
+	 * channel arrays in <code>channels</code> into <code>dst</code>,
+	 * starting at <code>dstOffset</code>.
+	 */
+	public static void interleave(float[][] channels, int srcOffset, float[] dst, int dstOffset, int frameCount)
+	{
+		final int channelCount = channels.length;
+		if ( channelCount == 2 )
+		{
+			final float[] l = channels[0];
+			final float[] r = channels[1];
+			for ( int i = 0; i < frameCount; ++i )
+			{
+				dst[dstOffset + 2 * i] = l[srcOffset + i];
+				dst[dstOffset + 2 * i + 1] = r[srcOffset + i];
+			}
+			return;
+		}
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			final float[] channel = channels[c];
+			for ( int i = 0, d = dstOffset + c; i < frameCount; ++i, d += channelCount )
+			{
+				dst[d] = channel[srcOffset + i];
+			}
+		}
+	}
+
+	/**
+	 * Splits <code>frameCount</code> interleaved sample frames from
+	 * <code>src</code>, starting at <code>srcOffset</code>, into the
+	 * separate channel arrays in <code>channels</code>.
+	 */
+	public static void deinterleave(float[] src, int srcOffset, float[][] channels, int dstOffset, int frameCount)
+	{
+		final int channelCount = channels.length;
+		if ( channelCount == 2 )
+		{
+			final float[] l = channels[0];
+			final float[] r = channels[1];
+			for ( int i = 0; i < frameCount; ++i )
+			{
+				l[dstOffset + i] = src[srcOffset + 2 * i];
+				r[dstOffset + i] = src[srcOffset + 2 * i + 1];
+			}
+			return;
+		}
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			final float[] channel = channels[c];
+			for ( int i = 0, s = srcOffset + c; i < frameCount; ++i, s += channelCount )
+			{
+				channel[dstOffset + i] = src[s];
+			}
+		}
+	}
+
+	/**
+	 * Converts <code>sampleCount</code> signed 16 bit samples to floats in the
+	 * range [-1, 1]. Successive samples are read <code>inByteStep</code> bytes
+	 * apart, which makes it possible to pull a single channel out of
+	 * interleaved data by passing the frame size.
+	 */
+	public static void pcm16ToFloat(byte[] src, int srcOffset, int inByteStep, boolean bigEndian,
+									float[] dst, int dstOffset, int sampleCount)
+	{
+		final int hi = bigEndian ? 0 : 1;
+		final int lo = bigEndian ? 1 : 0;
+		for ( int i = 0, s = srcOffset; i < sampleCount; ++i, s += inByteStep )
+		{
+			dst[dstOffset + i] = ( ( src[s + hi] << 8 ) | ( src[s + lo] & 0xFF ) ) * INV_TWO_POWER_15;
+		}
+	}
+
+	/**
+	 * Converts <code>sampleCount</code> signed, packed 24 bit samples to floats
+	 * in the range [-1, 1]. See {@link #pcm16ToFloat} for the meaning of
+	 * <code>inByteStep</code>.
+	 */
+	public static void pcm24ToFloat(byte[] src, int srcOffset, int inByteStep, boolean bigEndian,
+									float[] dst, int dstOffset, int sampleCount)
+	{
+		final int hi = bigEndian ? 0 : 2;
+		final int lo = bigEndian ? 2 : 0;
+		for ( int i = 0, s = srcOffset; i < sampleCount; ++i, s += inByteStep )
+		{
+			dst[dstOffset + i] = ( ( src[s + hi] << 16 )
+								 | ( ( src[s + 1] & 0xFF ) << 8 )
+								 | ( src[s + lo] & 0xFF ) ) * INV_TWO_POWER_23;
+		}
+	}
+
+	/**
+	 * Converts <code>sampleCount</code> floats to signed 16 bit samples,
+	 * without dithering. Values outside of [-1, 1] are clipped. Successive
+	 * samples are written <code>outByteStep</code> bytes apart.
+	 */
+	public static void floatToPcm16(float[] src, int srcOffset, byte[] dst, int dstOffset, int outByteStep,
+									boolean bigEndian, int sampleCount)
+	{
+		final int hi = bigEndian ? 0 : 1;
+		final int lo = bigEndian ? 1 : 0;
+		for ( int i = 0, d = dstOffset; i < sampleCount; ++i, d += outByteStep )
+		{
+			final int sample = quantize( src[srcOffset + i] * TWO_POWER_15, 32767 );
+			dst[d + hi] = (byte)( sample >> 8 );
+			dst[d + lo] = (byte)( sample & 0xFF );
+		}
+	}
+
+	/**
+	 * Converts <code>sampleCount</code> floats to signed, packed 24 bit samples,
+	 * without dithering. Values outside of [-1, 1] are clipped. Successive
+	 * samples are written <code>outByteStep</code> bytes apart.
+	 */
+	public static void floatToPcm24(float[] src, int srcOffset, byte[] dst, int dstOffset, int outByteStep,
+									boolean bigEndian, int sampleCount)
+	{
+		final int hi = bigEndian ? 0 : 2;
+		final int lo = bigEndian ? 2 : 0;
+		for ( int i = 0, d = dstOffset; i < sampleCount; ++i, d += outByteStep )
+		{
+			final int sample = quantize( src[srcOffset + i] * TWO_POWER_23, 8388607 );
+			dst[d + hi] = (byte)( sample >> 16 );
+			dst[d + 1] = (byte)( ( sample >>> 8 ) & 0xFF );
+			dst[d + lo] = (byte)( sample & 0xFF );
+		}
+	}
+
+	/**
+	 * Writes <code>sampleCount</code> floats as 32 bit IEEE floating point
+	 * samples, which is what a line with the <code>PCM_FLOAT</code> encoding
+	 * expects. No clipping is done. Successive samples are written
+	 * <code>outByteStep</code> bytes apart.
+	 */
+	public static void floatToFloat32(float[] src, int srcOffset, byte[] dst, int dstOffset, int outByteStep,
+									  boolean bigEndian, int sampleCount)
+	{
+		for ( int i = 0, d = dstOffset; i < sampleCount; ++i, d += outByteStep )
+		{
+			final int bits = Float.floatToRawIntBits( src[srcOffset + i] );
+			if ( bigEndian )
+			{
+				dst[d] = (byte)( bits >> 24 );
+				dst[d + 1] = (byte)( bits >> 16 );
+				dst[d + 2] = (byte)( bits >> 8 );
+				dst[d + 3] = (byte)bits;
+			}
+			else
+			{
+				dst[d + 3] = (byte)( bits >> 24 );
+				dst[d + 2] = (byte)( bits >> 16 );
+				dst[d + 1] = (byte)( bits >> 8 );
+				dst[d] = (byte)bits;
+			}
+		}
+	}
+
+	// clips to [-max-1, max] and rounds half away from zero,
+	// which matches the non-dithered quantization in FloatSampleTools.
+	static int quantize(float sample, int max)
+	{
+		if ( sample >= max )
+		{
+			return max;
+		}
+		if ( sample <= -max - 1 )
+		{
+			return -max - 1;
+		}
+		return (int)( sample < 0 ? ( sample - 0.5f ) : ( sample + 0.5f ) );
+	}
+}
@@ -0,0 +1,261 @@
+package ddf.minim;
+
+/**
+ * A <code>SampleStore</code> holds audio that is kept in memory for playback,
+ * like the contents of an <code>AudioSample</code> or a <code>Sampler</code>.
+ * The samples can be stored as 32 bit floats, which is what Minim has always
+ * done, or packed into 16 or 24 bit integers, which takes a half or three
+ * quarters of the memory. Packed samples are converted back to floats as they
+ * are played.
+ * <p>
+ * A store can also be kept <em>off-heap</em>, in memory that is not managed
+ * by the garbage collector. This is worth doing when you have hundreds of
+ * megabytes of samples loaded, since the garbage collector then no longer
+ * has to look at them, and they don't count against the maximum heap size.
+ * <p>
+ * You can get a store for a file by calling <code>loadFileIntoStore</code>
+ * on Minim and play it with either <code>createSample</code> or a
+ * <code>Sampler</code>:
+ *
+ * <pre>
+ * SampleStore store = minim.loadFileIntoStore( "piano_c4.wav", SampleStore.INT16, true );
+ * Sampler piano = new Sampler( store, 4 );
+ * </pre>
+ *
+ * @related Minim
+ * @related Sampler
+ * @related AudioSample
+ *
+ * @invisible
+ */
+public abstract class SampleStore
+{
+	/** Samples are stored as 32 bit floats. */
+	public static final int	FLOAT	= 0;
+	/** Samples are stored as 16 bit signed integers. */
+	public static final int	INT16	= 1;
+	/** Samples are stored as 24 bit signed integers. */
+	public static final int	INT24	= 2;
+
+	private final int		channelCount;
+	private final int		sampleCount;
+	private final float		sampleRate;
+	private final int		encoding;
+
+	SampleStore(int channelCount, int sampleCount, float sampleRate, int encoding)
+	{
+		if ( channelCount < 1 || sampleCount < 0 || sampleRate <= 0 )
+		{
+			throw new IllegalArgumentException( "SampleStore: can't create a store with " + channelCount
+					+ " channels, " + sampleCount + " samples, at " + sampleRate + " Hz." );
+		}
+		this.channelCount = channelCount;
+		this.sampleCount = sampleCount;
+		this.sampleRate = sampleRate;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Creates a silent store.
+	 *
+	 * @param channelCount
+	 *            int: how many channels of audio the store holds
+	 * @param sampleCount
+	 *            int: how many sample frames long the store is
+	 * @param sampleRate
+	 *            float: the sample rate of the audio that will be stored
+	 * @param encoding
+	 *            int: how to store samples, one of FLOAT, INT16, or INT24
+	 * @param offHeap
+	 *            boolean: whether the samples should be kept outside of the
+	 *            Java heap
+	 * @return a new SampleStore
+	 */
+	public static SampleStore allocate(int channelCount, int sampleCount, float sampleRate, int encoding, boolean offHeap)
+	{
+		if ( encoding != FLOAT && encoding != INT16 && encoding != INT24 )
+		{
+			throw new IllegalArgumentException( "SampleStore: unknown encoding " + encoding );
+		}
+		if ( encoding == FLOAT && !offHeap )
+		{
+			return new FloatSampleStore( new float[channelCount][sampleCount], sampleRate );
+		}
+		return new BufferSampleStore( channelCount, sampleCount, sampleRate, encoding, offHeap );
+	}
+
+	/**
+	 * Creates a float store that uses the provided arrays as its channels,
+	 * without copying them. All of the arrays must be the same length.
+	 *
+	 * @param channels
+	 *            float[][]: the samples, one array per channel
+	 * @param sampleRate
+	 *            float: the sample rate of the samples
+	 * @return a SampleStore that shares its samples with channels
+	 */
+	public static SampleStore wrap(float[][] channels, float sampleRate)
+	{
+		return new FloatSampleStore( channels, sampleRate );
+	}
+
+	/**
+	 * Creates a store containing a copy of the samples in a
+	 * MultiChannelBuffer.
+	 *
+	 * @param buffer
+	 *            MultiChannelBuffer: the samples to copy
+	 * @param sampleRate
+	 *            float: the sample rate of the samples
+	 * @param encoding
+	 *            int: how to store samples, one of FLOAT, INT16, or INT24
+	 * @param offHeap
+	 *            boolean: whether the samples should be kept outside of the
+	 *            Java heap
+	 * @return a new SampleStore
+	 */
+	public static SampleStore copyOf(MultiChannelBuffer buffer, float sampleRate, int encoding, boolean offHeap)
+	{
+		SampleStore store = allocate( buffer.getChannelCount(), buffer.getBufferSize(), sampleRate, encoding, offHeap );
+		for ( int c = 0; c < buffer.getChannelCount(); ++c )
+		{
+			store.write( c, 0, buffer.getChannel( c ), 0, buffer.getBufferSize() );
+		}
+		return store;
+	}
+
+	/**
+	 * Returns how many channels of audio this store holds.
+	 */
+	public int getChannelCount()
+	{
+		return channelCount;
+	}
+
+	/**
+	 * Returns how many sample frames long this store is.
+	 */
+	public int getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	/**
+	 * Returns the sample rate of the stored audio.
+	 */
+	public float getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	/**
+	 * Returns how the samples are stored: FLOAT, INT16, or INT24.
+	 */
+	public int getEncoding()
+	{
+		return encoding;
+	}
+
+	/**
+	 * Returns whether the samples are kept outside of the Java heap.
+	 */
+	public abstract boolean isOffHeap();
+
+	/**
+	 * Returns how many bytes the samples take up.
+	 */
+	public long getSizeInBytes()
+	{
+		int bytesPerSample = encoding == INT16 ? 2 : ( encoding == INT24 ? 3 : 4 );
+		return (long)channelCount * sampleCount * bytesPerSample;
+	}
+
+	/**
+	 * Returns the value of a sample.
+	 *
+	 * @param channel
+	 *            int: the channel to read from
+	 * @param sampleIndex
+	 *            int: the sample frame to read
+	 * @return float: the sample, in the range [-1, 1]
+	 */
+	public abstract float getSample(int channel, int sampleIndex);
+
+	/**
+	 * Returns the value of a sample between two sample frames, found by
+	 * linear interpolation, the same way MultiChannelBuffer does it.
+	 *
+	 * @param channel
+	 *            int: the channel to read from
+	 * @param sampleIndex
+	 *            float: the position to read
+	 * @return float: the interpolated sample
+	 */
+	public float getSample(int channel, float sampleIndex)
+	{
+		int lowSamp = (int)sampleIndex;
+		int hiSamp = lowSamp + 1;
+		float low = getSample( channel, lowSamp );
+		if ( hiSamp == sampleCount )
+		{
+			return low;
+		}
+		float lerp = sampleIndex - lowSamp;
+		return low + lerp * ( getSample( channel, hiSamp ) - low );
+	}
+
+	/**
+	 * Sets the value of a sample. Values outside of [-1, 1] are clipped
+	 * when the store is packed.
+	 *
+	 * @param channel
+	 *            int: the channel to write to
+	 * @param sampleIndex
+	 *            int: the sample frame to write
+	 * @param value
+	 *            float: the new value
+	 */
+	public abstract void setSample(int channel, int sampleIndex, float value);
+
+	/**
+	 * Copies <code>length</code> samples of a channel, starting at
+	 * <code>sampleIndex</code>, into <code>dst</code>.
+	 */
+	public abstract void read(int channel, int sampleIndex, float[] dst, int dstOffset, int length);
+
+	/**
+	 * Adds <code>length</code> samples of a channel, starting at
+	 * <code>sampleIndex</code>, to what is already in <code>dst</code>.
+	 * This is how the samples are mixed into an output during playback.
+	 */
+	public abstract void add(int channel, int sampleIndex, float[] dst, int dstOffset, int length);
+
+	/**
+	 * Adds <code>length</code> samples of a channel, starting at
+	 * <code>sampleIndex</code>, multiplied by <code>gain</code>, to what is
+	 * already in <code>dst</code>.
+	 */
+	public abstract void add(int channel, int sampleIndex, float[] dst, int dstOffset, int length, float gain);
+
+	/**
+	 * Copies <code>length</code> samples from <code>src</code> into a channel,
+	 * starting at <code>sampleIndex</code>.
+	 */
+	public abstract void write(int channel, int sampleIndex, float[] src, int srcOffset, int length);
+
+	/**
+	 * Returns a channel as a float array. For float stores that are kept on
+	 * the heap this is the array the samples are stored in, for all other
+	 * stores it is a new array holding a converted copy of the channel.
+	 *
+	 * @param channel
+	 *            int: the channel to return
+	 * @return float[]: the samples of the channel
+	 */
+	public float[] getChannel(int channel)
+	{
+		float[] samples = new float[sampleCount];
+		read( channel, 0, samples, 0, sampleCount );
+		return samples;
+	}
+}
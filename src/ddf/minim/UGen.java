@@ -77,6 +77,9 @@ public abstract class UGen
 	private int						m_nOutputs;
 	// counter for the m_currentTick with respect to the number of Outputs
 	private int						m_currentTick;
+	// where UGenProfiler accumulates our cost, created the first time 
+	// we are ticked while profiling is enabled
+	UGenProfiler.Stats				m_profileStats;
 
 	/**
 	 * A UGenInput represents parameter of the UGen that can be 
@@ -485,6 +488,27 @@ public abstract class UGen
 	 *            will be implementation dependent.
 	 */
 	public final void tick(float[] channels)
+	{
+		if ( UGenProfiler.s_enabled )
+		{
+			UGenProfiler.Stack stack = UGenProfiler.enter();
+			long start = System.nanoTime();
+			try
+			{
+				tickImpl( channels );
+			}
+			finally
+			{
+				stack.exit( this, System.nanoTime() - start );
+			}
+		}
+		else
+		{
+			tickImpl( channels );
+		}
+	}
+	
+	private void tickImpl(float[] channels)
 	{
 		if ( m_nOutputs > 0 )
 		{
@@ -0,0 +1,318 @@
+package ddf.minim;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UGenProfiler measures how much time each UGen in a patch spends generating
+ * audio. When profiling is enabled, every call to a UGen's <code>tick</code>
+ * is timed. The <em>inclusive</em> time of a UGen includes the time spent
+ * ticking everything patched to it, the <em>exclusive</em> time is only what
+ * it spent in its own <code>uGenerate</code>. The exclusive time is usually
+ * what you want to look at when trying to figure out which UGen is blowing
+ * your budget.
+ * <p>
+ * Profiling is off by default, in which case the only cost is checking a
+ * flag once per tick. When it is on, each tick costs two calls to
+ * <code>System.nanoTime</code>, so expect your patch to get noticeably
+ * more expensive while you are looking at it.
+ * <p>
+ * The numbers for a UGen are kept for as long as the UGen exists, even
+ * after it has been unpatched, so that a report still shows what it cost.
+ * Once a UGen has been garbage collected its numbers are dropped the next
+ * time <code>reset</code> is called or the profile has grown enough, so a
+ * long session that keeps creating UGens doesn't keep them all forever.
+ * <p>
+ * A typical session looks like this:
+ *
+ * <pre>
+ * UGenProfiler.enable();
+ * // ... let the patch play for a while ...
+ * println( UGenProfiler.report() );
+ * UGenProfiler.disable();
+ * </pre>
+ *
+ * @related UGen
+ *
+ * @invisible
+ */
+public final class UGenProfiler
+{
+	// read by UGen.tick for every sample frame on the audio thread and
+	// written by the sketch, so it's volatile, which is still a plain load.
+	static volatile boolean					s_enabled;
+
+	private static final ArrayList<Stats>	s_stats	= new ArrayList<Stats>();
+	// how big s_stats can get before UGens that have been garbage collected
+	// are dropped from it
+	private static int						s_pruneAt	= 256;
+
+	private static final ThreadLocal<Stack>	s_stack	= new ThreadLocal<Stack>()
+	{
+		protected Stack initialValue()
+		{
+			return new Stack();
+		}
+	};
+
+	private UGenProfiler()
+	{
+	}
+
+	/**
+	 * Start timing UGens.
+	 */
+	public static void enable()
+	{
+		s_enabled = true;
+	}
+
+	/**
+	 * Stop timing UGens. The numbers gathered so far are kept until
+	 * <code>reset</code> is called.
+	 */
+	public static void disable()
+	{
+		s_enabled = false;
+	}
+
+	/**
+	 * Returns whether UGens are currently being timed.
+	 */
+	public static boolean isEnabled()
+	{
+		return s_enabled;
+	}
+
+	/**
+	 * Throws away all of the numbers gathered so far.
+	 */
+	public static void reset()
+	{
+		synchronized ( s_stats )
+		{
+			for ( int i = s_stats.size() - 1; i >= 0; --i )
+			{
+				Stats stats = s_stats.get( i );
+				if ( stats.ugen.get() == null )
+				{
+					s_stats.remove( i );
+				}
+				else
+				{
+					stats.calls = 0;
+					stats.inclusiveNanos = 0;
+					stats.exclusiveNanos = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a report of the time spent by every UGen class, followed by
+	 * the time spent by every individual UGen, both sorted from most to
+	 * least exclusive time.
+	 *
+	 * @return String: a table that can be printed to the console
+	 */
+	public static String report()
+	{
+		ArrayList<Entry> instances = getInstanceEntries();
+		ArrayList<Entry> classes = getClassEntries( instances );
+
+		long total = 0;
+		for ( Entry e : classes )
+		{
+			total += e.exclusiveNanos;
+		}
+
+		StringBuilder out = new StringBuilder();
+		out.append( "UGen classes by exclusive time:\n" );
+		appendEntries( out, classes, total );
+		out.append( "\nUGen instances by exclusive time:\n" );
+		appendEntries( out, instances, total );
+		return out.toString();
+	}
+
+	/**
+	 * Returns the profile of every UGen that has been ticked since
+	 * profiling was enabled, sorted from most to least exclusive time.
+	 */
+	public static ArrayList<Entry> getInstanceEntries()
+	{
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		synchronized ( s_stats )
+		{
+			for ( Stats stats : s_stats )
+			{
+				if ( stats.calls > 0 )
+				{
+					entries.add( new Entry( stats.name, stats.calls, stats.inclusiveNanos, stats.exclusiveNanos ) );
+				}
+			}
+		}
+		Collections.sort( entries, BY_EXCLUSIVE );
+		return entries;
+	}
+
+	/**
+	 * Returns the profile of every UGen class, which is the sum of all the
+	 * instances of that class, sorted from most to least exclusive time.
+	 */
+	public static ArrayList<Entry> getClassEntries()
+	{
+		return getClassEntries( getInstanceEntries() );
+	}
+
+	private static ArrayList<Entry> getClassEntries(ArrayList<Entry> instances)
+	{
+		Map<String, Entry> byClass = new HashMap<String, Entry>();
+		for ( Entry e : instances )
+		{
+			String className = e.name.substring( 0, e.name.indexOf( '@' ) );
+			Entry c = byClass.get( className );
+			if ( c == null )
+			{
+				c = new Entry( className, 0, 0, 0 );
+				byClass.put( className, c );
+			}
+			c.calls += e.calls;
+			c.inclusiveNanos += e.inclusiveNanos;
+			c.exclusiveNanos += e.exclusiveNanos;
+		}
+		ArrayList<Entry> entries = new ArrayList<Entry>( byClass.values() );
+		Collections.sort( entries, BY_EXCLUSIVE );
+		return entries;
+	}
+
+	private static void appendEntries(StringBuilder out, ArrayList<Entry> entries, long total)
+	{
+		out.append( String.format( "%-40s %12s %12s %12s %7s %10s\n", "name", "ticks", "incl ms", "excl ms", "excl %", "ns/tick" ) );
+		for ( Entry e : entries )
+		{
+			out.append( String.format( "%-40s %12d %12.3f %12.3f %6.1f%% %10.1f\n",
+									   e.name,
+									   e.calls,
+									   e.inclusiveNanos / 1000000.0,
+									   e.exclusiveNanos / 1000000.0,
+									   total == 0 ? 0 : 100.0 * e.exclusiveNanos / total,
+									   (double)e.exclusiveNanos / e.calls ) );
+		}
+	}
+
+	/**
+	 * The profile of a single UGen or UGen class.
+	 */
+	public static final class Entry
+	{
+		/** the UGen class name, followed by @ and the identity hash for an instance */
+		public final String	name;
+		public long			calls;
+		public long			inclusiveNanos;
+		public long			exclusiveNanos;
+
+		Entry(String name, long calls, long inclusiveNanos, long exclusiveNanos)
+		{
+			this.name = name;
+			this.calls = calls;
+			this.inclusiveNanos = inclusiveNanos;
+			this.exclusiveNanos = exclusiveNanos;
+		}
+
+		public String toString()
+		{
+			return name + " calls=" + calls + " inclusiveNanos=" + inclusiveNanos + " exclusiveNanos=" + exclusiveNanos;
+		}
+	}
+
+	private static final Comparator<Entry>	BY_EXCLUSIVE	= new Comparator<Entry>()
+	{
+		public int compare(Entry a, Entry b)
+		{
+			return a.exclusiveNanos < b.exclusiveNanos ? 1 : ( a.exclusiveNanos > b.exclusiveNanos ? -1 : 0 );
+		}
+	};
+
+	// the accumulated cost of one UGen. these are only written by the
+	// thread ticking the UGen, so a report might be off by a tick or two.
+	static final class Stats
+	{
+		final WeakReference<UGen>	ugen;
+		final String				name;
+		long						calls;
+		long						inclusiveNanos;
+		long						exclusiveNanos;
+
+		Stats(UGen ugen)
+		{
+			this.ugen = new WeakReference<UGen>( ugen );
+			name = ugen.getClass().getName() + "@" + Integer.toHexString( System.identityHashCode( ugen ) );
+		}
+	}
+
+	// keeps track of how much time was spent in the children of
+	// each tick currently in progress on a thread.
+	static final class Stack
+	{
+		private long[]	childNanos	= new long[64];
+		private int		depth;
+
+		void exit(UGen ugen, long elapsed)
+		{
+			--depth;
+			long exclusive = elapsed - childNanos[depth];
+			if ( depth > 0 )
+			{
+				childNanos[depth - 1] += elapsed;
+			}
+
+			Stats stats = ugen.m_profileStats;
+			if ( stats == null )
+			{
+				stats = register( ugen );
+			}
+			stats.calls++;
+			stats.inclusiveNanos += elapsed;
+			stats.exclusiveNanos += exclusive;
+		}
+	}
+
+	static Stack enter()
+	{
+		Stack stack = s_stack.get();
+		if ( stack.depth == stack.childNanos.length )
+		{
+			long[] grown = new long[stack.depth * 2];
+			System.arraycopy( stack.childNanos, 0, grown, 0, stack.depth );
+			stack.childNanos = grown;
+		}
+		stack.childNanos[stack.depth++] = 0;
+		return stack;
+	}
+
+	private static Stats register(UGen ugen)
+	{
+		Stats stats = new Stats( ugen );
+		synchronized ( s_stats )
+		{
+			if ( s_stats.size() >= s_pruneAt )
+			{
+				for ( int i = s_stats.size() - 1; i >= 0; --i )
+				{
+					if ( s_stats.get( i ).ugen.get() == null )
+					{
+						s_stats.remove( i );
+					}
+				}
+				s_pruneAt = Math.max( 256, s_stats.size() * 2 );
+			}
+			s_stats.add( stats );
+		}
+		ugen.m_profileStats = stats;
+		return stats;
+	}
+}
@@ -0,0 +1,584 @@
+package ddf.minim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A <code>WaveformOverview</code> is a summary of a whole recording for
+ * drawing its waveform: the minimum, maximum, and RMS level of every block
+ * of <code>blockSize</code> samples, and of every two of those blocks, and
+ * every four, and so on up to the whole recording. However far you zoom in
+ * or out, the level that has about one block per pixel is used, so drawing
+ * costs the same few steps per pixel whether you are showing a second or an
+ * hour, and the audio never has to be decoded again.
+ * <p>
+ * You can get an overview of a file with <code>loadWaveformOverview</code>
+ * on Minim, which decodes the file without playing it, or you can build one
+ * as audio goes by, either by adding the overview as a listener of an
+ * <code>AudioPlayer</code> or by calling <code>add</code> with blocks of
+ * audio yourself. Overviews can be saved next to the file they describe
+ * and loaded again, which is much faster than decoding the file:
+ *
+ * <pre>
+ * WaveformOverview overview = WaveformOverview.load( sketchPath( "song.mp3.overview" ) );
+ * if ( overview == null )
+ * {
+ *   overview = minim.loadWaveformOverview( "song.mp3" );
+ *   overview.save( sketchPath( "song.mp3.overview" ) );
+ * }
+ * </pre>
+ *
+ * Only blocks that are complete are part of the overview while it is being
+ * built. Call <code>finish</code> after the last audio has been added to
+ * include the samples left over at the end.
+ *
+ * @related Minim
+ * @related AudioPlayer
+ * @related AudioListener
+ */
+public class WaveformOverview implements AudioListener
+{
+	/** The block size used when none is given. */
+	public static final int		DEFAULT_BLOCK_SIZE	= 256;
+
+	private static final int	MAGIC				= 0x4D574156;
+	private static final int	VERSION				= 1;
+
+	private final int			channelCount;
+	private final float			sampleRate;
+	private final int			blockSize;
+
+	// for every level, for every block, for every channel: the minimum,
+	// maximum, and mean square. level k has blocks of blockSize << k samples.
+	private float[][]			levels;
+	// how many complete blocks each level has
+	private int[]				blockCounts;
+	private int					levelCount;
+	private long				frameCount;
+	private boolean				finished;
+
+	// the block being filled at the first level
+	private final float[]		currentMin;
+	private final float[]		currentMax;
+	private final double[]		currentSquares;
+	private int					currentFrames;
+
+	/**
+	 * Constructs an empty overview, to be built with <code>add</code>
+	 * or by listening to an <code>AudioPlayer</code>.
+	 *
+	 * @param channelCount
+	 * 			int: how many channels the audio has
+	 * @param sampleRate
+	 * 			float: the sample rate of the audio
+	 * @param blockSize
+	 * 			int: how many samples the smallest blocks have
+	 */
+	public WaveformOverview( int channelCount, float sampleRate, int blockSize )
+	{
+		if ( channelCount < 1 || blockSize < 1 )
+		{
+			throw new IllegalArgumentException( "WaveformOverview: channelCount and blockSize must be at least one." );
+		}
+		this.channelCount = channelCount;
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		levels = new float[1][3 * channelCount * 64];
+		blockCounts = new int[1];
+		levelCount = 1;
+		currentMin = new float[channelCount];
+		currentMax = new float[channelCount];
+		currentSquares = new double[channelCount];
+		resetCurrent();
+	}
+
+	/**
+	 * Returns how many channels the audio has.
+	 */
+	public int getChannelCount()
+	{
+		return channelCount;
+	}
+
+	/**
+	 * Returns the sample rate of the audio.
+	 */
+	public float getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	/**
+	 * Returns how many samples the smallest blocks have.
+	 */
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	/**
+	 * Returns how many sample frames have been added.
+	 */
+	public synchronized long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	/**
+	 * Returns whether <code>finish</code> has been called.
+	 */
+	public synchronized boolean isFinished()
+	{
+		return finished;
+	}
+
+	/**
+	 * Adds the first <code>getBufferSize()</code> sample frames of a buffer
+	 * to the overview. If the buffer has fewer channels than the overview,
+	 * its last channel is used for the rest.
+	 *
+	 * @param buffer
+	 * 			the audio to add
+	 */
+	public void add( MultiChannelBuffer buffer )
+	{
+		final int bufferChannels = buffer.getChannelCount();
+		float[][] channels = new float[channelCount][];
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			channels[c] = buffer.getChannel( c < bufferChannels ? c : bufferChannels - 1 );
+		}
+		add( channels, 0, buffer.getBufferSize() );
+	}
+
+	/**
+	 * Adds <code>length</code> sample frames, starting at <code>offset</code>
+	 * in each of the channel arrays, to the overview.
+	 *
+	 * @param channels
+	 * 			one array of samples per channel
+	 * @param offset
+	 * 			the first sample frame to add
+	 * @param length
+	 * 			how many sample frames to add
+	 */
+	public synchronized void add( float[][] channels, int offset, int length )
+	{
+		if ( finished )
+		{
+			Minim.error( "WaveformOverview.add: can't add audio to an overview that has been finished." );
+			return;
+		}
+		int at = 0;
+		while ( at < length )
+		{
+			final int count = Math.min( length - at, blockSize - currentFrames );
+			for ( int c = 0; c < channelCount; ++c )
+			{
+				final float[] samples = channels[c];
+				float min = currentMin[c];
+				float max = currentMax[c];
+				double squares = currentSquares[c];
+				for ( int i = offset + at, end = i + count; i < end; ++i )
+				{
+					final float s = samples[i];
+					if ( s < min ) min = s;
+					if ( s > max ) max = s;
+					squares += s * s;
+				}
+				currentMin[c] = min;
+				currentMax[c] = max;
+				currentSquares[c] = squares;
+			}
+			currentFrames += count;
+			at += count;
+			frameCount += count;
+			if ( currentFrames == blockSize )
+			{
+				completeBlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds a mono buffer to the overview. This is called automatically
+	 * when the overview has been added as a listener.
+	 *
+	 * @invisible
+	 */
+	public void samples( float[] samp )
+	{
+		float[][] channels = new float[channelCount][];
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			channels[c] = samp;
+		}
+		add( channels, 0, samp.length );
+	}
+
+	/**
+	 * Adds a stereo buffer to the overview. This is called automatically
+	 * when the overview has been added as a listener.
+	 *
+	 * @invisible
+	 */
+	public void samples( float[] sampL, float[] sampR )
+	{
+		float[][] channels = new float[channelCount][];
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			channels[c] = c == 0 ? sampL : sampR;
+		}
+		add( channels, 0, sampL.length );
+	}
+
+	/**
+	 * Includes the samples left over after the last complete block, and
+	 * stops any more audio from being added.
+	 */
+	public synchronized void finish()
+	{
+		if ( finished )
+		{
+			return;
+		}
+		if ( currentFrames > 0 )
+		{
+			// the last block is short, so its mean square is over fewer samples
+			final int frames = currentFrames;
+			for ( int c = 0; c < channelCount; ++c )
+			{
+				currentSquares[c] *= (double)blockSize / frames;
+			}
+			completeBlock();
+		}
+		// carry the blocks left over at the end of each level up to the next,
+		// so that every level covers all of the audio
+		for ( int level = 0; level < levelCount; ++level )
+		{
+			final int blocks = blockCounts[level];
+			final int needed = ( blocks + 1 ) / 2;
+			final int have = level + 1 < levelCount ? blockCounts[level + 1] : 0;
+			if ( blocks > 1 && have < needed )
+			{
+				mergeInto( level + 1, 2 * ( needed - 1 ), blocks % 2 == 1 );
+			}
+		}
+		finished = true;
+	}
+
+	// moves the first level's current block into the first level
+	// and merges every pair of blocks that it completes above it
+	private void completeBlock()
+	{
+		final int block = blockCounts[0];
+		final float[] level = ensureRoom( 0, block );
+		int i = block * 3 * channelCount;
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			level[i++] = currentMin[c];
+			level[i++] = currentMax[c];
+			level[i++] = (float)( currentSquares[c] / blockSize );
+		}
+		blockCounts[0] = block + 1;
+		resetCurrent();
+
+		int l = 0;
+		while ( blockCounts[l] % 2 == 0 )
+		{
+			mergeInto( l + 1, blockCounts[l] - 2, false );
+			++l;
+		}
+	}
+
+	// merges blocks first and first + 1 of level - 1 into a block of level.
+	// when alone is true only block first exists, and is copied up by itself.
+	private void mergeInto( int level, int first, boolean alone )
+	{
+		if ( level == levelCount )
+		{
+			addLevel();
+		}
+		final int block = first / 2;
+		final float[] below = levels[level - 1];
+		final float[] above = ensureRoom( level, block );
+		// only the last block can be short, and then only once finished,
+		// so the mean squares are weighted by how many samples each covers
+		final float weightA = framesIn( level - 1, first );
+		final float weightB = alone ? 0 : framesIn( level - 1, first + 1 );
+		int a = first * 3 * channelCount;
+		int b = a + 3 * channelCount;
+		int i = block * 3 * channelCount;
+		for ( int c = 0; c < channelCount; ++c, a += 3, b += 3, i += 3 )
+		{
+			if ( alone )
+			{
+				above[i] = below[a];
+				above[i + 1] = below[a + 1];
+				above[i + 2] = below[a + 2];
+			}
+			else
+			{
+				above[i] = Math.min( below[a], below[b] );
+				above[i + 1] = Math.max( below[a + 1], below[b + 1] );
+				above[i + 2] = ( below[a + 2] * weightA + below[b + 2] * weightB ) / ( weightA + weightB );
+			}
+		}
+		blockCounts[level] = Math.max( blockCounts[level], block + 1 );
+	}
+
+	// how many sample frames a block of a level covers
+	private long framesIn( int level, int block )
+	{
+		final long size = (long)blockSize << level;
+		final long left = frameCount - block * size;
+		return left < size ? Math.max( left, 1 ) : size;
+	}
+
+	private void addLevel()
+	{
+		float[][] newLevels = new float[levelCount + 1][];
+		System.arraycopy( levels, 0, newLevels, 0, levelCount );
+		newLevels[levelCount] = new float[3 * channelCount * 64];
+		levels = newLevels;
+		int[] newCounts = new int[levelCount + 1];
+		System.arraycopy( blockCounts, 0, newCounts, 0, levelCount );
+		blockCounts = newCounts;
+		++levelCount;
+	}
+
+	// returns the array of a level, grown if needed to hold the block
+	private float[] ensureRoom( int level, int block )
+	{
+		float[] values = levels[level];
+		final int needed = ( block + 1 ) * 3 * channelCount;
+		if ( needed > values.length )
+		{
+			float[] grown = new float[Math.max( needed, values.length * 2 )];
+			System.arraycopy( values, 0, grown, 0, values.length );
+			levels[level] = values = grown;
+		}
+		return values;
+	}
+
+	private void resetCurrent()
+	{
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			currentMin[c] = Float.MAX_VALUE;
+			currentMax[c] = -Float.MAX_VALUE;
+			currentSquares[c] = 0;
+		}
+		currentFrames = 0;
+	}
+
+	/**
+	 * Fills <code>min</code>, <code>max</code>, and <code>rms</code> with the
+	 * waveform of one channel between two sample frames, one entry per pixel
+	 * for as many pixels as <code>min</code> is long. This takes the same
+	 * time for any range, because each pixel reads only a couple of blocks
+	 * of the level that has about one block per pixel. When zoomed in past
+	 * one block per pixel, pixels show the smallest block they are in.
+	 * Pixels past the end of the audio are zero. <code>max</code> and
+	 * <code>rms</code> may be null if you don't need them.
+	 *
+	 * @param channel
+	 * 			which channel
+	 * @param startFrame
+	 * 			the sample frame at the left edge
+	 * @param endFrame
+	 * 			the sample frame at the right edge
+	 * @param min
+	 * 			where to put the minimum of each pixel
+	 * @param max
+	 * 			where to put the maximum of each pixel
+	 * @param rms
+	 * 			where to put the RMS level of each pixel
+	 */
+	public synchronized void getWaveform( int channel, long startFrame, long endFrame, float[] min, float[] max, float[] rms )
+	{
+		final int pixels = min.length;
+		final double framesPerPixel = (double)( endFrame - startFrame ) / pixels;
+		// the coarsest level with no more than one block per pixel
+		int level = 0;
+		while ( level + 1 < levelCount && ( (long)blockSize << ( level + 1 ) ) <= framesPerPixel )
+		{
+			++level;
+		}
+		final long levelBlockSize = (long)blockSize << level;
+		final float[] values = levels[level];
+		final int blocks = blockCounts[level];
+
+		for ( int p = 0; p < pixels; ++p )
+		{
+			final long from = startFrame + (long)( p * framesPerPixel );
+			final long to = Math.max( from + 1, startFrame + (long)( ( p + 1 ) * framesPerPixel ) );
+			final long firstBlock = Math.max( 0, from / levelBlockSize );
+			final long lastBlock = Math.min( blocks, ( to + levelBlockSize - 1 ) / levelBlockSize );
+			float lo = Float.MAX_VALUE;
+			float hi = -Float.MAX_VALUE;
+			// the last block can be short, so the mean squares are weighted
+			// by how many samples each covers, the same as when merging.
+			double squares = 0;
+			long frames = 0;
+			for ( long b = firstBlock; b < lastBlock; ++b )
+			{
+				final int i = ( (int)b * channelCount + channel ) * 3;
+				final long weight = framesIn( level, (int)b );
+				lo = Math.min( lo, values[i] );
+				hi = Math.max( hi, values[i + 1] );
+				squares += (double)values[i + 2] * weight;
+				frames += weight;
+			}
+			if ( frames == 0 )
+			{
+				min[p] = 0;
+				if ( max != null ) max[p] = 0;
+				if ( rms != null ) rms[p] = 0;
+			}
+			else
+			{
+				min[p] = lo;
+				if ( max != null ) max[p] = hi;
+				if ( rms != null ) rms[p] = (float)Math.sqrt( squares / frames );
+			}
+		}
+	}
+
+	/**
+	 * Writes the overview to a stream, which is left open. Only the smallest
+	 * blocks are written, because the rest can be rebuilt from them quickly.
+	 *
+	 * @param out
+	 * 			where to write the overview
+	 * @throws IOException
+	 * 			if writing fails
+	 */
+	public synchronized void save( OutputStream out ) throws IOException
+	{
+		DataOutputStream data = new DataOutputStream( new BufferedOutputStream( out ) );
+		data.writeInt( MAGIC );
+		data.writeInt( VERSION );
+		data.writeInt( channelCount );
+		data.writeFloat( sampleRate );
+		data.writeInt( blockSize );
+		data.writeLong( frameCount );
+		data.writeInt( blockCounts[0] );
+		final float[] values = levels[0];
+		for ( int i = 0, end = blockCounts[0] * 3 * channelCount; i < end; ++i )
+		{
+			data.writeFloat( values[i] );
+		}
+		data.flush();
+	}
+
+	/**
+	 * Writes the overview to a file.
+	 *
+	 * @param filename
+	 * 			the full path of the file to write
+	 * @return true if the file was written
+	 */
+	public boolean save( String filename )
+	{
+		try
+		{
+			OutputStream out = new FileOutputStream( filename );
+			try
+			{
+				save( out );
+			}
+			finally
+			{
+				out.close();
+			}
+			return true;
+		}
+		catch ( IOException e )
+		{
+			Minim.error( "WaveformOverview: couldn't save " + filename + ": " + e.getMessage() );
+			return false;
+		}
+	}
+
+	/**
+	 * Reads an overview that was written with <code>save</code>.
+	 *
+	 * @param in
+	 * 			where to read the overview from
+	 * @return the overview, which is finished
+	 * @throws IOException
+	 * 			if reading fails or the stream doesn't hold an overview
+	 */
+	public static WaveformOverview load( InputStream in ) throws IOException
+	{
+		DataInputStream data = new DataInputStream( new BufferedInputStream( in ) );
+		if ( data.readInt() != MAGIC || data.readInt() != VERSION )
+		{
+			throw new IOException( "not a waveform overview" );
+		}
+		final int channelCount = data.readInt();
+		final float sampleRate = data.readFloat();
+		final int blockSize = data.readInt();
+		final long frameCount = data.readLong();
+		final int blocks = data.readInt();
+		if ( channelCount < 1 || blockSize < 1 || blocks < 0 )
+		{
+			throw new IOException( "not a waveform overview" );
+		}
+
+		WaveformOverview overview = new WaveformOverview( channelCount, sampleRate, blockSize );
+		synchronized( overview )
+		{
+			overview.frameCount = frameCount;
+			for ( int b = 0; b < blocks; ++b )
+			{
+				for ( int c = 0; c < channelCount; ++c )
+				{
+					overview.currentMin[c] = data.readFloat();
+					overview.currentMax[c] = data.readFloat();
+					overview.currentSquares[c] = (double)data.readFloat() * blockSize;
+				}
+				overview.completeBlock();
+			}
+			overview.finish();
+		}
+		return overview;
+	}
+
+	/**
+	 * Reads an overview from a file that was written with <code>save</code>.
+	 *
+	 * @param filename
+	 * 			the full path of the file to read
+	 * @return the overview, or null if the file doesn't exist or doesn't
+	 * 		   hold an overview
+	 */
+	public static WaveformOverview load( String filename )
+	{
+		try
+		{
+			InputStream in = new FileInputStream( filename );
+			try
+			{
+				return load( in );
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch ( IOException e )
+		{
+			Minim.debug( "WaveformOverview: couldn't load " + filename + ": " + e.getMessage() );
+			return null;
+		}
+	}
+}
@@ -39,6 +39,11 @@ public class BartlettHannWindow extends WindowFunction
     return (float) (0.62 - 0.48 * Math.abs(index / (length - 1) - 0.5) - 0.38 * Math.cos(TWO_PI * index / (length - 1)));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Bartlett-Hann Window";
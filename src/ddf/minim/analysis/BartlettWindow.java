@@ -39,6 +39,11 @@ public class BartlettWindow extends WindowFunction
       return 2f / (length - 1) * ((length - 1) / 2f - Math.abs(index - (length - 1) / 2f));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Bartlett Window";
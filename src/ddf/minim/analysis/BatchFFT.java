@@ -0,0 +1,542 @@
+package ddf.minim.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import ddf.minim.AudioBuffer;
+import ddf.minim.Minim;
+import ddf.minim.MultiChannelBuffer;
+
+/**
+ * A BatchFFT analyzes every channel of multi-channel audio at once. It uses
+ * one FFTPlan, shared with every FFT of the same size, for all of the
+ * channels, and transforms two channels at a time by putting one in the
+ * real part and the other in the imaginary part of a single complex
+ * transform, which costs about half as much as transforming them one at a
+ * time.
+ * <p>
+ * The spectra of all of the channels are kept in one
+ * <code>float[channels][bands]</code> array, which is returned by
+ * <code>getSpectrum()</code> and filled in place by every call to
+ * <code>forward</code>, so you can hold on to it. As with FFT,
+ * <code>timeSize</code> can be any length of at least one, but a power of
+ * two is the fastest.
+ * <p>
+ * For large transforms of many channels, <code>parallel(true)</code> splits
+ * the channels between all of the processor cores. For small transforms
+ * this is slower than doing them on one core, because handing the work to
+ * other threads costs more than the work, so a BatchFFT only does it when
+ * <code>timeSize</code> is at least <code>PARALLEL_SIZE</code>.
+ *
+ * @related FFT
+ * @related FFTPlan
+ * @related MultiChannelBuffer
+ */
+public class BatchFFT
+{
+  /**
+   * The smallest <code>timeSize</code> that is transformed in parallel
+   * when parallel transforms have been turned on.
+   *
+   * @related BatchFFT
+   */
+  public static final int PARALLEL_SIZE = 4096;
+
+  private static ExecutorService executor;
+
+  private final int timeSize;
+  private final float sampleRate;
+  private final int channelCount;
+  private float[] windowCurve;
+  private boolean parallel;
+
+  // shared by every channel, and safe to use from many threads at once
+  private final FFTPlan plan;
+
+  // per pair of channels: the complex input, which is replaced by its transform
+  private final float[][] inputReal;
+  private final float[][] inputImag;
+
+  private final float[][] spectrum;
+  private final float[][] spectrumReal;
+  private final float[][] spectrumImag;
+
+  private final List<Callable<Object>> tasks;
+  // the tasks handed to the executor by the transform in progress
+  private final List<Future<Object>> submitted;
+
+  /**
+   * Constructs a BatchFFT that will analyze <code>channelCount</code>
+   * channels of <code>timeSize</code> samples recorded with a sample rate
+   * of <code>sampleRate</code>.
+   *
+   * @param timeSize
+   *          int: the length of the sample buffers you will be analyzing
+   * @param sampleRate
+   *          float: the sample rate of the audio you will be analyzing
+   * @param channelCount
+   *          int: how many channels you will be analyzing
+   */
+  public BatchFFT(int timeSize, float sampleRate, int channelCount)
+  {
+    if (timeSize < 1)
+    {
+      throw new IllegalArgumentException("BatchFFT: timeSize must be at least one.");
+    }
+    if (channelCount < 1)
+    {
+      throw new IllegalArgumentException("BatchFFT: channelCount must be at least one.");
+    }
+    this.timeSize = timeSize;
+    this.sampleRate = sampleRate;
+    this.channelCount = channelCount;
+
+    plan = FFTPlan.forSize(timeSize);
+
+    int pairs = (channelCount + 1) / 2;
+    inputReal = new float[pairs][timeSize];
+    inputImag = new float[pairs][timeSize];
+
+    int bands = timeSize / 2 + 1;
+    spectrum = new float[channelCount][bands];
+    spectrumReal = new float[channelCount][bands];
+    spectrumImag = new float[channelCount][bands];
+
+    tasks = new ArrayList<Callable<Object>>(pairs);
+    submitted = new ArrayList<Future<Object>>(pairs);
+    for (int p = 0; p < pairs; ++p)
+    {
+      final int pair = p;
+      tasks.add(new Callable<Object>()
+      {
+        public Object call()
+        {
+          transform(pair);
+          return null;
+        }
+      });
+    }
+  }
+
+  /**
+   * Sets the window to use on the samples before taking the forward
+   * transform. The samples you pass in are not changed.
+   *
+   * @param windowFunction
+   *          WindowFunction: the window to use
+   *
+   * @related BatchFFT
+   * @related WindowFunction
+   */
+  public void window(WindowFunction windowFunction)
+  {
+    windowCurve = windowFunction instanceof RectangularWindow ? null : windowFunction.generateCurve(timeSize);
+  }
+
+  /**
+   * Turns transforming channels in parallel on or off. It is off by default.
+   * If the thread asking for a transform is interrupted while it waits for
+   * the others, that transform is abandoned, leaving the spectra incomplete,
+   * and the thread is left interrupted.
+   *
+   * @param parallel
+   *          boolean: whether to use all of the processor cores
+   *
+   * @related BatchFFT
+   */
+  public void parallel(boolean parallel)
+  {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Returns whether channels may be transformed in parallel.
+   *
+   * @related BatchFFT
+   */
+  public boolean isParallel()
+  {
+    return parallel;
+  }
+
+  /**
+   * Returns the length of the sample buffers this analyzes.
+   *
+   * @related BatchFFT
+   */
+  public int timeSize()
+  {
+    return timeSize;
+  }
+
+  /**
+   * Returns the number of bands in the spectrum of each channel,
+   * which is <code>timeSize() / 2 + 1</code>.
+   *
+   * @related BatchFFT
+   */
+  public int specSize()
+  {
+    return spectrum[0].length;
+  }
+
+  /**
+   * Returns how many channels this analyzes.
+   *
+   * @related BatchFFT
+   */
+  public int getChannelCount()
+  {
+    return channelCount;
+  }
+
+  /**
+   * Returns the width of each frequency band in Hz.
+   *
+   * @related BatchFFT
+   */
+  public float getBandWidth()
+  {
+    return sampleRate / timeSize;
+  }
+
+  /**
+   * Returns the center frequency of a band, in Hz.
+   *
+   * @param i
+   *          int: the index of the band
+   * @return float: the frequency in Hz
+   *
+   * @related BatchFFT
+   */
+  public float indexToFreq(int i)
+  {
+    return i * sampleRate / timeSize;
+  }
+
+  /**
+   * Returns the index of the band that contains a frequency.
+   *
+   * @param freq
+   *          float: the frequency in Hz
+   * @return int: the index of the band
+   *
+   * @related BatchFFT
+   */
+  public int freqToIndex(float freq)
+  {
+    int i = Math.round(freq / sampleRate * timeSize);
+    return Math.max(0, Math.min(specSize() - 1, i));
+  }
+
+  /**
+   * Returns the amplitude of one band of one channel.
+   *
+   * @param channel
+   *          int: the channel
+   * @param i
+   *          int: the index of the band
+   * @return float: the amplitude
+   *
+   * @related BatchFFT
+   */
+  public float getBand(int channel, int i)
+  {
+    return spectrum[channel][i];
+  }
+
+  /**
+   * Returns the amplitudes of every channel, indexed by channel and then
+   * by band. The array is filled in again by every forward transform.
+   *
+   * @return float[][]: the spectra of every channel
+   *
+   * @related BatchFFT
+   */
+  public float[][] getSpectrum()
+  {
+    return spectrum;
+  }
+
+  /**
+   * Returns the real parts of the spectra of every channel, laid
+   * out the same as <code>getSpectrum()</code>.
+   *
+   * @related BatchFFT
+   */
+  public float[][] getSpectrumReal()
+  {
+    return spectrumReal;
+  }
+
+  /**
+   * Returns the imaginary parts of the spectra of every channel,
+   * laid out the same as <code>getSpectrum()</code>.
+   *
+   * @related BatchFFT
+   */
+  public float[][] getSpectrumImaginary()
+  {
+    return spectrumImag;
+  }
+
+  /**
+   * Analyzes the first <code>timeSize()</code> samples of every channel of
+   * a MultiChannelBuffer, which must have at least as many channels as
+   * this analyzes.
+   *
+   * @param buffer
+   *          MultiChannelBuffer: the audio to analyze
+   *
+   * @related BatchFFT
+   */
+  public void forward(MultiChannelBuffer buffer)
+  {
+    if (buffer.getChannelCount() < channelCount || buffer.getBufferSize() < timeSize)
+    {
+      Minim.error("BatchFFT.forward: the buffer must have getChannelCount() channels of at least timeSize() samples.");
+      return;
+    }
+    for (int c = 0; c < channelCount; ++c)
+    {
+      load(c, buffer.getChannel(c), 0);
+    }
+    transformAll();
+  }
+
+  /**
+   * Analyzes an array of AudioBuffers, such as the left and right buffers
+   * of an AudioPlayer, one per channel.
+   *
+   * @param buffers
+   *          AudioBuffer[]: the audio to analyze, one buffer per channel
+   *
+   * @related BatchFFT
+   */
+  public void forward(AudioBuffer[] buffers)
+  {
+    if (buffers.length < channelCount)
+    {
+      Minim.error("BatchFFT.forward: there must be a buffer for each of the getChannelCount() channels.");
+      return;
+    }
+    for (int c = 0; c < channelCount; ++c)
+    {
+      if (buffers[c].size() < timeSize)
+      {
+        Minim.error("BatchFFT.forward: every buffer must have at least timeSize() samples.");
+        return;
+      }
+    }
+    for (int c = 0; c < channelCount; ++c)
+    {
+      AudioBuffer buffer = buffers[c];
+      float[] re = inputReal[c / 2];
+      float[] im = inputImag[c / 2];
+      float[] target = (c & 1) == 0 ? re : im;
+      for (int i = 0; i < timeSize; ++i)
+      {
+        target[i] = buffer.get(i);
+      }
+      finishLoad(c);
+    }
+    transformAll();
+  }
+
+  /**
+   * Analyzes an array of sample buffers, one per channel.
+   *
+   * @param channels
+   *          float[][]: the audio to analyze, one array per channel
+   *
+   * @related BatchFFT
+   */
+  public void forward(float[][] channels)
+  {
+    forward(channels, 0);
+  }
+
+  /**
+   * Analyzes an array of sample buffers, one per channel, starting at
+   * <code>startAt</code> in each of them.
+   *
+   * @param channels
+   *          float[][]: the audio to analyze, one array per channel
+   * @param startAt
+   *          int: the index to start at in each buffer. there must be at least timeSize() samples
+   *          between the starting index and the end of every buffer.
+   *
+   * @related BatchFFT
+   */
+  public void forward(float[][] channels, int startAt)
+  {
+    if (channels.length < channelCount)
+    {
+      Minim.error("BatchFFT.forward: there must be a buffer for each of the getChannelCount() channels.");
+      return;
+    }
+    for (int c = 0; c < channelCount; ++c)
+    {
+      if (channels[c].length - startAt < timeSize)
+      {
+        Minim.error("BatchFFT.forward: not enough samples in every buffer between " + startAt
+            + " and its end to perform a transform.");
+        return;
+      }
+    }
+    for (int c = 0; c < channelCount; ++c)
+    {
+      load(c, channels[c], startAt);
+    }
+    transformAll();
+  }
+
+  // copies a channel into the real part, for even channels, or the
+  // imaginary part, for odd channels, of its pair's input.
+  private void load(int channel, float[] samples, int offset)
+  {
+    float[] target = (channel & 1) == 0 ? inputReal[channel / 2] : inputImag[channel / 2];
+    System.arraycopy(samples, offset, target, 0, timeSize);
+    finishLoad(channel);
+  }
+
+  private void finishLoad(int channel)
+  {
+    float[] target = (channel & 1) == 0 ? inputReal[channel / 2] : inputImag[channel / 2];
+    if (windowCurve != null)
+    {
+      for (int i = 0; i < timeSize; ++i)
+      {
+        target[i] *= windowCurve[i];
+      }
+    }
+    // an odd channel count leaves the last pair with nothing imaginary
+    if (channel == channelCount - 1 && (channel & 1) == 0)
+    {
+      float[] im = inputImag[channel / 2];
+      for (int i = 0; i < timeSize; ++i)
+      {
+        im[i] = 0;
+      }
+    }
+  }
+
+  private void transformAll()
+  {
+    submitted.clear();
+    if (parallel && tasks.size() > 1 && timeSize >= PARALLEL_SIZE)
+    {
+      ExecutorService pool = executor();
+      try
+      {
+        for (int p = 0; p < tasks.size(); ++p)
+        {
+          submitted.add(pool.submit(tasks.get(p)));
+        }
+      }
+      catch (RejectedExecutionException e)
+      {
+        Minim.error("BatchFFT: couldn't transform in parallel: " + e.getMessage());
+      }
+    }
+    // whatever the executor didn't take is transformed on this thread,
+    // which is everything when we aren't transforming in parallel.
+    for (int p = submitted.size(); p < tasks.size(); ++p)
+    {
+      transform(p);
+    }
+    try
+    {
+      for (int i = 0; i < submitted.size(); ++i)
+      {
+        submitted.get(i).get();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // the tasks may still be running, so redoing them here could have two
+      // threads writing the same arrays. we give up on this transform.
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e)
+    {
+      Minim.error("BatchFFT: a parallel transform failed: " + e.getCause());
+    }
+    submitted.clear();
+  }
+
+  private static synchronized ExecutorService executor()
+  {
+    if (executor == null)
+    {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+      {
+        public Thread newThread(Runnable r)
+        {
+          Thread thread = new Thread(r, "BatchFFT");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  // transforms one pair of channels and separates their spectra
+  private void transform(int pair)
+  {
+    final float[] re = inputReal[pair];
+    final float[] im = inputImag[pair];
+    plan.forward(re, im, re, im);
+
+    // the transform of the real channel is the conjugate symmetric part
+    // of the result, and the transform of the imaginary channel is the
+    // conjugate antisymmetric part, divided by i.
+    final int first = 2 * pair;
+    final float[] aReal = spectrumReal[first];
+    final float[] aImag = spectrumImag[first];
+    final float[] aSpectrum = spectrum[first];
+    final boolean hasSecond = first + 1 < channelCount;
+    final int bands = aSpectrum.length;
+    if (hasSecond)
+    {
+      final float[] bReal = spectrumReal[first + 1];
+      final float[] bImag = spectrumImag[first + 1];
+      final float[] bSpectrum = spectrum[first + 1];
+      for (int k = 0; k < bands; ++k)
+      {
+        final int mirror = k == 0 ? 0 : timeSize - k;
+        final float zr = re[k];
+        final float zi = im[k];
+        final float wr = re[mirror];
+        final float wi = im[mirror];
+        final float ar = (zr + wr) * 0.5f;
+        final float ai = (zi - wi) * 0.5f;
+        final float br = (zi + wi) * 0.5f;
+        final float bi = (wr - zr) * 0.5f;
+        aReal[k] = ar;
+        aImag[k] = ai;
+        aSpectrum[k] = (float)Math.sqrt(ar * ar + ai * ai);
+        bReal[k] = br;
+        bImag[k] = bi;
+        bSpectrum[k] = (float)Math.sqrt(br * br + bi * bi);
+      }
+    }
+    else
+    {
+      for (int k = 0; k < bands; ++k)
+      {
+        aReal[k] = re[k];
+        aImag[k] = im[k];
+        aSpectrum[k] = (float)Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+      }
+    }
+  }
+}
@@ -108,6 +108,9 @@ public class BeatDetect
 	private long[]				fTimer;
 	private float[]			varGraph;
 	private int					varCnt;
+	// for measuring the sensitivity in the time of the audio
+	private boolean			useAudioTime;
+	private long				samplesDetected;
 
 	/**
 	 * Create a BeatDetect object that is in SOUND_ENERGY mode.
@@ -198,7 +201,7 @@ public class BeatDetect
 		isOnset = false;
 		eBuffer = new float[sampleRate / timeSize];
 		dBuffer = new float[sampleRate / timeSize];
-		timer = System.currentTimeMillis();
+		timer = now();
 		insertAt = 0;
 	}
 
@@ -211,7 +214,7 @@ public class BeatDetect
 		feBuffer = new float[numAvg][sampleRate / timeSize];
 		fdBuffer = new float[numAvg][sampleRate / timeSize];
 		fTimer = new long[numAvg];
-		long start = System.currentTimeMillis();
+		long start = now();
 		for (int i = 0; i < fTimer.length; i++)
 		{
 			fTimer[i] = start;
@@ -273,6 +276,44 @@ public class BeatDetect
 			fEnergy(buffer);
 			break;
 		}
+		samplesDetected += buffer.length;
+	}
+	
+	/**
+	 * Sets whether the sensitivity is measured in the time of the audio that
+	 * has been analyzed, counted from the number of samples passed to
+	 * <code>detect()</code>, rather than the time on the clock. Use this when
+	 * analyzing audio faster or slower than it plays, like when analyzing a
+	 * file offline, where hundreds of buffers go by in a millisecond of clock
+	 * time. The default is to use the clock.
+	 * 
+	 * @param useAudioTime
+	 *           boolean: true to measure time in samples analyzed
+	 *           
+	 * @related BeatDetect
+	 */
+	public void useAudioTime(boolean useAudioTime)
+	{
+		this.useAudioTime = useAudioTime;
+		// start the timers over in the new time
+		timer = now();
+		if (fTimer != null)
+		{
+			for (int i = 0; i < fTimer.length; i++)
+			{
+				fTimer[i] = timer;
+			}
+		}
+	}
+	
+	// the current time in milliseconds, by the clock or by the audio
+	private long now()
+	{
+		if (useAudioTime)
+		{
+			return samplesDetected * 1000 / sampleRate;
+		}
+		return System.currentTimeMillis();
 	}
 	
 	/**
@@ -556,7 +597,7 @@ public class BeatDetect
 		pushVar(diff2);
 		// report false if it's been less than 'sensitivity'
 		// milliseconds since the last true value
-		if (System.currentTimeMillis() - timer < sensitivity)
+		if (now() - timer < sensitivity)
 		{
 			isOnset = false;
 		}
@@ -565,7 +606,7 @@ public class BeatDetect
 		else if (diff2 > 0 && instant > 2)
 		{
 			isOnset = true;
-			timer = System.currentTimeMillis();
+			timer = now();
 		}
 		// OMG it wasn't true!
 		else
@@ -592,14 +633,14 @@ public class BeatDetect
 			diff = (float)Math.max(instant - C * E, 0);
 			dAvg = specAverage(fdBuffer[i]);
 			diff2 = (float)Math.max(diff - dAvg, 0);
-			if (System.currentTimeMillis() - fTimer[i] < sensitivity)
+			if (now() - fTimer[i] < sensitivity)
 			{
 				fIsOnset[i] = false;
 			}
 			else if (diff2 > 0)
 			{
 				fIsOnset[i] = true;
-				fTimer[i] = System.currentTimeMillis();
+				fTimer[i] = now();
 			}
 			else
 			{
@@ -52,6 +52,11 @@ public class BlackmanWindow extends WindowFunction
       return a0 - a1 * (float) Math.cos(TWO_PI * index / (length - 1)) + a2 * (float) Math.cos(4 * Math.PI * index / (length - 1));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName() + " " + alpha;
+  }
+  
   public String toString()
   {
 	  return "Blackman Window";
@@ -0,0 +1,115 @@
+package ddf.minim.analysis;
+
+/**
+ * A Chroma folds the spectrum into the twelve pitch classes of the equal
+ * tempered scale, C, C#, D, and so on up to B, by adding up the energy of
+ * every band whose frequency is closest to a note of that class, in any
+ * octave. The result shows which notes are sounding regardless of octave,
+ * which is what you want for recognizing chords and keys. The values are
+ * scaled so that the largest is one, unless the spectrum is silent, in
+ * which case they are all zero.
+ * <p>
+ * Only bands between a lowest and highest frequency are used, 55 Hz to
+ * 5000 Hz unless you ask for something else, because below that an FFT
+ * usually can't tell neighboring notes apart and above it there is mostly
+ * noise and overtones.
+ * 
+ * @related SpectralFeature
+ * @related ConstantQ
+ */
+public class Chroma extends SpectralFeature
+{
+  /**
+   * The index of the pitch class C. The others follow in order.
+   * 
+   * @related Chroma
+   */
+  public static final int C = 0;
+
+  private final float minFreq;
+  private final float maxFreq;
+  private final float tuning;
+
+  // the pitch class of each band, or -1 for bands that aren't used
+  private int[] pitchClass;
+
+  /**
+   * Constructs a Chroma that uses bands from 55 Hz to 5000 Hz, tuned to
+   * A = 440 Hz.
+   */
+  public Chroma()
+  {
+    this(55, 5000, 440);
+  }
+
+  /**
+   * Constructs a Chroma that uses bands from <code>minFreq</code> to
+   * <code>maxFreq</code>, tuned so that the A above middle C is
+   * <code>tuning</code> Hz.
+   * 
+   * @param minFreq
+   *          float: the lowest frequency used, in Hz
+   * @param maxFreq
+   *          float: the highest frequency used, in Hz
+   * @param tuning
+   *          float: the frequency of A4, in Hz
+   */
+  public Chroma(float minFreq, float maxFreq, float tuning)
+  {
+    super(12);
+    if (minFreq <= 0 || maxFreq < minFreq || tuning <= 0)
+    {
+      throw new IllegalArgumentException("Chroma: the frequencies must satisfy 0 < minFreq <= maxFreq and tuning > 0.");
+    }
+    this.minFreq = minFreq;
+    this.maxFreq = maxFreq;
+    this.tuning = tuning;
+  }
+
+  protected void prepare(int bands, float bandWidth)
+  {
+    pitchClass = new int[bands];
+    for (int i = 0; i < bands; ++i)
+    {
+      final float freq = i * bandWidth;
+      if (freq < minFreq || freq > maxFreq)
+      {
+        pitchClass[i] = -1;
+      }
+      else
+      {
+        // semitones from A, and A is 9 semitones above C
+        int semitones = (int)Math.round(12 * Math.log(freq / tuning) / Math.log(2)) + 9;
+        pitchClass[i] = ((semitones % 12) + 12) % 12;
+      }
+    }
+  }
+
+  protected void compute(float[] spectrum, float bandWidth)
+  {
+    for (int c = 0; c < 12; ++c)
+    {
+      values[c] = 0;
+    }
+    for (int i = 0; i < spectrum.length; ++i)
+    {
+      final int c = pitchClass[i];
+      if (c >= 0)
+      {
+        values[c] += spectrum[i] * spectrum[i];
+      }
+    }
+    float largest = 0;
+    for (int c = 0; c < 12; ++c)
+    {
+      largest = Math.max(largest, values[c]);
+    }
+    if (largest > 0)
+    {
+      for (int c = 0; c < 12; ++c)
+      {
+        values[c] /= largest;
+      }
+    }
+  }
+}
@@ -0,0 +1,375 @@
+package ddf.minim.analysis;
+
+import ddf.minim.AudioListener;
+import ddf.minim.HalfBandFilter;
+
+/**
+ * A ConstantQ analyzes audio into frequency bands that are spaced evenly on
+ * a musical scale, a fixed number of bands per octave, with each band as
+ * wide as the spacing between bands. With 12 bands per octave, every band
+ * is a semitone, from the lowest octave to the highest. An FFT has bands
+ * that are all the same width in Hz, so getting semitone resolution in the
+ * bass from an FFT means using a very large one, which then spends most of
+ * its bands on the top octaves, where a few would do.
+ * <p>
+ * Only the top octave is analyzed at the full sample rate. The audio is then
+ * filtered and downsampled by two for each octave below it, which halves the
+ * frequencies of the bands the next octave needs so that the same analysis
+ * can be used again. Each octave is a small FFT of the most recent audio at
+ * its own sample rate, multiplied with a sparse kernel that picks out the
+ * bands. Because of this the ConstantQ needs to see the audio as one
+ * continuous stream: either add it as a listener to an AudioPlayer,
+ * AudioInput, or AudioOutput, in which case it updates every time a buffer
+ * of audio goes by, or call <code>forward</code> with consecutive buffers.
+ * <p>
+ * The lowest octave looks at the most audio, as it must to be able to tell
+ * semitones apart, so it reacts more slowly than the higher octaves. The
+ * filters used for downsampling also delay each octave a little more than
+ * the one above it.
+ *
+ * @related FFT
+ * @related AudioListener
+ */
+public class ConstantQ implements AudioListener
+{
+  // spectral kernel values smaller than this, relative to the largest, are dropped
+  private static final float SPARSITY = 0.0054f;
+
+  private final float sampleRate;
+  private final int binsPerOctave;
+  private final float q;
+  private final float[] frequencies;
+  private final float[] spectrum;
+
+  // every octave uses the same sparse kernel, which has a row for each
+  // band of the top octave, highest first, stored as the FFT bands that
+  // are used and the conjugate of the kernel's value at each of them.
+  private final int frameSize;
+  private final int[] kernelStart;
+  private final int[] kernelBand;
+  private final float[] kernelReal;
+  private final float[] kernelImag;
+  private final MixedRadixFFT fft;
+  private final float[] fftReal;
+  private final float[] fftImag;
+
+  // the most recent frameSize samples of each octave, written twice so
+  // that a frame can be read without wrapping, and the downsampling
+  // filter that feeds each octave from the one above it.
+  private final float[][] octaves;
+  private final int[] octaveIndex;
+  // half-band lowpass filters that output every other sample. the octave
+  // below only holds bands up to half of its Nyquist frequency, so the
+  // filters have plenty of room for their transition.
+  private static final float[] DECIMATOR_TAPS = HalfBandFilter.design(8);
+  private final HalfBandFilter[] decimators;
+
+  /**
+   * Constructs a ConstantQ with 12 bands per octave.
+   *
+   * @param minFreq
+   *          float: the frequency of the lowest band, in Hz
+   * @param maxFreq
+   *          float: the highest frequency a band can have, in Hz
+   * @param sampleRate
+   *          float: the sample rate of the audio that will be analyzed
+   */
+  public ConstantQ(float minFreq, float maxFreq, float sampleRate)
+  {
+    this(minFreq, maxFreq, 12, sampleRate);
+  }
+
+  /**
+   * Constructs a ConstantQ. The bands start at <code>minFreq</code> and go
+   * up by <code>binsPerOctave</code> bands per octave for as long as they
+   * stay at or below <code>maxFreq</code>, which must be less than half the
+   * sample rate.
+   *
+   * @param minFreq
+   *          float: the frequency of the lowest band, in Hz
+   * @param maxFreq
+   *          float: the highest frequency a band can have, in Hz
+   * @param binsPerOctave
+   *          int: how many bands are in each octave
+   * @param sampleRate
+   *          float: the sample rate of the audio that will be analyzed
+   */
+  public ConstantQ(float minFreq, float maxFreq, int binsPerOctave, float sampleRate)
+  {
+    if (minFreq <= 0 || maxFreq < minFreq || maxFreq >= sampleRate / 2)
+    {
+      throw new IllegalArgumentException("ConstantQ: the frequencies must satisfy 0 < minFreq <= maxFreq < sampleRate / 2.");
+    }
+    if (binsPerOctave < 1)
+    {
+      throw new IllegalArgumentException("ConstantQ: binsPerOctave must be at least one.");
+    }
+    this.sampleRate = sampleRate;
+    this.binsPerOctave = binsPerOctave;
+    q = (float)(1 / (Math.pow(2, 1.0 / binsPerOctave) - 1));
+
+    int bandCount = (int)Math.floor(binsPerOctave * Math.log(maxFreq / minFreq) / Math.log(2) + 1e-6) + 1;
+    frequencies = new float[bandCount];
+    for (int k = 0; k < bandCount; ++k)
+    {
+      frequencies[k] = (float)(minFreq * Math.pow(2, (double)k / binsPerOctave));
+    }
+    spectrum = new float[bandCount];
+
+    // the kernel is built for the top octave, the lowest band of which needs the longest frame
+    int kernelRows = Math.min(binsPerOctave, bandCount);
+    float lowestKernelFreq = frequencies[bandCount - kernelRows];
+    int size = 1;
+    while (size < Math.ceil(q * sampleRate / lowestKernelFreq))
+    {
+      size <<= 1;
+    }
+    frameSize = size;
+    fft = new MixedRadixFFT(frameSize);
+    fftReal = new float[frameSize];
+    fftImag = new float[frameSize];
+
+    kernelStart = new int[kernelRows + 1];
+    float[][] rows = new float[kernelRows][];
+    int total = 0;
+    for (int r = 0; r < kernelRows; ++r)
+    {
+      rows[r] = spectralKernel(frequencies[bandCount - 1 - r]);
+      total += rows[r].length / 3;
+    }
+    kernelBand = new int[total];
+    kernelReal = new float[total];
+    kernelImag = new float[total];
+    int at = 0;
+    for (int r = 0; r < kernelRows; ++r)
+    {
+      kernelStart[r] = at;
+      float[] row = rows[r];
+      for (int i = 0; i < row.length; i += 3)
+      {
+        kernelBand[at] = (int)row[i];
+        kernelReal[at] = row[i + 1];
+        kernelImag[at] = row[i + 2];
+        ++at;
+      }
+    }
+    kernelStart[kernelRows] = at;
+
+    int octaveCount = (bandCount - 1) / binsPerOctave + 1;
+    octaves = new float[octaveCount][2 * frameSize];
+    octaveIndex = new int[octaveCount];
+    decimators = new HalfBandFilter[octaveCount - 1];
+    for (int o = 0; o < decimators.length; ++o)
+    {
+      decimators[o] = new HalfBandFilter(DECIMATOR_TAPS);
+    }
+  }
+
+  // returns the sparse spectral kernel for a band as triplets of FFT band,
+  // real, and imaginary parts, already conjugated and scaled so that a sine
+  // wave at the band's frequency comes out with its amplitude.
+  private float[] spectralKernel(float frequency)
+  {
+    int length = Math.min(frameSize, (int)Math.ceil(q * sampleRate / frequency));
+    float[] re = new float[frameSize];
+    float[] im = new float[frameSize];
+    double windowSum = 0;
+    for (int n = 0; n < length; ++n)
+    {
+      windowSum += 0.5 - 0.5 * Math.cos(2 * Math.PI * (n + 0.5) / length);
+    }
+    // kernels end at the end of the frame, so that every band
+    // is measured over the most recent audio.
+    int start = frameSize - length;
+    for (int n = 0; n < length; ++n)
+    {
+      double window = (0.5 - 0.5 * Math.cos(2 * Math.PI * (n + 0.5) / length)) / windowSum;
+      double phase = 2 * Math.PI * frequency * n / sampleRate;
+      re[start + n] = (float)(window * Math.cos(phase));
+      im[start + n] = (float)(window * Math.sin(phase));
+    }
+    float[] specReal = new float[frameSize];
+    float[] specImag = new float[frameSize];
+    fft.forward(re, im, 0, specReal, specImag);
+
+    float largest = 0;
+    for (int j = 0; j < frameSize; ++j)
+    {
+      largest = Math.max(largest, (float)Math.hypot(specReal[j], specImag[j]));
+    }
+    int count = 0;
+    float[] row = new float[3 * frameSize];
+    for (int j = 0; j < frameSize; ++j)
+    {
+      if (Math.hypot(specReal[j], specImag[j]) >= SPARSITY * largest)
+      {
+        // by Parseval, the sum over time equals this sum over bands divided by
+        // the frame size. the factor of two is for the negative frequency half.
+        row[count++] = j;
+        row[count++] = 2 * specReal[j] / frameSize;
+        row[count++] = -2 * specImag[j] / frameSize;
+      }
+    }
+    float[] trimmed = new float[count];
+    System.arraycopy(row, 0, trimmed, 0, count);
+    return trimmed;
+  }
+
+  /**
+   * Returns how many bands there are.
+   *
+   * @return int: the number of bands
+   *
+   * @related ConstantQ
+   */
+  public int specSize()
+  {
+    return spectrum.length;
+  }
+
+  /**
+   * Returns how many bands there are in each octave.
+   *
+   * @related ConstantQ
+   */
+  public int getBinsPerOctave()
+  {
+    return binsPerOctave;
+  }
+
+  /**
+   * Returns the ratio of each band's frequency to its width.
+   *
+   * @related ConstantQ
+   */
+  public float getQ()
+  {
+    return q;
+  }
+
+  /**
+   * Returns the center frequency of a band.
+   *
+   * @param i
+   *          int: the band, zero is the lowest
+   * @return float: the frequency in Hz
+   *
+   * @related ConstantQ
+   */
+  public float getBandFrequency(int i)
+  {
+    return frequencies[i];
+  }
+
+  /**
+   * Returns the amplitude of a band. A sine wave at the band's frequency
+   * with an amplitude of one results in a value close to one.
+   *
+   * @param i
+   *          int: the band, zero is the lowest
+   * @return float: the amplitude of the band
+   *
+   * @related ConstantQ
+   */
+  public float getBand(int i)
+  {
+    return spectrum[i];
+  }
+
+  /**
+   * Returns how many samples the lowest octave is computed over, which is how
+   * much audio it takes before the lowest bands have settled.
+   *
+   * @related ConstantQ
+   */
+  public int getLongestWindow()
+  {
+    return frameSize << (octaves.length - 1);
+  }
+
+  /**
+   * Analyzes the next buffer of audio. The buffer should follow on from the
+   * buffer passed in the previous call, and can be any length.
+   *
+   * @param buffer
+   *          float[]: the next samples of the audio being analyzed
+   *
+   * @related ConstantQ
+   */
+  public void forward(float[] buffer)
+  {
+    for (int i = 0; i < buffer.length; ++i)
+    {
+      push(0, buffer[i]);
+    }
+    analyze();
+  }
+
+  /**
+   * Analyzes the next buffer of a mono stream. This is called
+   * automatically when a ConstantQ has been added as a listener.
+   *
+   * @invisible
+   */
+  public void samples(float[] samp)
+  {
+    forward(samp);
+  }
+
+  /**
+   * Analyzes the mix of the next buffer of a stereo stream. This is called
+   * automatically when a ConstantQ has been added as a listener.
+   *
+   * @invisible
+   */
+  public void samples(float[] sampL, float[] sampR)
+  {
+    for (int i = 0; i < sampL.length; ++i)
+    {
+      push(0, (sampL[i] + sampR[i]) * 0.5f);
+    }
+    analyze();
+  }
+
+  // adds a sample to an octave, and every other sample, filtered, to the octave below
+  private void push(int octave, float sample)
+  {
+    float[] ring = octaves[octave];
+    int index = octaveIndex[octave];
+    ring[index] = sample;
+    ring[index + frameSize] = sample;
+    octaveIndex[octave] = index + 1 == frameSize ? 0 : index + 1;
+
+    if (octave < decimators.length && decimators[octave].write(sample))
+    {
+      push(octave + 1, decimators[octave].read());
+    }
+  }
+
+  private void analyze()
+  {
+    final int bandCount = spectrum.length;
+    final int rows = kernelStart.length - 1;
+    for (int o = 0; o < octaves.length; ++o)
+    {
+      fft.forward(octaves[o], null, octaveIndex[o], fftReal, fftImag);
+      for (int r = 0; r < rows; ++r)
+      {
+        int band = bandCount - 1 - r - o * binsPerOctave;
+        if (band < 0)
+        {
+          break;
+        }
+        float re = 0;
+        float im = 0;
+        for (int i = kernelStart[r]; i < kernelStart[r + 1]; ++i)
+        {
+          final int j = kernelBand[i];
+          re += fftReal[j] * kernelReal[i] - fftImag[j] * kernelImag[i];
+          im += fftReal[j] * kernelImag[i] + fftImag[j] * kernelReal[i];
+        }
+        spectrum[band] = (float)Math.sqrt(re * re + im * im);
+      }
+    }
+  }
+}
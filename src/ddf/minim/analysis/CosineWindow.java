@@ -39,6 +39,11 @@ public class CosineWindow extends WindowFunction
     return (float) (Math.cos(Math.PI * index / (length - 1) - Math.PI / 2));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Cosine Window";
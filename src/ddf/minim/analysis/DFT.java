@@ -24,7 +24,8 @@ import ddf.minim.Minim;
  * DFT stands for Discrete Fourier Transform and is the most widely used Fourier
  * Transform. You will never want to use this class due to the fact that it is a
  * brute force implementation of the DFT and as such is quite slow. Use an FFT
- * instead. This exists primarily as a way to ensure that other implementations
+ * instead, which accepts any <code>timeSize</code>, not only powers of two.
+ * This exists primarily as a way to ensure that other implementations
  * of the DFT are working properly. This implementation expects an even
  * <code>timeSize</code> and will throw and IllegalArgumentException if this
  * is not the case.
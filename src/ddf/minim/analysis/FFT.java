@@ -24,10 +24,11 @@ import ddf.minim.Minim;
  * FFT stands for Fast Fourier Transform. It is an efficient way to calculate the Complex 
  * Discrete Fourier Transform. There is not much to say about this class other than the fact 
  * that when you want to analyze the spectrum of an audio buffer you will almost always use 
- * this class. One restriction of this class is that the audio buffers you want to analyze 
- * must have a length that is a power of two. If you try to construct an FFT with a 
- * <code>timeSize</code> that is not a power of two, an IllegalArgumentException will be 
- * thrown.
+ * this class. The audio buffers you want to analyze can be any length, though a power 
+ * of two is the fastest. Other lengths are factored into transforms of length 2, 3, 4 and 5,
+ * so a length like 441 or 1764, which lines up with 10 milliseconds at 44100 Hz, is nearly as 
+ * fast, and lengths with large prime factors use Bluestein's algorithm, which is slower 
+ * but still much faster than a DFT.
  * <p>
  * A Fourier Transform is an algorithm that transforms a signal in the time
  * domain, such as a sample buffer, into a signal in the frequency domain, often
@@ -139,10 +140,20 @@ import ddf.minim.Minim;
  * <code>scale</code> functions allow you the ability to shape the spectrum
  * already stored in the object before taking the inverse transform. You might
  * use these to filter frequencies in a spectrum or modify it in some other way.
+ * <p>
+ * <b>Threads</b>
+ * <p>
+ * An FFT keeps the results of the last transform in itself, so it can only
+ * be used by one thread at a time. The tables it transforms with are kept in
+ * an FFTPlan, which is shared by every FFT of the same size and which never
+ * changes, so if you want to analyze on many threads at once, use the plan
+ * from <code>getPlan()</code> or <code>FFTPlan.forSize()</code> directly,
+ * with arrays of your own for each thread.
  * 
  * @example Basics/AnalyzeSound
  * 
  * @see FourierTransform
+ * @see FFTPlan
  * @see <a href="http://www.dspguide.com/ch12.htm">The Fast Fourier Transform</a>
  * 
  * @author Damien Di Fede
@@ -153,8 +164,8 @@ public class FFT extends FourierTransform
   /**
    * Constructs an FFT that will accept sample buffers that are
    * <code>timeSize</code> long and have been recorded with a sample rate of
-   * <code>sampleRate</code>. <code>timeSize</code> <em>must</em> be a
-   * power of two. This will throw an exception if it is not.
+   * <code>sampleRate</code>. <code>timeSize</code> can be any length of at least one,
+   * but a power of two is the fastest.
    * 
    * @param timeSize
    *          int: the length of the sample buffers you will be analyzing
@@ -164,13 +175,15 @@ public class FFT extends FourierTransform
   public FFT(int timeSize, float sampleRate)
   {
     super(timeSize, sampleRate);
-    if ((timeSize & (timeSize - 1)) != 0)
+    if (timeSize < 1)
     {
-      throw new IllegalArgumentException("FFT: timeSize must be a power of two.");
+      throw new IllegalArgumentException("FFT: timeSize must be at least one.");
     }
-    buildReverseTable();
-    buildTrigTables();
+    plan = FFTPlan.forSize(timeSize);
   }
+  
+  // does the transforms, shared with every other FFT of the same size
+  private final FFTPlan plan;
 
   protected void allocateArrays()
   {
@@ -191,7 +204,7 @@ public class FFT extends FourierTransform
     imag[i] *= s;
     spectrum[i] *= s;
     
-    if (i != 0 && i != timeSize / 2)
+    if (i != 0 && timeSize - i != i)
     {
       real[timeSize - i] = real[i];
       imag[timeSize - i] = -imag[i];
@@ -218,48 +231,13 @@ public class FFT extends FourierTransform
       real[i] *= spectrum[i];
       imag[i] *= spectrum[i];
     }
-    if (i != 0 && i != timeSize / 2)
+    if (i != 0 && timeSize - i != i)
     {
       real[timeSize - i] = real[i];
       imag[timeSize - i] = -imag[i];
     }
   }
 
-  // performs an in-place fft on the data in the real and imag arrays
-  // bit reversing is not necessary as the data will already be bit reversed
-  private void fft()
-  {
-    for (int halfSize = 1; halfSize < real.length; halfSize *= 2)
-    {
-      // float k = -(float)Math.PI/halfSize;
-      // phase shift step
-      // float phaseShiftStepR = (float)Math.cos(k);
-      // float phaseShiftStepI = (float)Math.sin(k);
-      // using lookup table
-      float phaseShiftStepR = cos(halfSize);
-      float phaseShiftStepI = sin(halfSize);
-      // current phase shift
-      float currentPhaseShiftR = 1.0f;
-      float currentPhaseShiftI = 0.0f;
-      for (int fftStep = 0; fftStep < halfSize; fftStep++)
-      {
-        for (int i = fftStep; i < real.length; i += 2 * halfSize)
-        {
-          int off = i + halfSize;
-          float tr = (currentPhaseShiftR * real[off]) - (currentPhaseShiftI * imag[off]);
-          float ti = (currentPhaseShiftR * imag[off]) + (currentPhaseShiftI * real[off]);
-          real[off] = real[i] - tr;
-          imag[off] = imag[i] - ti;
-          real[i] += tr;
-          imag[i] += ti;
-        }
-        float tmpR = currentPhaseShiftR;
-        currentPhaseShiftR = (tmpR * phaseShiftStepR) - (currentPhaseShiftI * phaseShiftStepI);
-        currentPhaseShiftI = (tmpR * phaseShiftStepI) + (currentPhaseShiftI * phaseShiftStepR);
-      }
-    }
-  }
-
   public void forward(float[] buffer)
   {
     if (buffer.length != timeSize)
@@ -269,10 +247,7 @@ public class FFT extends FourierTransform
       return;
     }
     doWindow(buffer);
-    // copy samples to real/imag in bit-reversed order
-    bitReverseSamples(buffer, 0);
-    // perform the fft
-    fft();
+    plan.forward(buffer, 0, real, imag);
     // fill the spectrum buffer with amplitudes
     fillSpectrum();
   }
@@ -289,8 +264,7 @@ public class FFT extends FourierTransform
 	  }
 	  
 	  windowFunction.apply( buffer, startAt, timeSize );
-	  bitReverseSamples(buffer, startAt);
-	  fft();
+	  plan.forward( buffer, startAt, real, imag );
 	  fillSpectrum();
   }
 
@@ -308,9 +282,7 @@ public class FFT extends FourierTransform
           .error("FFT.forward: The length of the passed buffers must be equal to timeSize().");
       return;
     }
-    setComplex(buffReal, buffImag);
-    bitReverseComplex();
-    fft();
+    plan.forward(buffReal, buffImag, real, imag);
     fillSpectrum();
   }
 
@@ -322,83 +294,19 @@ public class FFT extends FourierTransform
           .error("FFT.inverse: the passed array's length must equal FFT.timeSize().");
       return;
     }
-    // conjugate
-    for (int i = 0; i < timeSize; i++)
-    {
-      imag[i] *= -1;
-    }
-    bitReverseComplex();
-    fft();
-    // copy the result in real into buffer, scaling as we do
-    for (int i = 0; i < buffer.length; i++)
-    {
-      buffer[i] = real[i] / real.length;
-    }
-  }
-
-  private int[] reverse;
-
-  private void buildReverseTable()
-  {
-    int N = timeSize;
-    reverse = new int[N];
-
-    // set up the bit reversing table
-    reverse[0] = 0;
-    for (int limit = 1, bit = N / 2; limit < N; limit <<= 1, bit >>= 1)
-      for (int i = 0; i < limit; i++)
-        reverse[i + limit] = reverse[i] + bit;
+    plan.inverse(real, imag, buffer);
   }
 
-  // copies the values in the samples array into the real array
-  // in bit reversed order. the imag array is filled with zeros.
-  private void bitReverseSamples(float[] samples, int startAt)
-  {
-    for (int i = 0; i < timeSize; ++i)
-    {
-      real[i] = samples[ startAt + reverse[i] ];
-      imag[i] = 0.0f;
-    }
-  }
-
-  // bit reverse real[] and imag[]
-  private void bitReverseComplex()
-  {
-    float[] revReal = new float[real.length];
-    float[] revImag = new float[imag.length];
-    for (int i = 0; i < real.length; i++)
-    {
-      revReal[i] = real[reverse[i]];
-      revImag[i] = imag[reverse[i]];
-    }
-    real = revReal;
-    imag = revImag;
-  }
-
-  // lookup tables
-
-  private float[] sinlookup;
-  private float[] coslookup;
-
-  private float sin(int i)
-  {
-    return sinlookup[i];
-  }
-
-  private float cos(int i)
-  {
-    return coslookup[i];
-  }
-
-  private void buildTrigTables()
+  /**
+   * Returns the plan this FFT transforms with, which can be used directly
+   * by other threads with arrays of their own.
+   *
+   * @return FFTPlan: the plan for this FFT's <code>timeSize</code>
+   *
+   * @related FFTPlan
+   */
+  public FFTPlan getPlan()
   {
-    int N = timeSize;
-    sinlookup = new float[N];
-    coslookup = new float[N];
-    for (int i = 0; i < N; i++)
-    {
-      sinlookup[i] = (float) Math.sin(-(float) Math.PI / i);
-      coslookup[i] = (float) Math.cos(-(float) Math.PI / i);
-    }
+    return plan;
   }
 }
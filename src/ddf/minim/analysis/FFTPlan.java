@@ -0,0 +1,361 @@
+package ddf.minim.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An FFTPlan holds everything an FFT of one size needs to know before it
+ * starts transforming: which order to read the samples in and the twiddle
+ * factors for a power of two size, or how the size factors for any other.
+ * A plan never changes after it is constructed, and the results of a
+ * transform go into arrays that you pass in, so one plan can be used by
+ * any number of threads at the same time, each with arrays of its own.
+ * This makes it the thing to use for analyzing many files at once on a
+ * thread pool, where an FFT, which keeps its results in itself, can only
+ * be used by one thread at a time.
+ * <p>
+ * <code>forSize</code> returns a plan that is shared by everything asking
+ * for the same size, which is also what FFT uses, so the tables for a size
+ * are usually only built once. Only the most recently used plans are kept,
+ * a plan that is still in use by an FFT isn't affected by being forgotten.
+ * <p>
+ * Transforms are not scaled: a forward transform of a buffer of ones has
+ * <code>timeSize</code> in its first band, and <code>inverse</code> divides
+ * by <code>timeSize</code>, so that an inverse transform of a forward
+ * transform gives back the samples you started with. The spectra produced
+ * are complete, with all <code>timeSize</code> bands, but only the first
+ * <code>specSize()</code> of them are needed to describe real samples.
+ *
+ * @related FFT
+ * @related BatchFFT
+ */
+public final class FFTPlan
+{
+  // how many shared plans are kept. an app that uses many different
+  // sizes only keeps the ones it used most recently.
+  private static final int MAX_SHARED_PLANS = 32;
+
+  // plans shared by size, least recently used first. it's only looked in
+  // when something is constructed or changes size, so a lock is cheap enough.
+  private static final Map<Integer, FFTPlan> plans = new LinkedHashMap<Integer, FFTPlan>(16, 0.75f, true)
+  {
+    protected boolean removeEldestEntry(Map.Entry<Integer, FFTPlan> eldest)
+    {
+      return size() > MAX_SHARED_PLANS;
+    }
+  };
+
+  private final int timeSize;
+
+  // for powers of two: the bit reverse table and twiddle factors
+  private final int[] reverse;
+  private final float[] twiddleReal;
+  private final float[] twiddleImag;
+  // for every other size, null for powers of two
+  private final MixedRadixFFT mixedRadix;
+
+  // where each thread puts a copy of input that is also the output,
+  // or the spectrum being inverse transformed.
+  private final ThreadLocal<float[][]> scratch = new ThreadLocal<float[][]>()
+  {
+    protected float[][] initialValue()
+    {
+      return new float[4][timeSize];
+    }
+  };
+
+  /**
+   * Constructs a plan for transforms of <code>timeSize</code> samples,
+   * which can be any length of at least one, though a power of two is the
+   * fastest.
+   *
+   * @param timeSize
+   *          int: the length of the sample buffers that will be transformed
+   */
+  public FFTPlan(int timeSize)
+  {
+    if (timeSize < 1)
+    {
+      throw new IllegalArgumentException("FFTPlan: timeSize must be at least one.");
+    }
+    this.timeSize = timeSize;
+    if ((timeSize & (timeSize - 1)) != 0)
+    {
+      mixedRadix = new MixedRadixFFT(timeSize);
+      reverse = null;
+      twiddleReal = null;
+      twiddleImag = null;
+    }
+    else
+    {
+      mixedRadix = null;
+      reverse = new int[timeSize];
+      for (int limit = 1, bit = timeSize / 2; limit < timeSize; limit <<= 1, bit >>= 1)
+      {
+        for (int i = 0; i < limit; i++)
+        {
+          reverse[i + limit] = reverse[i] + bit;
+        }
+      }
+      // computed directly rather than by rotating, so they're exact
+      twiddleReal = new float[Math.max(1, timeSize / 2)];
+      twiddleImag = new float[twiddleReal.length];
+      for (int k = 0; k < twiddleReal.length; ++k)
+      {
+        double phase = -2 * Math.PI * k / timeSize;
+        twiddleReal[k] = (float)Math.cos(phase);
+        twiddleImag[k] = (float)Math.sin(phase);
+      }
+    }
+  }
+
+  /**
+   * Returns the plan for <code>timeSize</code> that is shared with
+   * everything else that has asked for that size, building it if it
+   * isn't among the most recently used.
+   *
+   * @param timeSize
+   *          int: the length of the sample buffers that will be transformed
+   * @return FFTPlan: the shared plan
+   *
+   * @related FFTPlan
+   */
+  public static FFTPlan forSize(int timeSize)
+  {
+    Integer key = Integer.valueOf(timeSize);
+    FFTPlan plan;
+    synchronized (plans)
+    {
+      plan = plans.get(key);
+    }
+    if (plan == null)
+    {
+      // built without the lock, so that a big plan doesn't hold up others
+      plan = new FFTPlan(timeSize);
+      synchronized (plans)
+      {
+        FFTPlan existing = plans.get(key);
+        if (existing != null)
+        {
+          plan = existing;
+        }
+        else
+        {
+          plans.put(key, plan);
+        }
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Returns the length of the sample buffers this plan transforms.
+   *
+   * @related FFTPlan
+   */
+  public int timeSize()
+  {
+    return timeSize;
+  }
+
+  /**
+   * Returns how many bands of a spectrum describe real samples,
+   * which is <code>timeSize() / 2 + 1</code>.
+   *
+   * @related FFTPlan
+   */
+  public int specSize()
+  {
+    return timeSize / 2 + 1;
+  }
+
+  /**
+   * Computes the spectrum of <code>timeSize()</code> real samples starting
+   * at <code>offset</code>, writing it to <code>real</code> and
+   * <code>imag</code>, which must be at least <code>timeSize()</code> long.
+   * If you want a window, apply it to the samples first.
+   *
+   * @param samples
+   *          float[]: the samples to transform
+   * @param offset
+   *          int: the first sample to transform
+   * @param real
+   *          float[]: where to put the real part of the spectrum
+   * @param imag
+   *          float[]: where to put the imaginary part of the spectrum
+   *
+   * @related FFTPlan
+   */
+  public void forward(float[] samples, int offset, float[] real, float[] imag)
+  {
+    if (samples == real || samples == imag)
+    {
+      float[] copy = scratch.get()[0];
+      System.arraycopy(samples, offset, copy, 0, timeSize);
+      samples = copy;
+      offset = 0;
+    }
+    if (mixedRadix != null)
+    {
+      mixedRadix.forward(samples, null, offset, real, imag);
+      return;
+    }
+    for (int i = 0; i < timeSize; ++i)
+    {
+      real[i] = samples[offset + reverse[i]];
+      imag[i] = 0;
+    }
+    fft(real, imag);
+  }
+
+  /**
+   * Computes the spectrum of <code>timeSize()</code> complex samples,
+   * writing it to <code>real</code> and <code>imag</code>. The output
+   * may be the same arrays as the input, in which case the samples are
+   * replaced by their spectrum.
+   *
+   * @param inReal
+   *          float[]: the real part of the samples
+   * @param inImag
+   *          float[]: the imaginary part of the samples
+   * @param real
+   *          float[]: where to put the real part of the spectrum
+   * @param imag
+   *          float[]: where to put the imaginary part of the spectrum
+   *
+   * @related FFTPlan
+   */
+  public void forward(float[] inReal, float[] inImag, float[] real, float[] imag)
+  {
+    if (mixedRadix != null)
+    {
+      if (inReal == real || inReal == imag || inImag == real || inImag == imag)
+      {
+        float[][] s = scratch.get();
+        System.arraycopy(inReal, 0, s[0], 0, timeSize);
+        System.arraycopy(inImag, 0, s[1], 0, timeSize);
+        inReal = s[0];
+        inImag = s[1];
+      }
+      mixedRadix.forward(inReal, inImag, 0, real, imag);
+      return;
+    }
+    if (inReal == real && inImag == imag)
+    {
+      // bit reverse in place by swapping pairs
+      for (int i = 0; i < timeSize; ++i)
+      {
+        final int j = reverse[i];
+        if (j > i)
+        {
+          float t = real[i];
+          real[i] = real[j];
+          real[j] = t;
+          t = imag[i];
+          imag[i] = imag[j];
+          imag[j] = t;
+        }
+      }
+    }
+    else
+    {
+      if (inReal == real || inReal == imag || inImag == real || inImag == imag)
+      {
+        float[][] s = scratch.get();
+        System.arraycopy(inReal, 0, s[0], 0, timeSize);
+        System.arraycopy(inImag, 0, s[1], 0, timeSize);
+        inReal = s[0];
+        inImag = s[1];
+      }
+      for (int i = 0; i < timeSize; ++i)
+      {
+        real[i] = inReal[reverse[i]];
+        imag[i] = inImag[reverse[i]];
+      }
+    }
+    fft(real, imag);
+  }
+
+  /**
+   * Computes the real samples that have the spectrum in <code>real</code>
+   * and <code>imag</code>, which are not changed, and writes as many of
+   * them as fit into <code>samples</code>. The spectrum should be
+   * symmetric, the way the spectrum of real samples is, for the result to
+   * mean much, because the imaginary part of the result is thrown away.
+   *
+   * @param real
+   *          float[]: the real part of the spectrum
+   * @param imag
+   *          float[]: the imaginary part of the spectrum
+   * @param samples
+   *          float[]: where to put the samples
+   *
+   * @related FFTPlan
+   */
+  public void inverse(float[] real, float[] imag, float[] samples)
+  {
+    // the inverse transform is the conjugate of
+    // the forward transform of the conjugate
+    float[][] s = scratch.get();
+    final float[] conjReal = s[2];
+    final float[] conjImag = s[3];
+    System.arraycopy(real, 0, conjReal, 0, timeSize);
+    for (int i = 0; i < timeSize; ++i)
+    {
+      conjImag[i] = -imag[i];
+    }
+    final float[] outReal = s[0];
+    final float[] outImag = s[1];
+    forward(conjReal, conjImag, outReal, outImag);
+    final int length = Math.min(samples.length, timeSize);
+    for (int i = 0; i < length; ++i)
+    {
+      samples[i] = outReal[i] / timeSize;
+    }
+  }
+
+  /**
+   * Fills <code>spectrum</code> with the amplitude of each of the first
+   * <code>spectrum.length</code> bands of a spectrum.
+   *
+   * @param real
+   *          float[]: the real part of the spectrum
+   * @param imag
+   *          float[]: the imaginary part of the spectrum
+   * @param spectrum
+   *          float[]: where to put the amplitudes
+   *
+   * @related FFTPlan
+   */
+  public static void amplitudes(float[] real, float[] imag, float[] spectrum)
+  {
+    for (int i = 0; i < spectrum.length; ++i)
+    {
+      spectrum[i] = (float)Math.sqrt(real[i] * real[i] + imag[i] * imag[i]);
+    }
+  }
+
+  // an in place radix 2 transform of data that is already bit reversed
+  private void fft(float[] re, float[] im)
+  {
+    for (int halfSize = 1; halfSize < timeSize; halfSize *= 2)
+    {
+      final int step = timeSize / (2 * halfSize);
+      for (int fftStep = 0; fftStep < halfSize; fftStep++)
+      {
+        final float wr = twiddleReal[fftStep * step];
+        final float wi = twiddleImag[fftStep * step];
+        for (int i = fftStep; i < timeSize; i += 2 * halfSize)
+        {
+          final int off = i + halfSize;
+          final float tr = wr * re[off] - wi * im[off];
+          final float ti = wr * im[off] + wi * re[off];
+          re[off] = re[i] - tr;
+          im[off] = im[i] - ti;
+          re[i] += tr;
+          im[i] += ti;
+        }
+      }
+    }
+  }
+}
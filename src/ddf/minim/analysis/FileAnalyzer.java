@@ -0,0 +1,681 @@
+package ddf.minim.analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ddf.minim.Minim;
+import ddf.minim.MultiChannelBuffer;
+import ddf.minim.spi.AudioRecordingStream;
+
+/**
+ * A FileAnalyzer analyzes whole files as fast as they can be decoded,
+ * without playing them, and writes what it finds to a feature track: one
+ * row of numbers for every <code>hopSize</code> samples of the file. This
+ * is how you would compute everything a visualizer needs for a whole music
+ * library ahead of time, rather than analyzing each song while it plays.
+ * <p>
+ * You choose what goes in each row by adding features: the spectrum, linear
+ * or logarithmic averages of it, the RMS level, beats found by BeatDetect,
+ * and an envelope that follows the level with separate attack and release
+ * times. Each feature adds one or more columns to the track. The analysis
+ * is done on a mono mix of the file, in frames of <code>frameSize</code>
+ * samples that start every <code>hopSize</code> samples, the last ones
+ * padded with silence.
+ * <p>
+ * A track can be written as CSV, which has a header row naming the columns
+ * and a first column with the time of each row in seconds, or as BINARY,
+ * which is smaller and faster to read back. The binary format, written with
+ * a DataOutputStream, is: the int 0x4D465452 ("MFTR"), the int version 1,
+ * the float sample rate of the file, the ints <code>frameSize</code>,
+ * <code>hopSize</code>, and the number of columns, each column name as UTF,
+ * and then every row as that many floats. Row <code>i</code> starts at
+ * sample <code>i * hopSize</code>.
+ * <p>
+ * The features chosen for a FileAnalyzer can be used for any number of
+ * files at the same time, since each analysis has its own FFT and
+ * BeatDetect, so <code>analyzeFiles</code> can analyze a list of files
+ * on as many threads as you like. The files are opened with
+ * <code>Minim.loadDecodingStream</code>, which doesn't take an output line,
+ * so this works on machines without a sound card too.
+ *
+ * @related FFT
+ * @related BeatDetect
+ * @related Minim
+ */
+public class FileAnalyzer
+{
+  /**
+   * Write feature tracks as comma separated text.
+   *
+   * @related FileAnalyzer
+   */
+  public static final int CSV = 0;
+
+  /**
+   * Write feature tracks as binary floats.
+   *
+   * @related FileAnalyzer
+   */
+  public static final int BINARY = 1;
+
+  // how many sample frames are decoded at a time
+  private static final int BLOCK_SIZE = 16384;
+
+  private static final int MAGIC = 0x4D465452;
+  private static final int VERSION = 1;
+
+  // the kinds of features
+  private static final int SPECTRUM = 0;
+  private static final int LINEAR_AVERAGES = 1;
+  private static final int LOG_AVERAGES = 2;
+  private static final int LEVEL = 3;
+  private static final int BEATS = 4;
+  private static final int ENVELOPE = 5;
+
+  private final int frameSize;
+  private final int hopSize;
+  private WindowFunction windowFunction = FourierTransform.NONE;
+  private final List<Feature> features = new ArrayList<Feature>();
+
+  // what kind of feature to compute, and up to two settings for it
+  private static final class Feature
+  {
+    final int kind;
+    final float first;
+    final float second;
+
+    Feature(int kind, float first, float second)
+    {
+      this.kind = kind;
+      this.first = first;
+      this.second = second;
+    }
+  }
+
+  /**
+   * Constructs a FileAnalyzer with no features, which analyzes frames of
+   * <code>frameSize</code> samples every <code>hopSize</code> samples.
+   *
+   * @param frameSize
+   *          int: how many samples are analyzed for each row, which is the
+   *          timeSize of the FFT used for spectral features
+   * @param hopSize
+   *          int: how many samples apart the rows are, from one up to
+   *          <code>frameSize</code>
+   */
+  public FileAnalyzer(int frameSize, int hopSize)
+  {
+    if (frameSize < 1 || hopSize < 1 || hopSize > frameSize)
+    {
+      throw new IllegalArgumentException("FileAnalyzer: hopSize must be between 1 and frameSize.");
+    }
+    this.frameSize = frameSize;
+    this.hopSize = hopSize;
+  }
+
+  /**
+   * Sets the window used on each frame before spectral features are
+   * computed.
+   *
+   * @param windowFunction
+   *          WindowFunction: the window to use
+   *
+   * @related FileAnalyzer
+   * @related WindowFunction
+   */
+  public void window(WindowFunction windowFunction)
+  {
+    this.windowFunction = windowFunction;
+  }
+
+  /**
+   * Adds the amplitude of every band of the spectrum, in columns named
+   * <code>band0</code> and up.
+   *
+   * @related FileAnalyzer
+   */
+  public void addSpectrum()
+  {
+    features.add(new Feature(SPECTRUM, 0, 0));
+  }
+
+  /**
+   * Adds linear averages of the spectrum, as computed by
+   * <code>FourierTransform.linAverages</code>, in columns named
+   * <code>lin0</code> and up.
+   *
+   * @param numAvg
+   *          int: how many averages to compute
+   *
+   * @related FileAnalyzer
+   * @related FourierTransform
+   */
+  public void addLinAverages(int numAvg)
+  {
+    features.add(new Feature(LINEAR_AVERAGES, numAvg, 0));
+  }
+
+  /**
+   * Adds logarithmic averages of the spectrum, as computed by
+   * <code>FourierTransform.logAverages</code>, in columns named
+   * <code>log0</code> and up.
+   *
+   * @param minBandwidth
+   *          int: the minimum bandwidth used for an octave, in Hz
+   * @param bandsPerOctave
+   *          int: how many bands to split each octave into
+   *
+   * @related FileAnalyzer
+   * @related FourierTransform
+   */
+  public void addLogAverages(int minBandwidth, int bandsPerOctave)
+  {
+    features.add(new Feature(LOG_AVERAGES, minBandwidth, bandsPerOctave));
+  }
+
+  /**
+   * Adds the RMS level of each frame, in a column named <code>level</code>.
+   *
+   * @related FileAnalyzer
+   */
+  public void addLevel()
+  {
+    features.add(new Feature(LEVEL, 0, 0));
+  }
+
+  /**
+   * Adds beats found by a BeatDetect, which is given the
+   * <code>hopSize</code> samples at the start of each frame. In
+   * SOUND_ENERGY mode this is a column named <code>onset</code>, and in
+   * FREQ_ENERGY mode it is columns named <code>kick</code>,
+   * <code>snare</code>, and <code>hat</code>, each of which is 1 for rows
+   * with a beat and 0 for the rest. The sensitivity is measured in the
+   * time of the file.
+   *
+   * @param algorithm
+   *          int: BeatDetect.SOUND_ENERGY or BeatDetect.FREQ_ENERGY
+   * @param sensitivity
+   *          int: the sensitivity of the BeatDetect, in milliseconds
+   *
+   * @related FileAnalyzer
+   * @related BeatDetect
+   */
+  public void addBeats(int algorithm, int sensitivity)
+  {
+    features.add(new Feature(BEATS, algorithm, sensitivity));
+  }
+
+  /**
+   * Adds an envelope that follows the level of the file, rising with the
+   * <code>attack</code> time and falling with the <code>release</code>
+   * time, as it stands at the end of the first <code>hopSize</code>
+   * samples of each frame, in a column named <code>envelope</code>.
+   *
+   * @param attack
+   *          float: the attack time, in seconds
+   * @param release
+   *          float: the release time, in seconds
+   *
+   * @related FileAnalyzer
+   */
+  public void addEnvelope(float attack, float release)
+  {
+    features.add(new Feature(ENVELOPE, attack, release));
+  }
+
+  /**
+   * Analyzes everything that is left to read in a stream, such as one
+   * returned by <code>Minim.loadDecodingStream</code>, and writes the feature
+   * track to <code>out</code>, which is left open. The stream is played and
+   * read until it stops at the end of the file, but not closed.
+   *
+   * @param stream
+   *          AudioRecordingStream: the audio to analyze
+   * @param out
+   *          OutputStream: where to write the feature track
+   * @param format
+   *          int: FileAnalyzer.CSV or FileAnalyzer.BINARY
+   * @return int: how many rows were written
+   * @throws IOException
+   *           if writing to <code>out</code> fails
+   *
+   * @related FileAnalyzer
+   */
+  public int analyze(AudioRecordingStream stream, OutputStream out, int format) throws IOException
+  {
+    Analysis analysis = new Analysis(stream.getFormat().getSampleRate(), windowFunction);
+    TrackWriter writer = format == BINARY ? new BinaryWriter(out) : new CsvWriter(out);
+    writer.start(analysis);
+
+    // the length of an mp3 is only an estimate, so we read until the
+    // stream stops itself at the end of the file instead of trusting it.
+    final int channelCount = stream.getFormat().getChannels();
+    MultiChannelBuffer block = new MultiChannelBuffer(BLOCK_SIZE, channelCount);
+    stream.play();
+    long read = 0;
+    while (stream.isPlaying())
+    {
+      int frames = Minim.readDecodingStream(stream, block, read);
+      analysis.add(block, frames, writer);
+      read += frames;
+    }
+    analysis.finish(writer);
+    writer.finish();
+    return analysis.rows;
+  }
+
+  /**
+   * Analyzes a list of files on <code>threadCount</code> threads, writing
+   * the feature track of each to the file with the same index in
+   * <code>outputs</code>. Files that can't be loaded or written are
+   * reported with <code>Minim.error</code> and skipped.
+   *
+   * @param minim
+   *          Minim: used to load the files
+   * @param files
+   *          String[]: the files to analyze
+   * @param outputs
+   *          String[]: where to write the feature track of each file
+   * @param format
+   *          int: FileAnalyzer.CSV or FileAnalyzer.BINARY
+   * @param threadCount
+   *          int: how many files to analyze at the same time
+   * @return int: how many files were analyzed
+   *
+   * @related FileAnalyzer
+   */
+  public int analyzeFiles(final Minim minim, String[] files, String[] outputs, final int format, int threadCount)
+  {
+    if (outputs.length < files.length)
+    {
+      Minim.error("FileAnalyzer.analyzeFiles: there must be an output for every file.");
+      return 0;
+    }
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(files.length);
+    for (int i = 0; i < files.length; ++i)
+    {
+      final String file = files[i];
+      final String output = outputs[i];
+      tasks.add(new Callable<Boolean>()
+      {
+        public Boolean call()
+        {
+          return analyzeFile(minim, file, output, format);
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadCount));
+    int analyzed = 0;
+    try
+    {
+      for (Future<Boolean> result : executor.invokeAll(tasks))
+      {
+        try
+        {
+          if (result.get())
+          {
+            ++analyzed;
+          }
+        }
+        catch (Exception e)
+        {
+          Minim.error("FileAnalyzer: " + e.getCause());
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+    return analyzed;
+  }
+
+  private boolean analyzeFile(Minim minim, String file, String output, int format)
+  {
+    AudioRecordingStream stream;
+    synchronized (minim)
+    {
+      stream = minim.loadDecodingStream(file, BLOCK_SIZE);
+    }
+    if (stream == null)
+    {
+      Minim.error("FileAnalyzer: couldn't load " + file);
+      return false;
+    }
+    try
+    {
+      OutputStream out = new FileOutputStream(output);
+      try
+      {
+        analyze(stream, out, format);
+      }
+      finally
+      {
+        out.close();
+      }
+      return true;
+    }
+    catch (IOException e)
+    {
+      Minim.error("FileAnalyzer: couldn't write " + output + ": " + e.getMessage());
+      return false;
+    }
+    finally
+    {
+      stream.close();
+    }
+  }
+
+  // the state of analyzing one file
+  private class Analysis
+  {
+    final float sampleRate;
+    final String[] columns;
+    final float[] row;
+    int rows;
+
+    // the frame being filled and a copy of it for the FFT to window
+    final float[] frame = new float[frameSize];
+    final float[] fftFrame = new float[frameSize];
+    final float[] hop = new float[hopSize];
+    int filled;
+
+    // one of these for each feature that needs one
+    final Object[] analyzers;
+    final FFT fft;
+    float envelope;
+
+    Analysis(float sampleRate, WindowFunction window)
+    {
+      this.sampleRate = sampleRate;
+      analyzers = new Object[features.size()];
+      List<String> names = new ArrayList<String>();
+      boolean needsFFT = false;
+      for (int f = 0; f < features.size(); ++f)
+      {
+        Feature feature = features.get(f);
+        switch (feature.kind)
+        {
+        case SPECTRUM:
+          needsFFT = true;
+          for (int i = 0; i < frameSize / 2 + 1; ++i)
+          {
+            names.add("band" + i);
+          }
+          break;
+        case LINEAR_AVERAGES:
+        case LOG_AVERAGES:
+          // averages are computed by an FFT of their own
+          FFT averages = new FFT(frameSize, sampleRate);
+          averages.window(window);
+          if (feature.kind == LINEAR_AVERAGES)
+          {
+            averages.linAverages((int)feature.first);
+          }
+          else
+          {
+            averages.logAverages((int)feature.first, (int)feature.second);
+          }
+          analyzers[f] = averages;
+          String prefix = feature.kind == LINEAR_AVERAGES ? "lin" : "log";
+          for (int i = 0; i < averages.avgSize(); ++i)
+          {
+            names.add(prefix + i);
+          }
+          break;
+        case LEVEL:
+          names.add("level");
+          break;
+        case BEATS:
+          BeatDetect beats = new BeatDetect(hopSize, sampleRate);
+          beats.detectMode((int)feature.first);
+          beats.setSensitivity((int)feature.second);
+          beats.useAudioTime(true);
+          analyzers[f] = beats;
+          if (feature.first == BeatDetect.FREQ_ENERGY)
+          {
+            names.add("kick");
+            names.add("snare");
+            names.add("hat");
+          }
+          else
+          {
+            names.add("onset");
+          }
+          break;
+        case ENVELOPE:
+          // the coefficients for rising and falling
+          analyzers[f] = new float[] { (float)Math.exp(-1 / (sampleRate * feature.first)),
+                                       (float)Math.exp(-1 / (sampleRate * feature.second)) };
+          names.add("envelope");
+          break;
+        }
+      }
+      if (needsFFT)
+      {
+        fft = new FFT(frameSize, sampleRate);
+        fft.window(window);
+      }
+      else
+      {
+        fft = null;
+      }
+      columns = names.toArray(new String[names.size()]);
+      row = new float[columns.length];
+    }
+
+    // mixes a block of decoded audio into frames
+    void add(MultiChannelBuffer block, int length, TrackWriter writer) throws IOException
+    {
+      final int channelCount = block.getChannelCount();
+      final float scale = 1f / channelCount;
+      int at = 0;
+      while (at < length)
+      {
+        int count = Math.min(length - at, frameSize - filled);
+        for (int i = 0; i < count; ++i)
+        {
+          float sum = 0;
+          for (int c = 0; c < channelCount; ++c)
+          {
+            sum += block.getChannel(c)[at + i];
+          }
+          frame[filled + i] = sum * scale;
+        }
+        filled += count;
+        at += count;
+        if (filled == frameSize)
+        {
+          analyzeFrame(writer);
+        }
+      }
+    }
+
+    // analyzes the frames that start before the end of the audio
+    void finish(TrackWriter writer) throws IOException
+    {
+      while (filled > 0)
+      {
+        for (int i = filled; i < frameSize; ++i)
+        {
+          frame[i] = 0;
+        }
+        analyzeFrame(writer);
+      }
+    }
+
+    private void analyzeFrame(TrackWriter writer) throws IOException
+    {
+      System.arraycopy(frame, 0, hop, 0, hopSize);
+      if (fft != null)
+      {
+        System.arraycopy(frame, 0, fftFrame, 0, frameSize);
+        fft.forward(fftFrame);
+      }
+
+      int column = 0;
+      for (int f = 0; f < analyzers.length; ++f)
+      {
+        Feature feature = features.get(f);
+        switch (feature.kind)
+        {
+        case SPECTRUM:
+          for (int i = 0; i < fft.specSize(); ++i)
+          {
+            row[column++] = fft.getBand(i);
+          }
+          break;
+        case LINEAR_AVERAGES:
+        case LOG_AVERAGES:
+          FFT averages = (FFT)analyzers[f];
+          System.arraycopy(frame, 0, fftFrame, 0, frameSize);
+          averages.forward(fftFrame);
+          for (int i = 0; i < averages.avgSize(); ++i)
+          {
+            row[column++] = averages.getAvg(i);
+          }
+          break;
+        case LEVEL:
+          float sum = 0;
+          for (int i = 0; i < frameSize; ++i)
+          {
+            sum += frame[i] * frame[i];
+          }
+          row[column++] = (float)Math.sqrt(sum / frameSize);
+          break;
+        case BEATS:
+          BeatDetect beats = (BeatDetect)analyzers[f];
+          beats.detect(hop);
+          if (feature.first == BeatDetect.FREQ_ENERGY)
+          {
+            row[column++] = beats.isKick() ? 1 : 0;
+            row[column++] = beats.isSnare() ? 1 : 0;
+            row[column++] = beats.isHat() ? 1 : 0;
+          }
+          else
+          {
+            row[column++] = beats.isOnset() ? 1 : 0;
+          }
+          break;
+        case ENVELOPE:
+          float[] coefficients = (float[])analyzers[f];
+          for (int i = 0; i < hopSize; ++i)
+          {
+            float level = Math.abs(hop[i]);
+            float g = level > envelope ? coefficients[0] : coefficients[1];
+            envelope = g * envelope + (1 - g) * level;
+          }
+          row[column++] = envelope;
+          break;
+        }
+      }
+      writer.write(rows, row);
+      ++rows;
+
+      System.arraycopy(frame, hopSize, frame, 0, frameSize - hopSize);
+      filled -= hopSize;
+    }
+  }
+
+  private interface TrackWriter
+  {
+    void start(Analysis analysis) throws IOException;
+
+    void write(int index, float[] row) throws IOException;
+
+    void finish() throws IOException;
+  }
+
+  private class CsvWriter implements TrackWriter
+  {
+    private final Writer out;
+    private float secondsPerRow;
+
+    CsvWriter(OutputStream stream) throws IOException
+    {
+      out = new BufferedWriter(new OutputStreamWriter(stream, "US-ASCII"));
+    }
+
+    public void start(Analysis analysis) throws IOException
+    {
+      secondsPerRow = hopSize / analysis.sampleRate;
+      out.write("time");
+      for (int i = 0; i < analysis.columns.length; ++i)
+      {
+        out.write(',');
+        out.write(analysis.columns[i]);
+      }
+      out.write('\n');
+    }
+
+    public void write(int index, float[] row) throws IOException
+    {
+      out.write(Float.toString(index * secondsPerRow));
+      for (int i = 0; i < row.length; ++i)
+      {
+        out.write(',');
+        out.write(Float.toString(row[i]));
+      }
+      out.write('\n');
+    }
+
+    public void finish() throws IOException
+    {
+      out.flush();
+    }
+  }
+
+  private class BinaryWriter implements TrackWriter
+  {
+    private final DataOutputStream out;
+
+    BinaryWriter(OutputStream stream)
+    {
+      out = new DataOutputStream(new BufferedOutputStream(stream));
+    }
+
+    public void start(Analysis analysis) throws IOException
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeFloat(analysis.sampleRate);
+      out.writeInt(frameSize);
+      out.writeInt(hopSize);
+      out.writeInt(analysis.columns.length);
+      for (int i = 0; i < analysis.columns.length; ++i)
+      {
+        out.writeUTF(analysis.columns[i]);
+      }
+    }
+
+    public void write(int index, float[] row) throws IOException
+    {
+      for (int i = 0; i < row.length; ++i)
+      {
+        out.writeFloat(row[i]);
+      }
+    }
+
+    public void finish() throws IOException
+    {
+      out.flush();
+    }
+  }
+}
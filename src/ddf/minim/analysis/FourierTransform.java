@@ -18,6 +18,8 @@
 
 package ddf.minim.analysis;
 
+import java.util.Arrays;
+
 import ddf.minim.AudioBuffer;
 import ddf.minim.Minim;
 
@@ -253,6 +255,27 @@ public abstract class FourierTransform
   protected int octaves;
   protected int avgPerOctave;
 
+  // smoothing, peak holding, and decibels for the averages, all off to start.
+  // smoothedAverages holds the smoothed amplitudes, because averages may
+  // hold them in decibels, and is null when nothing is being done to them.
+  private float attackMillis;
+  private float releaseMillis;
+  private boolean holdPeaks;
+  private float peakHoldMillis;
+  private float peakDecay;
+  private boolean averagesInDecibels;
+  private float averageTimeStep;
+  private long lastForwardNanos;
+  private float[] smoothedAverages;
+  private float[] averagePeaks;
+  private float[] averagePeakAges;
+  // worked out once per forward transform by beginAverages
+  private float frameMillis;
+  private float attackCoefficient;
+  private float releaseCoefficient;
+  private float peakDecayFactor;
+  private float decibelScale;
+
   /**
    * Construct a FourierTransform that will analyze sample buffers that are
    * <code>ts</code> samples long and contain samples with a <code>sr</code>
@@ -303,6 +326,7 @@ public abstract class FourierTransform
       spectrum[i] = (float) Math.sqrt(real[i] * real[i] + imag[i] * imag[i]);
     }
 
+    beginAverages();
     if (whichAverage == LINAVG)
     {
       int avgWidth = (int) spectrum.length / averages.length;
@@ -323,7 +347,7 @@ public abstract class FourierTransform
           }
         }
         avg /= j + 1;
-        averages[i] = avg;
+        setAverage(i, avg);
       }
     }
     else if (whichAverage == LOGAVG)
@@ -345,13 +369,206 @@ public abstract class FourierTransform
         for (int j = 0; j < avgPerOctave; j++)
         {
           int offset = j + i * avgPerOctave;
-          averages[offset] = calcAvg(f, f + freqStep);
+          setAverage(offset, calcAvg(f, f + freqStep));
           f += freqStep;
         }
       }
     }
   }
 
+  // works out how far each average should move this time, based on how long
+  // it has been since the last forward transform, so that the averages behave
+  // the same no matter how big the buffers are or how often they come.
+  private void beginAverages()
+  {
+    if (smoothedAverages == null)
+    {
+      return;
+    }
+    if (smoothedAverages.length != averages.length)
+    {
+      smoothedAverages = new float[averages.length];
+      averagePeaks = new float[averages.length];
+      averagePeakAges = new float[averages.length];
+    }
+    if (averageTimeStep > 0)
+    {
+      frameMillis = averageTimeStep;
+    }
+    else
+    {
+      long now = System.nanoTime();
+      frameMillis = lastForwardNanos == 0 ? 1000f * timeSize / sampleRate : (now - lastForwardNanos) / 1000000f;
+      lastForwardNanos = now;
+    }
+    attackCoefficient = attackMillis > 0 ? (float) Math.exp(-frameMillis / attackMillis) : 0;
+    releaseCoefficient = releaseMillis > 0 ? (float) Math.exp(-frameMillis / releaseMillis) : 0;
+    peakDecayFactor = (float) Math.pow(10, -peakDecay * frameMillis / 20000);
+    // scaled so that a full scale sine wave is 0 dB at any timeSize
+    decibelScale = 2f / timeSize;
+  }
+
+  // stores the next value of an average, smoothed, peak held,
+  // and converted to decibels as asked for.
+  private void setAverage(int i, float value)
+  {
+    if (smoothedAverages == null)
+    {
+      averages[i] = value;
+      return;
+    }
+    float smoothed = smoothedAverages[i];
+    smoothed = value + (value > smoothed ? attackCoefficient : releaseCoefficient) * (smoothed - value);
+    smoothedAverages[i] = smoothed;
+    if (holdPeaks)
+    {
+      if (smoothed >= averagePeaks[i])
+      {
+        averagePeaks[i] = smoothed;
+        averagePeakAges[i] = 0;
+      }
+      else if ((averagePeakAges[i] += frameMillis) > peakHoldMillis)
+      {
+        averagePeaks[i] = Math.max(smoothed, averagePeaks[i] * peakDecayFactor);
+      }
+    }
+    averages[i] = averagesInDecibels ? toDecibels(smoothed) : smoothed;
+  }
+
+  private float toDecibels(float amplitude)
+  {
+    return 20 * (float) Math.log10(Math.max(amplitude * decibelScale, 1e-8f));
+  }
+
+  // smoothedAverages is only needed when something is done to the averages
+  private void shapeAverages()
+  {
+    if (attackMillis > 0 || releaseMillis > 0 || holdPeaks || averagesInDecibels)
+    {
+      if (smoothedAverages == null)
+      {
+        smoothedAverages = new float[0];
+        lastForwardNanos = 0;
+      }
+    }
+    else
+    {
+      smoothedAverages = null;
+      averagePeaks = null;
+      averagePeakAges = null;
+    }
+  }
+
+  /**
+   * Smooths the averages over time, so that each one rises toward a louder
+   * value over about <code>attackMillis</code> milliseconds and falls toward
+   * a quieter one over about <code>releaseMillis</code>. This is what most
+   * visualizers want instead of the jumpy raw averages. The times are
+   * measured by the clock between calls to <code>forward</code>, so the
+   * averages move at the same speed whatever the buffer size or frame rate,
+   * unless you set a fixed time step with <code>averageTimeStep</code>.
+   * Passing zero for both turns smoothing off.
+   * 
+   * @param attackMillis
+   *          float: how quickly averages rise, in milliseconds
+   * @param releaseMillis
+   *          float: how quickly averages fall, in milliseconds
+   * 
+   * @related FFT
+   */
+  public void smoothAverages(float attackMillis, float releaseMillis)
+  {
+    this.attackMillis = Math.max(0, attackMillis);
+    this.releaseMillis = Math.max(0, releaseMillis);
+    shapeAverages();
+  }
+
+  /**
+   * Keeps track of the highest recent value of each average, which you can
+   * get with <code>getAvgPeak</code>. A peak stays where it is for
+   * <code>holdMillis</code> milliseconds and then falls by
+   * <code>decibelsPerSecond</code> until an average reaches it again.
+   * 
+   * @param holdMillis
+   *          float: how long a peak stays before it starts to fall, in milliseconds
+   * @param decibelsPerSecond
+   *          float: how quickly a peak falls once it does
+   * 
+   * @related getAvgPeak ( )
+   * @related FFT
+   */
+  public void holdAveragePeaks(float holdMillis, float decibelsPerSecond)
+  {
+    holdPeaks = true;
+    peakHoldMillis = Math.max(0, holdMillis);
+    peakDecay = Math.max(0, decibelsPerSecond);
+    shapeAverages();
+  }
+
+  /**
+   * Stops keeping track of the peaks of the averages.
+   * 
+   * @related holdAveragePeaks ( )
+   * @related FFT
+   */
+  public void noAveragePeaks()
+  {
+    holdPeaks = false;
+    shapeAverages();
+  }
+
+  /**
+   * Sets whether the averages, and their peaks, are in decibels instead of
+   * amplitudes. The decibels are scaled so that a full scale sine wave is
+   * about 0 dB no matter what <code>timeSize()</code> is, and silence is
+   * -160 dB. Smoothing and peak holding are still done on the amplitudes.
+   * 
+   * @param inDecibels
+   *          boolean: true to get averages in decibels
+   * 
+   * @related FFT
+   */
+  public void averagesInDecibels(boolean inDecibels)
+  {
+    averagesInDecibels = inDecibels;
+    shapeAverages();
+  }
+
+  /**
+   * Sets how many milliseconds smoothing and peak holding should take to
+   * have passed between calls to <code>forward</code>, instead of measuring
+   * it with the clock. Use this when analyzing faster than real time, such
+   * as a file being read as fast as possible, where the time between
+   * buffers is the hop size divided by the sample rate. Zero goes back to
+   * using the clock.
+   * 
+   * @param millis
+   *          float: the time between forward transforms, in milliseconds
+   * 
+   * @related FFT
+   */
+  public void averageTimeStep(float millis)
+  {
+    averageTimeStep = Math.max(0, millis);
+  }
+
+  /**
+   * Sets the smoothed averages and their peaks back to zero, for when
+   * the audio being analyzed jumps, as when a song is cued.
+   * 
+   * @related FFT
+   */
+  public void resetAverages()
+  {
+    if (averagePeaks != null)
+    {
+      Arrays.fill(smoothedAverages, 0);
+      Arrays.fill(averagePeaks, 0);
+      Arrays.fill(averagePeakAges, 0);
+    }
+    lastForwardNanos = 0;
+  }
+
   /**
    * Sets the object to not compute averages.
    * 
@@ -793,6 +1010,27 @@ public abstract class FourierTransform
     return ret;
   }
 
+  /**
+   * Gets the peak of the <code>i<sup>th</sup></code> average, if peaks are
+   * being held with <code>holdAveragePeaks</code>, and otherwise just the
+   * value of the average. Peaks are in decibels when the averages are.
+   * 
+   * @param i
+   *          int: the average you want the peak of
+   * @return float: the peak of the requested average band
+   * 
+   * @related holdAveragePeaks ( )
+   * @related FFT
+   */
+  public float getAvgPeak(int i)
+  {
+    if (!holdPeaks || averagePeaks == null || averagePeaks.length != averages.length)
+    {
+      return getAvg(i);
+    }
+    return averagesInDecibels ? toDecibels(averagePeaks[i]) : averagePeaks[i];
+  }
+
   /**
    * Calculate the average amplitude of the frequency band bounded by
    * <code>lowFreq</code> and <code>hiFreq</code>, inclusive.
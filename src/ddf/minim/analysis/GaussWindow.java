@@ -55,6 +55,11 @@ public class GaussWindow extends WindowFunction
     return (float) Math.pow(Math.E, -0.5 * Math.pow((index - (length - 1) / (double) 2) / (this.alpha * (length - 1) / (double) 2), (double) 2));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName() + " " + alpha;
+  }
+  
   public String toString()
   {
 	  return "Gauss Window";
@@ -40,6 +40,11 @@ public class HammingWindow extends WindowFunction
     return 0.54f - 0.46f * (float) Math.cos(TWO_PI * index / (length - 1));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Hamming Window";
@@ -39,6 +39,11 @@ public class HannWindow extends WindowFunction
       return 0.5f * (1f - (float) Math.cos(TWO_PI * index / (length - 1f)));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Hann Window";
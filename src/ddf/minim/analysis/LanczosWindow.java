@@ -40,6 +40,11 @@ public class LanczosWindow extends WindowFunction
       return (float) (Math.sin(Math.PI * x) / (Math.PI * x));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Lanczos Window";
@@ -0,0 +1,179 @@
+package ddf.minim.analysis;
+
+/**
+ * MFCC computes mel-frequency cepstral coefficients, a compact description
+ * of the overall shape of the spectrum that is widely used for telling
+ * sounds and voices apart. The spectrum's power is gathered into triangular
+ * filters spaced evenly on the mel scale, which follows how we hear pitch,
+ * and the coefficients are the discrete cosine transform of the logarithm
+ * of the filters' energies. The first coefficient follows the overall
+ * loudness and the rest the shape, from broad to fine.
+ * <p>
+ * The filters are worked out once for the size and sample rate of the
+ * transform being analyzed, and the cosines once for all, so an update
+ * costs one pass over the spectrum plus a small matrix multiply.
+ * 
+ * @related SpectralFeature
+ * @related FFT
+ */
+public class MFCC extends SpectralFeature
+{
+  // the smallest filter energy used, -100 dB
+  private static final float FLOOR = 1e-10f;
+
+  private final int filterCount;
+  private final float minFreq;
+  private final float maxFreq;
+
+  // each filter's first band and its weight for that band and the following ones
+  private int[] filterStart;
+  private float[][] filterWeights;
+  private final float[] energies;
+  private final float[] logEnergies;
+  // the cosines of the transform, by coefficient and filter
+  private final float[][] cosines;
+
+  /**
+   * Constructs an MFCC with 13 coefficients from 26 filters covering
+   * everything up to half the sample rate.
+   */
+  public MFCC()
+  {
+    this(13, 26, 0, 0);
+  }
+
+  /**
+   * Constructs an MFCC.
+   * 
+   * @param coefficients
+   *          int: how many coefficients to compute
+   * @param filters
+   *          int: how many mel filters to use, at least as many as coefficients
+   * @param minFreq
+   *          float: the lowest frequency the filters cover, in Hz
+   * @param maxFreq
+   *          float: the highest frequency the filters cover, in Hz, where 0
+   *          means half the sample rate
+   */
+  public MFCC(int coefficients, int filters, float minFreq, float maxFreq)
+  {
+    super(coefficients);
+    if (coefficients < 1 || filters < coefficients)
+    {
+      throw new IllegalArgumentException("MFCC: there must be at least one coefficient and at least as many filters.");
+    }
+    if (minFreq < 0 || (maxFreq != 0 && maxFreq <= minFreq))
+    {
+      throw new IllegalArgumentException("MFCC: the frequencies must satisfy 0 <= minFreq < maxFreq.");
+    }
+    filterCount = filters;
+    this.minFreq = minFreq;
+    this.maxFreq = maxFreq;
+    energies = new float[filters];
+    logEnergies = new float[filters];
+
+    // an orthonormal DCT-II
+    cosines = new float[coefficients][filters];
+    for (int n = 0; n < coefficients; ++n)
+    {
+      double scale = Math.sqrt((n == 0 ? 1.0 : 2.0) / filters);
+      for (int m = 0; m < filters; ++m)
+      {
+        cosines[n][m] = (float)(scale * Math.cos(Math.PI * n * (m + 0.5) / filters));
+      }
+    }
+  }
+
+  /**
+   * Returns the energy in each of the mel filters from the last update,
+   * before taking the logarithm. The array is filled in again by every
+   * update.
+   * 
+   * @return float[]: the energy of each filter
+   * 
+   * @related MFCC
+   */
+  public float[] getFilterEnergies()
+  {
+    return energies;
+  }
+
+  private static double toMel(double freq)
+  {
+    return 2595 * Math.log10(1 + freq / 700);
+  }
+
+  private static double fromMel(double mel)
+  {
+    return 700 * (Math.pow(10, mel / 2595) - 1);
+  }
+
+  protected void prepare(int bands, float bandWidth)
+  {
+    final double nyquist = (bands - 1) * bandWidth;
+    final double top = maxFreq == 0 ? nyquist : Math.min(maxFreq, nyquist);
+    final double lowMel = toMel(minFreq);
+    final double highMel = toMel(top);
+    // the edges and centers of the filters, each filter reaching
+    // from the center of the one below it to the center of the one above
+    final double[] points = new double[filterCount + 2];
+    for (int p = 0; p < points.length; ++p)
+    {
+      points[p] = fromMel(lowMel + (highMel - lowMel) * p / (filterCount + 1));
+    }
+
+    filterStart = new int[filterCount];
+    filterWeights = new float[filterCount][];
+    for (int m = 0; m < filterCount; ++m)
+    {
+      final double low = points[m];
+      final double center = points[m + 1];
+      final double high = points[m + 2];
+      int first = (int)Math.ceil(low / bandWidth);
+      int last = Math.min(bands - 1, (int)Math.floor(high / bandWidth));
+      if (last < first)
+      {
+        // a filter narrower than a band still gets the band nearest its center
+        first = last = Math.min(bands - 1, (int)Math.round(center / bandWidth));
+        filterStart[m] = first;
+        filterWeights[m] = new float[] { 1 };
+        continue;
+      }
+      filterStart[m] = first;
+      filterWeights[m] = new float[last - first + 1];
+      for (int i = first; i <= last; ++i)
+      {
+        final double freq = i * bandWidth;
+        final double weight = freq <= center ? (freq - low) / (center - low) : (high - freq) / (high - center);
+        filterWeights[m][i - first] = (float)Math.max(0, weight);
+      }
+    }
+  }
+
+  protected void compute(float[] spectrum, float bandWidth)
+  {
+    for (int m = 0; m < filterCount; ++m)
+    {
+      final float[] weights = filterWeights[m];
+      final int start = filterStart[m];
+      float energy = 0;
+      for (int j = 0; j < weights.length; ++j)
+      {
+        final float a = spectrum[start + j];
+        energy += weights[j] * a * a;
+      }
+      energies[m] = energy;
+      logEnergies[m] = (float)Math.log(Math.max(energy, FLOOR));
+    }
+    for (int n = 0; n < values.length; ++n)
+    {
+      final float[] row = cosines[n];
+      float sum = 0;
+      for (int m = 0; m < filterCount; ++m)
+      {
+        sum += row[m] * logEnergies[m];
+      }
+      values[n] = sum;
+    }
+  }
+}
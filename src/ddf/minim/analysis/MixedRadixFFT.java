@@ -0,0 +1,452 @@
+package ddf.minim.analysis;
+
+/**
+ * A complex forward transform for any length, used by FFT when its
+ * <code>timeSize</code> isn't a power of two. Lengths are factored into
+ * radix 4, 2, 3 and 5 stages, which have butterflies of their own,
+ * and any other small prime factors, which use a general butterfly.
+ * Lengths with a prime factor too large for that to be fast are done
+ * with Bluestein's algorithm, which turns the transform into a
+ * convolution computed with power of two transforms.
+ * <p>
+ * Twiddle factors and, for Bluestein, the chirp and its transform are
+ * computed once in the constructor and never change after that. The
+ * buffers a transform works in belong to the thread doing it, so one
+ * instance can be used by any number of threads at once, and transforming
+ * only allocates the first time a thread does it.
+ *
+ * @invisible
+ */
+final class MixedRadixFFT
+{
+  // prime factors larger than this are done with Bluestein's algorithm
+  private static final int MAX_GENERAL_RADIX = 37;
+
+  private final int n;
+  // pairs of the radix of each stage and the length each of its sub-transforms
+  private final int[] factors;
+  private final float[] twiddleReal;
+  private final float[] twiddleImag;
+  private final int scratchSize;
+
+  // for Bluestein's algorithm, null otherwise
+  private final MixedRadixFFT convolution;
+  private float[] chirpReal;
+  private float[] chirpImag;
+  private float[] filterReal;
+  private float[] filterImag;
+
+  // the buffers each thread transforms with
+  private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>()
+  {
+    protected Scratch initialValue()
+    {
+      return new Scratch(scratchSize, convolution == null ? 0 : convolution.length());
+    }
+  };
+
+  private static final class Scratch
+  {
+    // the inputs of the general butterfly
+    final float[] radixReal;
+    final float[] radixImag;
+    // the padded sequence Bluestein's algorithm convolves, and the result
+    final float[] workReal;
+    final float[] workImag;
+    final float[] convolvedReal;
+    final float[] convolvedImag;
+
+    Scratch(int radix, int convolutionLength)
+    {
+      radixReal = new float[radix];
+      radixImag = new float[radix];
+      workReal = new float[convolutionLength];
+      workImag = new float[convolutionLength];
+      convolvedReal = new float[convolutionLength];
+      convolvedImag = new float[convolutionLength];
+    }
+  }
+
+  MixedRadixFFT(int n)
+  {
+    if (n < 1)
+    {
+      throw new IllegalArgumentException("MixedRadixFFT: the length must be at least one.");
+    }
+    this.n = n;
+
+    int[] f = new int[64];
+    int count = 0;
+    int remaining = n;
+    int largest = 1;
+    int radix = 4;
+    while (remaining > 1)
+    {
+      while (remaining % radix != 0)
+      {
+        // 4, then 2, then 3, then every odd number, which will only divide if it's prime
+        radix = radix == 4 ? 2 : radix == 2 ? 3 : radix + 2;
+        if (radix * radix > remaining)
+        {
+          radix = remaining;
+        }
+      }
+      remaining /= radix;
+      f[count++] = radix;
+      f[count++] = remaining;
+      largest = Math.max(largest, radix);
+    }
+    if (n == 1)
+    {
+      f[count++] = 1;
+      f[count++] = 1;
+    }
+    factors = new int[count];
+    System.arraycopy(f, 0, factors, 0, count);
+
+    twiddleReal = new float[n];
+    twiddleImag = new float[n];
+    for (int i = 0; i < n; ++i)
+    {
+      double phase = -2 * Math.PI * i / n;
+      twiddleReal[i] = (float)Math.cos(phase);
+      twiddleImag[i] = (float)Math.sin(phase);
+    }
+    scratchSize = Math.min(largest, MAX_GENERAL_RADIX);
+
+    if (largest > MAX_GENERAL_RADIX)
+    {
+      int m = 1;
+      while (m < 2 * n - 1)
+      {
+        m <<= 1;
+      }
+      convolution = new MixedRadixFFT(m);
+      buildChirp(m);
+    }
+    else
+    {
+      convolution = null;
+    }
+  }
+
+  int length()
+  {
+    return n;
+  }
+
+  /**
+   * Computes the forward transform of <code>n</code> complex values read
+   * from <code>inReal</code> and <code>inImag</code>, starting at
+   * <code>inOffset</code>, and writes it to the first <code>n</code> values
+   * of <code>outReal</code> and <code>outImag</code>. <code>inImag</code>
+   * may be null for a real input. The output must not be the input.
+   */
+  void forward(float[] inReal, float[] inImag, int inOffset, float[] outReal, float[] outImag)
+  {
+    if (convolution != null)
+    {
+      bluestein(inReal, inImag, inOffset, outReal, outImag, scratch.get());
+    }
+    else
+    {
+      work(outReal, outImag, 0, inReal, inImag, inOffset, 1, 0, scratch.get());
+    }
+  }
+
+  // decimation in time: transforms every p-th input into each of the
+  // p sub-transforms of length m, then combines them with a butterfly.
+  private void work(float[] outReal, float[] outImag, int out,
+                    float[] inReal, float[] inImag, int in, int stride, int stage, Scratch s)
+  {
+    final int p = factors[stage];
+    final int m = factors[stage + 1];
+    if (m == 1)
+    {
+      for (int j = 0; j < p; ++j)
+      {
+        outReal[out + j] = inReal[in + j * stride];
+        outImag[out + j] = inImag == null ? 0 : inImag[in + j * stride];
+      }
+    }
+    else
+    {
+      for (int j = 0; j < p; ++j)
+      {
+        work(outReal, outImag, out + j * m, inReal, inImag, in + j * stride, stride * p, stage + 2, s);
+      }
+    }
+
+    switch (p)
+    {
+    case 1:
+      break;
+    case 2:
+      butterfly2(outReal, outImag, out, stride, m);
+      break;
+    case 3:
+      butterfly3(outReal, outImag, out, stride, m);
+      break;
+    case 4:
+      butterfly4(outReal, outImag, out, stride, m);
+      break;
+    case 5:
+      butterfly5(outReal, outImag, out, stride, m);
+      break;
+    default:
+      butterfly(outReal, outImag, out, stride, p, m, s.radixReal, s.radixImag);
+      break;
+    }
+  }
+
+  private void butterfly2(float[] re, float[] im, int out, int stride, int m)
+  {
+    for (int u = 0; u < m; ++u)
+    {
+      final int a = out + u;
+      final int b = a + m;
+      final int t = u * stride;
+      final float tr = re[b] * twiddleReal[t] - im[b] * twiddleImag[t];
+      final float ti = re[b] * twiddleImag[t] + im[b] * twiddleReal[t];
+      re[b] = re[a] - tr;
+      im[b] = im[a] - ti;
+      re[a] += tr;
+      im[a] += ti;
+    }
+  }
+
+  private void butterfly3(float[] re, float[] im, int out, int stride, int m)
+  {
+    // the imaginary part of e^(-2 pi i / 3)
+    final float epi = twiddleImag[stride * m];
+    for (int u = 0; u < m; ++u)
+    {
+      final int a = out + u;
+      final int b = a + m;
+      final int c = b + m;
+      final int t1 = u * stride;
+      final int t2 = 2 * t1;
+      final float s1r = re[b] * twiddleReal[t1] - im[b] * twiddleImag[t1];
+      final float s1i = re[b] * twiddleImag[t1] + im[b] * twiddleReal[t1];
+      final float s2r = re[c] * twiddleReal[t2] - im[c] * twiddleImag[t2];
+      final float s2i = re[c] * twiddleImag[t2] + im[c] * twiddleReal[t2];
+      final float s3r = s1r + s2r;
+      final float s3i = s1i + s2i;
+      final float s0r = (s1r - s2r) * epi;
+      final float s0i = (s1i - s2i) * epi;
+      final float hr = re[a] - s3r * 0.5f;
+      final float hi = im[a] - s3i * 0.5f;
+      re[a] += s3r;
+      im[a] += s3i;
+      re[c] = hr + s0i;
+      im[c] = hi - s0r;
+      re[b] = hr - s0i;
+      im[b] = hi + s0r;
+    }
+  }
+
+  private void butterfly4(float[] re, float[] im, int out, int stride, int m)
+  {
+    for (int u = 0; u < m; ++u)
+    {
+      final int a = out + u;
+      final int b = a + m;
+      final int c = b + m;
+      final int d = c + m;
+      final int t1 = u * stride;
+      final int t2 = 2 * t1;
+      final int t3 = 3 * t1;
+      final float s0r = re[b] * twiddleReal[t1] - im[b] * twiddleImag[t1];
+      final float s0i = re[b] * twiddleImag[t1] + im[b] * twiddleReal[t1];
+      final float s1r = re[c] * twiddleReal[t2] - im[c] * twiddleImag[t2];
+      final float s1i = re[c] * twiddleImag[t2] + im[c] * twiddleReal[t2];
+      final float s2r = re[d] * twiddleReal[t3] - im[d] * twiddleImag[t3];
+      final float s2i = re[d] * twiddleImag[t3] + im[d] * twiddleReal[t3];
+      final float s5r = re[a] - s1r;
+      final float s5i = im[a] - s1i;
+      final float s6r = re[a] + s1r;
+      final float s6i = im[a] + s1i;
+      final float s3r = s0r + s2r;
+      final float s3i = s0i + s2i;
+      final float s4r = s0r - s2r;
+      final float s4i = s0i - s2i;
+      re[c] = s6r - s3r;
+      im[c] = s6i - s3i;
+      re[a] = s6r + s3r;
+      im[a] = s6i + s3i;
+      re[b] = s5r + s4i;
+      im[b] = s5i - s4r;
+      re[d] = s5r - s4i;
+      im[d] = s5i + s4r;
+    }
+  }
+
+  private void butterfly5(float[] re, float[] im, int out, int stride, int m)
+  {
+    // e^(-2 pi i / 5) and e^(-4 pi i / 5)
+    final float yar = twiddleReal[stride * m];
+    final float yai = twiddleImag[stride * m];
+    final float ybr = twiddleReal[2 * stride * m];
+    final float ybi = twiddleImag[2 * stride * m];
+    for (int u = 0; u < m; ++u)
+    {
+      final int i0 = out + u;
+      final int i1 = i0 + m;
+      final int i2 = i1 + m;
+      final int i3 = i2 + m;
+      final int i4 = i3 + m;
+      final int t1 = u * stride;
+      final int t2 = 2 * t1;
+      final int t3 = 3 * t1;
+      final int t4 = 4 * t1;
+      final float s0r = re[i0];
+      final float s0i = im[i0];
+      final float s1r = re[i1] * twiddleReal[t1] - im[i1] * twiddleImag[t1];
+      final float s1i = re[i1] * twiddleImag[t1] + im[i1] * twiddleReal[t1];
+      final float s2r = re[i2] * twiddleReal[t2] - im[i2] * twiddleImag[t2];
+      final float s2i = re[i2] * twiddleImag[t2] + im[i2] * twiddleReal[t2];
+      final float s3r = re[i3] * twiddleReal[t3] - im[i3] * twiddleImag[t3];
+      final float s3i = re[i3] * twiddleImag[t3] + im[i3] * twiddleReal[t3];
+      final float s4r = re[i4] * twiddleReal[t4] - im[i4] * twiddleImag[t4];
+      final float s4i = re[i4] * twiddleImag[t4] + im[i4] * twiddleReal[t4];
+
+      final float s7r = s1r + s4r;
+      final float s7i = s1i + s4i;
+      final float s10r = s1r - s4r;
+      final float s10i = s1i - s4i;
+      final float s8r = s2r + s3r;
+      final float s8i = s2i + s3i;
+      final float s9r = s2r - s3r;
+      final float s9i = s2i - s3i;
+
+      re[i0] = s0r + s7r + s8r;
+      im[i0] = s0i + s7i + s8i;
+
+      final float s5r = s0r + s7r * yar + s8r * ybr;
+      final float s5i = s0i + s7i * yar + s8i * ybr;
+      final float s6r = s10i * yai + s9i * ybi;
+      final float s6i = -(s10r * yai + s9r * ybi);
+      re[i1] = s5r - s6r;
+      im[i1] = s5i - s6i;
+      re[i4] = s5r + s6r;
+      im[i4] = s5i + s6i;
+
+      final float s11r = s0r + s7r * ybr + s8r * yar;
+      final float s11i = s0i + s7i * ybr + s8i * yar;
+      final float s12r = -s10i * ybi + s9i * yai;
+      final float s12i = s10r * ybi - s9r * yai;
+      re[i2] = s11r + s12r;
+      im[i2] = s11i + s12i;
+      re[i3] = s11r - s12r;
+      im[i3] = s11i - s12i;
+    }
+  }
+
+  // a plain DFT of size p across the sub-transforms, with their twiddles folded in
+  private void butterfly(float[] re, float[] im, int out, int stride, int p, int m,
+                         float[] scratchReal, float[] scratchImag)
+  {
+    for (int u = 0; u < m; ++u)
+    {
+      for (int q = 0, k = out + u; q < p; ++q, k += m)
+      {
+        scratchReal[q] = re[k];
+        scratchImag[q] = im[k];
+      }
+      for (int q1 = 0, k = u; q1 < p; ++q1, k += m)
+      {
+        int t = 0;
+        float sr = scratchReal[0];
+        float si = scratchImag[0];
+        for (int q = 1; q < p; ++q)
+        {
+          t += stride * k;
+          if (t >= n)
+          {
+            t -= n;
+          }
+          sr += scratchReal[q] * twiddleReal[t] - scratchImag[q] * twiddleImag[t];
+          si += scratchReal[q] * twiddleImag[t] + scratchImag[q] * twiddleReal[t];
+        }
+        re[out + k] = sr;
+        im[out + k] = si;
+      }
+    }
+  }
+
+  private void buildChirp(int m)
+  {
+    chirpReal = new float[n];
+    chirpImag = new float[n];
+    for (int k = 0; k < n; ++k)
+    {
+      // k squared can be large, and only matters modulo 2n
+      long k2 = ((long)k * k) % (2L * n);
+      double phase = -Math.PI * k2 / n;
+      chirpReal[k] = (float)Math.cos(phase);
+      chirpImag[k] = (float)Math.sin(phase);
+    }
+
+    float[] workReal = new float[m];
+    float[] workImag = new float[m];
+    filterReal = new float[m];
+    filterImag = new float[m];
+
+    // the filter is the conjugate chirp, wrapped around for negative indices
+    workReal[0] = chirpReal[0];
+    workImag[0] = -chirpImag[0];
+    for (int k = 1; k < n; ++k)
+    {
+      workReal[k] = workReal[m - k] = chirpReal[k];
+      workImag[k] = workImag[m - k] = -chirpImag[k];
+    }
+    convolution.forward(workReal, workImag, 0, filterReal, filterImag);
+    // fold the scaling of the inverse transform into the filter
+    for (int k = 0; k < m; ++k)
+    {
+      filterReal[k] /= m;
+      filterImag[k] /= m;
+    }
+  }
+
+  private void bluestein(float[] inReal, float[] inImag, int inOffset, float[] outReal, float[] outImag, Scratch s)
+  {
+    final float[] workReal = s.workReal;
+    final float[] workImag = s.workImag;
+    final float[] convolvedReal = s.convolvedReal;
+    final float[] convolvedImag = s.convolvedImag;
+    final int m = workReal.length;
+    for (int k = 0; k < n; ++k)
+    {
+      final float xr = inReal[inOffset + k];
+      final float xi = inImag == null ? 0 : inImag[inOffset + k];
+      workReal[k] = xr * chirpReal[k] - xi * chirpImag[k];
+      workImag[k] = xr * chirpImag[k] + xi * chirpReal[k];
+    }
+    for (int k = n; k < m; ++k)
+    {
+      workReal[k] = 0;
+      workImag[k] = 0;
+    }
+    convolution.forward(workReal, workImag, 0, convolvedReal, convolvedImag);
+
+    // multiply by the filter, conjugating so that a forward
+    // transform does the inverse transform of the product
+    for (int k = 0; k < m; ++k)
+    {
+      final float ar = convolvedReal[k];
+      final float ai = convolvedImag[k];
+      workReal[k] = ar * filterReal[k] - ai * filterImag[k];
+      workImag[k] = -(ar * filterImag[k] + ai * filterReal[k]);
+    }
+    convolution.forward(workReal, workImag, 0, convolvedReal, convolvedImag);
+
+    for (int k = 0; k < n; ++k)
+    {
+      final float cr = convolvedReal[k];
+      final float ci = -convolvedImag[k];
+      outReal[k] = cr * chirpReal[k] - ci * chirpImag[k];
+      outImag[k] = cr * chirpImag[k] + ci * chirpReal[k];
+    }
+  }
+}
@@ -40,6 +40,11 @@ public class RectangularWindow extends WindowFunction
     return 1f;
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Rectangular Window";
@@ -0,0 +1,33 @@
+package ddf.minim.analysis;
+
+/**
+ * The spectral centroid is the center of mass of the spectrum, in Hz: the
+ * frequency of each band weighted by its amplitude. It tracks how bright a
+ * sound is, being high for cymbals and hiss and low for bass and muffled
+ * sounds. It is zero for silence.
+ * 
+ * @related SpectralFeature
+ * @related FFT
+ */
+public class SpectralCentroid extends SpectralFeature
+{
+  /**
+   * Constructs a SpectralCentroid.
+   */
+  public SpectralCentroid()
+  {
+    super(1);
+  }
+
+  protected void compute(float[] spectrum, float bandWidth)
+  {
+    float weighted = 0;
+    float total = 0;
+    for (int i = 0; i < spectrum.length; ++i)
+    {
+      weighted += i * spectrum[i];
+      total += spectrum[i];
+    }
+    values[0] = total > 0 ? weighted / total * bandWidth : 0;
+  }
+}
@@ -0,0 +1,142 @@
+package ddf.minim.analysis;
+
+/**
+ * A SpectralFeature is a measurement that is computed from the spectrum of a
+ * FourierTransform, like where its center of mass is or how much it has
+ * changed since the last frame. Call <code>update</code> after each forward
+ * transform and the feature is computed from the spectrum in the transform,
+ * without copying it and without allocating anything, so it is fine to do
+ * every frame. Anything a feature needs to know about the size of the
+ * spectrum, like which bands belong to which filter, is worked out the first
+ * time it is updated and again only if the transform it is given has a
+ * different size or sample rate.
+ * <p>
+ * Some features are a single number, which <code>getValue()</code> returns,
+ * and some are several, which you can get one at a time with
+ * <code>get(i)</code> or all at once with <code>getValues()</code>.
+ * <p>
+ * To create your own feature, extend <code>SpectralFeature</code> and
+ * implement <code>compute</code>, and <code>prepare</code> if there is
+ * anything to work out ahead of time.
+ * 
+ * @related FFT
+ * @related FourierTransform
+ */
+public abstract class SpectralFeature
+{
+  /**
+   * The results of the last update.
+   */
+  protected final float[] values;
+
+  // the size of the spectrum prepared for
+  private int preparedBands;
+  private float preparedBandWidth;
+
+  /**
+   * Constructs a feature with <code>size</code> values.
+   * 
+   * @param size
+   *          int: how many values the feature has
+   */
+  protected SpectralFeature(int size)
+  {
+    values = new float[size];
+  }
+
+  /**
+   * Computes the feature from the current spectrum of a FourierTransform.
+   * 
+   * @param fft
+   *          FourierTransform: the transform to read the spectrum from
+   *          
+   * @related SpectralFeature
+   */
+  public void update(FourierTransform fft)
+  {
+    final float[] spectrum = fft.spectrum;
+    final float bandWidth = fft.getBandWidth();
+    if (spectrum.length != preparedBands || bandWidth != preparedBandWidth)
+    {
+      prepare(spectrum.length, bandWidth);
+      preparedBands = spectrum.length;
+      preparedBandWidth = bandWidth;
+    }
+    compute(spectrum, bandWidth);
+  }
+
+  /**
+   * Called before the first <code>compute</code> and whenever the size of
+   * the spectrum or the width of its bands has changed since the last one.
+   * The default does nothing.
+   * 
+   * @param bands
+   *          int: how many bands the spectrum has
+   * @param bandWidth
+   *          float: the width of each band, in Hz
+   */
+  protected void prepare(int bands, float bandWidth)
+  {
+  }
+
+  /**
+   * Computes the feature from a spectrum and puts the results in
+   * <code>values</code>.
+   * 
+   * @param spectrum
+   *          float[]: the amplitude of each band
+   * @param bandWidth
+   *          float: the width of each band, in Hz
+   */
+  protected abstract void compute(float[] spectrum, float bandWidth);
+
+  /**
+   * Returns how many values this feature has.
+   * 
+   * @related SpectralFeature
+   */
+  public int size()
+  {
+    return values.length;
+  }
+
+  /**
+   * Returns the first value of this feature, which is the only one for
+   * features that are a single number.
+   * 
+   * @return float: the value from the last update
+   * 
+   * @related SpectralFeature
+   */
+  public float getValue()
+  {
+    return values[0];
+  }
+
+  /**
+   * Returns one of the values of this feature.
+   * 
+   * @param i
+   *          int: which value
+   * @return float: the value from the last update
+   * 
+   * @related SpectralFeature
+   */
+  public float get(int i)
+  {
+    return values[i];
+  }
+
+  /**
+   * Returns all of the values of this feature. The array is filled in
+   * again by every update, so you can hold on to it.
+   * 
+   * @return float[]: the values from the last update
+   * 
+   * @related SpectralFeature
+   */
+  public float[] getValues()
+  {
+    return values;
+  }
+}
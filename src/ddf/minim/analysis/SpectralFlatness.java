@@ -0,0 +1,38 @@
+package ddf.minim.analysis;
+
+/**
+ * Spectral flatness is the geometric mean of the spectrum's power divided by
+ * its arithmetic mean. It is close to one for noise, which has about the
+ * same power in every band, and close to zero for tones, which put their
+ * power in a few bands. Bands quieter than -100 dB are treated as being at
+ * -100 dB, so silence counts as flat.
+ * 
+ * @related SpectralFeature
+ */
+public class SpectralFlatness extends SpectralFeature
+{
+  // the smallest power used, -100 dB
+  private static final float FLOOR = 1e-10f;
+
+  /**
+   * Constructs a SpectralFlatness.
+   */
+  public SpectralFlatness()
+  {
+    super(1);
+  }
+
+  protected void compute(float[] spectrum, float bandWidth)
+  {
+    double logSum = 0;
+    double sum = 0;
+    for (int i = 0; i < spectrum.length; ++i)
+    {
+      final float power = Math.max(spectrum[i] * spectrum[i], FLOOR);
+      logSum += Math.log(power);
+      sum += power;
+    }
+    final int n = spectrum.length;
+    values[0] = (float)(Math.exp(logSum / n) / (sum / n));
+  }
+}
@@ -0,0 +1,61 @@
+package ddf.minim.analysis;
+
+/**
+ * Spectral flux measures how much the spectrum has grown since the last
+ * update: the sum of how much each band's amplitude went up, with bands
+ * that went down ignored. It jumps when a new note or drum hit starts, which
+ * makes it a good signal for onset detection. The first update compares
+ * against silence.
+ * 
+ * @related SpectralFeature
+ * @related BeatDetect
+ */
+public class SpectralFlux extends SpectralFeature
+{
+  private float[] previous;
+
+  /**
+   * Constructs a SpectralFlux.
+   */
+  public SpectralFlux()
+  {
+    super(1);
+  }
+
+  /**
+   * Forgets the last spectrum, so the next update compares against silence.
+   * 
+   * @related SpectralFlux
+   */
+  public void reset()
+  {
+    if (previous != null)
+    {
+      for (int i = 0; i < previous.length; ++i)
+      {
+        previous[i] = 0;
+      }
+    }
+    values[0] = 0;
+  }
+
+  protected void prepare(int bands, float bandWidth)
+  {
+    previous = new float[bands];
+  }
+
+  protected void compute(float[] spectrum, float bandWidth)
+  {
+    float flux = 0;
+    for (int i = 0; i < spectrum.length; ++i)
+    {
+      final float rise = spectrum[i] - previous[i];
+      if (rise > 0)
+      {
+        flux += rise;
+      }
+      previous[i] = spectrum[i];
+    }
+    values[0] = flux;
+  }
+}
@@ -0,0 +1,62 @@
+package ddf.minim.analysis;
+
+/**
+ * The spectral rolloff is the frequency, in Hz, below which a given fraction
+ * of the spectrum's energy lies, 85 percent unless you ask for something
+ * else. Like the centroid, it is a measure of brightness, but it is less
+ * thrown off by a few loud low bands. It is zero for silence.
+ * 
+ * @related SpectralFeature
+ * @related SpectralCentroid
+ */
+public class SpectralRolloff extends SpectralFeature
+{
+  private final float fraction;
+
+  /**
+   * Constructs a SpectralRolloff for 85 percent of the energy.
+   */
+  public SpectralRolloff()
+  {
+    this(0.85f);
+  }
+
+  /**
+   * Constructs a SpectralRolloff for a fraction of the energy.
+   * 
+   * @param fraction
+   *          float: how much of the energy must be below the rolloff,
+   *          between 0 and 1
+   */
+  public SpectralRolloff(float fraction)
+  {
+    super(1);
+    if (fraction < 0 || fraction > 1)
+    {
+      throw new IllegalArgumentException("SpectralRolloff: fraction must be between 0 and 1.");
+    }
+    this.fraction = fraction;
+  }
+
+  protected void compute(float[] spectrum, float bandWidth)
+  {
+    float total = 0;
+    for (int i = 0; i < spectrum.length; ++i)
+    {
+      total += spectrum[i] * spectrum[i];
+    }
+    final float target = total * fraction;
+    float sum = 0;
+    int i = 0;
+    while (i < spectrum.length - 1)
+    {
+      sum += spectrum[i] * spectrum[i];
+      if (sum >= target)
+      {
+        break;
+      }
+      ++i;
+    }
+    values[0] = total > 0 ? i * bandWidth : 0;
+  }
+}
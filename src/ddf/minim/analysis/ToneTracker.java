@@ -0,0 +1,340 @@
+package ddf.minim.analysis;
+
+import ddf.minim.AudioListener;
+import ddf.minim.UGen;
+
+/**
+ * A ToneTracker watches a handful of frequencies, like the tones of a phone
+ * keypad, a pilot tone, or particular partials of an instrument, and tells
+ * you how strong each one is and what its phase is. It does this with a
+ * sliding DFT: for each frequency it keeps a running sum over the most
+ * recent <code>windowSize</code> samples that is updated with every new
+ * sample, so the results are always current and the cost is a few multiplies
+ * per frequency per sample, rather than a whole FFT to read a few bands.
+ * The frequencies don't need to fall on FFT band centers.
+ * <p>
+ * The window size determines how finely frequencies are told apart: tones
+ * closer together than about <code>sampleRate / windowSize</code> Hz leak
+ * into each other's results, as do tones that started or stopped less than
+ * <code>windowSize</code> samples ago.
+ * <p>
+ * A ToneTracker can be used in two ways. It is an AudioListener, so you can
+ * add it to an AudioPlayer, AudioInput, or AudioOutput with addListener,
+ * in which case stereo audio is mixed down to mono before it is tracked.
+ * It is also a UGen, so you can patch audio to it anywhere in a UGen chain.
+ * It passes its input through unchanged, so if you aren't interested in
+ * hearing the audio you can patch it to a Sink instead of an output.
+ * You can also call <code>process</code> with samples of your own.
+ *
+ * @related FFT
+ * @related AudioListener
+ * @related UGen
+ */
+public class ToneTracker extends UGen implements AudioListener
+{
+  /**
+   * Where incoming audio is patched when this is used as a UGen.
+   *
+   * @related ToneTracker
+   * @related UGen.UGenInput
+   */
+  public UGenInput audio;
+
+  private final float[] frequencies;
+  private final int windowSize;
+  private float trackingRate;
+
+  // the most recent windowSize samples
+  private final float[] history;
+  private int historyIndex;
+  private long sampleCount;
+
+  // per frequency: the running sum, the phasor e^(-iwn) for the
+  // current sample n, how much the phasor turns each sample,
+  // and e^(iwN), which turns it back to the sample leaving the window.
+  private final double[] sumReal;
+  private final double[] sumImag;
+  private final double[] phasorReal;
+  private final double[] phasorImag;
+  private final double[] stepReal;
+  private final double[] stepImag;
+  private final double[] windowReal;
+  private final double[] windowImag;
+
+  /**
+   * Constructs a ToneTracker for use as a UGen, which tracks frequencies
+   * at the sample rate of whatever it is patched to.
+   *
+   * @param frequencies
+   *          float[]: the frequencies to track, in Hz
+   * @param windowSize
+   *          int: how many samples each result is computed over
+   */
+  public ToneTracker(float[] frequencies, int windowSize)
+  {
+    if (windowSize < 1)
+    {
+      throw new IllegalArgumentException("ToneTracker: windowSize must be at least one.");
+    }
+    this.frequencies = frequencies.clone();
+    this.windowSize = windowSize;
+    history = new float[windowSize];
+    int count = frequencies.length;
+    sumReal = new double[count];
+    sumImag = new double[count];
+    phasorReal = new double[count];
+    phasorImag = new double[count];
+    stepReal = new double[count];
+    stepImag = new double[count];
+    windowReal = new double[count];
+    windowImag = new double[count];
+
+    audio = new UGenInput(InputType.AUDIO);
+  }
+
+  /**
+   * Constructs a ToneTracker for use as an AudioListener, or with
+   * <code>process</code>, for audio at the given sample rate.
+   *
+   * @param frequencies
+   *          float[]: the frequencies to track, in Hz
+   * @param windowSize
+   *          int: how many samples each result is computed over
+   * @param sampleRate
+   *          float: the sample rate of the audio that will be tracked
+   */
+  public ToneTracker(float[] frequencies, int windowSize, float sampleRate)
+  {
+    this(frequencies, windowSize);
+    setTrackingRate(sampleRate);
+  }
+
+  protected void sampleRateChanged()
+  {
+    setTrackingRate(sampleRate());
+  }
+
+  // the sample rate the frequencies are turned into angles with. this resets
+  // the sums, because the ones we have were computed with the old angles.
+  private void setTrackingRate(float rate)
+  {
+    trackingRate = rate;
+    for (int i = 0; i < frequencies.length; ++i)
+    {
+      double omega = 2 * Math.PI * frequencies[i] / rate;
+      stepReal[i] = Math.cos(omega);
+      stepImag[i] = -Math.sin(omega);
+      windowReal[i] = Math.cos(omega * windowSize);
+      windowImag[i] = Math.sin(omega * windowSize);
+    }
+    reset();
+  }
+
+  /**
+   * Forgets all of the audio tracked so far.
+   *
+   * @related ToneTracker
+   */
+  public void reset()
+  {
+    for (int i = 0; i < frequencies.length; ++i)
+    {
+      sumReal[i] = 0;
+      sumImag[i] = 0;
+      phasorReal[i] = 1;
+      phasorImag[i] = 0;
+    }
+    for (int i = 0; i < windowSize; ++i)
+    {
+      history[i] = 0;
+    }
+    historyIndex = 0;
+    sampleCount = 0;
+  }
+
+  /**
+   * Returns how many frequencies are being tracked.
+   *
+   * @return int: the number of frequencies
+   *
+   * @related ToneTracker
+   */
+  public int size()
+  {
+    return frequencies.length;
+  }
+
+  /**
+   * Returns one of the frequencies being tracked.
+   *
+   * @param i
+   *          int: which frequency
+   * @return float: the frequency in Hz
+   *
+   * @related ToneTracker
+   */
+  public float getFrequency(int i)
+  {
+    return frequencies[i];
+  }
+
+  /**
+   * Returns how many samples each result is computed over.
+   *
+   * @related ToneTracker
+   */
+  public int getWindowSize()
+  {
+    return windowSize;
+  }
+
+  /**
+   * Returns the amplitude of one of the frequencies over the last
+   * <code>windowSize</code> samples. A sine wave at that frequency with an
+   * amplitude of one results in a value close to one.
+   *
+   * @param i
+   *          int: which frequency
+   * @return float: the amplitude
+   *
+   * @related ToneTracker
+   */
+  public float getMagnitude(int i)
+  {
+    return (float)(2 * Math.sqrt(sumReal[i] * sumReal[i] + sumImag[i] * sumImag[i]) / windowSize);
+  }
+
+  /**
+   * Returns the phase of one of the frequencies at the most recent sample,
+   * which is what <code>cos</code> would need to be called with to produce
+   * a matching sample.
+   *
+   * @param i
+   *          int: which frequency
+   * @return float: the phase in radians, between -PI and PI
+   *
+   * @related ToneTracker
+   */
+  public float getPhase(int i)
+  {
+    // the sum is measured against the phasor, which started at the first
+    // sample tracked, so turn it forward to the current one. the phasor
+    // is already waiting for the next sample, so step back by one.
+    double re = sumReal[i] * phasorReal[i] + sumImag[i] * phasorImag[i];
+    double im = sumImag[i] * phasorReal[i] - sumReal[i] * phasorImag[i];
+    return (float)Math.atan2(im * stepReal[i] + re * stepImag[i], re * stepReal[i] - im * stepImag[i]);
+  }
+
+  /**
+   * Tracks a buffer of samples.
+   *
+   * @param samples
+   *          float[]: the samples to track
+   *
+   * @related ToneTracker
+   */
+  public void process(float[] samples)
+  {
+    process(samples, 0, samples.length);
+  }
+
+  /**
+   * Tracks <code>length</code> samples of a buffer, starting at
+   * <code>offset</code>.
+   *
+   * @param samples
+   *          float[]: the samples to track
+   * @param offset
+   *          int: the first sample to track
+   * @param length
+   *          int: how many samples to track
+   *
+   * @related ToneTracker
+   */
+  public void process(float[] samples, int offset, int length)
+  {
+    for (int i = 0; i < length; ++i)
+    {
+      track(samples[offset + i]);
+    }
+  }
+
+  /**
+   * Tracks a mono buffer of samples. This is called automatically
+   * when a ToneTracker has been added as a listener.
+   *
+   * @invisible
+   */
+  public void samples(float[] samp)
+  {
+    process(samp, 0, samp.length);
+  }
+
+  /**
+   * Tracks the mix of a stereo buffer of samples. This is called
+   * automatically when a ToneTracker has been added as a listener.
+   *
+   * @invisible
+   */
+  public void samples(float[] sampL, float[] sampR)
+  {
+    for (int i = 0; i < sampL.length; ++i)
+    {
+      track((sampL[i] + sampR[i]) * 0.5f);
+    }
+  }
+
+  protected void uGenerate(float[] channels)
+  {
+    float[] lastValues = audio.getLastValues();
+    float signal = 0;
+    for (int i = 0; i < lastValues.length; ++i)
+    {
+      signal += lastValues[i];
+    }
+    track(signal / lastValues.length);
+
+    for (int i = 0; i < channels.length; ++i)
+    {
+      channels[i] = lastValues[i < lastValues.length ? i : lastValues.length - 1];
+    }
+  }
+
+  private void track(float sample)
+  {
+    if (trackingRate <= 0)
+    {
+      return;
+    }
+    final float oldest = history[historyIndex];
+    history[historyIndex] = sample;
+    if (++historyIndex == windowSize)
+    {
+      historyIndex = 0;
+    }
+    ++sampleCount;
+
+    for (int i = 0; i < frequencies.length; ++i)
+    {
+      final double pr = phasorReal[i];
+      final double pi = phasorImag[i];
+      // the sample leaving the window was added with the phasor windowSize samples ago
+      final double or = pr * windowReal[i] - pi * windowImag[i];
+      final double oi = pr * windowImag[i] + pi * windowReal[i];
+      sumReal[i] += sample * pr - oldest * or;
+      sumImag[i] += sample * pi - oldest * oi;
+
+      double nr = pr * stepReal[i] - pi * stepImag[i];
+      double ni = pr * stepImag[i] + pi * stepReal[i];
+      // keep rounding from slowly changing the length of the phasor
+      if ((sampleCount & 1023) == 0)
+      {
+        double length = Math.sqrt(nr * nr + ni * ni);
+        nr /= length;
+        ni /= length;
+      }
+      phasorReal[i] = nr;
+      phasorImag[i] = ni;
+    }
+  }
+}
@@ -39,6 +39,11 @@ public class TriangularWindow extends WindowFunction
      return 2f / length * (length / 2f - Math.abs(index - (length - 1) / 2f));
   }
   
+  protected String cacheKey()
+  {
+    return getClass().getName();
+  }
+  
   public String toString()
   {
 	  return "Triangular Window";
@@ -18,6 +18,11 @@
 
 package ddf.minim.analysis;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ddf.minim.SampleKernels;
+
 /**
  * A Window function represents a curve which is applied to a sample buffer to
  * reduce the introduction of spectral leakage in the Fourier transform.
@@ -59,6 +64,25 @@ public abstract class WindowFunction
   protected static final float TWO_PI = (float) (2 * Math.PI);
   protected int length;
   
+  // how many shared curves are kept. an app that uses many different
+  // lengths only keeps the ones it used most recently.
+  private static final int MAX_SHARED_CURVES = 32;
+  
+  // curves shared by every window with the same cache key, by key and length,
+  // least recently used first. it's only looked in when an instance changes
+  // length, so a lock is cheap enough.
+  private static final Map<String, float[]> curves = new LinkedHashMap<String, float[]>(16, 0.75f, true)
+  {
+    protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest)
+    {
+      return size() > MAX_SHARED_CURVES;
+    }
+  };
+  
+  // the curve used by apply last time, so that applying to buffers 
+  // of the same length over and over doesn't need a lookup.
+  private volatile float[] curve;
+  
   public WindowFunction()
   {
   }
@@ -70,12 +94,7 @@ public abstract class WindowFunction
    */
   public void apply(float[] samples) 
   {
-    this.length = samples.length;
-
-    for (int n = 0; n < samples.length; n ++) 
-    {
-      samples[n] *= value(samples.length, n);
-    }
+    apply(samples, 0, samples.length);
   }
   
   /**
@@ -85,12 +104,69 @@ public abstract class WindowFunction
    */
   public void apply(float[] samples, int offset, int length)
   {
-	  this.length = length;
-	  
-	  for(int n = offset; n < offset + length; ++n)
-	  {
-		  samples[n] *= value(length, n - offset);
-	  }
+    this.length = length;
+    
+    SampleKernels.multiply(samples, offset, curve(length), 0, length);
+  }
+  
+  // returns the curve for a window of this length, generating it only 
+  // when no window with the same cache key has needed this length before.
+  private float[] curve(int length)
+  {
+    float[] c = curve;
+    if ( c != null && c.length == length )
+    {
+      return c;
+    }
+    String key = cacheKey();
+    if ( key == null )
+    {
+      c = generateCurve(length);
+    }
+    else
+    {
+      key = key + "/" + length;
+      synchronized (curves)
+      {
+        c = curves.get(key);
+      }
+      if ( c == null )
+      {
+        c = generateCurve(length);
+        synchronized (curves)
+        {
+          float[] existing = curves.get(key);
+          if ( existing != null )
+          {
+            c = existing;
+          }
+          else
+          {
+            curves.put(key, c);
+          }
+        }
+      }
+    }
+    curve = c;
+    return c;
+  }
+  
+  /**
+   * Returns a key that identifies the shape of this window, which is
+   * used to share the curves of windows with the same shape between 
+   * all instances and threads, so that each length is usually only generated
+   * once. Only the most recently used curves are kept.
+   * The windows in this package use their class name, followed by
+   * their parameters if they have any, so a subclass that changes 
+   * the shape without adding parameters gets a key of its own. 
+   * The default returns null, which means curves are only kept 
+   * by the instance that generated them.
+   * 
+   * @return the key, or null if curves should not be shared
+   */
+  protected String cacheKey()
+  {
+    return null;
   }
 
   /** 
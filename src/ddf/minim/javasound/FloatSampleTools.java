@@ -33,6 +33,7 @@ import java.util.Random;
 
 import javax.sound.sampled.AudioFormat;
 
+import ddf.minim.SampleKernels;
 
 /**
  * Utility functions for handling data in normalized float arrays. Each sample
@@ -479,6 +480,20 @@ public class FloatSampleTools {
 		// TDebug.out("FloatSampleTools.byte2floatGeneric, formatType="
 		// +formatType2Str(formatType));
 		// }
+		// the common formats go through the shared kernels, which don't have
+		// to check the format for every sample.
+		switch (formatType) {
+		case CT_16SB:
+		case CT_16SL:
+			SampleKernels.pcm16ToFloat(input, inByteOffset, inByteStep,
+					formatType == CT_16SB, output, outOffset, sampleCount);
+			return;
+		case CT_24_3SB:
+		case CT_24_3SL:
+			SampleKernels.pcm24ToFloat(input, inByteOffset, inByteStep,
+					formatType == CT_24_3SB, output, outOffset, sampleCount);
+			return;
+		}
 		int endCount = outOffset + sampleCount;
 		int inIndex = inByteOffset;
 		for (int outIndex = outOffset; outIndex < endCount; outIndex++, inIndex += inByteStep) {
@@ -805,6 +820,24 @@ public class FloatSampleTools {
 			// create the random number generator for dithering
 			random = new Random();
 		}
+		if (ditherBits == 0.0f) {
+			// without dithering the common formats go through the shared
+			// kernels, which don't have to check the format for every sample.
+			switch (formatType) {
+			case CT_16SB:
+			case CT_16SL:
+				SampleKernels.floatToPcm16(input, inOffset, output,
+						outByteOffset, outByteStep, formatType == CT_16SB,
+						sampleCount);
+				return;
+			case CT_24_3SB:
+			case CT_24_3SL:
+				SampleKernels.floatToPcm24(input, inOffset, output,
+						outByteOffset, outByteStep, formatType == CT_24_3SB,
+						sampleCount);
+				return;
+			}
+		}
 		int endSample = inOffset + sampleCount;
 		int iSample;
 		int outIndex = outByteOffset;
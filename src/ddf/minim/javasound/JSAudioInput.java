@@ -18,6 +18,8 @@
 
 package ddf.minim.javasound;
 
+import java.util.Arrays;
+
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.Control;
 import javax.sound.sampled.TargetDataLine;
@@ -29,6 +31,9 @@ import ddf.minim.MultiChannelBuffer;
 import ddf.minim.spi.AudioStream;
 
 // This is our AudioInput!
+// all reading blocks on the line and nothing else, so we pick up audio
+// as soon as the line has it. the buffers used for converting are kept
+// around and only reallocated when a caller asks for a different size.
 final class JSAudioInput extends Thread
                         implements AudioStream
 {
@@ -37,24 +42,46 @@ final class JSAudioInput extends Thread
   
   // line reading variables 
   private TargetDataLine line;
+  private AudioFormat format;
   private FloatSampleBuffer buffer;
   private int bufferSize;
-  private boolean finished;
+  private volatile boolean finished;
   private boolean mono;
   private byte[] rawBytes;
   
+  // used by read(MultiChannelBuffer)
+  private byte[] readBytes;
+  private Object[] readChannels;
+  
+  // read() hands out sample frames one at a time from a block read from the line,
+  // rather than asking the line for a single frame at a time.
+  private FloatSampleBuffer frameBlock;
+  private byte[] frameBlockBytes;
+  private int framePosition;
+  private float[] frame;
+  
+  private volatile long overrunCount;
+  
   JSAudioInput(TargetDataLine tdl, int bufferSize)
   {
     line = tdl;
+    format = tdl.getFormat();
     this.bufferSize = bufferSize;
-    buffer = new FloatSampleBuffer(tdl.getFormat().getChannels(), 
+    buffer = new FloatSampleBuffer(format.getChannels(), 
         bufferSize,
-        tdl.getFormat().getSampleRate());
+        format.getSampleRate());
     finished = false;
     mono = ( buffer.getChannelCount() == 1 );
-    int byteBufferSize = buffer.getByteArrayBufferSize(line.getFormat());
+    int byteBufferSize = buffer.getByteArrayBufferSize(format);
     Minim.debug("byteBufferSize is " + byteBufferSize);
     rawBytes = new byte[byteBufferSize];
+    
+    readChannels = new Object[format.getChannels()];
+    
+    frameBlock = new FloatSampleBuffer(format.getChannels(), bufferSize, format.getSampleRate());
+    frameBlockBytes = new byte[byteBufferSize];
+    framePosition = bufferSize;
+    frame = new float[format.getChannels()];
   }
   
   public void run()
@@ -62,10 +89,10 @@ final class JSAudioInput extends Thread
     line.start();
     while ( !finished )
     {
-      // read from the line
-      line.read(rawBytes, 0, rawBytes.length);
+      // read from the line, this blocks until a buffer's worth is there
+      readLine(rawBytes, rawBytes.length);
       // convert to float samples
-      buffer.setSamplesFromBytes(rawBytes, 0, line.getFormat(), 
+      buffer.setSamplesFromBytes(rawBytes, 0, format, 
                                  0, buffer.getSampleCount());
       // apply effects, if any, and broadcast the result
       // to all listeners
@@ -82,13 +109,6 @@ final class JSAudioInput extends Thread
         effect.process(sampL, sampR);
         listener.samples(sampL, sampR);
       }
-      try
-      {
-        Thread.sleep(10);
-      }
-      catch (InterruptedException e)
-      {
-      }
     }
     // we are done, clean up the line
     line.flush();
@@ -97,6 +117,30 @@ final class JSAudioInput extends Thread
     line = null;
   }
   
+  // fills the first length bytes of bytes from the line.
+  private void readLine(byte[] bytes, int length)
+  {
+    // the line throws away whatever doesn't fit in its buffer,
+    // so if it's already full when we get to it we've lost some input.
+    if ( line.available() >= line.getBufferSize() )
+    {
+      ++overrunCount;
+    }
+    int bytesRead = 0;
+    while ( bytesRead < length )
+    {
+      int actualRead = line.read(bytes, bytesRead, length - bytesRead);
+      if ( actualRead <= 0 )
+      {
+        // the line was stopped or closed out from under us,
+        // so the rest of this buffer is silence.
+        Arrays.fill(bytes, bytesRead, length, (byte)0);
+        break;
+      }
+      bytesRead += actualRead;
+    }
+  }
+  
   public void open()
   {
     // start();
@@ -119,7 +163,7 @@ final class JSAudioInput extends Thread
 
   public AudioFormat getFormat()
   {
-    return line.getFormat();
+    return format;
   } 
   
   public void setAudioEffect(AudioEffect effect)
@@ -136,45 +180,46 @@ final class JSAudioInput extends Thread
   {
     return line.getControls();
   }
+  
+  public long getOverrunCount()
+  {
+    return overrunCount;
+  }
 
+	// the array returned is reused by the next call, 
+	// so callers need to copy out what they want to keep.
 	public float[] read() 
 	{
-		// TODO: this is sort of terrible, but will do for now. would be much better
-		// to dig the conversion stuff out of FloatSampleBuffer and do this more directly
-		int numSamples = 1;
-		// allocate enough bytes for one sample frame
-		byte[] bytes = new byte[ line.getFormat().getFrameSize() ];
-		line.read(bytes, 0, bytes.length);
-		buffer.setSamplesFromBytes(bytes, 0, line.getFormat(), 0, numSamples);
-		// allocate enough floats for the number of channels
-		float[] samples = new float[ buffer.getChannelCount() ];
-
-		for(int i = 0; i < samples.length; i++)
+		if ( framePosition == frameBlock.getSampleCount() )
+		{
+			readLine(frameBlockBytes, frameBlockBytes.length);
+			frameBlock.setSamplesFromBytes(frameBlockBytes, 0, format, 0, frameBlock.getSampleCount());
+			framePosition = 0;
+		}
+		for(int i = 0; i < frame.length; i++)
 		{
-			samples[i] = buffer.getChannel(i)[0];
-		}		
-		return samples;
+			frame[i] = frameBlock.getChannel(i)[framePosition];
+		}
+		++framePosition;
+		return frame;
 	}
 
 	public void read(MultiChannelBuffer buffer) 
 	{
-		// create our converter object
-		int numChannels = line.getFormat().getChannels();
 		int numSamples = buffer.getBufferSize();
-		float sampleRate = line.getFormat().getSampleRate();
-		FloatSampleBuffer convert = new FloatSampleBuffer( numChannels, numSamples, sampleRate );
-		// allocate enough bytes for the size of this buffer
-		byte[] bytes = new byte[ convert.getByteArrayBufferSize(line.getFormat()) ];
-		// read the bytes
-		line.read(bytes, 0, bytes.length);
-		// convert the bytes
-		convert.setSamplesFromBytes(bytes, 0, line.getFormat(), 0, numSamples);
-		// copy the converted floats into the MultiChannelBuffer
-		// make sure it has the correct number of channels first
-		buffer.setChannelCount(numChannels);
-		for(int i = 0; i < convert.getChannelCount(); i++)
+		int numBytes = numSamples * format.getFrameSize();
+		if ( readBytes == null || readBytes.length != numBytes )
+		{
+			readBytes = new byte[numBytes];
+		}
+		readLine(readBytes, numBytes);
+		// make sure it has the correct number of channels 
+		// and convert straight into its channels.
+		buffer.setChannelCount(readChannels.length);
+		for(int i = 0; i < readChannels.length; i++)
 		{
-			buffer.setChannel(i, convert.getChannel(i));
+			readChannels[i] = buffer.getChannel(i);
 		}
+		FloatSampleTools.byte2float(readBytes, 0, readChannels, 0, numSamples, format, false);
 	}
 }
@@ -18,32 +18,56 @@
 
 package ddf.minim.javasound;
 
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.Control;
 import javax.sound.sampled.SourceDataLine;
 
 import ddf.minim.AudioEffect;
 import ddf.minim.AudioListener;
+import ddf.minim.AudioMetrics;
 import ddf.minim.AudioSignal;
 import ddf.minim.Minim;
 import ddf.minim.MultiChannelBuffer;
+import ddf.minim.OutputGain;
+import ddf.minim.SampleKernels;
 import ddf.minim.spi.AudioOut;
 import ddf.minim.spi.AudioStream;
 
 final class JSAudioOutput extends Thread implements AudioOut
 {
-	private AudioListener		listener;
-	private AudioStream			stream;
-	private AudioSignal			signal;
-	private AudioEffect			effect;
+	// renders our own signal or stream, effects, listener and output gain
+	private JSMixerChannel		source;
+	// other sources sharing our line, which are added into what source renders.
+	// replaced rather than modified so the audio thread never sees a partial change.
+	private volatile JSMixerChannel[]	channels	= new JSMixerChannel[0];
 
 	private SourceDataLine		line;
 	private AudioFormat			format;
-	private FloatSampleBuffer	buffer;
+	// the render buffer, which belongs to source. signals, streams, effects and 
+	// listeners all work directly on its channel arrays, which are then converted to bytes once.
 	private MultiChannelBuffer	mcBuffer;
 	private int					bufferSize;
 	private boolean				finished;
 	private byte[]				outBytes;
+	// how the line wants its bytes, worked out once when we are constructed.
+	private boolean				floatLine;
+	private boolean				bigEndian;
+	private int					formatType;
+	private int					sampleSize;
+	
+	// scheduling. when safetyMargin is zero we render whenever the line 
+	// has room, otherwise we wait until the line is about to run dry, 
+	// less the margin and the time we expect rendering to take.
+	private long				safetyMarginNanos;
+	private boolean				highPriority;
+	private long				renderEstimateNanos;
+	private boolean				wroteToLine;
+	
+	// where we record what the scheduler observes
+	private AudioMetrics		metrics;
 
 	JSAudioOutput(SourceDataLine sdl, int bufferSize)
 	{
@@ -51,81 +75,192 @@ final class JSAudioOutput extends Thread implements AudioOut
 		this.bufferSize = bufferSize;
 		format = sdl.getFormat();
 
-		buffer = new FloatSampleBuffer(format.getChannels(), bufferSize, format.getSampleRate());
-		mcBuffer = new MultiChannelBuffer(bufferSize, format.getChannels());
-		outBytes = new byte[buffer.getByteArrayBufferSize(format)];
+		source = new JSMixerChannel(format, bufferSize, null, null);
+		mcBuffer = source.getBuffer();
+		outBytes = new byte[bufferSize * format.getFrameSize()];
+		sampleSize = format.getFrameSize() / format.getChannels();
+		metrics = new AudioMetrics(bufferSize, format.getSampleRate());
+		bigEndian = format.isBigEndian();
+		floatLine = format.getEncoding().equals( AudioFormat.Encoding.PCM_FLOAT );
+		if ( !floatLine )
+		{
+			formatType = FloatSampleTools.getFormatType( format );
+		}
 		finished = false;
 		line = sdl;
 	}
 
 	public void run()
 	{
+		if ( highPriority )
+		{
+			setPriority( Thread.MAX_PRIORITY );
+		}
 		line.start();
 		while (!finished)
 		{
-			buffer.makeSilence();
+			waitForDeadline();
 			
-			if ( signal != null )
+			long renderStart = System.nanoTime();
+			JSMixerChannel[] mixing = channels;
+			source.render();
+			for(int i = 0; i < mixing.length; i++)
 			{
-				readSignal();
-			}
-			else if ( stream != null )
-			{
-				readStream();
-			}
-			if (line.getFormat().getChannels() == Minim.MONO)
-			{
-				effect.process(buffer.getChannel(0));
-				listener.samples(buffer.getChannel(0));
-			}
-			else
-			{
-				effect.process(buffer.getChannel(0), buffer.getChannel(1));
-				listener.samples(buffer.getChannel(0), buffer.getChannel(1));
-			}
-			buffer.convertToByteArray(outBytes, 0, format);
-			if ( line.available() == line.getBufferSize() )
-			{
-			  Minim.debug("Likely buffer underrun in AudioOutput.");
+				mixChannel(mixing[i]);
 			}
+			writeBytes();
+			renderFinished( System.nanoTime() - renderStart, mixing );
+			
+			// write blocks until the line has room for the whole buffer
 			line.write(outBytes, 0, outBytes.length);
-			try
-			{
-				Thread.sleep(1);
-			}
-			catch (InterruptedException e)
-			{
-			}
+			wroteToLine = true;
 		}
 		line.drain();
 		line.stop();
 		line.close();
 		line = null;
 	}
-
-	// TODO: ditch readSignal eventually
-	private void readSignal() 
+	
+	// renders a channel and adds it to the render buffer. a mono channel
+	// comes back already spread over both sides, so that it can be panned.
+	// a channel that throws is dropped from the mix, rather than 
+	// taking this thread, and every other channel, down with it.
+	private void mixChannel(JSMixerChannel channel)
 	{
-		if (line.getFormat().getChannels() == Minim.MONO)
+		long start = System.nanoTime();
+		try
 		{
-		    //long start = System.nanoTime();
-			signal.generate(buffer.getChannel(0));
-			//long end = System.nanoTime();
-			//long elap = (end - start) / 1000;
-			//System.out.println("Generated a buffer in " + elap + " microseconds.");
+			channel.render();
 		}
-		else
+		catch ( RuntimeException e )
 		{
-			signal.generate(buffer.getChannel(0), buffer.getChannel(1));
+			Minim.error( "A shared output stopped mixing a source that failed to render: " + e );
+			removeChannel( channel );
+			return;
 		}
+		MultiChannelBuffer rendered = channel.getBuffer();
+		int last = rendered.getChannelCount() - 1;
+		for(int i = 0; i < mcBuffer.getChannelCount(); i++)
+		{
+			SampleKernels.accumulate(rendered.getChannel(Math.min(i, last)), 0, mcBuffer.getChannel(i), 0, bufferSize);
+		}
+		channel.renderNanos = System.nanoTime() - start;
 	}
 	
-	private void readStream()
+	/**
+	 * Starts mixing channel into what we write to the line.
+	 */
+	synchronized void addChannel(JSMixerChannel channel)
 	{
-		stream.read(mcBuffer);
-		for(int i = 0; i < mcBuffer.getChannelCount(); i++)
+		JSMixerChannel[] added = Arrays.copyOf(channels, channels.length + 1);
+		added[channels.length] = channel;
+		channels = added;
+	}
+	
+	/**
+	 * Stops mixing channel into what we write to the line.
+	 * 
+	 * @return how many channels are still being mixed
+	 */
+	synchronized int removeChannel(JSMixerChannel channel)
+	{
+		JSMixerChannel[] current = channels;
+		for(int i = 0; i < current.length; i++)
 		{
-			System.arraycopy(mcBuffer.getChannel(i), 0, buffer.getChannel(i), 0, buffer.getSampleCount());
+			if ( current[i] == channel )
+			{
+				JSMixerChannel[] removed = new JSMixerChannel[current.length - 1];
+				System.arraycopy(current, 0, removed, 0, i);
+				System.arraycopy(current, i + 1, removed, i, removed.length - i);
+				channels = removed;
+				break;
+			}
+		}
+		return channels.length;
+	}
+	
+	// how long the audio already queued in the line will last.
+	private long queuedNanos()
+	{
+		int queuedFrames = (line.getBufferSize() - line.available()) / format.getFrameSize();
+		return (long)(queuedFrames * 1000000000.0 / format.getSampleRate());
+	}
+	
+	private void waitForDeadline()
+	{
+		if ( safetyMarginNanos == 0 )
+		{
+			return;
+		}
+		// the line runs dry at now + queued, so we need to start rendering 
+		// early enough to finish before then with the margin to spare.
+		long wait = queuedNanos() - safetyMarginNanos - renderEstimateNanos;
+		if ( wait > 0 )
+		{
+			LockSupport.parkNanos( wait );
+		}
+	}
+	
+	private void renderFinished(long renderNanos, JSMixerChannel[] mixed)
+	{
+		// follow increases immediately and let spikes decay slowly,
+		// so one slow buffer keeps us cautious for a little while.
+		renderEstimateNanos = Math.max( renderNanos, renderEstimateNanos - renderEstimateNanos / 16 );
+		
+		long queued = queuedNanos();
+		metrics.bufferRendered( renderNanos, queued );
+		for(int i = 0; i < mixed.length; i++)
+		{
+			mixed[i].getMetrics().bufferRendered( mixed[i].renderNanos, queued );
+		}
+		if ( wroteToLine && queued == 0 )
+		{
+			metrics.underrun();
+			for(int i = 0; i < mixed.length; i++)
+			{
+				mixed[i].getMetrics().underrun();
+			}
+			Minim.debug("Likely buffer underrun in AudioOutput.");
+		}
+	}
+	
+	/**
+	 * Sets how much audio, in milliseconds, should still be queued in the line 
+	 * when we start rendering the next buffer. Zero means render as soon
+	 * as the line has room, which is the default.
+	 */
+	void setSafetyMargin(float millis)
+	{
+		safetyMarginNanos = (long)(millis * 1000000);
+	}
+	
+	/**
+	 * Sets whether the output thread should run at maximum priority.
+	 * Must be called before the output is opened.
+	 */
+	void setHighPriority(boolean high)
+	{
+		highPriority = high;
+	}
+	
+	// converts the render buffer to interleaved bytes in the line's format,
+	// a channel at a time, straight from the channel arrays.
+	private void writeBytes()
+	{
+		final int channels = format.getChannels();
+		final int frameSize = format.getFrameSize();
+		for(int i = 0; i < channels; i++)
+		{
+			float[] channel = mcBuffer.getChannel(i);
+			int offset = i * sampleSize;
+			if ( floatLine )
+			{
+				SampleKernels.floatToFloat32(channel, 0, outBytes, offset, frameSize, bigEndian, bufferSize);
+			}
+			else
+			{
+				FloatSampleTools.float2byteGeneric(channel, 0, outBytes, offset, frameSize, bufferSize, formatType, 0);
+			}
 		}
 	}
 
@@ -151,17 +286,27 @@ final class JSAudioOutput extends Thread implements AudioOut
 
 	public void setAudioEffect(AudioEffect effect)
 	{
-		this.effect = effect;
+		source.setAudioEffect(effect);
 	}
 
 	public void setAudioSignal(AudioSignal signal)
 	{
-		this.signal = signal;
+		source.setAudioSignal(signal);
 	}
 
 	public void setAudioListener(AudioListener listener)
 	{
-		this.listener = listener;
+		source.setAudioListener(listener);
+	}
+	
+	public void setAudioMetrics(AudioMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	public void setOutputGain(OutputGain gain)
+	{
+		source.setOutputGain(gain);
 	}
 
 	public Control[] getControls()
@@ -171,6 +316,6 @@ final class JSAudioOutput extends Thread implements AudioOut
 
 	public void setAudioStream(AudioStream stream) 
 	{
-		this.stream = stream;	
+		source.setAudioStream(stream);
 	}
 }
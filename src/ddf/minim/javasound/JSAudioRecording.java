@@ -18,6 +18,8 @@
 
 package ddf.minim.javasound;
 
+import java.util.Arrays;
+
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.Control;
 import javax.sound.sampled.SourceDataLine;
@@ -27,6 +29,7 @@ import org.tritonus.share.sampled.AudioUtils;
 import ddf.minim.AudioMetaData;
 import ddf.minim.Minim;
 import ddf.minim.MultiChannelBuffer;
+import ddf.minim.OutputGain;
 import ddf.minim.spi.AudioRecording;
 
 // TODO: there is so much here that is the same as JSBaseAudioRecordingStream
@@ -58,6 +61,12 @@ class JSAudioRecording implements AudioRecording, Runnable
     private SourceDataLine line;
     private boolean        finished;
 
+    // when mixing in software we don't have a line or thread,
+    // the shared output reads us through the channel instead.
+    private JSMixerChannel channel;
+    private OutputGain     outputGain;
+    private Object[]       readChannels;
+
     private JSMinim        system;
 
     JSAudioRecording(JSMinim sys, byte[] samps, SourceDataLine sdl,
@@ -82,6 +91,32 @@ class JSAudioRecording implements AudioRecording, Runnable
         shouldRead = true;
     }
 
+    JSAudioRecording(JSMinim sys, byte[] samps, AudioFormat fmt,
+            AudioMetaData mdata, JSMixerChannel mixerChannel)
+    {
+        system = sys;
+        samples = samps;
+        meta = mdata;
+        format = fmt;
+        finished = false;
+        channel = mixerChannel;
+        // the software stand-in for the line's controls
+        outputGain = new OutputGain( format.getSampleRate() );
+        channel.setOutputGain( outputGain );
+        loop = false;
+        play = false;
+        numLoops = 0;
+        loopBegin = 0;
+        loopEnd = (int)AudioUtils.millis2BytesFrameAligned( meta.length(),
+                format );
+        rawBytes = new byte[channel.bufferSize() * format.getFrameSize()];
+        readChannels = new Object[format.getChannels()];
+        iothread = null;
+        totalBytesRead = 0;
+        bytesWritten = 0;
+        shouldRead = true;
+    }
+
     public void run()
     {
         while ( !finished )
@@ -227,11 +262,14 @@ class JSAudioRecording implements AudioRecording, Runnable
 
     public void play()
     {
-        line.start();
         loop = false;
         numLoops = 0;
         play = true;
-        iothread.interrupt();
+        if ( line != null )
+        {
+            line.start();
+            iothread.interrupt();
+        }
     }
 
     public boolean isPlaying()
@@ -241,7 +279,10 @@ class JSAudioRecording implements AudioRecording, Runnable
 
     public void pause()
     {
-        line.stop();
+        if ( line != null )
+        {
+            line.stop();
+        }
         play = false;
     }
 
@@ -251,12 +292,20 @@ class JSAudioRecording implements AudioRecording, Runnable
         numLoops = n;
         play = true;
         setMillisecondPosition( loopBegin );
-        line.start();
-        iothread.interrupt();
+        if ( line != null )
+        {
+            line.start();
+            iothread.interrupt();
+        }
     }
 
     public void open()
     {
+        if ( channel != null )
+        {
+            channel.setAudioStream( this );
+            return;
+        }
         iothread = new Thread( this );
         finished = false;
         iothread.start();
@@ -264,6 +313,12 @@ class JSAudioRecording implements AudioRecording, Runnable
 
     public void close()
     {
+        if ( channel != null )
+        {
+            play = false;
+            channel.close();
+            return;
+        }
         line.stop();
         finished = true;
         try
@@ -330,6 +385,10 @@ class JSAudioRecording implements AudioRecording, Runnable
 
     public Control[] getControls()
     {
+        if ( channel != null )
+        {
+            return outputGain.getControls();
+        }
         return line.getControls();
     }
 
@@ -348,13 +407,44 @@ class JSAudioRecording implements AudioRecording, Runnable
         return 0;
     }
 
+    public long getOverrunCount()
+    {
+        return 0;
+    }
+
     public float[] read()
     {
         return null;
     }
 
+    // only called by the shared output when mixing in software.
     public void read(MultiChannelBuffer buffer)
     {
-
+        int frameCount = rawBytes.length / format.getFrameSize();
+        buffer.setChannelCount( readChannels.length );
+        for ( int i = 0; i < readChannels.length; i++ )
+        {
+            readChannels[i] = buffer.getChannel( i );
+        }
+        if ( play )
+        {
+            // the same bytes the line would have been given
+            if ( loop )
+            {
+                readBytesLoop();
+            }
+            else
+            {
+                readBytes();
+            }
+            FloatSampleTools.byte2float( rawBytes, 0, readChannels, 0, frameCount, format, false );
+        }
+        else
+        {
+            for ( int i = 0; i < readChannels.length; i++ )
+            {
+                Arrays.fill( buffer.getChannel( i ), 0, frameCount, 0 );
+            }
+        }
     }
 }
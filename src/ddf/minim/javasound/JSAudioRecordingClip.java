@@ -149,6 +149,11 @@ class JSAudioRecordingClip implements AudioRecording
 		return 0;
 	}
 
+	public long getOverrunCount()
+	{
+		return 0;
+	}
+
 	public float[] read()
 	{
 		return null;
@@ -39,11 +39,36 @@ final class JSAudioSample extends AudioSample
     sample.trigger();
   }
   
+  public void trigger(float gain, float pan)
+  {
+    sample.trigger(gain, pan);
+  }
+  
   public void stop()
   {
     sample.stop();
   }
   
+  public void setMaxVoices(int voices)
+  {
+    sample.setMaxVoices(voices);
+  }
+  
+  public int getMaxVoices()
+  {
+    return sample.getMaxVoices();
+  }
+  
+  public void setVoiceStealing(boolean steal)
+  {
+    sample.setVoiceStealing(steal);
+  }
+  
+  public int getActiveVoiceCount()
+  {
+    return sample.getActiveVoiceCount();
+  }
+  
   public float[] getChannel(int channelNumber)
   {
     return sample.getChannel(channelNumber);
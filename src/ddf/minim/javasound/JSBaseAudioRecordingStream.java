@@ -83,8 +83,9 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 
     // writing stuff
     protected AudioFormat      format;
+    // null for streams that are only decoded, never played out loud
     private SourceDataLine     line;
-    private FloatSampleBuffer  buffer;
+    protected FloatSampleBuffer buffer;
     private int                bufferSize;
     private boolean            finished;
     private float[]            silence;
@@ -92,11 +93,11 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
     protected JSMinim          system;
 
     JSBaseAudioRecordingStream(JSMinim sys, AudioMetaData metaData, 
-    		AudioInputStream stream, SourceDataLine sdl, int inBufferSize, int msLen)
+    		AudioInputStream stream, AudioFormat lineFormat, SourceDataLine sdl, int inBufferSize, int msLen)
     {
     	system = sys;
     	meta   = metaData;
-        format = sdl.getFormat();
+        format = lineFormat;
         bufferSize = inBufferSize;
         
         // allocate reading data
@@ -136,6 +137,32 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 		return meta.length();
 	}
 
+    public long getOverrunCount()
+    {
+        // we read from a file, which waits for us.
+        return 0;
+    }
+
+    public int getReadAheadFrames()
+    {
+        AudioInputStream in = ais;
+        if ( in == null )
+        {
+            return 0;
+        }
+        try
+        {
+            synchronized ( in )
+            {
+                return in.available() / format.getFrameSize();
+            }
+        }
+        catch ( IOException e )
+        {
+            return 0;
+        }
+    }
+
     public void run()
     {
         while ( !finished )
@@ -185,9 +212,12 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         } // while ( !finished )
 
         // flush the line before we close it. because it's polite.
-        line.flush();
-        line.close();
-        line = null;
+        if ( line != null )
+        {
+            line.flush();
+            line.close();
+            line = null;
+        }
     }
 
     private void sleep(int millis)
@@ -210,13 +240,9 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
             while ( bytesRead < toRead )
             {
 
-                int actualRead = 0;
-                synchronized ( ais )
-                {
-                    actualRead = ais.read( rawBytes, bytesRead, toRead - bytesRead );
-                    // JSMinim.debug("Wanted to read " + (toRead-bytesRead) + ",
-                    // actually read " + actualRead);
-                }
+                int actualRead = readAudio( bytesRead, toRead - bytesRead );
+                // JSMinim.debug("Wanted to read " + (toRead-bytesRead) + ",
+                // actually read " + actualRead);
                 if ( actualRead == -1 )
                 {
                     system.debug( "Actual read was -1, pausing..." );
@@ -282,12 +308,7 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
             while ( bytesRead < toRead )
             {
 
-                int actualRead = 0;
-                synchronized ( ais )
-                {
-                    actualRead = ais.read( rawBytes, bytesRead + offset, toRead
-                            - bytesRead );
-                }
+                int actualRead = readAudio( bytesRead + offset, toRead - bytesRead );
                 if ( -1 == actualRead )
                 {
                     setMillisecondPosition( 0 );
@@ -322,7 +343,8 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         // because of that, we might not need to write the entire array when we
         // get here.
         int needToWrite = rawBytes.length - bytesWritten;
-        int actualWrit = line.write( rawBytes, bytesWritten, needToWrite );
+        // without a line there's nowhere to write, so it all counts as written
+        int actualWrit = line != null ? line.write( rawBytes, bytesWritten, needToWrite ) : needToWrite;
         // if the total written is not equal to how much we needed to write
         // then we need to remember where we were so that we don't read more
         // until we finished writing our entire rawBytes array.
@@ -374,8 +396,7 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
     {
         synchronized ( buffer )
         {
-            int frameCount = rawBytes.length / format.getFrameSize();
-            buffer.setSamplesFromBytes( rawBytes, 0, format, 0, frameCount );
+            audioToFloat( rawBytes.length / format.getFrameSize() );
 
             // process the samples
             if ( buffer.getChannelCount() == Minim.MONO )
@@ -393,7 +414,10 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 
     public void play()
     {
-        line.start();
+        if ( line != null )
+        {
+            line.start();
+        }
         loop = false;
         numLoops = 0;
         play = true;
@@ -408,7 +432,10 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 
     public void pause()
     {
-        line.stop();
+        if ( line != null )
+        {
+            line.stop();
+        }
         play = false;
     }
 
@@ -419,7 +446,10 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         loop = true;
         numLoops = n;
         play = true;
-        line.start();
+        if ( line != null )
+        {
+            line.start();
+        }
         // will wake up our data processing thread.
         // iothread.interrupt();
     }
@@ -431,7 +461,9 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         iothread.start();
     }
 
-    public void close()
+    // synchronized with mRead, so a stream being read by an output thread
+    // is never closed out from under it.
+    public synchronized void close()
     {
         finished = true;
         // try
@@ -452,8 +484,11 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         }
         ais = null;
 
-        line.flush();
-        line.close();
+        if ( line != null )
+        {
+            line.flush();
+            line.close();
+        }
     }
 
     public int bufferSize()
@@ -536,7 +571,7 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 
     public Control[] getControls()
     {
-        return line.getControls();
+        return line != null ? line.getControls() : new Control[0];
     }
 
     public void setAudioEffect(AudioEffect effect)
@@ -588,22 +623,12 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 		{
 			while (toSkip > 0)
 			{
-				long read;
-				synchronized ( ais )
+				int myBytesToRead = skipBytes.length;
+				if(toSkip < myBytesToRead)
 				{
-					// we don't use skip here because it sometimes has problems where
-					// it's "unable to skip an integer number of frames",
-					// which sometimes means it doesn't skip at all and other times
-					// means that you wind up with noise because it lands at half
-					// a sample off from where it should be. 
-					// read seems to be rock solid.
-					int myBytesToRead = skipBytes.length;
-					if(toSkip < myBytesToRead)
-					{
-						myBytesToRead = (int)toSkip;
-					}
-					read = ais.read(skipBytes, 0, myBytesToRead);
+					myBytesToRead = (int)toSkip;
 				}
+				long read = skipAudio(myBytesToRead);
 				if (read == -1)
 				{
 					// EOF!
@@ -619,11 +644,55 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
 			system.error("Unable to skip due to read error: " + e.getMessage());
 		}
 		system.debug("Total actually skipped was " + totalSkipped + ", which is "
-					+ AudioUtils.bytes2Millis(totalSkipped, ais.getFormat())
+					+ AudioUtils.bytes2Millis(totalSkipped, format)
 					+ " milliseconds.");
 		return (int)totalSkipped;
 	}
 
+    /**
+     * Reads up to byteCount bytes of audio, in the stream's format, into the
+     * byte buffer starting at byteOffset. Subclasses that decode straight to
+     * floats override this, together with skipAudio and audioToFloat, and
+     * write to the float buffer at the equivalent frame offset instead.
+     * 
+     * @return the number of bytes read, or -1 at the end of the stream
+     */
+    protected int readAudio(int byteOffset, int byteCount) throws IOException
+    {
+        synchronized ( ais )
+        {
+            return ais.read( rawBytes, byteOffset, byteCount );
+        }
+    }
+
+    /**
+     * Reads and throws away up to byteCount bytes of audio.
+     * 
+     * @return the number of bytes skipped, or -1 at the end of the stream
+     */
+    protected int skipAudio(int byteCount) throws IOException
+    {
+        synchronized ( ais )
+        {
+            // we don't use skip here because it sometimes has problems where
+            // it's "unable to skip an integer number of frames",
+            // which sometimes means it doesn't skip at all and other times
+            // means that you wind up with noise because it lands at half
+            // a sample off from where it should be. 
+            // read seems to be rock solid.
+            return ais.read( skipBytes, 0, byteCount );
+        }
+    }
+
+    /**
+     * Converts the first frameCount sample frames of what readAudio read 
+     * into the float buffer.
+     */
+    protected void audioToFloat(int frameCount)
+    {
+        buffer.setSamplesFromBytes( rawBytes, 0, format, 0, frameCount );
+    }
+
     // TODO: this implementation of float[] read is way temporary
     public float[] read()
     {
@@ -633,9 +702,8 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
             rawBytes = new byte[buffer.getByteArrayBufferSize( format )];
         }
         float[] samples = new float[buffer.getChannelCount()];
-        if ( play )
+        if ( play && mRead() )
         {
-            mRead();
             for ( int i = 0; i < buffer.getChannelCount(); i++ )
             {
                 samples[i] = buffer.getChannel( i )[0];
@@ -652,11 +720,7 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
             buffer.changeSampleCount( outBuffer.getBufferSize(), true );
             rawBytes = new byte[buffer.getByteArrayBufferSize( format )];
         }
-        if ( play )
-        {
-            mRead();
-        }
-        else
+        if ( !( play && mRead() ) )
         {
             buffer.makeSilence();
         }
@@ -666,8 +730,13 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         }
     }
 
-    private void mRead()
+    // returns false, without reading, once we have been closed.
+    private synchronized boolean mRead()
     {
+        if ( ais == null )
+        {
+            return false;
+        }
         // read in a full buffer of bytes from the file
         if ( loop )
         {
@@ -680,8 +749,8 @@ abstract class JSBaseAudioRecordingStream implements Runnable,
         // convert them to floating point
         synchronized ( buffer )
         {
-            int frameCount = rawBytes.length / format.getFrameSize();
-            buffer.setSamplesFromBytes( rawBytes, 0, format, 0, frameCount );
+            audioToFloat( rawBytes.length / format.getFrameSize() );
         }
+        return true;
     }
 }
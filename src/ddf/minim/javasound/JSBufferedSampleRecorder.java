@@ -174,7 +174,7 @@ final class JSBufferedSampleRecorder implements SampleRecorder
     // in a raw format (WAV, AU, etc).
     long length = AudioUtils.frames2Millis(ais.getFrameLength(), format);
     BasicMetaData meta = new BasicMetaData(filePath, length, ais.getFrameLength());
-    JSPCMAudioRecordingStream recording = new JSPCMAudioRecordingStream(system, meta, ais, sdl, 1024);
+    JSPCMAudioRecordingStream recording = new JSPCMAudioRecordingStream(system, meta, ais, ais.getFormat(), sdl, 1024);
     return recording;
   }
 
@@ -18,23 +18,76 @@
 
 package ddf.minim.javasound;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.SourceDataLine;
 
+import org.tritonus.share.sampled.AudioUtils;
+
 import ddf.minim.AudioMetaData;
 
+// plays an mp3 file by running the JLayer decoder ourselves, which hands us 
+// floats, rather than going through the format conversion provider, which
+// hands us 16 bit PCM bytes that we have to turn back into floats.
+// the byte based book keeping in the base class still works in terms of 
+// the 16 bit format of the line, so every byte count we are given or return
+// is a frame count times the frame size of that format.
 class JSMPEGAudioRecordingStream extends JSBaseAudioRecordingStream
 {
+	private MpegFloatDecoder	decoder;
+
 	JSMPEGAudioRecordingStream(JSMinim sys, AudioMetaData metaData,
-			AudioInputStream encStream, AudioInputStream decStream,
-			SourceDataLine sdl, int bufferSize)
+			AudioInputStream encStream, AudioFormat format, SourceDataLine sdl, int bufferSize)
+	{
+		super( sys, metaData, encStream, format, sdl, bufferSize, metaData.length() );
+		decoder = new MpegFloatDecoder( encStream );
+	}
+
+	protected int readAudio(int byteOffset, int byteCount)
+	{
+		int frameSize = format.getFrameSize();
+		synchronized ( ais )
+		{
+			int framesRead = decoder.read( buffer.getAllChannels(), buffer.getChannelCount(), 
+			                               byteOffset / frameSize, byteCount / frameSize );
+			return framesRead == -1 ? -1 : framesRead * frameSize;
+		}
+	}
+
+	protected int skipAudio(int byteCount)
+	{
+		int frameSize = format.getFrameSize();
+		synchronized ( ais )
+		{
+			int framesSkipped = decoder.skip( byteCount / frameSize );
+			return framesSkipped == -1 ? -1 : framesSkipped * frameSize;
+		}
+	}
+
+	protected void audioToFloat(int frameCount)
+	{
+		// readAudio already put them there.
+	}
+
+	public int getReadAheadFrames()
+	{
+		return decoder.available();
+	}
+
+	public long getSampleFrameLength()
 	{
-		super( sys, metaData, decStream, sdl, bufferSize, metaData.length() );
+		int millis = getMillisecondLength();
+		if ( millis < 0 )
+		{
+			return AudioSystem.NOT_SPECIFIED;
+		}
+		return AudioUtils.millis2Frames( millis, format );
 	}
 
 	synchronized protected void rewind()
 	{
 		super.rewind();
-		ais = system.getAudioInputStream( format, ais );
+		decoder = new MpegFloatDecoder( ais );
 	}
 }
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -48,6 +49,7 @@ import ddf.minim.AudioMetaData;
 import ddf.minim.AudioSample;
 import ddf.minim.Minim;
 import ddf.minim.Recordable;
+import ddf.minim.SampleStore;
 import ddf.minim.spi.AudioOut;
 import ddf.minim.spi.AudioRecording;
 import ddf.minim.spi.AudioRecordingStream;
@@ -71,6 +73,14 @@ public class JSMinim implements MinimServiceProvider
 	private Method  createInput;
 	private Mixer   inputMixer;
 	private Mixer   outputMixer;
+	private float   outputSafetyMargin;
+	private boolean outputHighPriority;
+	private boolean softwareMixing;
+	// the shared outputs used when mixing in software, keyed by sample rate, 
+	// buffer size and bit depth, since only outputs that match can share a line.
+	private final Map<String, JSAudioOutput> mixers = new HashMap<String, JSAudioOutput>();
+	// the buffer size of recordings that don't share an output that's already open
+	private static final int RECORDING_BUFFER_SIZE = 2048;
 
 	public JSMinim(Object parent)
 	{
@@ -151,6 +161,51 @@ public class JSMinim implements MinimServiceProvider
   {
     return outputMixer;
   }
+  
+  /**
+   * Sets how many milliseconds of audio outputs created after this call
+   * should keep queued in their line when they start rendering a buffer.
+   * Zero, the default, means outputs render whenever their line has room.
+   */
+  public void setOutputSafetyMargin(float millis)
+  {
+    outputSafetyMargin = millis;
+  }
+  
+  public float getOutputSafetyMargin()
+  {
+    return outputSafetyMargin;
+  }
+  
+  /**
+   * Sets whether outputs created after this call run their audio thread 
+   * at maximum priority.
+   */
+  public void setOutputHighPriority(boolean high)
+  {
+    outputHighPriority = high;
+  }
+  
+  public boolean getOutputHighPriority()
+  {
+    return outputHighPriority;
+  }
+  
+  /**
+   * Sets whether outputs created after this call are mixed in software.
+   * When they are, every mono or stereo output with the same sample rate,
+   * buffer size and bit depth renders in a single thread that writes to
+   * one shared line, instead of each having a line and thread of its own.
+   */
+  public void setSoftwareMixing(boolean mix)
+  {
+    softwareMixing = mix;
+  }
+  
+  public boolean getSoftwareMixing()
+  {
+    return softwareMixing;
+  }
 
 	public void start()
 	{
@@ -262,6 +317,29 @@ public class JSMinim implements MinimServiceProvider
 
 	public AudioRecordingStream getAudioRecordingStream(String filename,
 			int bufferSize, boolean inMemory)
+	{
+		return getAudioRecordingStream(filename, bufferSize, inMemory, true);
+	}
+	
+	/**
+	 * Returns a stream of the file that is only meant to be read from,
+	 * as fast as it can be decoded. It doesn't open an output line, so
+	 * any number of them can be open at once, and it works on machines
+	 * that have no audio output at all. It should not be opened, since
+	 * there is no line for it to play to.
+	 * 
+	 * @param filename the file to decode
+	 * @param bufferSize how many sample frames to decode at a time
+	 * 
+	 * @return the stream, or null if the file couldn't be loaded
+	 */
+	public AudioRecordingStream getDecodingStream(String filename, int bufferSize)
+	{
+		return getAudioRecordingStream(filename, bufferSize, false, false);
+	}
+	
+	private AudioRecordingStream getAudioRecordingStream(String filename,
+			int bufferSize, boolean inMemory, boolean withLine)
 	{
 		// TODO: deal with the case of wanting to have the file fully in memory
 		AudioRecordingStream mstream = null;
@@ -285,12 +363,12 @@ public class JSMinim implements MinimServiceProvider
 													baseFormat.getChannels(),
 													baseFormat.getChannels() * 2,
 													baseFormat.getSampleRate(), false);
-				// converts the stream to PCM audio from mp3 audio
-				AudioInputStream decAis = getAudioInputStream(format, ais);
+				// the stream decodes the mp3 itself, but the line and the 
+				// book keeping are in terms of 16 bit PCM audio.
 				// source data line is for sending the file audio out to the
 				// speakers
-				SourceDataLine line = getSourceDataLine(format, bufferSize);
-				if (decAis != null && line != null)
+				SourceDataLine line = withLine ? getSourceDataLine(format, bufferSize) : null;
+				if (line != null || !withLine)
 				{
 					Map<String, Object> props = getID3Tags(filename);
 					long lengthInMillis = -1;
@@ -303,19 +381,19 @@ public class JSMinim implements MinimServiceProvider
 		            }
 					}
 					MP3MetaData meta = new MP3MetaData(filename, lengthInMillis, props);
-					mstream = new JSMPEGAudioRecordingStream(this, meta, ais,	decAis, line, bufferSize);
+					mstream = new JSMPEGAudioRecordingStream(this, meta, ais, format, line, bufferSize);
 				}
 			} // format instanceof MpegAudioFormat
 			else
 			{
 				// source data line is for sending the file audio out to the
 				// speakers
-				SourceDataLine line = getSourceDataLine(format, bufferSize);
-				if (line != null)
+				SourceDataLine line = withLine ? getSourceDataLine(format, bufferSize) : null;
+				if (line != null || !withLine)
 				{
 					long length = AudioUtils.frames2Millis(ais.getFrameLength(), format);
 					BasicMetaData meta = new BasicMetaData(filename, length, ais.getFrameLength());
-					mstream = new JSPCMAudioRecordingStream(this, meta, ais, line, bufferSize);
+					mstream = new JSPCMAudioRecordingStream(this, meta, ais, format, line, bufferSize);
 				}
 			} // else
 		} // ais != null
@@ -323,7 +401,7 @@ public class JSMinim implements MinimServiceProvider
 	}
 
 	@SuppressWarnings("unchecked")
-	private Map<String, Object> getID3Tags(String filename)
+	Map<String, Object> getID3Tags(String filename)
 	{
 		debug("Getting the properties.");
 		Map<String, Object> props = new HashMap<String, Object>();
@@ -389,7 +467,7 @@ public class JSMinim implements MinimServiceProvider
 		{
 			AudioMetaData meta = null;
 			AudioFormat format = ais.getFormat();
-			FloatSampleBuffer samples = null;
+			SampleStore samples = null;
 			if (format instanceof MpegAudioFormat)
 			{
 				AudioFormat baseFormat = format;
@@ -398,23 +476,19 @@ public class JSMinim implements MinimServiceProvider
 													baseFormat.getChannels(),
 													baseFormat.getChannels() * 2,
 													baseFormat.getSampleRate(), false);
+				// guess how long the decoded audio will be before we wrap the mp3 stream
+				long expectedFrames = estimateDecodedFrames(ais, format);
 				// converts the stream to PCM audio from mp3 audio
 				ais = getAudioInputStream(format, ais);
-				// get a map of properties so we can find out how long it is
-				Map<String, Object> props = getID3Tags(filename);
-				// there is a property called mp3.length.bytes, but that is
-				// the length in bytes of the mp3 file, which will of course
-				// be much shorter than the decoded version. so we use the
-				// duration of the file to figure out how many bytes the
-				// decoded file will be.
-				long dur = ((Long)props.get("duration")).longValue();
-				int toRead = (int)AudioUtils.millis2Bytes(dur / 1000, format);
-				samples = loadFloatAudio(ais, toRead);
-				meta = new MP3MetaData(filename, dur / 1000, props);
+				samples = loadFloatAudio(ais, expectedFrames);
+				// now that it's decoded we know exactly how long it is, 
+				// the tags will only be parsed if somebody asks for them.
+				long length = AudioUtils.frames2Millis(samples.getSampleCount(), format);
+				meta = new MP3MetaData(filename, length, samples.getSampleCount(), this);
 			}
 			else
 			{
-				samples = loadFloatAudio(ais, (int)ais.getFrameLength() * format.getFrameSize());
+				samples = loadFloatAudio(ais, ais.getFrameLength());
 				long length = AudioUtils.frames2Millis(samples.getSampleCount(), format);
 				meta = new BasicMetaData(filename, length, samples.getSampleCount());
 			}
@@ -438,31 +512,33 @@ public class JSMinim implements MinimServiceProvider
   
   public AudioSample getAudioSample(float[] samples, AudioFormat format, int bufferSize)
   {
-    FloatSampleBuffer sample = new FloatSampleBuffer(1, samples.length, format.getSampleRate());
-    System.arraycopy(samples, 0, sample.getChannel(0), 0, samples.length);
-    return getAudioSampleImp(sample, format, bufferSize);
+    float[][] channels = { samples.clone() };
+    return getAudioSampleImp(SampleStore.wrap(channels, format.getSampleRate()), format.getSampleSizeInBits(), bufferSize);
   }
   
   public AudioSample getAudioSample(float[] left, float[] right, AudioFormat format, int bufferSize)
   {
-    FloatSampleBuffer sample = new FloatSampleBuffer(2, left.length, format.getSampleRate());
-    System.arraycopy(left, 0, sample.getChannel(0), 0, left.length);
-    System.arraycopy(right, 0, sample.getChannel(1), 0, right.length);
-    return getAudioSampleImp(sample, format, bufferSize);
+    float[][] channels = { left.clone(), Arrays.copyOf(right, left.length) };
+    return getAudioSampleImp(SampleStore.wrap(channels, format.getSampleRate()), format.getSampleSizeInBits(), bufferSize);
   }
   
-  private JSAudioSample getAudioSampleImp(FloatSampleBuffer samples, AudioFormat format, int bufferSize)
+  public AudioSample getAudioSample(SampleStore samples, int bufferSize)
+  {
+    return getAudioSampleImp(samples, 16, bufferSize);
+  }
+  
+  private JSAudioSample getAudioSampleImp(SampleStore samples, int bitDepth, int bufferSize)
   {
     AudioOut out = getAudioOutput( samples.getChannelCount(), 
                                                 bufferSize, 
-                                                format.getSampleRate(), 
-                                                format.getSampleSizeInBits()
+                                                samples.getSampleRate(), 
+                                                bitDepth
                                               );
     if (out != null)
     {
       SampleSignal ssig = new SampleSignal(samples);
       out.setAudioSignal(ssig);
-      long length = AudioUtils.frames2Millis(samples.getSampleCount(), format);
+      long length = (long)(samples.getSampleCount() / samples.getSampleRate() * 1000);
       BasicMetaData meta = new BasicMetaData(samples.toString(), length, samples.getSampleCount());
       return new JSAudioSample(meta, ssig, out);
     }
@@ -477,19 +553,105 @@ public class JSMinim implements MinimServiceProvider
 	public AudioOut getAudioOutput(int type, int bufferSize,
 			float sampleRate, int bitDepth)
 	{
-		if (bitDepth != 8 && bitDepth != 16)
+		if (bitDepth != 8 && bitDepth != 16 && bitDepth != 24 && bitDepth != 32)
 		{
-			throw new IllegalArgumentException("Unsupported bit depth, use either 8 or 16.");
+			throw new IllegalArgumentException("Unsupported bit depth, use either 8, 16, 24, or 32.");
+		}
+		if ( softwareMixing && type <= Minim.STEREO )
+		{
+			AudioOut channel = getMixerChannel(type, bufferSize, sampleRate, bitDepth);
+			if ( channel != null )
+			{
+				return channel;
+			}
+		}
+		return createAudioOutput(type, bufferSize, sampleRate, bitDepth);
+	}
+	
+	private JSAudioOutput createAudioOutput(int type, int bufferSize,
+			float sampleRate, int bitDepth)
+	{
+		AudioFormat format = getOutputFormat(type, sampleRate, bitDepth);
+		// not every mixer offers the wider formats, so fall back to 16 bit when it doesn't.
+		if ( bitDepth > 16 && !isOutputFormatSupported(format) )
+		{
+			debug("Output format " + format + " is not supported, using 16 bit instead.");
+			format = getOutputFormat(type, sampleRate, 16);
 		}
-		AudioFormat format = new AudioFormat(sampleRate, bitDepth, type, true, false);
 		SourceDataLine sdl = getSourceDataLine(format, bufferSize);
 		if (sdl != null)
 		{
-			return new JSAudioOutput(sdl, bufferSize);
+			JSAudioOutput out = new JSAudioOutput(sdl, bufferSize);
+			out.setSafetyMargin(outputSafetyMargin);
+			out.setHighPriority(outputHighPriority);
+			return out;
 		}
 		return null;
 	}
 
+	// hands out a channel of the shared stereo output for this format, 
+	// opening the output if it isn't already. outputs are found by the bit 
+	// depth asked for, not the one the line ended up with, so that asking 
+	// for 24 bits again shares a line that fell back to 16.
+	private synchronized JSMixerChannel getMixerChannel(int type, int bufferSize,
+			float sampleRate, int bitDepth)
+	{
+		String key = sampleRate + "/" + bufferSize + "/" + bitDepth;
+		JSAudioOutput mixer = mixers.get(key);
+		if ( mixer == null )
+		{
+			mixer = createAudioOutput(Minim.STEREO, bufferSize, sampleRate, bitDepth);
+			if ( mixer == null )
+			{
+				return null;
+			}
+			debug("Opening a shared output for " + key);
+			mixers.put(key, mixer);
+			mixer.open();
+		}
+		return addMixerChannel(type, mixer);
+	}
+	
+	// hands out a channel of whichever shared output is already open at this
+	// sample rate, so that a recording, which isn't given a buffer size, joins
+	// the output the sketch made rather than opening one of its own. if none
+	// is open, one is opened with the buffer size and bit depth given.
+	private synchronized JSMixerChannel getMixerChannel(int type, float sampleRate,
+			int defaultBufferSize, int defaultBitDepth)
+	{
+		for (JSAudioOutput mixer : mixers.values())
+		{
+			if ( mixer.getFormat().getSampleRate() == sampleRate )
+			{
+				return addMixerChannel(type, mixer);
+			}
+		}
+		return getMixerChannel(type, defaultBufferSize, sampleRate, defaultBitDepth);
+	}
+	
+	private JSMixerChannel addMixerChannel(int type, JSAudioOutput mixer)
+	{
+		AudioFormat mixerFormat = mixer.getFormat();
+		AudioFormat format = getOutputFormat(type, mixerFormat.getSampleRate(), mixerFormat.getSampleSizeInBits());
+		JSMixerChannel channel = new JSMixerChannel(format, mixer.bufferSize(), mixer, this);
+		// the channel is mixed from now on, so that the output isn't 
+		// closed out from under it before its source opens it.
+		mixer.addChannel(channel);
+		return channel;
+	}
+	
+	// called when a channel of a shared output is closed, 
+	// the output is closed along with its last channel.
+	synchronized void releaseMixerChannel(JSAudioOutput mixer, JSMixerChannel channel)
+	{
+		if ( mixer.removeChannel(channel) == 0 )
+		{
+			debug("Closing a shared output.");
+			mixers.values().remove(mixer);
+			mixer.close();
+		}
+	}
+
 	/** @deprecated */
 	public AudioRecording getAudioRecordingClip(String filename)
 	{
@@ -584,7 +746,16 @@ public class JSMinim implements MinimServiceProvider
 				long length = AudioUtils.bytes2Millis(samples.length, format);
 				meta = new BasicMetaData(filename, length, samples.length);
 			}
-			SourceDataLine line = getSourceDataLine(format, 2048);
+			if ( softwareMixing && format.getChannels() <= Minim.STEREO )
+			{
+				JSMixerChannel channel = getMixerChannel(format.getChannels(), format.getSampleRate(), 
+				                                         RECORDING_BUFFER_SIZE, 16);
+				if ( channel != null )
+				{
+					return new JSAudioRecording(this, samples, format, meta, channel);
+				}
+			}
+			SourceDataLine line = getSourceDataLine(format, RECORDING_BUFFER_SIZE);
 			if ( line != null )
 			{
 				return new JSAudioRecording(this, samples, line, meta);
@@ -593,23 +764,82 @@ public class JSMinim implements MinimServiceProvider
 		return null;
 	}
 	
-	private FloatSampleBuffer loadFloatAudio(AudioInputStream ais, int toRead)
+	/**
+	 * Guesses how many sample frames an mp3 stream will decode to from the
+	 * number of bytes left in it and its bitrate. This is exact for constant
+	 * bitrate files and in the right neighborhood for variable bitrate ones.
+	 * 
+	 * @return the estimate, or AudioSystem.NOT_SPECIFIED if we can't tell
+	 */
+	private long estimateDecodedFrames(AudioInputStream mpegStream, AudioFormat decodedFormat)
 	{
-		FloatSampleBuffer samples = new FloatSampleBuffer();
-		int totalRead = 0;
-		byte[] rawBytes = new byte[toRead];
+		AudioFormat format = mpegStream.getFormat();
+		if ( format instanceof MpegAudioFormat )
+		{
+			Object bitrate = ((MpegAudioFormat)format).properties().get("bitrate");
+			try
+			{
+				long bytes = mpegStream.available();
+				if ( bitrate instanceof Integer && ((Integer)bitrate).intValue() > 0 && bytes > 0 )
+				{
+					return (long)(bytes * 8.0 / ((Integer)bitrate).intValue() * decodedFormat.getFrameRate());
+				}
+			}
+			catch( IOException e )
+			{
+				debug("Couldn't estimate the decoded length: " + e.getMessage());
+			}
+		}
+		return AudioSystem.NOT_SPECIFIED;
+	}
+	
+	// how many sample frames we convert at a time when loading a file into memory
+	private static final int LOAD_CHUNK_FRAMES = 16384;
+	
+	/**
+	 * Decodes ais into float samples, one chunk at a time, so that we never
+	 * hold more than a chunk of bytes in memory along with the samples.
+	 * If expectedFrames is right, the sample arrays are allocated once,
+	 * otherwise they are grown or trimmed one channel at a time.
+	 */
+	private SampleStore loadFloatAudio(AudioInputStream ais, long expectedFrames)
+	{
+		AudioFormat format = ais.getFormat();
+		int channelCount = format.getChannels();
+		int frameSize = format.getFrameSize();
+		// when we have no idea, start with ten seconds
+		int capacity = expectedFrames > 0 ? (int)Math.min(expectedFrames, Integer.MAX_VALUE - 8) 
+		                                  : (int)(format.getSampleRate() * 10);
+		float[][] channels = new float[channelCount][capacity];
+		byte[] chunk = new byte[LOAD_CHUNK_FRAMES * frameSize];
+		int totalFrames = 0;
 		try
 		{
-			// we have to read in chunks because the decoded stream won't
-			// read more than about 2000 bytes at a time
-			while (totalRead < toRead)
+			boolean done = false;
+			while (!done)
 			{
-				int actualRead = ais.read(rawBytes, totalRead, toRead	- totalRead);
-				if (actualRead < 1)
-        {
-					break;
-        }
-				totalRead += actualRead;
+				// the decoded stream won't read more than about 2000 bytes 
+				// at a time, so we fill the chunk before converting it.
+				int chunkBytes = 0;
+				while (chunkBytes < chunk.length)
+				{
+					int actualRead = ais.read(chunk, chunkBytes, chunk.length - chunkBytes);
+					if (actualRead < 1)
+					{
+						done = true;
+						break;
+					}
+					chunkBytes += actualRead;
+				}
+				int frames = chunkBytes / frameSize;
+				if (totalFrames + frames > capacity)
+				{
+					// estimates are usually close, so we don't grow by much
+					capacity = (int)Math.min(Math.max(totalFrames + frames, capacity + (long)capacity / 8), Integer.MAX_VALUE - 8);
+					resizeChannels(channels, totalFrames, capacity);
+				}
+				FloatSampleTools.byte2float(chunk, 0, channels, totalFrames, frames, format, false);
+				totalFrames += frames;
 			}
 			ais.close();
 		}
@@ -617,9 +847,24 @@ public class JSMinim implements MinimServiceProvider
 		{
 			error("Error loading file into memory: " + ioe.getMessage());
 		}
-		debug("Needed to read " + toRead + " actually read " + totalRead);
-		samples.initFromByteArray(rawBytes, 0, totalRead, ais.getFormat());
-		return samples;
+		debug("Expected " + expectedFrames + " sample frames, actually read " + totalFrames);
+		if (totalFrames != capacity)
+		{
+			resizeChannels(channels, totalFrames, totalFrames);
+		}
+		return SampleStore.wrap(channels, format.getSampleRate());
+	}
+	
+	// replacing one channel at a time means only one extra channel 
+	// worth of memory is needed while we copy.
+	private static void resizeChannels(float[][] channels, int keep, int newLength)
+	{
+		for (int i = 0; i < channels.length; ++i)
+		{
+			float[] resized = new float[newLength];
+			System.arraycopy(channels[i], 0, resized, 0, keep);
+			channels[i] = resized;
+		}
 	}
 	
 	private byte[] loadByteAudio(AudioInputStream ais, int toRead)
@@ -792,6 +1037,27 @@ public class JSMinim implements MinimServiceProvider
 		}
 	}
 
+	// 32 bit output is written as floats, everything else is signed little endian PCM.
+	private AudioFormat getOutputFormat(int type, float sampleRate, int bitDepth)
+	{
+		if ( bitDepth == 32 )
+		{
+			return new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, sampleRate, 32, type, 
+								   4 * type, sampleRate, false);
+		}
+		return new AudioFormat(sampleRate, bitDepth, type, true, false);
+	}
+	
+	private boolean isOutputFormatSupported(AudioFormat format)
+	{
+		DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+		if ( outputMixer == null )
+		{
+			return AudioSystem.isLineSupported(info);
+		}
+		return outputMixer.isLineSupported(info);
+	}
+
 	SourceDataLine getSourceDataLine(AudioFormat format, int bufferSize)
 	{
 		SourceDataLine line = null;
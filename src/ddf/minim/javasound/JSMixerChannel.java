@@ -0,0 +1,216 @@
+package ddf.minim.javasound;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.Control;
+
+import ddf.minim.AudioEffect;
+import ddf.minim.AudioListener;
+import ddf.minim.AudioMetrics;
+import ddf.minim.AudioSignal;
+import ddf.minim.Minim;
+import ddf.minim.MultiChannelBuffer;
+import ddf.minim.OutputGain;
+import ddf.minim.SampleKernels;
+import ddf.minim.spi.AudioOut;
+import ddf.minim.spi.AudioStream;
+
+/**
+ * Renders one source: its signal or stream, then its effect, listener, and
+ * output gain, into a buffer of its own. Every JSAudioOutput renders its own
+ * source with one of these, and when software mixing is on, outputs handed
+ * out by JSMinim are channels that belong to a JSAudioOutput shared with other
+ * sources, which adds their buffers into its own before writing to its line.
+ */
+final class JSMixerChannel implements AudioOut
+{
+	private static final Control[]	NO_CONTROLS	= new Control[0];
+
+	private AudioListener			listener;
+	private AudioStream				stream;
+	private AudioSignal				signal;
+	private AudioEffect				effect;
+	private OutputGain				outputGain;
+	private AudioMetrics			metrics;
+
+	private final AudioFormat		format;
+	private final int				bufferSize;
+	private final MultiChannelBuffer	mcBuffer;
+	// what the mixer adds to its line. a mono source that is mixed into the 
+	// stereo line is copied to both sides here, before the output gain, so 
+	// that its pan and balance work. otherwise this is mcBuffer.
+	private final MultiChannelBuffer	mixBuffer;
+	// the output that mixes us, null if we are an output's own source
+	private final JSAudioOutput		mixer;
+	private final JSMinim			system;
+	// how long the last render took, for the mixer to report
+	long							renderNanos;
+
+	JSMixerChannel(AudioFormat format, int bufferSize, JSAudioOutput mixer, JSMinim system)
+	{
+		this.format = format;
+		this.bufferSize = bufferSize;
+		this.mixer = mixer;
+		this.system = system;
+		mcBuffer = new MultiChannelBuffer( bufferSize, format.getChannels() );
+		mixBuffer = mixer != null && format.getChannels() == Minim.MONO 
+				  ? new MultiChannelBuffer( bufferSize, Minim.STEREO ) : mcBuffer;
+		metrics = new AudioMetrics( bufferSize, format.getSampleRate() );
+	}
+
+	/**
+	 * Renders the next buffer of the source into getBuffer().
+	 */
+	void render()
+	{
+		if ( signal != null )
+		{
+			readSignal();
+		}
+		else if ( stream != null )
+		{
+			readStream();
+		}
+		else
+		{
+			silence();
+		}
+		if ( format.getChannels() == Minim.MONO )
+		{
+			if ( effect != null )
+			{
+				effect.process( mcBuffer.getChannel( 0 ) );
+			}
+			if ( listener != null )
+			{
+				listener.samples( mcBuffer.getChannel( 0 ) );
+			}
+		}
+		else
+		{
+			if ( effect != null )
+			{
+				effect.process( mcBuffer.getChannel( 0 ), mcBuffer.getChannel( 1 ) );
+			}
+			if ( listener != null )
+			{
+				listener.samples( mcBuffer.getChannel( 0 ), mcBuffer.getChannel( 1 ) );
+			}
+		}
+		if ( mixBuffer != mcBuffer )
+		{
+			float[] mono = mcBuffer.getChannel( 0 );
+			System.arraycopy( mono, 0, mixBuffer.getChannel( 0 ), 0, bufferSize );
+			System.arraycopy( mono, 0, mixBuffer.getChannel( 1 ), 0, bufferSize );
+		}
+		if ( outputGain != null )
+		{
+			outputGain.process( mixBuffer );
+		}
+	}
+
+	/**
+	 * Returns what the last render produced, which is stereo for a mono
+	 * source that is mixed into a shared line.
+	 */
+	MultiChannelBuffer getBuffer()
+	{
+		return mixBuffer;
+	}
+
+	AudioMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	private void silence()
+	{
+		for ( int i = 0; i < mcBuffer.getChannelCount(); i++ )
+		{
+			SampleKernels.clear( mcBuffer.getChannel( i ), 0, bufferSize );
+		}
+	}
+
+	// TODO: ditch readSignal eventually
+	private void readSignal()
+	{
+		// signals add to what is already in the buffer
+		silence();
+		if ( format.getChannels() == Minim.MONO )
+		{
+			signal.generate( mcBuffer.getChannel( 0 ) );
+		}
+		else
+		{
+			signal.generate( mcBuffer.getChannel( 0 ), mcBuffer.getChannel( 1 ) );
+		}
+	}
+
+	private void readStream()
+	{
+		stream.read( mcBuffer );
+		// the stream is allowed to change our channel count to match its own
+		if ( mcBuffer.getChannelCount() != format.getChannels() )
+		{
+			mcBuffer.setChannelCount( format.getChannels() );
+		}
+	}
+
+	public void open()
+	{
+		// a channel is already being mixed when it is handed out
+	}
+
+	public void close()
+	{
+		if ( mixer != null )
+		{
+			system.releaseMixerChannel( mixer, this );
+		}
+	}
+
+	public int bufferSize()
+	{
+		return bufferSize;
+	}
+
+	public AudioFormat getFormat()
+	{
+		return format;
+	}
+
+	public Control[] getControls()
+	{
+		// we don't have a line, the volume and such are done by the output gain
+		return NO_CONTROLS;
+	}
+
+	public void setAudioSignal(AudioSignal signal)
+	{
+		this.signal = signal;
+	}
+
+	public void setAudioStream(AudioStream stream)
+	{
+		this.stream = stream;
+	}
+
+	public void setAudioEffect(AudioEffect effect)
+	{
+		this.effect = effect;
+	}
+
+	public void setAudioListener(AudioListener listener)
+	{
+		this.listener = listener;
+	}
+
+	public void setAudioMetrics(AudioMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	public void setOutputGain(OutputGain gain)
+	{
+		this.outputGain = gain;
+	}
+}
@@ -18,6 +18,7 @@
 
 package ddf.minim.javasound;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.SourceDataLine;
 
@@ -27,8 +28,8 @@ class JSPCMAudioRecordingStream extends JSBaseAudioRecordingStream
 {
 
 	JSPCMAudioRecordingStream(JSMinim sys, AudioMetaData metaData,
-			AudioInputStream stream, SourceDataLine sdl, int bufferSize)
+			AudioInputStream stream, AudioFormat format, SourceDataLine sdl, int bufferSize)
 	{
-		super( sys, metaData, stream, sdl, bufferSize, metaData.length() );
+		super( sys, metaData, stream, format, sdl, bufferSize, metaData.length() );
 	}
 }
@@ -23,6 +23,7 @@ import java.util.Map;
 class MP3MetaData extends BasicMetaData
 {
 	private Map<String, Object> mTags;
+	private JSMinim mSystem;
 	
 	MP3MetaData(String filename, long length, Map<String, Object> tags)
 	{
@@ -30,11 +31,30 @@ class MP3MetaData extends BasicMetaData
 		mTags = tags;
 	}
 	
+	// used when the file has already been decoded and we don't want to pay
+	// for parsing it a second time just to find out its length. the tags
+	// are read the first time somebody asks for one.
+	MP3MetaData(String filename, long length, long sampleLength, JSMinim system)
+	{
+		super(filename, length, sampleLength);
+		mSystem = system;
+	}
+	
+	private synchronized Map<String, Object> getTags()
+	{
+		if ( mTags == null )
+		{
+			mTags = mSystem.getID3Tags( fileName() );
+		}
+		return mTags;
+	}
+	
 	private String getTag(String tag)
 	{
-		if ( mTags.containsKey(tag) )
+		Map<String, Object> tags = getTags();
+		if ( tags.containsKey(tag) )
 		{
-			return (String)mTags.get(tag);
+			return (String)tags.get(tag);
 		}
 		return "";
 	}
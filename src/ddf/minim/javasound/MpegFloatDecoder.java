@@ -0,0 +1,199 @@
+package ddf.minim.javasound;
+
+import java.io.InputStream;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.Obuffer;
+import ddf.minim.Minim;
+
+/**
+ * Decodes an mp3 stream straight to floats by acting as the output buffer
+ * of the JLayer decoder. JLayer's synthesis filter produces floats, which the
+ * regular conversion path rounds and clips to 16 bit PCM bytes only for us to
+ * turn them back into floats. Here we keep them as they are, so we skip two
+ * conversions and don't lose anything to quantization.
+ * <p>
+ * Samples are decoded one mp3 frame at a time and handed out in whatever
+ * amounts are asked for.
+ */
+class MpegFloatDecoder extends Obuffer
+{
+	// the synthesis filter's output is scaled to the range of a short
+	private static final float	SCALE	= 1.0f / 32768.0f;
+
+	private final Bitstream		bitstream;
+	private final Decoder		decoder;
+
+	// the samples of the most recently decoded frame
+	private final float[][]		frame;
+	private final int[]			writePosition;
+	private int					frameLength;
+	private int					readPosition;
+	private boolean				endOfStream;
+
+	MpegFloatDecoder(InputStream mpegStream)
+	{
+		bitstream = new Bitstream( mpegStream );
+		decoder = new Decoder();
+		decoder.setOutputBuffer( this );
+		frame = new float[MAXCHANNELS][OBUFFERSIZE];
+		writePosition = new int[MAXCHANNELS];
+	}
+
+	/**
+	 * Decodes up to frameCount sample frames into channels, starting at offset.
+	 * If the mp3 has fewer channels than we are asked for, the last channel is
+	 * repeated.
+	 *
+	 * @return how many sample frames were read, or -1 at the end of the stream
+	 */
+	int read(Object[] channels, int channelCount, int offset, int frameCount)
+	{
+		int framesRead = 0;
+		while ( framesRead < frameCount )
+		{
+			if ( readPosition == frameLength )
+			{
+				if ( !decodeFrame() )
+				{
+					break;
+				}
+				continue;
+			}
+			int count = Math.min( frameLength - readPosition, frameCount - framesRead );
+			int decodedChannels = decoder.getOutputChannels();
+			for ( int c = 0; c < channelCount; ++c )
+			{
+				float[] source = frame[Math.min( c, decodedChannels - 1 )];
+				System.arraycopy( source, readPosition, (float[])channels[c], offset + framesRead, count );
+			}
+			readPosition += count;
+			framesRead += count;
+		}
+		return framesRead == 0 && endOfStream ? -1 : framesRead;
+	}
+
+	/**
+	 * Decodes and throws away up to frameCount sample frames. We still have to
+	 * run the synthesis because the decoder's state depends on previous frames.
+	 *
+	 * @return how many sample frames were skipped, or -1 at the end of the stream
+	 */
+	int skip(int frameCount)
+	{
+		int framesSkipped = 0;
+		while ( framesSkipped < frameCount )
+		{
+			if ( readPosition == frameLength )
+			{
+				if ( !decodeFrame() )
+				{
+					break;
+				}
+				continue;
+			}
+			int count = Math.min( frameLength - readPosition, frameCount - framesSkipped );
+			readPosition += count;
+			framesSkipped += count;
+		}
+		return framesSkipped == 0 && endOfStream ? -1 : framesSkipped;
+	}
+
+	/**
+	 * Returns how many decoded sample frames can be read without decoding
+	 * another mp3 frame.
+	 */
+	int available()
+	{
+		return frameLength - readPosition;
+	}
+
+	private boolean decodeFrame()
+	{
+		if ( endOfStream )
+		{
+			return false;
+		}
+		try
+		{
+			Header header = bitstream.readFrame();
+			if ( header == null )
+			{
+				endOfStream = true;
+				return false;
+			}
+			try
+			{
+				decoder.decodeFrame( header, bitstream );
+			}
+			catch ( DecoderException e )
+			{
+				// a corrupt frame is dropped, the same as the regular decoder does.
+				Minim.debug( "MpegFloatDecoder: couldn't decode a frame - " + e.getMessage() );
+				clear_buffer();
+			}
+			finally
+			{
+				bitstream.closeFrame();
+			}
+		}
+		catch ( BitstreamException e )
+		{
+			Minim.error( "MpegFloatDecoder: error reading the stream - " + e.getMessage() );
+			endOfStream = true;
+			return false;
+		}
+		frameLength = writePosition[0];
+		readPosition = 0;
+		return true;
+	}
+
+	public void append(int channel, short value)
+	{
+		frame[channel][writePosition[channel]++] = value * SCALE;
+	}
+
+	public void appendSamples(int channel, float[] samples)
+	{
+		float[] out = frame[channel];
+		int w = writePosition[channel];
+		for ( int i = 0; i < samples.length; ++i )
+		{
+			out[w++] = samples[i] * SCALE;
+		}
+		writePosition[channel] = w;
+	}
+
+	public void write_buffer(int val)
+	{
+		// a frame is finished, nothing to do until it is read.
+	}
+
+	public void clear_buffer()
+	{
+		for ( int c = 0; c < writePosition.length; ++c )
+		{
+			writePosition[c] = 0;
+		}
+	}
+
+	public void set_stop_flag()
+	{
+	}
+
+	public void close()
+	{
+		try
+		{
+			bitstream.close();
+		}
+		catch ( BitstreamException e )
+		{
+			Minim.debug( "MpegFloatDecoder: error closing the stream - " + e.getMessage() );
+		}
+	}
+}
@@ -18,111 +18,256 @@
 
 package ddf.minim.javasound;
 
+import java.util.ArrayList;
+
 import ddf.minim.AudioSample;
 import ddf.minim.AudioSignal;
 import ddf.minim.Minim;
+import ddf.minim.SampleStore;
 
+// plays any number of overlapping triggers of a sample. triggers are queued 
+// by the calling thread and picked up by the audio thread at the start of the 
+// next buffer, which only ever looks at the voices that are actually sounding.
+// voices are kept in a pool so that triggering doesn't allocate once the pool 
+// has grown to the most voices that have sounded at once.
 class SampleSignal implements AudioSignal
 {
-	private FloatSampleBuffer	buffer;
-	private int[]				marks;
-	private int					markAt;
+	private SampleStore			buffer;
+
+	// sounding voices, oldest first. only touched by the audio thread.
+	private Voice[]				active;
+	private int					activeCount;
+
+	// guards pending, pool, and stopRequested
+	private final Object		lock		= new Object();
+	private final ArrayList<Voice>	pending	= new ArrayList<Voice>();
+	private final ArrayList<Voice>	pool	= new ArrayList<Voice>();
+	private boolean				stopRequested;
+
+	// zero means as many voices as are triggered
+	private volatile int		maxVoices;
+	private volatile boolean	stealVoices	= true;
+	// what the audio thread last saw, for reporting
+	private volatile int		voiceCount;
 
-	public SampleSignal(FloatSampleBuffer samps)
+	private static final class Voice
+	{
+		int		position;
+		float	leftGain;
+		float	rightGain;
+	}
+
+	public SampleSignal(SampleStore samps)
 	{
 		buffer = samps;
-		marks = new int[20];
-		for ( int i = 0; i < marks.length; i++ )
-		{
-			marks[i] = -1;
-		}
-		markAt = 0;
+		active = new Voice[16];
 	}
 
 	public void generate(float[] signal)
 	{
-		// build our signal from all the marks
-		for ( int i = 0; i < marks.length; i++ )
+		startBuffer();
+		int finished = 0;
+		for ( int i = 0; i < activeCount; i++ )
 		{
-			int begin = marks[i];
-			if ( begin == -1 )
+			Voice v = active[i];
+			int count = Math.min( buffer.getSampleCount() - v.position, signal.length );
+			mix( 0, v.position, signal, count, v.leftGain );
+			if ( advance( v, count ) )
 			{
-				continue;
+				finished++;
 			}
+		}
+		endBuffer( finished );
+	}
 
-			// JSMinim.debug("Sample trigger in process at marks[" + i + "] = "
-			// + marks[i]);
-			int j, k;
-			for ( j = begin, k = 0; j < buffer.getSampleCount()
-					&& k < signal.length; j++, k++ )
+	public void generate(float[] left, float[] right)
+	{
+		startBuffer();
+		int finished = 0;
+		for ( int i = 0; i < activeCount; i++ )
+		{
+			Voice v = active[i];
+			int count = Math.min( buffer.getSampleCount() - v.position, left.length );
+			mix( 0, v.position, left, count, v.leftGain );
+			mix( 1, v.position, right, count, v.rightGain );
+			if ( advance( v, count ) )
 			{
-				signal[k] += buffer.getChannel( 0 )[j];
+				finished++;
 			}
-			if ( j < buffer.getSampleCount() )
+		}
+		endBuffer( finished );
+	}
+
+	private void mix(int channel, int position, float[] dst, int count, float gain)
+	{
+		// the plain add keeps an untouched trigger exactly as it always sounded
+		if ( gain == 1 )
+		{
+			buffer.add( channel, position, dst, 0, count );
+		}
+		else if ( gain != 0 )
+		{
+			buffer.add( channel, position, dst, 0, count, gain );
+		}
+	}
+
+	// moves a voice along, returning whether it has reached the end
+	private boolean advance(Voice v, int count)
+	{
+		v.position += count;
+		if ( v.position >= buffer.getSampleCount() )
+		{
+			v.position = -1;
+			return true;
+		}
+		return false;
+	}
+
+	// takes in the triggers that arrived since the last buffer
+	private void startBuffer()
+	{
+		synchronized ( lock )
+		{
+			if ( stopRequested )
 			{
-				marks[i] = j;
+				for ( int i = 0; i < activeCount; i++ )
+				{
+					pool.add( active[i] );
+					active[i] = null;
+				}
+				activeCount = 0;
+				stopRequested = false;
 			}
-			else
+			for ( int i = 0; i < pending.size(); i++ )
 			{
-				// Minim.debug("Sample trigger ended.");
-				marks[i] = -1;
+				start( pending.get( i ) );
 			}
+			pending.clear();
 		}
-
 	}
 
-	public void generate(float[] left, float[] right)
+	// must hold lock
+	private void start(Voice v)
 	{
-		// build our signal from all the marks
-		for ( int i = 0; i < marks.length; i++ )
+		int limit = maxVoices;
+		if ( limit > 0 && activeCount >= limit )
 		{
-			int begin = marks[i];
-			if ( begin == -1 )
+			if ( !stealVoices )
 			{
-				continue;
+				pool.add( v );
+				return;
 			}
-
-			// Minim.debug("Sample trigger in process at marks[" + i + "] = " +
-			// marks[i]);
-			int j, k;
-			for ( j = begin, k = 0; j < buffer.getSampleCount()
-					&& k < left.length; j++, k++ )
+			// the oldest voices make room, they have been heard the longest
+			int steal = activeCount - limit + 1;
+			for ( int i = 0; i < steal; i++ )
 			{
-				left[k] += buffer.getChannel( 0 )[j];
-				right[k] += buffer.getChannel( 1 )[j];
+				pool.add( active[i] );
 			}
-			if ( j < buffer.getSampleCount() )
+			System.arraycopy( active, steal, active, 0, activeCount - steal );
+			for ( int i = activeCount - steal; i < activeCount; i++ )
 			{
-				marks[i] = j;
+				active[i] = null;
 			}
-			else
+			activeCount -= steal;
+		}
+		if ( activeCount == active.length )
+		{
+			Voice[] grown = new Voice[active.length * 2];
+			System.arraycopy( active, 0, grown, 0, activeCount );
+			active = grown;
+		}
+		active[activeCount++] = v;
+	}
+
+	// drops the voices that finished during this buffer, keeping the rest in order
+	private void endBuffer(int finished)
+	{
+		if ( finished > 0 )
+		{
+			synchronized ( lock )
 			{
-				// Minim.debug("Sample trigger ended.");
-				marks[i] = -1;
+				int keep = 0;
+				for ( int i = 0; i < activeCount; i++ )
+				{
+					Voice v = active[i];
+					if ( v.position == -1 )
+					{
+						pool.add( v );
+					}
+					else
+					{
+						active[keep++] = v;
+					}
+				}
+				for ( int i = keep; i < activeCount; i++ )
+				{
+					active[i] = null;
+				}
+				activeCount = keep;
 			}
 		}
-
+		voiceCount = activeCount;
 	}
 
 	public void trigger()
 	{
-		marks[markAt] = 0;
-		markAt++;
-		if ( markAt == marks.length )
+		trigger( 1, 0 );
+	}
+
+	public void trigger(float gain, float pan)
+	{
+		pan = Math.max( -1, Math.min( pan, 1 ) );
+		synchronized ( lock )
 		{
-			markAt = 0;
+			Voice v = pool.isEmpty() ? new Voice() : pool.remove( pool.size() - 1 );
+			v.position = 0;
+			// pan turns down the opposite side, like the balance of an output
+			v.leftGain = gain * Math.min( 1 - pan, 1 );
+			v.rightGain = gain * Math.min( 1 + pan, 1 );
+			// a mono sample is played on a mono output, where pan has no meaning
+			if ( buffer.getChannelCount() == 1 )
+			{
+				v.leftGain = gain;
+			}
+			pending.add( v );
 		}
-
 	}
 
 	public void stop()
 	{
-		for ( int i = 0; i < marks.length; ++i )
+		synchronized ( lock )
 		{
-			marks[i] = -1;
+			pool.addAll( pending );
+			pending.clear();
+			stopRequested = true;
 		}
 	}
 
+	public void setMaxVoices(int voices)
+	{
+		maxVoices = Math.max( 0, voices );
+	}
+
+	public int getMaxVoices()
+	{
+		return maxVoices;
+	}
+
+	public void setVoiceStealing(boolean steal)
+	{
+		stealVoices = steal;
+	}
+
+	public boolean getVoiceStealing()
+	{
+		return stealVoices;
+	}
+
+	public int getActiveVoiceCount()
+	{
+		return voiceCount;
+	}
+
 	public float[] getChannel(int channelNumber)
 	{
 		if ( channelNumber == AudioSample.LEFT )
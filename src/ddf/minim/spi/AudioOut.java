@@ -20,7 +20,9 @@ package ddf.minim.spi;
 
 import ddf.minim.AudioEffect;
 import ddf.minim.AudioListener;
+import ddf.minim.AudioMetrics;
 import ddf.minim.AudioSignal;
+import ddf.minim.OutputGain;
 
 /**
  * An <code>AudioSythesizer</code> is an <code>AudioStream</code> that generates
@@ -69,4 +71,20 @@ public interface AudioOut extends AudioResource
 	 * @param listen
 	 */
 	void setAudioListener(AudioListener listen);
+
+	/**
+	 * Sets the AudioMetrics that this output should record render times
+	 * and underruns in.
+	 * 
+	 * @param metrics
+	 */
+	void setAudioMetrics(AudioMetrics metrics);
+
+	/**
+	 * Sets the OutputGain to apply to the signal after it has been broadcast
+	 * to the listener, right before it is written to the output.
+	 * 
+	 * @param gain
+	 */
+	void setOutputGain(OutputGain gain);
 }
@@ -119,5 +119,13 @@ public interface AudioRecordingStream extends AudioStream
 	 * @return the MetaData of the recording
 	 */
 	AudioMetaData getMetaData();
+	
+	/**
+	 * Returns how many sample frames the decoder of this stream can deliver
+	 * without blocking, which is a measure of how far ahead of playback it is.
+	 * 
+	 * @return int: the number of sample frames that can be read without blocking
+	 */
+	int getReadAheadFrames();
 
 }
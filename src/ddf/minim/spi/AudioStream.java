@@ -48,4 +48,13 @@ public interface AudioStream extends AudioResource
    * @param buffer The MultiChannelBuffer to fill with audio samples.
    */
   void read(MultiChannelBuffer buffer);
+  
+  /**
+   * Returns how many times audio was lost because it wasn't read quickly 
+   * enough, which can happen to streams reading from an input line. 
+   * Streams that can't lose audio, like those reading from a file, return 0.
+   * 
+   * @return the number of overruns since the stream was opened
+   */
+  long getOverrunCount();
 }
@@ -22,6 +22,7 @@ import javax.sound.sampled.AudioFormat;
 
 import ddf.minim.AudioSample;
 import ddf.minim.Recordable;
+import ddf.minim.SampleStore;
 
 /**
  * <code>MinimServiceProvider</code> is the interface that an audio implementation must 
@@ -87,6 +88,19 @@ public interface MinimServiceProvider
    */
   AudioRecordingStream getAudioRecordingStream(String filename, int bufferSize, boolean inMemory);
   
+  /**
+   * Should return an {@link AudioRecordingStream} of the file requested that is only meant to 
+   * be read from, as fast as it can be decoded, and not played. It should not need an output 
+   * line, so that any number of them can be open at once, even on a machine with no audio output. 
+   * Minim uses these to load files into memory and to analyze them. An implementation that 
+   * can't decode without an output can return <code>getAudioRecordingStream(filename, bufferSize, false)</code>.
+   * 
+   * @param filename the name of the file to decode
+   * @param bufferSize how many sample frames to decode at a time
+   * @return an AudioRecordingStream to read the file from, or null if it couldn't be loaded
+   */
+  AudioRecordingStream getDecodingStream(String filename, int bufferSize);
+  
   /**
    * Should return an {@link  AudioStream} with the requested parameters. What Minim is 
    * expecting this stream to be reading from is the active audio input of the computer, 
@@ -148,6 +162,19 @@ public interface MinimServiceProvider
    */
   AudioSample getAudioSample(float[] left, float[] right, AudioFormat format, int bufferSize);
   
+  /**
+   * Should return an {@link AudioSample} that plays the samples in the provided store
+   * without copying them.
+   * 
+   * @param samples
+   *          the store holding the samples, which also knows their sample rate
+   * @param bufferSize
+   *          how large the output buffer should be
+   * @return
+   *          an AudioSample that plays the store
+   */
+  AudioSample getAudioSample(SampleStore samples, int bufferSize);
+  
   /**
    * Should return a {@link SampleRecorder} that can record the <code>source</code> in a 
    * buffered (in-memory) or non-buffered (streamed) manner, to the file specified by <code>saveTo</code> 
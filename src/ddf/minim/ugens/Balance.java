@@ -81,11 +81,14 @@ public class Balance extends UGen
 	@Override
 	protected void uGenerate(float[] channels) 
 	{
+		float[] in = audio.getLastValues();
+		float bal = balance.getLastValue();
+		// even channels are attenuated by positive balance, odd channels by negative.
+		float evenAmp = Math.min( 1.0f, Math.max( 0.0f, 1.0f + bal ) );
+		float oddAmp = Math.min( 1.0f, Math.max( 0.0f, 1.0f - bal ) );
 		for(int i = 0; i < channels.length; i++)
 		{
-			float tmp = audio.getLastValues()[i];
-			float bal = balance.getLastValue();
-			channels[i] = tmp*(float)Math.min( 1.0f, Math.max( 0.0f, 1.0f + Math.pow( -1.0f, i )* bal) );
+			channels[i] = in[i] * ( ( i & 1 ) == 0 ? evenAmp : oddAmp );
 		}
 	} 
 }
\ No newline at end of file
@@ -9,6 +9,12 @@ import ddf.minim.UGen;
  * The Delay UGen is used to create delayed repetitions of the input audio.
  * One can control the delay time and amplification of the repetition.
  * One can also choose whether the repetition is fed back and/or the input is passed through.
+ * <p>
+ * The delay time doesn't have to be a whole number of samples, so patching an
+ * oscillator to <code>delTime</code> gives smooth chorus and tape-style pitch
+ * wobbles rather than clicks. How the delay is read between two samples is set
+ * with <code>setInterpolation</code>. Additional taps, which are heard but not
+ * fed back, can be added with <code>addTap</code>.
  * 
  * @example Synthesis/delayExample
  * 
@@ -49,12 +55,13 @@ public class Delay extends UGen
 
 	// maximum delay time
 	private float maxDelayTime;
-	// the delay buffer based on maximum delay time
-	private double[] delayBuffer;
-	// how many sample frames does the delay buffer hold
-	private int	     delayBufferFrames;
-	// the index where we pull sound out of the delay buffer
-	private int iBufferOut;
+	// one delay line per channel, sized for the maximum delay time
+	private DelayLine[] delayLines;
+	// how reads between samples are interpolated
+	private int interpolation;
+	// extra taps as { delay time in seconds, amplitude } pairs. 
+	// replaced rather than modified so the audio thread never sees a partial change.
+	private volatile float[] taps;
 	// flag to include continual feedback.
 	private boolean feedBackOn;
 	// flag to pass the audio straight to the output.
@@ -138,8 +145,9 @@ public class Delay extends UGen
 		// flags
 		this.feedBackOn = feedBackOn;
 		this.passAudioOn = passAudioOn;
-
-		iBufferOut = 0;
+		
+		interpolation = DelayLine.LINEAR;
+		taps = new float[0];
 	}
 
 	/*
@@ -160,9 +168,68 @@ public class Delay extends UGen
 	
 	void allocateDelayBuffer()
 	{
-		delayBufferFrames = (int)( maxDelayTime*sampleRate() );
-		delayBuffer = new double [ delayBufferFrames*audio.channelCount() ];
-		iBufferOut = 0;
+		int maxDelayFrames = (int)Math.ceil( maxDelayTime*sampleRate() );
+		DelayLine[] lines = new DelayLine[ channelCount() ];
+		for( int i = 0; i < lines.length; ++i )
+		{
+			lines[i] = new DelayLine( maxDelayFrames, interpolation );
+		}
+		delayLines = lines;
+	}
+	
+	/**
+	 * Sets how the delay is read when the delay time falls between two samples.
+	 * The default is linear interpolation.
+	 * 
+	 * @param interpolation
+	 * 		int: one of DelayLine.NONE, DelayLine.LINEAR, DelayLine.ALLPASS, or DelayLine.CUBIC
+	 * 
+	 * @related DelayLine
+	 * @related Delay
+	 */
+	public void setInterpolation( int interpolation )
+	{
+		DelayLine[] lines = delayLines;
+		if ( lines != null )
+		{
+			for( int i = 0; i < lines.length; ++i )
+			{
+				lines[i].setInterpolation( interpolation );
+			}
+		}
+		this.interpolation = interpolation;
+	}
+	
+	/**
+	 * Adds a tap that reads the delay at another time and mixes it into the output.
+	 * Taps are not fed back.
+	 * 
+	 * @param tapTime
+	 * 		float: the delay time of the tap in seconds, up to the maxDelayTime
+	 * @param tapAmplitude
+	 * 		float: how loud the tap should be
+	 * 
+	 * @related clearTaps ( )
+	 * @related Delay
+	 */
+	public void addTap( float tapTime, float tapAmplitude )
+	{
+		float[] current = taps;
+		float[] added = Arrays.copyOf( current, current.length + 2 );
+		added[ current.length ] = tapTime;
+		added[ current.length + 1 ] = tapAmplitude;
+		taps = added;
+	}
+	
+	/**
+	 * Removes all of the taps added with addTap.
+	 * 
+	 * @related addTap ( )
+	 * @related Delay
+	 */
+	public void clearTaps()
+	{
+		taps = new float[0];
 	}
 	
     /**
@@ -203,35 +270,34 @@ public class Delay extends UGen
 	@Override
 	protected void uGenerate(float[] channels) 
 	{	
-		if ( delayBuffer == null || delayBuffer.length == 0 )
+		DelayLine[] lines = delayLines;
+		if ( lines == null || lines.length != channels.length )
 		{
 			Arrays.fill( channels, 0 );
 			return;
 		}
 		
 		// how many samples do we delay the input
-		int delay = (int)(delTime.getLastValue()*sampleRate());
-		int channelCount = channelCount();
-		for( int i = 0; i < channelCount; ++i )
+		float delay = delTime.getLastValue()*sampleRate();
+		float amp = delAmp.getLastValue();
+		float[] tapList = taps;
+		float[] input = audio.getLastValues();
+		for( int i = 0; i < channels.length; ++i )
 		{
-			float in  = audio.getLastValues()[i];
+			DelayLine line = lines[i];
+			float in  = input[i];
 			
-			// pull sound out of the delay buffer
-			int outSample = iBufferOut*channelCount + i;
-			float out = delAmp.getLastValue()*(float)delayBuffer[ outSample ];
-			// eat it
-			delayBuffer[ outSample ] = 0;
-			
-			// put sound into the buffer
-			int inFrame  = (iBufferOut+delay)%delayBufferFrames;
-			int inSample = ( inFrame*channelCount + i);
-			delayBuffer[ inSample ] = in;
-			
-			if ( feedBackOn )
+			// pull sound out of the delay line
+			float delayed = amp*line.read( delay );
+			float out = delayed;
+			for( int t = 0; t < tapList.length; t += 2 )
 			{
-				delayBuffer[ inSample ] += out;
+				out += tapList[t+1]*line.tap( tapList[t]*sampleRate() );
 			}
 			
+			// put sound into the line
+			line.write( feedBackOn ? in + delayed : in );
+			
 			if ( passAudioOn )
 			{
 				out += in;
@@ -239,7 +305,5 @@ public class Delay extends UGen
 			
 			channels[i] = out;
 		}
-		
-		iBufferOut = (iBufferOut + 1) % delayBufferFrames;
 	} 
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package ddf.minim.ugens;
+
+import java.util.Arrays;
+
+/**
+ * A <code>DelayLine</code> is a single channel of delayed audio: you write a sample
+ * into it every sample frame and read back what was written some number of
+ * samples ago. The delay doesn't need to be a whole number of samples, reads
+ * between two samples are interpolated, which is what lets a modulated delay,
+ * like a chorus or a tape echo, change its delay time smoothly instead of
+ * clicking every time the delay jumps by a sample.
+ * <p>
+ * A line can be read as many times per sample frame as you like, at different
+ * delays, to build multi-tap effects. The samples are kept in a float ring whose
+ * size is a power of two, so wrapping around it is a mask rather than a modulo.
+ * <p>
+ * The interpolation used can be one of:
+ * <ul>
+ * <li>NONE: the delay is truncated to a whole number of samples.</li>
+ * <li>LINEAR: a straight line between the two nearest samples. This is cheap,
+ * but rolls off the high end a little when the delay is between samples.</li>
+ * <li>ALLPASS: a first order allpass filter, which keeps the frequency response
+ * flat. It remembers its previous output, so only <code>read</code> uses it,
+ * and only one delay should be read that way per sample frame.
+ * <code>tap</code> uses linear interpolation instead.</li>
+ * <li>CUBIC: a cubic Hermite curve through the four nearest samples. This is
+ * the most expensive, but sounds best when the delay is being modulated.</li>
+ * </ul>
+ *
+ * @example Synthesis/delayExample
+ *
+ * @related Delay
+ */
+public class DelayLine
+{
+	/** The delay is truncated to a whole number of samples. */
+	public static final int	NONE	= 0;
+	/** Reads between samples are linearly interpolated. */
+	public static final int	LINEAR	= 1;
+	/** Reads between samples are done with a first order allpass filter. */
+	public static final int	ALLPASS	= 2;
+	/** Reads between samples are done with a cubic Hermite curve. */
+	public static final int	CUBIC	= 3;
+
+	private final float[]	buffer;
+	private final int		mask;
+	private final int		maxDelay;
+	// where the next sample will be written
+	private int				writeIndex;
+	private int				interpolation;
+	// the previous output of the allpass interpolator
+	private float			allpassOut;
+
+	/**
+	 * Constructs a DelayLine that uses linear interpolation.
+	 *
+	 * @param maxDelay
+	 *            int: the longest delay, in samples, that will be read
+	 */
+	public DelayLine( int maxDelay )
+	{
+		this( maxDelay, LINEAR );
+	}
+
+	/**
+	 * Constructs a DelayLine.
+	 *
+	 * @param maxDelay
+	 *            int: the longest delay, in samples, that will be read
+	 * @param interpolation
+	 *            int: NONE, LINEAR, ALLPASS, or CUBIC
+	 */
+	public DelayLine( int maxDelay, int interpolation )
+	{
+		this.maxDelay = Math.max( 1, maxDelay );
+		// cubic interpolation looks two samples past the longest delay
+		int size = 4;
+		while ( size < this.maxDelay + 3 )
+		{
+			size <<= 1;
+		}
+		buffer = new float[size];
+		mask = size - 1;
+		setInterpolation( interpolation );
+	}
+
+	/**
+	 * Sets how reads between two samples are interpolated.
+	 *
+	 * @param interpolation
+	 *            int: NONE, LINEAR, ALLPASS, or CUBIC
+	 */
+	public void setInterpolation( int interpolation )
+	{
+		if ( interpolation < NONE || interpolation > CUBIC )
+		{
+			throw new IllegalArgumentException( "DelayLine: unknown interpolation " + interpolation );
+		}
+		this.interpolation = interpolation;
+	}
+
+	/**
+	 * Returns how reads between two samples are interpolated.
+	 */
+	public int getInterpolation()
+	{
+		return interpolation;
+	}
+
+	/**
+	 * Returns the longest delay, in samples, that can be read.
+	 */
+	public int getMaxDelay()
+	{
+		return maxDelay;
+	}
+
+	/**
+	 * Sets every sample in the line to zero.
+	 */
+	public void clear()
+	{
+		Arrays.fill( buffer, 0 );
+		allpassOut = 0;
+	}
+
+	/**
+	 * Writes the next sample into the line. After this call,
+	 * a read with a delay of one returns <code>sample</code>.
+	 *
+	 * @param sample
+	 *            float: the sample to write
+	 */
+	public void write( float sample )
+	{
+		buffer[writeIndex] = sample;
+		writeIndex = ( writeIndex + 1 ) & mask;
+	}
+
+	/**
+	 * Reads the sample written <code>delay</code> samples ago, using the
+	 * line's interpolation. The delay is clamped to the range [1, maxDelay].
+	 *
+	 * @param delay
+	 *            float: how many samples ago, which can be fractional
+	 * @return float: the delayed sample
+	 */
+	public float read( float delay )
+	{
+		if ( interpolation == ALLPASS )
+		{
+			return readAllpass( clampDelay( delay ) );
+		}
+		return tap( delay );
+	}
+
+	/**
+	 * Reads the sample written <code>delay</code> samples ago without
+	 * touching any interpolator state, so that it can be called for any number
+	 * of delays every sample frame. This uses the line's interpolation,
+	 * except that ALLPASS lines are read with linear interpolation.
+	 *
+	 * @param delay
+	 *            float: how many samples ago, which can be fractional
+	 * @return float: the delayed sample
+	 */
+	public float tap( float delay )
+	{
+		delay = clampDelay( delay );
+		int whole = (int)delay;
+		float frac = delay - whole;
+		float x0 = buffer[( writeIndex - whole ) & mask];
+		if ( interpolation == NONE || frac == 0 )
+		{
+			return x0;
+		}
+		float x1 = buffer[( writeIndex - whole - 1 ) & mask];
+		if ( interpolation != CUBIC )
+		{
+			return x0 + frac * ( x1 - x0 );
+		}
+		// the newer neighbor of a one sample delay hasn't been written yet
+		float xm1 = whole > 1 ? buffer[( writeIndex - whole + 1 ) & mask] : x0;
+		float x2 = buffer[( writeIndex - whole - 2 ) & mask];
+		float c1 = 0.5f * ( x1 - xm1 );
+		float c2 = xm1 - 2.5f * x0 + 2 * x1 - 0.5f * x2;
+		float c3 = 0.5f * ( x2 - xm1 ) + 1.5f * ( x0 - x1 );
+		return ( ( c3 * frac + c2 ) * frac + c1 ) * frac + x0;
+	}
+
+	/**
+	 * Delays a block of samples in place by a fixed amount: each sample is
+	 * replaced with the line's output, and the input plus
+	 * <code>feedback</code> times the output is written into the line.
+	 *
+	 * @param samples
+	 *            float[]: the samples to delay
+	 * @param offset
+	 *            int: the first sample to delay
+	 * @param length
+	 *            int: how many samples to delay
+	 * @param delay
+	 *            float: the delay in samples, which can be fractional
+	 * @param feedback
+	 *            float: how much of the output to feed back into the line
+	 */
+	public void process( float[] samples, int offset, int length, float delay, float feedback )
+	{
+		final int end = offset + length;
+		for ( int i = offset; i < end; ++i )
+		{
+			float in = samples[i];
+			float out = read( delay );
+			write( in + feedback * out );
+			samples[i] = out;
+		}
+	}
+
+	/**
+	 * Delays a block of samples in place by an amount that changes every
+	 * sample, which is how a modulated delay is run a block at a time.
+	 *
+	 * @param samples
+	 *            float[]: the samples to delay
+	 * @param offset
+	 *            int: the first sample to delay
+	 * @param delays
+	 *            float[]: the delay in samples to use for each sample
+	 * @param delaysOffset
+	 *            int: the delay to use for the first sample
+	 * @param length
+	 *            int: how many samples to delay
+	 * @param feedback
+	 *            float: how much of the output to feed back into the line
+	 */
+	public void process( float[] samples, int offset, float[] delays, int delaysOffset, int length, float feedback )
+	{
+		for ( int i = 0; i < length; ++i )
+		{
+			float in = samples[offset + i];
+			float out = read( delays[delaysOffset + i] );
+			write( in + feedback * out );
+			samples[offset + i] = out;
+		}
+	}
+
+	private float clampDelay( float delay )
+	{
+		return delay < 1 ? 1 : ( delay > maxDelay ? maxDelay : delay );
+	}
+
+	private float readAllpass( float delay )
+	{
+		int whole = (int)delay;
+		float frac = delay - whole;
+		// the allpass pole approaches the unit circle as the fraction approaches
+		// zero, so keep the fraction at 0.1 or more by borrowing a sample.
+		if ( frac < 0.1f && whole > 1 )
+		{
+			whole -= 1;
+			frac += 1;
+		}
+		float x0 = buffer[( writeIndex - whole ) & mask];
+		float x1 = buffer[( writeIndex - whole - 1 ) & mask];
+		float a = ( 1 - frac ) / ( 1 + frac );
+		allpassOut = x1 + a * ( x0 - allpassOut );
+		return allpassOut;
+	}
+}
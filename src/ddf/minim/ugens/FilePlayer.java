@@ -5,6 +5,7 @@ import java.util.Arrays;
 import ddf.minim.AudioMetaData;
 import ddf.minim.Minim;
 import ddf.minim.Playable;
+import ddf.minim.Resampler;
 import ddf.minim.UGen;
 import ddf.minim.spi.AudioRecordingStream;
 
@@ -13,6 +14,10 @@ import ddf.minim.spi.AudioRecordingStream;
  * way that AudioPlayer does, allowing you to patch them into a UGen graph any way you choose.
  * The constructor for FilePlayer takes an AudioRecordingStream,
  * which you can get from a Minim object by calling the loadFileStream method.
+ * <p>
+ * If the sample rate of the file is different from the sample rate of 
+ * whatever the FilePlayer is patched to, it is converted with a Resampler,
+ * so that the file plays back at the right speed and pitch.
  * 
  * @example Synthesis/filePlayerExample
  * 
@@ -27,6 +32,13 @@ import ddf.minim.spi.AudioRecordingStream;
 public class FilePlayer extends UGen implements Playable
 {
 	private AudioRecordingStream mFileStream;
+	// converts the file's sample rate to ours, null when they are the same
+	private Resampler mResampler;
+	private int mResampleQuality = Resampler.MEDIUM;
+	private float[] mResampled;
+	// set when the stream's position jumps, so that the audio thread
+	// clears the resampler before the kernel smears the old position in
+	private volatile boolean mResampleReset;
 	
 	/**
 	 * Construct a FilePlayer that will read from iFileStream.
@@ -128,6 +140,7 @@ public class FilePlayer extends UGen implements Playable
 	public void loop()
 	{
 		mFileStream.loop(Minim.LOOP_CONTINUOUSLY);
+		mResampleReset = true;
 	}
 
 	/**
@@ -149,6 +162,7 @@ public class FilePlayer extends UGen implements Playable
 	public void loop(int loopCount)
 	{
 		mFileStream.loop(loopCount);
+		mResampleReset = true;
 	}
 
 	/**
@@ -219,6 +233,7 @@ public class FilePlayer extends UGen implements Playable
 			millis = length();
 		}
 		mFileStream.setMillisecondPosition(millis);
+		mResampleReset = true;
 	}
 
 	/**
@@ -248,6 +263,7 @@ public class FilePlayer extends UGen implements Playable
 		}
 		Minim.debug("AudioPlayer.skip: skipping " + millis + " milliseconds, new position is " + pos);
 		mFileStream.setMillisecondPosition(pos);
+		mResampleReset = true;
 	}
 
 	/**
@@ -321,12 +337,76 @@ public class FilePlayer extends UGen implements Playable
 		mFileStream.close();
 	}
 	
+	/**
+	 * Sets the quality used to convert the sample rate of the file 
+	 * when it is different from the sample rate of this FilePlayer.
+	 * 
+	 * @param quality
+	 * 			int: Resampler.LOW, Resampler.MEDIUM, or Resampler.HIGH
+	 * 
+	 * @related Resampler
+	 * @related FilePlayer
+	 */
+	public void setResampleQuality(int quality)
+	{
+		if ( quality < Resampler.LOW || quality > Resampler.HIGH )
+		{
+			throw new IllegalArgumentException( "FilePlayer: unknown resample quality " + quality );
+		}
+		mResampleQuality = quality;
+		updateResampler();
+	}
+	
+	@Override
+	protected void sampleRateChanged()
+	{
+		updateResampler();
+	}
+	
+	private void updateResampler()
+	{
+		float fileRate = mFileStream.getFormat().getSampleRate();
+		if ( sampleRate() <= 0 || fileRate == sampleRate() )
+		{
+			mResampler = null;
+			return;
+		}
+		Resampler resampler = mResampler;
+		if ( resampler == null || resampler.getQuality() != mResampleQuality )
+		{
+			int channelCount = mFileStream.getFormat().getChannels();
+			resampler = new Resampler( channelCount, mResampleQuality );
+			mResampled = new float[channelCount];
+		}
+		resampler.setRatio( (double)fileRate / sampleRate() );
+		mResampler = resampler;
+	}
+	
 	@Override
 	protected void uGenerate(float[] channels) 
 	{
 		if ( mFileStream.isPlaying() )
 		{
-			float[] samples = mFileStream.read();
+			Resampler resampler = mResampler;
+			float[] samples;
+			if ( resampler == null )
+			{
+				samples = mFileStream.read();
+			}
+			else
+			{
+				if ( mResampleReset )
+				{
+					mResampleReset = false;
+					resampler.reset();
+				}
+				while( resampler.needsInput() )
+				{
+					resampler.write( mFileStream.read() );
+				}
+				samples = mResampled;
+				resampler.read( samples );
+			}
 			// special case: mono expands out to all channels.
 			if ( samples.length == 1 )
 			{
@@ -1,5 +1,6 @@
 package ddf.minim.ugens;
 
+import ddf.minim.SampleKernels;
 import ddf.minim.UGen;
 
 /**
@@ -37,6 +38,9 @@ public class Gain extends UGen
 	public UGenInput gain;
 	
 	private float mValue;
+	// the dB value mValue was last computed from when gain is patched,
+	// so that we only call Math.pow when the control actually changes.
+	private float mLastDB = Float.NaN;
 	
 	/**
 	 * Construct a Gain UGen with a value of 0 dB, which means 
@@ -85,12 +89,14 @@ public class Gain extends UGen
 		// TODO: not fond of the fact that we cast up to doubles for this math function.
 		if ( gain.isPatched() )
 		{
-			mValue = (float)Math.pow(10.0, (0.05 * gain.getLastValue()));
+			float dB = gain.getLastValue();
+			if ( dB != mLastDB )
+			{
+				mValue = (float)Math.pow(10.0, (0.05 * dB));
+				mLastDB = dB;
+			}
 		}	
 		
-		for(int i = 0; i < channels.length; ++i)
-		{
-			channels[i] = mValue * audio.getLastValues()[i];
-		}
+		SampleKernels.scale( audio.getLastValues(), 0, channels, 0, channels.length, mValue );
 	}
 }
@@ -1,5 +1,6 @@
 package ddf.minim.ugens;
 
+import ddf.minim.Resampler;
 import ddf.minim.UGen;
 import ddf.minim.spi.AudioStream;
 
@@ -7,6 +8,8 @@ import ddf.minim.spi.AudioStream;
  * LiveInput is a way to wrap an input stream with the UGen interface so that you can 
  * easily route incoming audio through a UGen graph. You can get an AudioStream that is 
  * reading audio input from Minim by calling Minim.getInputStream.
+ * If the input's sample rate is different from the sample rate of whatever
+ * the LiveInput is patched to, it is converted with a Resampler.
  * 
  * @example Synthesis/liveInputExample
  * 
@@ -20,6 +23,20 @@ import ddf.minim.spi.AudioStream;
 public class LiveInput extends UGen 
 {
 	private AudioStream mInputStream;
+	// converts the input's sample rate to ours, null when they are the same
+	private Resampler mResampler;
+	private int mResampleQuality = Resampler.MEDIUM;
+	private float[] mResampled;
+	
+	// latency measurement. while measuring we count the sample frames
+	// since we sent out a click until we hear it come back in.
+	private boolean mMeasuringLatency;
+	private int		mLatencyFrames;
+	private float	mLatencyThreshold;
+	private float	mMeasuredLatency = -1;
+	
+	// how long we wait for the click to come back before giving up, in seconds
+	private static final float LATENCY_TIMEOUT = 2.f;
 
 	/**
 	 * Constructs a LiveInput that will read from inputStream.
@@ -41,10 +58,145 @@ public class LiveInput extends UGen
 		mInputStream.close();
 	}
 	
+	/**
+	 * Returns how many times the input lost audio because it 
+	 * wasn't read quickly enough. If this keeps going up,
+	 * try a larger buffer size.
+	 * 
+	 * @return long: the number of overruns so far
+	 */
+	public long getOverrunCount()
+	{
+		return mInputStream.getOverrunCount();
+	}
+	
+	/**
+	 * Starts measuring the round-trip latency of the audio system: the time
+	 * it takes for a sound to go out of the output this LiveInput is patched
+	 * to, and come back in through the input. This LiveInput will send out
+	 * a single click, and then silence until it hears the click in its input
+	 * or two seconds have passed. For this to work, the output needs to be
+	 * audible to the input, either by connecting them with a cable or 
+	 * by turning up the speakers near the microphone.
+	 * <p>
+	 * Call getLatency to find out the result once isMeasuringLatency 
+	 * returns false.
+	 * 
+	 * @shortdesc Starts measuring the round-trip latency of the audio system.
+	 * 
+	 * @param threshold
+	 * 			float: how loud the input needs to get for us to decide the click has arrived
+	 * 
+	 * @related getLatency ( )
+	 */
+	public void measureLatency( float threshold )
+	{
+		mLatencyThreshold = threshold;
+		mLatencyFrames = 0;
+		mMeasuredLatency = -1;
+		mMeasuringLatency = true;
+	}
+	
+	/**
+	 * Starts measuring the round-trip latency with a threshold of 0.25.
+	 */
+	public void measureLatency()
+	{
+		measureLatency( 0.25f );
+	}
+	
+	/**
+	 * Returns whether a latency measurement is in progress.
+	 * 
+	 * @return boolean: true if we are still waiting for the click to come back
+	 */
+	public boolean isMeasuringLatency()
+	{
+		return mMeasuringLatency;
+	}
+	
+	/**
+	 * Returns the result of the most recent latency measurement.
+	 * 
+	 * @return float: the round-trip latency in milliseconds, 
+	 * 			or -1 if there hasn't been a successful measurement
+	 * 
+	 * @related measureLatency ( )
+	 */
+	public float getLatency()
+	{
+		return mMeasuredLatency;
+	}
+	
+	/**
+	 * Sets the quality used to convert the sample rate of the input 
+	 * when it is different from the sample rate of this LiveInput.
+	 * 
+	 * @param quality
+	 * 			int: Resampler.LOW, Resampler.MEDIUM, or Resampler.HIGH
+	 * 
+	 * @related Resampler
+	 */
+	public void setResampleQuality( int quality )
+	{
+		if ( quality < Resampler.LOW || quality > Resampler.HIGH )
+		{
+			throw new IllegalArgumentException( "LiveInput: unknown resample quality " + quality );
+		}
+		mResampleQuality = quality;
+		updateResampler();
+	}
+	
+	@Override
+	protected void sampleRateChanged()
+	{
+		updateResampler();
+	}
+	
+	private void updateResampler()
+	{
+		float inputRate = mInputStream.getFormat().getSampleRate();
+		if ( sampleRate() <= 0 || inputRate == sampleRate() )
+		{
+			mResampler = null;
+			return;
+		}
+		Resampler resampler = mResampler;
+		if ( resampler == null || resampler.getQuality() != mResampleQuality )
+		{
+			int channelCount = mInputStream.getFormat().getChannels();
+			resampler = new Resampler( channelCount, mResampleQuality );
+			mResampled = new float[channelCount];
+		}
+		resampler.setRatio( (double)inputRate / sampleRate() );
+		mResampler = resampler;
+	}
+	
 	@Override
 	protected void uGenerate(float[] channels) 
 	{
-		float[] samples = mInputStream.read();
+		Resampler resampler = mResampler;
+		float[] samples;
+		if ( resampler == null )
+		{
+			samples = mInputStream.read();
+		}
+		else
+		{
+			while( resampler.needsInput() )
+			{
+				resampler.write( mInputStream.read() );
+			}
+			samples = mResampled;
+			resampler.read( samples );
+		}
+		
+		if ( mMeasuringLatency )
+		{
+			trackLatency( samples, channels );
+			return;
+		}
+		
 		// TODO: say the input is mono and output is stereo, what should we do?
 		// should we just copy like this and have the input come in the 
 		// left side? Or should we somehow expand across the extra channels?
@@ -52,5 +204,33 @@ public class LiveInput extends UGen
 		int length = ( samples.length >= channels.length ) ? channels.length : samples.length;
 		System.arraycopy(samples, 0, channels, 0, length);
 	}
-
+	
+	private void trackLatency( float[] samples, float[] channels )
+	{
+		// the first frame is the click, everything after is silence.
+		float out = mLatencyFrames == 0 ? 1.f : 0.f;
+		for( int i = 0; i < channels.length; ++i )
+		{
+			channels[i] = out;
+		}
+		
+		if ( mLatencyFrames > 0 )
+		{
+			for( int i = 0; i < samples.length; ++i )
+			{
+				if ( Math.abs( samples[i] ) >= mLatencyThreshold )
+				{
+					mMeasuredLatency = mLatencyFrames * 1000.f / sampleRate();
+					mMeasuringLatency = false;
+					return;
+				}
+			}
+		}
+		
+		++mLatencyFrames;
+		if ( mLatencyFrames > LATENCY_TIMEOUT * sampleRate() )
+		{
+			mMeasuringLatency = false;
+		}
+	}
 }
@@ -0,0 +1,266 @@
+package ddf.minim.ugens;
+
+import ddf.minim.HalfBandFilter;
+import ddf.minim.UGen;
+
+/**
+ * The Oversample UGen allows you to wrap another UGen and run it at two, four, or
+ * eight times the sample rate of the rest of your signal chain. Nonlinear UGens like
+ * WaveShaper, BitCrush, or a Gain turned up far enough to clip create harmonics
+ * above half the sample rate, which fold back down as aliasing. Running them
+ * oversampled gives those harmonics room to exist, and they are then filtered
+ * out before the audio comes back down to the normal sample rate. Only the
+ * wrapped UGen pays for the higher sample rate, rather than everything patched
+ * to the output.
+ * <p>
+ * Your usage of Oversample might look something like this:
+ * <p>
+ * <code>
+ * Oversample&lt;WaveShaper&gt; shaper = new Oversample( new WaveShaper( 1, 5, Waves.SAW ), 4 );<br/>
+ * osc.patch( shaper ).patch( mainOut );
+ * </code>
+ * <p>
+ * If you need to patch something to one of the inputs of the wrapped UGen, use
+ * the <code>ugen</code> method to retrieve it. Keep in mind that anything you
+ * patch to the wrapped UGen also runs at the higher sample rate.
+ * <p>
+ * The sample rate is changed with cascaded half-band filters, one stage per
+ * doubling, which only spend multiplies on the filter taps that aren't zero.
+ * The filters delay the audio by about a millisecond at 44.1 kHz.
+ *
+ * @param <T> The type of UGen being wrapped, like WaveShaper.
+ *
+ * @related UGen
+ * @related Bypass
+ */
+public class Oversample<T extends UGen> extends UGen
+{
+	private T			mUGen;
+	// do NOT allow people to patch directly to this!
+	private UGenInput	audio;
+	// what feeds the oversampled audio to the wrapped UGen
+	private Feed		mFeed;
+
+	private int			mFactor;
+	private int			mStages;
+
+	// per channel, per stage
+	private HalfBandFilter[][]	mUp;
+	private HalfBandFilter[][]	mDown;
+	// per channel oversampled audio going into and coming out of the wrapped UGen
+	private float[][]	mUpsampled;
+	private float[][]	mProcessed;
+	private float[]		mScratch;
+	private float[]		mFrame;
+
+	/**
+	 * Construct an Oversample UGen that runs a UGen of type T at twice the sample rate.
+	 *
+	 * @param ugen
+	 *            the UGen to oversample
+	 */
+	public Oversample( T ugen )
+	{
+		this( ugen, 2 );
+	}
+
+	/**
+	 * Construct an Oversample UGen that runs a UGen of type T at factor times the sample rate.
+	 *
+	 * @param ugen
+	 *            the UGen to oversample
+	 * @param factor
+	 *            int: 2, 4, or 8
+	 */
+	public Oversample( T ugen, int factor )
+	{
+		if ( factor != 2 && factor != 4 && factor != 8 )
+		{
+			throw new IllegalArgumentException( "Oversample: the factor must be 2, 4, or 8, not " + factor );
+		}
+		mUGen = ugen;
+		mFactor = factor;
+		mStages = Integer.numberOfTrailingZeros( factor );
+		audio = addAudio();
+		mFeed = new Feed();
+		mFeed.patch( mUGen );
+		allocate( 1 );
+	}
+
+	/**
+	 * Retrieve the UGen that this Oversample is wrapping.
+	 *
+	 * @return the wrapped UGen, cast to the class this Oversample was constructed with.
+	 *
+	 * @related Oversample
+	 */
+	public T ugen()
+	{
+		return mUGen;
+	}
+
+	/**
+	 * Returns how many times the normal sample rate the wrapped UGen runs at.
+	 *
+	 * @return int: 2, 4, or 8
+	 *
+	 * @related Oversample
+	 */
+	public int getFactor()
+	{
+		return mFactor;
+	}
+
+	@Override
+	protected void sampleRateChanged()
+	{
+		mUGen.setSampleRate( sampleRate() * mFactor );
+	}
+
+	@Override
+	protected void addInput( UGen input )
+	{
+		audio.setIncomingUGen( input );
+	}
+
+	@Override
+	protected void removeInput( UGen input )
+	{
+		if ( audio.getIncomingUGen() == input )
+		{
+			audio.setIncomingUGen( null );
+		}
+	}
+
+	public void setChannelCount( int channelCount )
+	{
+		// this will set our audio input properly
+		super.setChannelCount( channelCount );
+
+		// but we also need to let our wrapped UGen know
+		mFeed.setChannelCount( channelCount );
+		mUGen.setChannelCount( channelCount );
+	}
+
+	@Override
+	protected void channelCountChanged()
+	{
+		allocate( channelCount() );
+	}
+
+	private void allocate( int channelCount )
+	{
+		mUp = new HalfBandFilter[channelCount][mStages];
+		mDown = new HalfBandFilter[channelCount][mStages];
+		for ( int c = 0; c < channelCount; ++c )
+		{
+			for ( int s = 0; s < mStages; ++s )
+			{
+				mUp[c][s] = new HalfBandFilter( s == 0 ? FIRST_STAGE : LATER_STAGES );
+				mDown[c][s] = new HalfBandFilter( s == 0 ? FIRST_STAGE : LATER_STAGES );
+			}
+		}
+		mUpsampled = new float[channelCount][mFactor];
+		mProcessed = new float[channelCount][mFactor];
+		mScratch = new float[mFactor];
+		mFrame = new float[channelCount];
+		if ( mFeed.frame.length < channelCount )
+		{
+			mFeed.frame = new float[channelCount];
+		}
+	}
+
+	@Override
+	protected void uGenerate( float[] channels )
+	{
+		if ( mUp.length != channels.length )
+		{
+			allocate( channels.length );
+		}
+
+		float[] in = audio.getLastValues();
+		for ( int c = 0; c < channels.length; ++c )
+		{
+			upsample( mUp[c], in[Math.min( c, in.length - 1 )], mUpsampled[c] );
+		}
+
+		for ( int i = 0; i < mFactor; ++i )
+		{
+			for ( int c = 0; c < channels.length; ++c )
+			{
+				mFeed.frame[c] = mUpsampled[c][i];
+			}
+			mUGen.tick( mFrame );
+			for ( int c = 0; c < channels.length; ++c )
+			{
+				mProcessed[c][i] = mFrame[c];
+			}
+		}
+
+		for ( int c = 0; c < channels.length; ++c )
+		{
+			channels[c] = downsample( mDown[c], mProcessed[c] );
+		}
+	}
+
+	// runs one sample up through every stage, each doubling the number of samples
+	private void upsample( HalfBandFilter[] stages, float sample, float[] out )
+	{
+		out[0] = sample;
+		int count = 1;
+		for ( int s = 0; s < stages.length; ++s )
+		{
+			System.arraycopy( out, 0, mScratch, 0, count );
+			for ( int i = 0; i < count; ++i )
+			{
+				stages[s].up( mScratch[i], out, i * 2 );
+			}
+			count *= 2;
+		}
+	}
+
+	// runs mFactor samples down through the stages in reverse, each halving them
+	private float downsample( HalfBandFilter[] stages, float[] samples )
+	{
+		System.arraycopy( samples, 0, mScratch, 0, mFactor );
+		int count = mFactor;
+		for ( int s = stages.length - 1; s >= 0; --s )
+		{
+			count /= 2;
+			for ( int i = 0; i < count; ++i )
+			{
+				mScratch[i] = stages[s].down( mScratch[i * 2], mScratch[i * 2 + 1] );
+			}
+		}
+		return mScratch[0];
+	}
+
+	// hands the wrapped UGen whatever sample frame we give it
+	private static class Feed extends UGen
+	{
+		float[]	frame	= new float[1];
+
+		@Override
+		public void setChannelCount( int channelCount )
+		{
+			super.setChannelCount( channelCount );
+			if ( frame.length != channelCount )
+			{
+				frame = new float[channelCount];
+			}
+		}
+
+		@Override
+		protected void uGenerate( float[] channels )
+		{
+			System.arraycopy( frame, 0, channels, 0, Math.min( frame.length, channels.length ) );
+		}
+	}
+
+	// the nonzero taps of the half-band filters, one side of the odd taps.
+	// the first stage has to keep everything below the original nyquist
+	// frequency and remove everything above it, the later stages have an
+	// octave of room to do that in, so they get away with fewer taps.
+	private static final float[]	FIRST_STAGE		= HalfBandFilter.design( 12 );
+	private static final float[]	LATER_STAGES	= HalfBandFilter.design( 4 );
+}
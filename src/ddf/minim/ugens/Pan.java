@@ -34,6 +34,12 @@ public class Pan extends UGen
 
 	private UGen			audio;
 	private float[]			tickBuffer = new float[1];
+	
+	// the amplitudes computed for the last pan value we saw,
+	// recomputed only when the pan value changes.
+	private float			lastPanValue = Float.NaN;
+	private float			leftAmp;
+	private float			rightAmp;
 
 	static private float	PIOVER2	= (float)Math.PI / 2.f;
 
@@ -141,13 +147,17 @@ public class Pan extends UGen
 		// linear = pow ( 10.0, (0.05 * dBvalue) );
 		// linear = 10^(dB/20)
 
-		float normBalance = ( panValue + 1.f ) * 0.5f;
-
-		// note that I am calculating amplitude directly, by using the linear
-		// value
-		// that the MIDI specification suggests inputing into the dB formula.
-		float leftAmp = (float)Math.cos( PIOVER2 * normBalance );
-		float rightAmp = (float)Math.sin( PIOVER2 * normBalance );
+		if ( panValue != lastPanValue )
+		{
+			float normBalance = ( panValue + 1.f ) * 0.5f;
+	
+			// note that I am calculating amplitude directly, by using the linear
+			// value
+			// that the MIDI specification suggests inputing into the dB formula.
+			leftAmp = (float)Math.cos( PIOVER2 * normBalance );
+			rightAmp = (float)Math.sin( PIOVER2 * normBalance );
+			lastPanValue = panValue;
+		}
 
 		channels[0] = tickBuffer[0] * leftAmp;
 		channels[1] = tickBuffer[0] * rightAmp;
@@ -4,6 +4,8 @@ import java.util.Arrays;
 
 import ddf.minim.Minim;
 import ddf.minim.MultiChannelBuffer;
+import ddf.minim.Resampler;
+import ddf.minim.SampleStore;
 import ddf.minim.UGen;
 
 /**
@@ -21,6 +23,12 @@ import ddf.minim.UGen;
  * the sample. So, changing the values does not effect already playing voices,
  * except for <code>amplitude</code>, which controls the volume of the Sampler 
  * as a whole.
+ * <p>
+ * When a voice plays the sample at a different rate than it was recorded at,
+ * either because the <code>rate</code> input isn't 1 or because the sample 
+ * rate of the sample data is different from the Sampler's, the sample is 
+ * converted with a Resampler, which avoids the aliasing that interpolating 
+ * between samples causes.
  * 
  * @example Advanced/DrumMachine
  * 
@@ -70,7 +78,7 @@ public class Sampler extends UGen
 	 */
 	public boolean looping;
 	
-	private MultiChannelBuffer sampleData;
+	private SampleStore		   sampleData;
 	// what's the sample rate of our sample data
 	private float			   sampleDataSampleRate;
 	// what's the baseline playback rate.
@@ -86,6 +94,8 @@ public class Sampler extends UGen
 	private Trigger[]		   triggers;
 	private int				   nextTrigger;
 	
+	private int				   resampleQuality = Resampler.MEDIUM;
+	
 	/**
 	 * Create a new Sampler for triggering the provided file.
 	 * 
@@ -105,10 +115,12 @@ public class Sampler extends UGen
 			triggers[i] = new Trigger();
 		}
 		
-		sampleData = new MultiChannelBuffer(1,1);
-		sampleDataSampleRate = system.loadFileIntoBuffer( filename, sampleData );
+		MultiChannelBuffer fileData = new MultiChannelBuffer(1,1);
+		sampleDataSampleRate = system.loadFileIntoBuffer( filename, fileData );
+		sampleData = wrap( fileData, sampleDataSampleRate );
 		
 		createInputs();
+		Resampler.prepare( resampleQuality );
 	}
 	
 	/**
@@ -138,17 +150,58 @@ public class Sampler extends UGen
 			triggers[i] = new Trigger();
 		}
 		
-		this.sampleData      = new MultiChannelBuffer( sampleData.getChannelCount(), sampleData.getBufferSize() );
-		this.sampleData.set(  sampleData );
+		this.sampleData      = SampleStore.copyOf( sampleData, sampleRate, SampleStore.FLOAT, false );
 		sampleDataSampleRate = sampleRate;
 		
 		createInputs();
+		Resampler.prepare( resampleQuality );
+	}
+	
+	/**
+	 * Create a Sampler that plays the audio in the provided SampleStore.
+	 * The store is <em>not</em> copied, so many Samplers can share one
+	 * store, and a store that packs its samples into 16 or 24 bits or 
+	 * keeps them off-heap stays that way. The playback rate of the Sampler 
+	 * is set using the sample rate of the store.
+	 * 
+	 * @param sampleData
+	 * 			SampleStore: the sample data this Sampler will use to generate sound
+	 * @param maxVoices
+	 * 			int: the maximum number of voices for this Sampler
+	 * 
+	 * @related SampleStore
+	 */
+	public Sampler( SampleStore sampleData, int maxVoices )
+	{
+		triggers = new Trigger[maxVoices];
+		for( int i = 0; i < maxVoices; ++i )
+		{
+			triggers[i] = new Trigger();
+		}
+		
+		this.sampleData      = sampleData;
+		sampleDataSampleRate = sampleData.getSampleRate();
+		
+		createInputs();
+		Resampler.prepare( resampleQuality );
+	}
+	
+	// the channels of a buffer we just filled are ours to keep,
+	// so there's no need to copy them.
+	private static SampleStore wrap( MultiChannelBuffer buffer, float sampleRate )
+	{
+		float[][] channels = new float[buffer.getChannelCount()][];
+		for( int c = 0; c < channels.length; ++c )
+		{
+			channels[c] = buffer.getChannel( c );
+		}
+		return SampleStore.wrap( channels, sampleRate );
 	}
 	
 	private void createInputs()
 	{
 		begin 			= addControl(0);
-		end   			= addControl(sampleData.getBufferSize()-1);
+		end   			= addControl(sampleData.getSampleCount()-1);
 		attack 			= addControl();
 		amplitude		= addControl(1);
 		rate			= addControl(1);
@@ -194,11 +247,50 @@ public class Sampler extends UGen
 	 */
 	public void setSample( MultiChannelBuffer newSampleData, float sampleRate )
 	{
-		sampleData.set( newSampleData );
+		sampleData = SampleStore.copyOf( newSampleData, sampleRate, SampleStore.FLOAT, false );
 		sampleDataSampleRate = sampleRate;
 		basePlaybackRate	 = sampleRate / sampleRate();
 	}
 	
+	/**
+	 * Sets the sample data used by this Sampler to the provided SampleStore,
+	 * which is used directly rather than copied.
+	 * 
+	 * @param newSampleData
+	 * 				SampleStore: the new sample data for this Sampler
+	 * 
+	 * @related SampleStore
+	 */
+	public void setSample( SampleStore newSampleData )
+	{
+		sampleData = newSampleData;
+		sampleDataSampleRate = newSampleData.getSampleRate();
+		basePlaybackRate	 = sampleDataSampleRate / sampleRate();
+	}
+	
+	/**
+	 * Sets the quality used to convert the sample when a voice plays it 
+	 * at a different rate than it was recorded at. This takes effect 
+	 * the next time a voice is triggered. The resampling filters for the
+	 * new quality are designed here, rather than when a voice is triggered
+	 * on the audio thread, so this should not be called while audio is 
+	 * playing if it can be avoided.
+	 * 
+	 * @param quality
+	 * 			int: Resampler.LOW, Resampler.MEDIUM, or Resampler.HIGH
+	 * 
+	 * @related Resampler
+	 */
+	public void setResampleQuality( int quality )
+	{
+		if ( quality < Resampler.LOW || quality > Resampler.HIGH )
+		{
+			throw new IllegalArgumentException( "Sampler: unknown resample quality " + quality );
+		}
+		Resampler.prepare( quality );
+		resampleQuality = quality;
+	}
+	
 	@Override
 	protected void sampleRateChanged()
 	{
@@ -236,6 +328,15 @@ public class Sampler extends UGen
 		int   release;
 		// whether we are done playing our bit of the sample or not
 		boolean  done;
+		// used when the sample isn't being played at its own rate,
+		// along with the next sample frame to write to it and 
+		// how many frames of silence were written past the end.
+		Resampler resampler;
+		boolean  resampling;
+		int      source;
+		int      tail;
+		float[]  sourceFrame;
+		float[]  resampledFrame;
 		
 		Trigger()
 		{
@@ -245,8 +346,8 @@ public class Sampler extends UGen
 		// start this Trigger playing with the current settings of the Sampler
 		void activate()
 		{
-			beginSample  = (int)Math.min( begin.getLastValue(), sampleData.getBufferSize()-2);
-			endSample    = (int)Math.min( end.getLastValue(), sampleData.getBufferSize()-1 );
+			beginSample  = (int)Math.min( begin.getLastValue(), sampleData.getSampleCount()-2);
+			endSample    = (int)Math.min( end.getLastValue(), sampleData.getSampleCount()-1 );
 			playbackRate = rate.getLastValue();
 			attackLength = (int)Math.max( sampleRate() * attack.getLastValue(), 1.f );
 			attackAmp    = 0;
@@ -254,6 +355,25 @@ public class Sampler extends UGen
 			release		  = 0;
 			sample		  = beginSample;
 			outSampleCount = 0;
+			
+			float step = playbackRate*basePlaybackRate;
+			resampling = step > 0 && step != 1;
+			if ( resampling )
+			{
+				int channelCount = sampleData.getChannelCount();
+				if ( resampler == null 
+				  || resampler.getChannelCount() != channelCount 
+				  || resampler.getQuality() != resampleQuality )
+				{
+					resampler      = new Resampler( channelCount, resampleQuality );
+					sourceFrame    = new float[channelCount];
+					resampledFrame = new float[channelCount];
+				}
+				resampler.setRatio( step );
+				resampler.reset();
+				source = (int)beginSample;
+				tail   = 0;
+			}
 			done		  = false;
 		}
         
@@ -270,6 +390,12 @@ public class Sampler extends UGen
 			
 			final float outAmp = amplitude.getLastValue() * attackAmp;
 			
+			if ( resampling )
+			{
+				generateResampled( sampleFrame, outAmp );
+				return;
+			}
+			
 			for( int c = 0; c < sampleFrame.length; ++c )
 			{
 				int sourceChannel = c < sampleData.getChannelCount() ? c : sampleData.getChannelCount() - 1;
@@ -290,6 +416,54 @@ public class Sampler extends UGen
 				}
 			}
 			
+			advanceAttack();
+		}
+		
+		void generateResampled( float[] sampleFrame, float outAmp )
+		{
+			final int channelCount = sourceFrame.length;
+			while( resampler.needsInput() )
+			{
+				if ( source > endSample )
+				{
+					if ( looping )
+					{
+						source = (int)beginSample;
+					}
+					else
+					{
+						++tail;
+					}
+				}
+				for( int c = 0; c < channelCount; ++c )
+				{
+					sourceFrame[c] = source <= endSample ? sampleData.getSample( c, source ) : 0;
+				}
+				if ( source <= endSample )
+				{
+					++source;
+				}
+				resampler.write( sourceFrame );
+			}
+			resampler.read( resampledFrame );
+			
+			for( int c = 0; c < sampleFrame.length; ++c )
+			{
+				int sourceChannel = c < channelCount ? c : channelCount - 1;
+				sampleFrame[c] += outAmp * resampledFrame[sourceChannel];
+			}
+			
+			// once the resampler has read past the end, the last of the sample has been heard
+			if ( tail > resampler.getLatency() )
+			{
+				done = true;
+			}
+			
+			advanceAttack();
+		}
+		
+		void advanceAttack()
+		{
 			++outSampleCount;
 			if ( outSampleCount <= attackLength )
 			{
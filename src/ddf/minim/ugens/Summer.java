@@ -5,6 +5,7 @@ import java.util.Arrays;
 
 import ddf.minim.AudioSignal;
 import ddf.minim.Minim;
+import ddf.minim.SampleKernels;
 import ddf.minim.UGen;
 
 /**
@@ -144,10 +145,7 @@ public class Summer extends UGen implements AudioSignal
 	// is that Sink produces silence.
 	protected void processSampleFrame(float[] in, float[] out)
 	{
-		for ( int i = 0; i < out.length; ++i )
-		{
-			out[i] += in[i];
-		}
+		SampleKernels.accumulate( in, 0, out, 0, out.length );
 	}
 
 	/**